@@ -20,6 +20,7 @@ package org.occiware.mart.server.facade;
 
 // import org.occiware.clouddesigner.occi.*;
 
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.eclipse.cmf.occi.core.*;
 import org.occiware.mart.server.exception.ConfigurationException;
 import org.occiware.mart.server.exception.ModelValidatorException;
@@ -29,17 +30,29 @@ import org.occiware.mart.server.model.ConfigurationManager;
 import org.occiware.mart.server.model.EntityManager;
 import org.occiware.mart.server.model.KindManager;
 import org.occiware.mart.server.model.MixinManager;
+import org.occiware.mart.server.model.QueryPage;
 import org.occiware.mart.server.parser.IRequestParser;
 import org.occiware.mart.server.parser.OCCIRequestData;
+import org.occiware.mart.server.parser.ParserFactory;
 import org.occiware.mart.server.parser.QueryInterfaceData;
+import org.occiware.mart.server.parser.StreamingContent;
+import org.occiware.mart.server.parser.json.render.JsonMappers;
+import org.occiware.mart.server.utils.AggregationQuery;
+import org.occiware.mart.server.utils.CategoryIds;
 import org.occiware.mart.server.utils.CollectionFilter;
 import org.occiware.mart.server.utils.Constants;
+import org.occiware.mart.server.utils.LineReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 /**
  * This abstract class has generic methods to address OCCI runtime core model managers.
@@ -67,6 +80,10 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
 
     @Override
     public OCCIApiResponse getModelsInterface(final String categoryFilter, final String extensionFilter) {
+        return withReadLock(() -> doGetModelsInterface(categoryFilter, extensionFilter));
+    }
+
+    private OCCIApiResponse doGetModelsInterface(final String categoryFilter, final String extensionFilter) {
         QueryInterfaceData interfData = new QueryInterfaceData();
 
         interfData.setCategoryFilter(categoryFilter);
@@ -89,6 +106,12 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
     public OCCIApiResponse createEntity(final String title, final String summary,
                                         final String kind, final List<String> mixins,
                                         final Map<String, String> attributes, final String location) {
+        return withWriteLock(() -> doCreateEntity(title, summary, kind, mixins, attributes, location));
+    }
+
+    private OCCIApiResponse doCreateEntity(final String title, final String summary,
+                                           final String kind, final List<String> mixins,
+                                           final Map<String, String> attributes, final String location) {
         String message;
         try {
             Entity entity = createEntityOnConfiguration(title, summary, kind, mixins, attributes, location);
@@ -249,6 +272,10 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
      */
     @Override
     public OCCIApiResponse createEntities(List<OCCIRequestData> datas) {
+        return withWriteLock(() -> doCreateEntities(datas));
+    }
+
+    private OCCIApiResponse doCreateEntities(List<OCCIRequestData> datas) {
         String title;
         String summary;
         String location;
@@ -285,6 +312,170 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
         return occiApiResponse;
     }
 
+    /**
+     * Import entities from a newline delimited json content, a line is a resource or a link json (or an occi main json with many entities).
+     * The entities are created or overwritten by batches of server.import.batch.size entities, each batch holds the owner write lock
+     * and the notifications of the configuration are suspended during the batch.
+     * A status line is written for each entity, ex: {"line":3,"status":"created","location":"/compute/vm1/"}
+     * or {"line":4,"status":"failed","message":"..."}, then a summary line {"created":1,"updated":0,"failed":1}.
+     * The status lines are streamed batch by batch if the response supports it.
+     * A line longer than server.request.max.body.size characters is reported as failed and stops the import,
+     * the content is read line by line so it is never held in memory.
+     *
+     * @param in the content input stream, closed once read.
+     * @return a response object with the status lines.
+     */
+    @Override
+    public OCCIApiResponse importEntities(final InputStream in) {
+        StreamingContent content = out -> writeImportEntities(in, out);
+        if (occiApiResponse.isStreamingSupported()) {
+            occiApiResponse.setResponseMessage(content);
+            return occiApiResponse;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            content.writeTo(out);
+            occiApiResponse.setResponseMessage(out.toString(StandardCharsets.UTF_8.name()));
+        } catch (IOException | ParseOCCIException ex) {
+            parseConfigurationExceptionMessageOutput("Cannot import entities, message: " + ex.getMessage());
+        }
+        return occiApiResponse;
+    }
+
+    private void writeImportEntities(final InputStream in, final OutputStream out) throws IOException {
+        int batchSize = AppParameters.getInstance().getImportBatchSize();
+        IRequestParser lineParser = ParserFactory.build(Constants.MEDIA_TYPE_JSON, username);
+        int maxLineLength = (int) Math.min(AppParameters.getInstance().getMaxBodySize(), Integer.MAX_VALUE);
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        counts.put(ImportItem.STATUS_CREATED, 0);
+        counts.put(ImportItem.STATUS_UPDATED, 0);
+        counts.put(ImportItem.STATUS_FAILED, 0);
+        List<ImportItem> batch = new ArrayList<>();
+        String line;
+        int lineNumber = 0;
+        try (LineReader reader = LineReader.of(in, 0, maxLineLength)) {
+            while (true) {
+                try {
+                    line = reader.readLine();
+                } catch (IOException ex) {
+                    // Line too long or content not readable, the lines already read are imported.
+                    batch.add(new ImportItem(lineNumber + 1, null, ex.getMessage()));
+                    break;
+                }
+                if (line == null) {
+                    break;
+                }
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    lineParser.getInputDatas().clear();
+                    lineParser.parseInputToDatas(line);
+                    if (lineParser.getInputDatas().isEmpty()) {
+                        batch.add(new ImportItem(lineNumber, null, "No entity on this line."));
+                    }
+                    for (OCCIRequestData data : lineParser.getInputDatas()) {
+                        batch.add(new ImportItem(lineNumber, data, data.getKind() == null ? "This line is not a resource or a link." : null));
+                    }
+                } catch (ParseOCCIException ex) {
+                    batch.add(new ImportItem(lineNumber, null, ex.getMessage()));
+                }
+                if (batch.size() >= batchSize) {
+                    importBatch(batch, writer, counts);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            importBatch(batch, writer, counts);
+        }
+        writer.write(JsonMappers.streamWriter(LinkedHashMap.class).writeValueAsString(counts));
+        writer.write('\n');
+        writer.flush();
+    }
+
+    /**
+     * Create the entities of a batch under the owner write lock, then write their status lines.
+     *
+     * @param batch  the entities to create, the items with an error are only reported.
+     * @param writer the status lines writer, flushed after the batch.
+     * @param counts the number of entities by status.
+     * @throws IOException if the status lines cannot be written.
+     */
+    private void importBatch(final List<ImportItem> batch, final Writer writer, final Map<String, Integer> counts) throws IOException {
+        List<Entity> entities = new ArrayList<>();
+        Lock lock = ConfigurationManager.getOwnerLock(username).writeLock();
+        lock.lock();
+        try {
+            EntityManager.suspendConfigurationNotifications(username);
+            try {
+                for (ImportItem item : batch) {
+                    if (item.message != null) {
+                        continue;
+                    }
+                    OCCIRequestData data = item.data;
+                    try {
+                        boolean overwrite = data.getLocation() != null && EntityManager.findEntityFromLocation(data.getLocation(), username).isPresent();
+                        Entity entity = createEntityOnConfiguration(data.getEntityTitle(), data.getEntitySummary(), data.getKind(),
+                                data.getMixins(), data.getAttrsValStr(), data.getLocation());
+                        entities.add(entity);
+                        item.status = overwrite ? ImportItem.STATUS_UPDATED : ImportItem.STATUS_CREATED;
+                        item.location = EntityManager.getLocation(entity, username);
+                    } catch (ConfigurationException ex) {
+                        item.message = ex.getMessage();
+                    }
+                }
+            } finally {
+                EntityManager.resumeConfigurationNotifications(username, entities);
+            }
+        } finally {
+            lock.unlock();
+        }
+        ObjectWriter statusWriter = JsonMappers.streamWriter(LinkedHashMap.class);
+        for (ImportItem item : batch) {
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("line", item.line);
+            if (item.message != null) {
+                item.status = ImportItem.STATUS_FAILED;
+                LOGGER.warn("Entity on line " + item.line + " not imported : " + item.message);
+            }
+            status.put("status", item.status);
+            if (item.location != null) {
+                status.put("location", item.location);
+            }
+            if (item.message != null) {
+                status.put("message", item.message);
+            }
+            counts.merge(item.status, 1, Integer::sum);
+            writer.write(statusWriter.writeValueAsString(status));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * An entity of a bulk import with its line number and its import status.
+     */
+    private static final class ImportItem {
+        private static final String STATUS_CREATED = "created";
+        private static final String STATUS_UPDATED = "updated";
+        private static final String STATUS_FAILED = "failed";
+
+        private final int line;
+        private final OCCIRequestData data;
+        private String message;
+        private String status;
+        private String location;
+
+        private ImportItem(final int line, final OCCIRequestData data, final String message) {
+            this.line = line;
+            this.data = data;
+            this.message = message;
+        }
+    }
+
     private void parseConfigurationExceptionMessageOutput(final String message) {
         occiApiResponse.setExceptionMessage(message);
         occiApiResponse.setExceptionThrown(new ConfigurationException(message));
@@ -378,6 +569,35 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
     }
 
 
+    /**
+     * Render a collection of entities on the response output stream if the response and the output parser support it,
+     * else the collection is rendered in memory with renderEntitiesOutput.
+     * The content is written after the owner lock is released, the output parser takes the read lock for each chunk of entities it converts.
+     *
+     * @param entities the entities to render.
+     */
+    private void renderEntitiesOutputStream(final List<Entity> entities) {
+        IRequestParser outputParser = occiApiResponse.getOutputParser();
+        if (outputParser == null || !occiApiResponse.isStreamingSupported()) {
+            renderEntitiesOutput(entities);
+            return;
+        }
+        try {
+            StreamingContent content = outputParser.renderOutputEntitiesStream(entities);
+            if (content == null) {
+                renderEntitiesOutput(entities);
+                return;
+            }
+            occiApiResponse.setResponseMessage(content);
+        } catch (ParseOCCIException ex) {
+            String message = "Exception thrown when rendering entity response, message: " + ex.getMessage();
+            LOGGER.error(message);
+            occiApiResponse.setExceptionMessage(message);
+            occiApiResponse.setExceptionThrown(ex);
+            occiApiResponse.parseResponseMessage(message);
+        }
+    }
+
     /**
      * Partial update of an entity. if will add mixins, update specified attributes and ensure that entity has all its attributes set.
      *
@@ -390,6 +610,10 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
      */
     @Override
     public OCCIApiResponse updateEntity(final String title, final String summary, final List<String> mixins, final Map<String, String> attributes, final String location) {
+        return withWriteLock(() -> doUpdateEntity(title, summary, mixins, attributes, location));
+    }
+
+    private OCCIApiResponse doUpdateEntity(final String title, final String summary, final List<String> mixins, final Map<String, String> attributes, final String location) {
         String message;
         Optional<Entity> optEntity;
         // Manage title and summary as attributes.
@@ -453,7 +677,10 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
      */
     @Override
     public OCCIApiResponse deleteEntity(final String location) {
+        return withWriteLock(() -> doDeleteEntity(location));
+    }
 
+    private OCCIApiResponse doDeleteEntity(final String location) {
         Optional<Entity> optEntity = EntityManager.findEntityFromLocation(location, username);
         Entity entity;
         String message;
@@ -487,36 +714,15 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
      */
     @Override
     public OCCIApiResponse deleteEntities(final String location, CollectionFilter filter) {
-        String message;
-        List<Entity> entities;
-        if (filter == null) {
-            try {
-                filter = buildDefaultCollectionFilter(location);
-            } catch (ConfigurationException ex) {
-                parseConfigurationExceptionMessageOutput(ex.getMessage());
-                return occiApiResponse;
-            }
+        Optional<CollectionFilter> optFilter = getCollectionFilter(location, filter);
+        Optional<List<Entity>> optEntities = optFilter.isPresent() ? findCollectionEntities(optFilter.get()) : Optional.empty();
+        if (!optEntities.isPresent()) {
+            return occiApiResponse;
         }
-        // Important to note : filters are defined in concrete implementation (categoryFilter, attributes filter, filter on a value etc.)
-        entities = EntityManager.findAllEntities(filter, username);
-        Optional<Entity> optEntityCheck; // To check if a link is present and have no resource deleted previously.
+        List<Entity> entities = optEntities.get();
+        // The write lock is taken for each entity, the readers are not blocked until the whole collection is deleted.
         for (Entity entity : entities) {
-
-            String entityId = entity.getId();
-            String title = entity.getTitle();
-            optEntityCheck = EntityManager.findEntity(entityId, username);
-            if (optEntityCheck.isPresent()) {
-                entity.occiDelete();
-                try {
-                    LOGGER.info("Remove entity: " + title + " --> " + entityId + " on location: " + location);
-                    EntityManager.removeOrDissociateFromConfiguration(entityId, username);
-
-                } catch (ConfigurationException ex) {
-                    parseConfigurationExceptionMessageOutput(ex.getMessage());
-                }
-            } else {
-                LOGGER.warn("Entity : " + title + " --> " + entityId + " on location: " + location + " is already removed from configuration.");
-            }
+            withWriteLock(() -> deleteCollectionEntity(entity, location));
         }
         if (entities.isEmpty()) {
             // Not found answer.
@@ -526,29 +732,52 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
         return occiApiResponse;
     }
 
-    @Override
-    public OCCIApiResponse findEntity(final String location) {
-        String message;
-
-        Optional<Entity> optEntity = EntityManager.findEntityFromLocation(location, username);
-        Entity entity;
+    /**
+     * Delete an entity of a collection (and execute occiDelete()), must be called under the owner write lock.
+     *
+     * @param entity   the entity to delete.
+     * @param location the collection location.
+     * @return true if the entity is deleted, false if it was already removed from the configuration.
+     */
+    private boolean deleteCollectionEntity(final Entity entity, final String location) {
+        String entityId = entity.getId();
+        String title = entity.getTitle();
+        // To check if a link is present and have no resource deleted previously.
+        Optional<Entity> optEntityCheck = EntityManager.findEntity(entityId, username);
+        if (!optEntityCheck.isPresent()) {
+            LOGGER.warn("Entity : " + title + " --> " + entityId + " on location: " + location + " is already removed from configuration.");
+            return false;
+        }
+        entity.occiDelete();
+        try {
+            LOGGER.info("Remove entity: " + title + " --> " + entityId + " on location: " + location);
+            EntityManager.removeOrDissociateFromConfiguration(entityId, username);
 
-        String entityId = null;
+        } catch (ConfigurationException ex) {
+            parseConfigurationExceptionMessageOutput(ex.getMessage());
+        }
+        return true;
+    }
 
-        if (optEntity.isPresent()) {
-            entity = optEntity.get();
-            entity.occiRetrieve();
-            // For debug only, to delete after.
-            List<MixinBase> mixinBases = entity.getParts();
-            for (MixinBase mixinBase : mixinBases) {
-                List<AttributeState> attributeStates = mixinBase.getAttributes();
-                LOGGER.warn("Attributes retrieves on mixin : " + mixinBase + " --> " + attributeStates.toString());
-            }
-            this.renderEntityOutput(entity);
-            LOGGER.info("Entity found on location : " + location);
-        } else {
+    @Override
+    public OCCIApiResponse findEntity(final String location) {
+        Optional<Entity> optEntity = withReadLock(() -> EntityManager.findEntityFromLocation(location, username));
+        if (!optEntity.isPresent()) {
             LOGGER.info("Entity not found on location: " + location);
+            return occiApiResponse;
         }
+        retrieveEntities(Collections.singletonList(optEntity.get()), entities -> {
+            for (Entity entity : entities) {
+                // For debug only, to delete after.
+                List<MixinBase> mixinBases = entity.getParts();
+                for (MixinBase mixinBase : mixinBases) {
+                    List<AttributeState> attributeStates = mixinBase.getAttributes();
+                    LOGGER.warn("Attributes retrieves on mixin : " + mixinBase + " --> " + attributeStates.toString());
+                }
+                this.renderEntityOutput(entity);
+                LOGGER.info("Entity found on location : " + location);
+            }
+        });
 
         return occiApiResponse;
     }
@@ -562,7 +791,127 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
      */
     @Override
     public OCCIApiResponse findEntities(final String location, CollectionFilter filter) {
-        String message;
+        Optional<CollectionFilter> optFilter = getCollectionFilter(location, filter);
+        Optional<List<Entity>> optEntities = optFilter.isPresent() ? findCollectionEntities(optFilter.get()) : Optional.empty();
+        if (!optEntities.isPresent()) {
+            return occiApiResponse;
+        }
+        String categoryFilter = optFilter.get().getCategoryFilter();
+        retrieveEntities(optEntities.get(), entities -> {
+            if (entities.size() > 1) {
+                this.renderEntitiesOutputStream(entities);
+            } else if (entities.size() == 1) {
+                this.renderEntityOutput(entities.get(0));
+            } else if (categoryFilter != null && !categoryFilter.isEmpty()) {
+                // Must render empty collection in this case.
+                this.renderEntitiesOutput(entities);
+            } else {
+                // Not found answer.
+                parseNotFoundExceptionMessageOutput("Resource not found on location : " + location);
+            }
+        });
+        return this.occiApiResponse;
+    }
+
+    /**
+     * Same as findEntities method but render locations link replacing entities data.
+     *
+     * @param location the collection location like /mylocation/myentity.
+     * @param filter   filter the output entities if this is a collection so may be null if none.
+     * @return a response object container with response message to publish.
+     */
+    @Override
+    public OCCIApiResponse findEntitiesLocations(final String location, CollectionFilter filter) {
+        Optional<CollectionFilter> optFilter = getCollectionFilter(location, filter);
+        Optional<List<Entity>> optEntities = optFilter.isPresent() ? findCollectionEntities(optFilter.get()) : Optional.empty();
+        if (!optEntities.isPresent()) {
+            return occiApiResponse;
+        }
+        retrieveEntities(optEntities.get(), entities -> {
+            if (!entities.isEmpty()) {
+                this.renderEntitiesLocationOutput(entities);
+            } else {
+                // Not found answer.
+                parseNotFoundExceptionMessageOutput("Resource not found on location : " + location);
+            }
+        });
+        return this.occiApiResponse;
+    }
+
+    /**
+     * @param location the collection location.
+     * @param filter   the collection filter, may be null.
+     * @return the filter, or the default filter of the location if no filter is given, empty optional if the default filter cannot be built (the response is set).
+     */
+    private Optional<CollectionFilter> getCollectionFilter(final String location, final CollectionFilter filter) {
+        if (filter != null) {
+            return Optional.of(filter);
+        }
+        try {
+            return Optional.of(withReadLock(() -> buildDefaultCollectionFilter(location)));
+        } catch (ConfigurationException ex) {
+            parseConfigurationExceptionMessageOutput(ex.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Find the entities of a collection page under the owner read lock, the continuation token of the next page is set on the response.
+     *
+     * @param filter the collection filter.
+     * @return the entities, empty optional if the filter is not valid (the response is set).
+     */
+    private Optional<List<Entity>> findCollectionEntities(final CollectionFilter filter) {
+        // Important to note : filters are defined in concrete implementation (categoryFilter, attributes filter, filter on a value etc.)
+        try {
+            QueryPage page = withReadLock(() -> EntityManager.findEntitiesPage(filter, username));
+            occiApiResponse.setNextCursor(page.getNextCursor());
+            return Optional.of(page.getEntities());
+        } catch (ConfigurationException ex) {
+            parseConfigurationExceptionMessageOutput(ex.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Refresh entities with their connector (occiRetrieve) then render them.
+     * This is done under the owner read lock : the readers of the owner dont block each other and no writer can change or remove the entities
+     * before they are rendered. Each connector refresh is synchronized on its entity, so two readers dont refresh the same entity at the same time.
+     * The entities removed from the configuration since they were found are not refreshed nor rendered.
+     *
+     * @param entities the entities to refresh.
+     * @param renderer renders the refreshed entities.
+     */
+    private void retrieveEntities(final List<Entity> entities, final Consumer<List<Entity>> renderer) {
+        withReadLock(() -> {
+            List<Entity> retrieved = new ArrayList<>(entities.size());
+            for (Entity entity : entities) {
+                if (isReferenced(entity)) {
+                    // Refresh object with crud method : retrieve.
+                    synchronized (entity) {
+                        entity.occiRetrieve();
+                    }
+                    retrieved.add(entity);
+                }
+            }
+            renderer.accept(retrieved);
+            return null;
+        });
+    }
+
+    /**
+     * Count the entities of a collection with the entities references, the connectors are not called and the entities are not rendered.
+     *
+     * @param location the collection location like /mylocation/myentity.
+     * @param filter   filter the counted entities, may be null if none.
+     * @return a response object container with the count as message, the count and the etag of the collection.
+     */
+    @Override
+    public OCCIApiResponse countEntities(final String location, CollectionFilter filter) {
+        return withReadLock(() -> doCountEntities(location, filter));
+    }
+
+    private OCCIApiResponse doCountEntities(final String location, CollectionFilter filter) {
         if (filter == null) {
             try {
                 filter = buildDefaultCollectionFilter(location);
@@ -571,37 +920,38 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
                 return occiApiResponse;
             }
         }
-        List<Entity> entities;
-        // Important to note : filters are defined in concrete implementation (categoryFilter, attributes filter, filter on a value etc.)
-        entities = EntityManager.findAllEntities(filter, username);
-        for (Entity entity : entities) {
-            // Refresh object with crud method : retrieve.
-            entity.occiRetrieve();
-        }
-        if (entities.size() > 1) {
-            this.renderEntitiesOutput(entities);
-        } else if (entities.size() == 1) {
-            this.renderEntityOutput(entities.get(0));
-        } else if (filter.getCategoryFilter() != null && !filter.getCategoryFilter().isEmpty()) {
-            // Must render empty collection in this case.
-            this.renderEntitiesOutput(entities);
-        } else {
-            // Not found answer.
+        int count;
+        try {
+            count = EntityManager.countEntities(filter, username);
+        } catch (ConfigurationException ex) {
+            parseConfigurationExceptionMessageOutput(ex.getMessage());
+            return occiApiResponse;
+        }
+        occiApiResponse.setTotalCount(count);
+        occiApiResponse.setEtag(EntityManager.getCollectionEtag(filter, username));
+        if (count == 0 && (filter.getCategoryFilter() == null || filter.getCategoryFilter().isEmpty())) {
+            // Same answer as findEntities.
             parseNotFoundExceptionMessageOutput("Resource not found on location : " + location);
+        } else {
+            occiApiResponse.parseResponseMessage(String.valueOf(count));
         }
         return this.occiApiResponse;
     }
 
     /**
-     * Same as findEntities method but render locations link replacing entities data.
+     * Aggregate the entities of a collection, the connectors are not called and the entities are not rendered.
      *
-     * @param location the collection location like /mylocation/myentity.
-     * @param filter   filter the output entities if this is a collection so may be null if none.
-     * @return a response object container with response message to publish.
+     * @param location    the collection location like /mylocation/myentity.
+     * @param filter      filter the aggregated entities, may be null if none.
+     * @param aggregation the aggregation query.
+     * @return a response object container with the aggregation results.
      */
     @Override
-    public OCCIApiResponse findEntitiesLocations(final String location, CollectionFilter filter) {
-        String message;
+    public OCCIApiResponse aggregateEntities(final String location, CollectionFilter filter, final AggregationQuery aggregation) {
+        return withReadLock(() -> doAggregateEntities(location, filter, aggregation));
+    }
+
+    private OCCIApiResponse doAggregateEntities(final String location, CollectionFilter filter, final AggregationQuery aggregation) {
         if (filter == null) {
             try {
                 filter = buildDefaultCollectionFilter(location);
@@ -610,18 +960,22 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
                 return occiApiResponse;
             }
         }
-        List<Entity> entities;
-        // Important to note : filters are defined in concrete implementation (categoryFilter, attributes filter, filter on a value etc.)
-        entities = EntityManager.findAllEntities(filter, username);
-        for (Entity entity : entities) {
-            // Refresh object.
-            entity.occiRetrieve();
+        Map<String, Map<String, Number>> results;
+        try {
+            results = EntityManager.aggregateEntities(filter, aggregation, username);
+        } catch (ConfigurationException ex) {
+            parseConfigurationExceptionMessageOutput(ex.getMessage());
+            return occiApiResponse;
         }
-        if (!entities.isEmpty()) {
-            this.renderEntitiesLocationOutput(entities);
-        } else {
-            // Not found answer.
-            parseNotFoundExceptionMessageOutput("Resource not found on location : " + location);
+        IRequestParser outputParser = occiApiResponse.getOutputParser();
+        try {
+            occiApiResponse.setResponseMessage(outputParser.renderOutputAggregation(results));
+        } catch (ParseOCCIException ex) {
+            String message = "Exception thrown when rendering aggregation response, message: " + ex.getMessage();
+            LOGGER.error(message);
+            occiApiResponse.setExceptionMessage(message);
+            occiApiResponse.setExceptionThrown(ex);
+            occiApiResponse.parseResponseMessage(message);
         }
         return this.occiApiResponse;
     }
@@ -636,6 +990,10 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
      */
     @Override
     public OCCIApiResponse createMixinTag(final String title, final String mixinTag, final String location, final List<String> locations) {
+        return withWriteLock(() -> doCreateMixinTag(title, mixinTag, location, locations));
+    }
+
+    private OCCIApiResponse doCreateMixinTag(final String title, final String mixinTag, final String location, final List<String> locations) {
         String message;
         if (mixinTag == null || mixinTag.trim().isEmpty()) {
             message = "No mixin tag id, cannot create mixin tag";
@@ -710,7 +1068,10 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
      */
     @Override
     public OCCIApiResponse replaceMixinTagCollection(final String mixinTag, final List<String> locations) {
+        return withWriteLock(() -> doReplaceMixinTagCollection(mixinTag, locations));
+    }
 
+    private OCCIApiResponse doReplaceMixinTagCollection(final String mixinTag, final List<String> locations) {
         String message;
 
         // First load the mixin object model.
@@ -757,6 +1118,10 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
 
     @Override
     public OCCIApiResponse associateMixinTagToEntities(String mixin, final String mixinTagLocation, final List<String> xlocations) {
+        return withWriteLock(() -> doAssociateMixinTagToEntities(mixin, mixinTagLocation, xlocations));
+    }
+
+    private OCCIApiResponse doAssociateMixinTagToEntities(String mixin, final String mixinTagLocation, final List<String> xlocations) {
         Entity entity;
         String message;
         List<Entity> entities = new LinkedList<>();
@@ -778,7 +1143,7 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
             Optional<Mixin> optMixin = MixinManager.getUserMixinFromLocation(mixinTagLocation, username);
             if (optMixin.isPresent()) {
                 Mixin mixinTagModel = optMixin.get();
-                mixin = mixinTagModel.getScheme() + mixinTagModel.getTerm();
+                mixin = CategoryIds.of(mixinTagModel);
                 mixinTags.add(mixin);
             }
         }
@@ -816,6 +1181,10 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
      */
     @Override
     public OCCIApiResponse deleteMixinTag(final String mixinTag) {
+        return withWriteLock(() -> doDeleteMixinTag(mixinTag));
+    }
+
+    private OCCIApiResponse doDeleteMixinTag(final String mixinTag) {
         String message;
         if (mixinTag == null) {
             message = "No mixin tag to delete.";
@@ -855,6 +1224,10 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
      */
     @Override
     public OCCIApiResponse removeMixinAssociations(final String mixin, List<String> locations) {
+        return withWriteLock(() -> doRemoveMixinAssociations(mixin, locations));
+    }
+
+    private OCCIApiResponse doRemoveMixinAssociations(final String mixin, List<String> locations) {
         String message;
         if (mixin == null) {
             message = "no mixin associations to remove, there is no mixin defined";
@@ -909,11 +1282,7 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
     @Override
     public OCCIApiResponse executeActionOnEntities(final String action, final Map<String, String> actionAttributes, final List<String> locations) {
         String message;
-        try {
-            EntityManager.checkActionOnModel(action, username);
-
-        } catch (ConfigurationException ex) {
-            parseConfigurationExceptionMessageOutput(ex.getMessage());
+        if (!isActionOnModel(action)) {
             return occiApiResponse;
         }
         if (locations == null || locations.isEmpty()) {
@@ -922,35 +1291,44 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
             parseConfigurationExceptionMessageOutput(message);
             return occiApiResponse;
         }
-        Entity entity;
         List<Entity> entities = new LinkedList<>();
-        // Execute the action on entity locations.
+        // Execute the action on entity locations, the write lock is taken for each entity.
         for (String location : locations) {
+            Optional<Entity> optEntity;
             try {
-                LOGGER.info("Triggering action : " + action + " on entity located on : " + location);
-                EntityManager.executeActionOnEntityLocation(location, action, actionAttributes, username);
-                Optional<Entity> optEntity = EntityManager.findEntityFromLocation(location, username);
-
-                if (optEntity.isPresent()) {
-                    entity = optEntity.get();
-                    entity.occiRetrieve(); // refresh entity attributes and values, this is welcome if entity state change.
-                    entities.add(entity);
-                } else {
-                    message = "entity not found on location: " + location + " cannot trigger action : " + action + " on this entity";
-                    LOGGER.warn(message);
-                    parseNotFoundExceptionMessageOutput(message);
-                    return occiApiResponse;
-                }
-
+                optEntity = withWriteLock(() -> executeActionOnLocation(location, action, actionAttributes));
             } catch (ConfigurationException ex) {
                 parseConfigurationExceptionMessageOutput(ex.getMessage());
                 return occiApiResponse;
             }
-
+            if (!optEntity.isPresent()) {
+                message = "entity not found on location: " + location + " cannot trigger action : " + action + " on this entity";
+                LOGGER.warn(message);
+                parseNotFoundExceptionMessageOutput(message);
+                return occiApiResponse;
+            }
+            entities.add(optEntity.get());
         }
         // All ok, render entities to output.
-        renderEntitiesOutput(entities);
-        return occiApiResponse;
+        return renderEntitiesResponse(entities);
+    }
+
+    /**
+     * Execute an action on the entity of a location then refresh the entity, must be called under the owner write lock.
+     *
+     * @param location         the entity location.
+     * @param action           the action category scheme+term.
+     * @param actionAttributes the action attributes.
+     * @return the entity, empty optional if there is no entity on the location after the action.
+     * @throws ConfigurationException if the action cannot be executed.
+     */
+    private Optional<Entity> executeActionOnLocation(final String location, final String action, final Map<String, String> actionAttributes) throws ConfigurationException {
+        LOGGER.info("Triggering action : " + action + " on entity located on : " + location);
+        EntityManager.executeActionOnEntityLocation(location, action, actionAttributes, username);
+        Optional<Entity> optEntity = EntityManager.findEntityFromLocation(location, username);
+        // refresh entity attributes and values, this is welcome if entity state change.
+        optEntity.ifPresent(Entity::occiRetrieve);
+        return optEntity;
     }
 
     /**
@@ -962,17 +1340,29 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
      */
     @Override
     public OCCIApiResponse executeActionOnCategory(final String action, final Map<String, String> actionAttrs, final String categoryTerm) {
-        String message;
-        try {
-            EntityManager.checkActionOnModel(action, username);
-        } catch (ConfigurationException ex) {
-            parseConfigurationExceptionMessageOutput(ex.getMessage());
+        if (!isActionOnModel(action)) {
+            return occiApiResponse;
+        }
+        Optional<List<Entity>> optEntities = withReadLock(() -> findCategoryEntities(action, categoryTerm));
+        if (!optEntities.isPresent()) {
             return occiApiResponse;
         }
+        return executeActionOnEntityList(optEntities.get(), action, actionAttrs);
+    }
+
+    /**
+     * Find the entities of a category to execute an action on, must be called under the owner read lock.
+     *
+     * @param action       action scheme + term.
+     * @param categoryTerm category term.
+     * @return the entities, empty optional if the category is unknown or has no entity (the response is set).
+     */
+    private Optional<List<Entity>> findCategoryEntities(final String action, final String categoryTerm) {
+        String message;
         if (categoryTerm == null) {
             message = "Category term is not set for action to trigger : " + action;
             parseConfigurationExceptionMessageOutput(message);
-            return occiApiResponse;
+            return Optional.empty();
         }
         // Check if category term is on extensions model.
         Optional<String> optCat = getCategorySchemeTerm(categoryTerm);
@@ -981,7 +1371,7 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
         if (!optCat.isPresent()) {
             message = "Category : " + categoryTerm + " is unknown";
             parseConfigurationExceptionMessageOutput(message);
-            return occiApiResponse;
+            return Optional.empty();
         }
         categoryId = optCat.get();
         // Load all entities on scope of this category.
@@ -994,32 +1384,36 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
         if (entities.isEmpty()) {
             message = "Category : " + categoryId + " has no referenced entities";
             parseConfigurationExceptionMessageOutput(message);
-            return occiApiResponse;
+            return Optional.empty();
         }
-
-        // Trigger the action.
         LOGGER.info("Triggering action : " + action + " on category : " + categoryId + ", entities number: " + entities.size());
-        for (Entity entity : entities) {
-            try {
-                EntityManager.executeActionOnEntity(entity, action, actionAttrs, username);
-            } catch (ConfigurationException ex) {
-                parseConfigurationExceptionMessageOutput(ex.getMessage());
-                return occiApiResponse;
-            }
-        }
-        renderEntitiesOutput(entities);
-        return occiApiResponse;
+        return Optional.of(entities);
     }
 
     @Override
     public OCCIApiResponse executeActionOnMixinTag(final String action, final Map<String, String> actionAttrs, final String mixinTag) {
+        Optional<List<Entity>> optEntities = withReadLock(() -> findMixinTagEntities(action, mixinTag));
+        if (!optEntities.isPresent()) {
+            return occiApiResponse;
+        }
+        return executeActionOnEntityList(optEntities.get(), action, actionAttrs);
+    }
+
+    /**
+     * Find the entities associated with a mixin tag to execute an action on, must be called under the owner read lock.
+     *
+     * @param action   action scheme + term.
+     * @param mixinTag mixin tag scheme + term.
+     * @return the entities, empty optional if the mixin tag doesnt exist or has no entity (the response is set).
+     */
+    private Optional<List<Entity>> findMixinTagEntities(final String action, final String mixinTag) {
         String message;
         Optional<Mixin> optMixin = MixinManager.findUserMixinOnConfiguration(mixinTag, username);
 
         if (!optMixin.isPresent()) {
             message = "User defined mixin doesnt exist on configuration model";
             parseConfigurationExceptionMessageOutput(message);
-            return occiApiResponse;
+            return Optional.empty();
         }
 
         // Search the entities that has the mixin tag associated.
@@ -1027,19 +1421,132 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
         if (entities.isEmpty()) {
             message = "Mixin user defined has no referenced entities, no action to trigger";
             parseConfigurationExceptionMessageOutput(message);
-            return occiApiResponse;
+            return Optional.empty();
         }
         LOGGER.info("Triggering action : " + action + " on mixin user defined : " + mixinTag + ", entities number: " + entities.size());
+        return Optional.of(entities);
+    }
+
+    /**
+     * Execute an action on entities then render them. The owner write lock is taken for each entity,
+     * the readers are not blocked until the action is executed on all the entities. The entities removed in the meantime are skipped.
+     *
+     * @param entities    the entities.
+     * @param action      action scheme + term.
+     * @param actionAttrs action attributes.
+     * @return the response.
+     */
+    private OCCIApiResponse executeActionOnEntityList(final List<Entity> entities, final String action, final Map<String, String> actionAttrs) {
+        List<Entity> executed = new ArrayList<>(entities.size());
         for (Entity entity : entities) {
             try {
-                EntityManager.executeActionOnEntity(entity, action, actionAttrs, username);
+                boolean referenced = withWriteLock(() -> {
+                    if (!isReferenced(entity)) {
+                        return false;
+                    }
+                    EntityManager.executeActionOnEntity(entity, action, actionAttrs, username);
+                    return true;
+                });
+                if (referenced) {
+                    executed.add(entity);
+                }
             } catch (ConfigurationException ex) {
                 parseConfigurationExceptionMessageOutput(ex.getMessage());
                 return occiApiResponse;
             }
         }
-        renderEntitiesOutput(entities);
-        return occiApiResponse;
+        return renderEntitiesResponse(executed);
+    }
+
+    /**
+     * @param action the action scheme + term.
+     * @return true if the action is defined on the owner model, false if not (the response is set).
+     */
+    private boolean isActionOnModel(final String action) {
+        try {
+            return withReadLock(() -> {
+                EntityManager.checkActionOnModel(action, username);
+                return true;
+            });
+        } catch (ConfigurationException ex) {
+            parseConfigurationExceptionMessageOutput(ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Render entities under the owner read lock.
+     *
+     * @param entities the entities to render.
+     * @return the response.
+     */
+    private OCCIApiResponse renderEntitiesResponse(final List<Entity> entities) {
+        return withReadLock(() -> {
+            renderEntitiesOutput(entities);
+            return occiApiResponse;
+        });
+    }
+
+    /**
+     * @param entity an entity found on the owner configuration.
+     * @return true if the entity is still referenced by the owner, must be called under the owner lock.
+     */
+    private boolean isReferenced(final Entity entity) {
+        Optional<Entity> optEntity = EntityManager.findEntityForUuid(entity.getId(), username);
+        return optEntity.isPresent() && optEntity.get() == entity;
+    }
+
+    /**
+     * Run an operation on the owner model under the owner read lock, the readers of an owner dont block each other.
+     *
+     * @param operation the operation.
+     * @return the result of the operation.
+     * @throws E the exception thrown by the operation.
+     */
+    private <T, E extends Exception> T withReadLock(final OwnerOperation<T, E> operation) throws E {
+        Lock lock = ConfigurationManager.getOwnerLock(username).readLock();
+        lock.lock();
+        try {
+            return operation.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Run an operation on the owner model under the owner write lock.
+     *
+     * @param operation the operation.
+     * @return the result of the operation.
+     * @throws E the exception thrown by the operation.
+     */
+    private <T, E extends Exception> T withWriteLock(final OwnerOperation<T, E> operation) throws E {
+        ReentrantReadWriteLock ownerLock = ConfigurationManager.getOwnerLock(username);
+        lockWrite(ownerLock);
+        try {
+            return operation.run();
+        } finally {
+            ownerLock.writeLock().unlock();
+        }
+    }
+
+    private static void lockWrite(final ReentrantReadWriteLock ownerLock) {
+        if (ownerLock.getReadHoldCount() > 0 && !ownerLock.isWriteLockedByCurrentThread()) {
+            // A read lock cannot be upgraded, the thread would wait for itself.
+            throw new IllegalStateException("The owner write lock cannot be taken by a thread holding the owner read lock.");
+        }
+        ownerLock.writeLock().lock();
+    }
+
+    /**
+     * An operation on the owner model, run under the owner lock.
+     *
+     * @param <T> the result type.
+     * @param <E> the exception thrown by the operation.
+     */
+    @FunctionalInterface
+    private interface OwnerOperation<T, E extends Exception> {
+        T run() throws E;
     }
 
 
@@ -1087,7 +1594,7 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
         Optional<Mixin> optMixin = MixinManager.getUserMixinFromLocation(location, username);
         Optional<String> optResult;
         if (optMixin.isPresent()) {
-            optResult = Optional.of(optMixin.get().getScheme() + optMixin.get().getTerm());
+            optResult = Optional.of(CategoryIds.of(optMixin.get()));
         } else {
             optResult = Optional.empty();
         }
@@ -1107,6 +1614,10 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
 
     @Override
     public OCCIApiResponse validateInputDataRequest() {
+        return withReadLock(() -> doValidateInputDataRequest());
+    }
+
+    private OCCIApiResponse doValidateInputDataRequest() {
         String message;
         String kind;
         Kind kindModel;
@@ -1173,7 +1684,7 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
                                         // Parent kind is defined search the attributes.
                                         for(Attribute attribModel : kindParent.getAttributes()) {
                                             if (attribModel.getName().equals(attrKey)) {
-                                                LOGGER.info("Attribute : " + attrKey + " found on parent kind : " + kindParent.getScheme() + kindParent.getTerm());
+                                                LOGGER.info("Attribute : " + attrKey + " found on parent kind : " + CategoryIds.of(kindParent));
                                                 found = true;
                                                 break;
                                             }
@@ -1202,7 +1713,7 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
                     while (currentKind != null && !found) {
 
                         for (Action actionModel : currentKind.getActions()) {
-                            if ((actionModel.getScheme() + actionModel.getTerm()).equals(action)) {
+                            if (CategoryIds.of(actionModel).equals(action)) {
                                 // The action is referenced on this kind.
                                 found = true;
                                 actionModelWork = actionModel;
@@ -1460,7 +1971,10 @@ public class AbstractOCCIApiInputRequest implements OCCIApiInputRequest {
 
     @Override
     public OCCIApiResponse validateModel() {
+        return withReadLock(() -> doValidateModel());
+    }
 
+    private OCCIApiResponse doValidateModel() {
         try {
             ConfigurationManager.validateModel(username);
         } catch (ModelValidatorException ex) {
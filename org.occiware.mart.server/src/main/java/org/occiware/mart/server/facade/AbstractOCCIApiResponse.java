@@ -38,6 +38,12 @@ public abstract class AbstractOCCIApiResponse implements OCCIApiResponse {
     private String exceptionMessage = null;
     private Exception exceptionThrown = null;
     private IRequestParser outputParser;
+    /**
+     * Results of a collection query, set by the facade.
+     */
+    private String nextCursor = null;
+    private int totalCount = -1;
+    private String etag = null;
 
     /**
      * @param username     if null, default to "anonymous" user.
@@ -103,6 +109,16 @@ public abstract class AbstractOCCIApiResponse implements OCCIApiResponse {
         }
     }
 
+    /**
+     * Streaming content is not supported by default, the response message is always rendered in memory.
+     *
+     * @return false.
+     */
+    @Override
+    public boolean isStreamingSupported() {
+        return false;
+    }
+
     @Override
     public IRequestParser getOutputParser() {
         if (this.outputParser == null) {
@@ -111,6 +127,36 @@ public abstract class AbstractOCCIApiResponse implements OCCIApiResponse {
         return this.outputParser;
     }
 
+    @Override
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    @Override
+    public void setNextCursor(final String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    @Override
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    @Override
+    public void setTotalCount(final int totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    @Override
+    public String getEtag() {
+        return etag;
+    }
+
+    @Override
+    public void setEtag(final String etag) {
+        this.etag = etag;
+    }
+
     @Override
     public String getUsername() {
         return this.username;
@@ -51,6 +51,28 @@ public class AppParameters {
     public static final String KEY_SAVE_ON_TERMINATE = "server.save.onterminate";
     public static final String KEY_LOAD_ON_START = "server.load.onstart";
     public static final String KEY_PLUGINS_DIRECTORY = "server.plugins.directory";
+    /**
+     * Attributes names indexed by value for collection filters, separated by comma (ex: occi.compute.state,occi.network.vlan).
+     * No attributes are indexed if empty.
+     */
+    public static final String KEY_INDEXED_ATTRIBUTES = "server.index.attributes";
+    /**
+     * Number of candidates entities of a collection query from which the filters are checked in parallel (default: 50000).
+     * The filters are always checked on the request thread if 0 or less.
+     */
+    public static final String KEY_QUERY_PARALLEL_THRESHOLD = "server.query.parallel.threshold";
+    public static final int DEFAULT_QUERY_PARALLEL_THRESHOLD = 50000;
+    /**
+     * Number of entities created under the same owner lock by a ndjson bulk import (default: 500).
+     */
+    public static final String KEY_IMPORT_BATCH_SIZE = "server.import.batch.size";
+    public static final int DEFAULT_IMPORT_BATCH_SIZE = 500;
+    /**
+     * Maximum size in bytes of a text/plain request content, read line by line (default: 10485760, 10 MB).
+     * No maximum if 0 or less.
+     */
+    public static final String KEY_MAX_BODY_SIZE = "server.request.max.body.size";
+    public static final long DEFAULT_MAX_BODY_SIZE = 10485760L;
 
     /**
      * To manage users, application need to store somewhere the users. This property define how to get a stored user.
@@ -323,6 +345,39 @@ public class AppParameters {
             } else {
                 config.put(KEY_LOAD_ON_START, "false");
             }
+            int parallelThreshold = DEFAULT_QUERY_PARALLEL_THRESHOLD;
+            String parallelThresholdStr = prop.getProperty(KEY_QUERY_PARALLEL_THRESHOLD);
+            if (parallelThresholdStr != null && !parallelThresholdStr.trim().isEmpty()) {
+                try {
+                    parallelThreshold = Integer.parseInt(parallelThresholdStr.trim());
+                } catch (NumberFormatException ex) {
+                    LOGGER.warn(KEY_QUERY_PARALLEL_THRESHOLD + " --< key is not set properly : " + ex.getMessage());
+                    LOGGER.warn("Back to default threshold : " + parallelThreshold);
+                }
+            }
+            config.put(KEY_QUERY_PARALLEL_THRESHOLD, "" + parallelThreshold);
+            int importBatchSize = DEFAULT_IMPORT_BATCH_SIZE;
+            String importBatchSizeStr = prop.getProperty(KEY_IMPORT_BATCH_SIZE);
+            if (importBatchSizeStr != null && !importBatchSizeStr.trim().isEmpty()) {
+                try {
+                    importBatchSize = Integer.parseInt(importBatchSizeStr.trim());
+                } catch (NumberFormatException ex) {
+                    LOGGER.warn(KEY_IMPORT_BATCH_SIZE + " --< key is not set properly : " + ex.getMessage());
+                    LOGGER.warn("Back to default batch size : " + importBatchSize);
+                }
+            }
+            config.put(KEY_IMPORT_BATCH_SIZE, "" + importBatchSize);
+            long maxBodySize = DEFAULT_MAX_BODY_SIZE;
+            String maxBodySizeStr = prop.getProperty(KEY_MAX_BODY_SIZE);
+            if (maxBodySizeStr != null && !maxBodySizeStr.trim().isEmpty()) {
+                try {
+                    maxBodySize = Long.parseLong(maxBodySizeStr.trim());
+                } catch (NumberFormatException ex) {
+                    LOGGER.warn(KEY_MAX_BODY_SIZE + " --< key is not set properly : " + ex.getMessage());
+                    LOGGER.warn("Back to default maximum size : " + maxBodySize);
+                }
+            }
+            config.put(KEY_MAX_BODY_SIZE, "" + maxBodySize);
 
             // Plugins directory for extension models and connector, must be jar file format.
             if (prop.containsKey(KEY_PLUGINS_DIRECTORY)) {
@@ -366,6 +421,14 @@ public class AppParameters {
             }
             LOGGER.info("Plugin directory is : " + config.get(KEY_PLUGINS_DIRECTORY));
 
+            // Attributes indexed by value.
+            String indexedAttributes = prop.getProperty(KEY_INDEXED_ATTRIBUTES);
+            if (indexedAttributes == null) {
+                indexedAttributes = "";
+            }
+            config.put(KEY_INDEXED_ATTRIBUTES, indexedAttributes.trim());
+            LOGGER.info("Indexed attributes : " + config.get(KEY_INDEXED_ATTRIBUTES));
+
             // Users management.
             String userMode = prop.getProperty(KEY_USERS_MODE);
             if (userMode == null || userMode.trim().isEmpty()) {
@@ -461,6 +524,68 @@ public class AppParameters {
         return config;
     }
 
+    /**
+     * @return the names of the attributes indexed by value, empty list if none.
+     */
+    public List<String> getIndexedAttributes() {
+        List<String> attributes = new ArrayList<>();
+        String indexedAttributes = config.get(KEY_INDEXED_ATTRIBUTES);
+        if (indexedAttributes == null || indexedAttributes.isEmpty()) {
+            return attributes;
+        }
+        for (String attribute : indexedAttributes.split(",")) {
+            if (!attribute.trim().isEmpty()) {
+                attributes.add(attribute.trim());
+            }
+        }
+        return attributes;
+    }
+
+    /**
+     * @return the number of candidates entities from which the collection filters are checked in parallel, 0 or less if disabled.
+     */
+    public int getQueryParallelThreshold() {
+        String threshold = config.get(KEY_QUERY_PARALLEL_THRESHOLD);
+        if (threshold == null) {
+            return DEFAULT_QUERY_PARALLEL_THRESHOLD;
+        }
+        try {
+            return Integer.parseInt(threshold);
+        } catch (NumberFormatException ex) {
+            return DEFAULT_QUERY_PARALLEL_THRESHOLD;
+        }
+    }
+
+    /**
+     * @return the number of entities created by batch on a bulk import, at least 1.
+     */
+    public int getImportBatchSize() {
+        String batchSize = config.get(KEY_IMPORT_BATCH_SIZE);
+        if (batchSize == null) {
+            return DEFAULT_IMPORT_BATCH_SIZE;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(batchSize));
+        } catch (NumberFormatException ex) {
+            return DEFAULT_IMPORT_BATCH_SIZE;
+        }
+    }
+
+    /**
+     * @return the maximum size in bytes of a text/plain request content, 0 or less if there is no maximum.
+     */
+    public long getMaxBodySize() {
+        String maxBodySize = config.get(KEY_MAX_BODY_SIZE);
+        if (maxBodySize == null) {
+            return DEFAULT_MAX_BODY_SIZE;
+        }
+        try {
+            return Long.parseLong(maxBodySize);
+        } catch (NumberFormatException ex) {
+            return DEFAULT_MAX_BODY_SIZE;
+        }
+    }
+
     public boolean isConfigLoaded() {
         return configLoaded;
     }
@@ -20,8 +20,10 @@ package org.occiware.mart.server.facade;
 
 import org.occiware.mart.server.parser.IRequestParser;
 import org.occiware.mart.server.parser.OCCIRequestData;
+import org.occiware.mart.server.utils.AggregationQuery;
 import org.occiware.mart.server.utils.CollectionFilter;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -55,6 +57,16 @@ public interface OCCIApiInputRequest {
 
     OCCIApiResponse createEntities(List<OCCIRequestData> datas);
 
+    /**
+     * Import entities from a newline delimited json content (one resource or link json by line), the entities are created
+     * or overwritten by batches and a failure on an entity doesnt stop the import.
+     *
+     * @param in the content input stream, it is read when the response message is written if the response supports streaming
+     *           and closed once read, a line is limited to server.request.max.body.size characters.
+     * @return a response object with a status line for each entity and a summary line.
+     */
+    OCCIApiResponse importEntities(final InputStream in);
+
     /**
      * Update an entity (partial update). This take new mixins association but doesnt remove association, to make that use removeMixinAssociations() method.
      *
@@ -97,6 +109,25 @@ public interface OCCIApiInputRequest {
      */
     public OCCIApiResponse findEntitiesLocations(final String location, CollectionFilter filter);
 
+    /**
+     * Count a collection of entities without retrieving nor rendering them, the count and the etag of the collection are set on the response.
+     *
+     * @param location the collection location like /mylocation/myentity.
+     * @param filter   filter the counted entities, may be null if none.
+     * @return a response object defined by implementation, with the count as message.
+     */
+    public OCCIApiResponse countEntities(final String location, CollectionFilter filter);
+
+    /**
+     * Aggregate a collection of entities (group by kind, mixin or attribute value with count, sum, min and max), the entities are not rendered.
+     *
+     * @param location    the collection location like /mylocation/myentity.
+     * @param filter      filter the aggregated entities, may be null if none.
+     * @param aggregation the aggregation query.
+     * @return a response object defined by implementation, with the aggregation results.
+     */
+    public OCCIApiResponse aggregateEntities(final String location, CollectionFilter filter, final AggregationQuery aggregation);
+
     // Mixin part.
 
     /**
@@ -69,8 +69,34 @@ public interface OCCIApiResponse {
      */
     public void parseResponseMessage(String message);
 
+    /**
+     * @return true if the response content may be a StreamingContent written after the response headers are complete.
+     */
+    public boolean isStreamingSupported();
+
     public IRequestParser getOutputParser();
 
+    /**
+     * @return the continuation token of the next page of a collection, null if this is the last page or not a collection.
+     */
+    public String getNextCursor();
+
+    public void setNextCursor(final String nextCursor);
+
+    /**
+     * @return the number of entities of a counted collection, -1 if the collection is not counted.
+     */
+    public int getTotalCount();
+
+    public void setTotalCount(final int totalCount);
+
+    /**
+     * @return the etag of a counted collection, null if the collection is not counted.
+     */
+    public String getEtag();
+
+    public void setEtag(final String etag);
+
     public String getUsername();
 
     public void setUsername(final String username);
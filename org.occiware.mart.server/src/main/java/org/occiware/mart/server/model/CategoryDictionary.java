@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.model;
+
+import org.eclipse.cmf.occi.core.Action;
+import org.eclipse.cmf.occi.core.Category;
+import org.eclipse.cmf.occi.core.Kind;
+import org.eclipse.cmf.occi.core.Mixin;
+import org.occiware.mart.server.utils.CategoryIds;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Categories of an owner configuration (kinds with their actions, extensions mixins and user mixin tags) by term, id and location.
+ * The dictionary of an owner is built on first use and kept until the extensions or the user mixin tags of its configuration change.
+ * When two categories have the same term, the first one wins in this order : actions of a kind, the kind, then the mixins.
+ */
+final class CategoryDictionary {
+
+    /**
+     * Built dictionaries, key: owner.
+     */
+    private static final Map<String, CategoryDictionary> dictionaries = new ConcurrentHashMap<>();
+    /**
+     * Incremented on each invalidation, a dictionary built during an invalidation is not kept.
+     */
+    private static long generation = 0;
+
+    /**
+     * key: term (lower case), value: category id (scheme + term).
+     */
+    private final Map<String, String> idsByTerm = new HashMap<>();
+    /**
+     * key: category id (lower case), value: category.
+     */
+    private final Map<String, Category> categoriesById = new HashMap<>();
+    /**
+     * key: category location without the leading and ending slashes (the term or the term in lower case), value: category.
+     */
+    private final Map<String, Category> categoriesByLocation = new HashMap<>();
+
+    private CategoryDictionary() {
+    }
+
+    /**
+     * Get the category dictionary of an owner, built from the configuration on first use.
+     *
+     * @param owner the owner of the configuration.
+     * @return the dictionary, never null.
+     */
+    static CategoryDictionary get(final String owner) {
+        CategoryDictionary dictionary = dictionaries.get(owner);
+        if (dictionary != null) {
+            return dictionary;
+        }
+        long buildGeneration;
+        synchronized (dictionaries) {
+            buildGeneration = generation;
+        }
+        // Built outside of the lock, the configuration may be created and its extensions added on first access.
+        dictionary = build(owner);
+        synchronized (dictionaries) {
+            if (buildGeneration == generation) {
+                dictionaries.put(owner, dictionary);
+            }
+        }
+        return dictionary;
+    }
+
+    /**
+     * Remove the dictionary of an owner, to call when the extensions or the user mixin tags of its configuration change.
+     *
+     * @param owner the owner.
+     */
+    static void invalidate(final String owner) {
+        synchronized (dictionaries) {
+            generation++;
+            dictionaries.remove(owner);
+        }
+    }
+
+    private static CategoryDictionary build(final String owner) {
+        CategoryDictionary dictionary = new CategoryDictionary();
+        for (Kind kind : KindManager.getAllConfigurationKind(owner)) {
+            for (Action action : kind.getActions()) {
+                dictionary.add(action);
+            }
+            dictionary.add(kind);
+        }
+        for (Mixin mixin : MixinManager.getAllConfigurationMixins(owner)) {
+            dictionary.add(mixin);
+        }
+        return dictionary;
+    }
+
+    private void add(final Category category) {
+        String term = category.getTerm();
+        if (term == null) {
+            return;
+        }
+        String id = CategoryIds.of(category);
+        idsByTerm.putIfAbsent(term.toLowerCase(), id);
+        categoriesById.putIfAbsent(id.toLowerCase(), category);
+        categoriesByLocation.putIfAbsent(term, category);
+        categoriesByLocation.putIfAbsent(term.toLowerCase(), category);
+    }
+
+    /**
+     * @param term a category term, the case is ignored.
+     * @return the category id (scheme + term), empty optional if no category has this term.
+     */
+    Optional<String> findCategoryId(final String term) {
+        if (term == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(idsByTerm.get(term.toLowerCase()));
+    }
+
+    /**
+     * @param categoryId a category scheme + term, the case is ignored.
+     * @return the kind, action or mixin, empty optional if not on the configuration.
+     */
+    Optional<Category> getCategory(final String categoryId) {
+        if (categoryId == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(categoriesById.get(categoryId.toLowerCase()));
+    }
+
+    /**
+     * @param location a category location like /compute/ or compute.
+     * @return the category on this location, empty optional if none.
+     */
+    Optional<Category> getCategoryOnLocation(final String location) {
+        if (location == null) {
+            return Optional.empty();
+        }
+        String term = location;
+        if (term.startsWith("/")) {
+            term = term.substring(1);
+        }
+        if (term.endsWith("/")) {
+            term = term.substring(0, term.length() - 1);
+        }
+        return Optional.ofNullable(categoriesByLocation.get(term));
+    }
+}
@@ -28,9 +28,11 @@ import org.eclipse.emf.common.util.WrappedException;
 import org.eclipse.emf.ecore.resource.ResourceSet;
 import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
 import org.eclipse.emf.ecore.util.Diagnostician;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.occiware.mart.server.exception.ConfigurationException;
 import org.occiware.mart.server.exception.ModelValidatorException;
 import org.occiware.mart.server.parser.QueryInterfaceData;
+import org.occiware.mart.server.utils.CategoryIds;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,6 +43,8 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Manage configurations (OCCI Model).
@@ -61,6 +65,17 @@ public class ConfigurationManager {
      */
     private static Map<String, Configuration> configurations = new ConcurrentHashMap<>();
 
+    /**
+     * Read / write lock of each owner model, the EMF lists of a configuration are not thread safe.
+     * Readers of an owner model dont block each other, owners never share a lock.
+     */
+    private static final Map<String, ReentrantReadWriteLock> ownerLocks = new ConcurrentHashMap<>();
+
+    /**
+     * Monitor of each owner, held while the configuration of the owner is created.
+     */
+    private static final Map<String, Object> creationLocks = new ConcurrentHashMap<>();
+
     private static OCCIFactory occiFactory = OCCIFactory.eINSTANCE;
 
     static {
@@ -74,14 +89,37 @@ public class ConfigurationManager {
      * @return a configuration object for an owner.
      */
     public static Configuration getConfigurationForOwner(final String owner) {
-        if (configurations.get(owner) == null) {
-            LOGGER.warn("Create configuration for owner : " + owner);
-            createConfiguration(owner);
-            // Assign all referenced extensions on configuration for this user.
-            useAllExtensionForConfigurationInClasspath(owner);
-
+        Configuration configuration = configurations.get(owner);
+        if (configuration != null) {
+            return configuration;
+        }
+        // The configuration of an owner is created only once even if concurrent requests ask for it.
+        // It is built outside of the configurations map, so the creation may use the map and never blocks the other owners.
+        synchronized (creationLocks.computeIfAbsent(owner, key -> new Object())) {
+            configuration = configurations.get(owner);
+            if (configuration == null) {
+                LOGGER.warn("Create configuration for owner : " + owner);
+                configuration = createConfiguration(owner);
+                // Assign all referenced extensions on configuration for this user.
+                useAllExtensionForConfiguration(configuration, owner);
+                Configuration previous = configurations.putIfAbsent(owner, configuration);
+                if (previous != null) {
+                    configuration = previous;
+                }
+            }
         }
-        return configurations.get(owner);
+        return configuration;
+    }
+
+    /**
+     * Get the read / write lock of an owner model, to use around the operations on the owner's configuration.
+     * The read lock must be used when reading entities and the write lock when updating the configuration.
+     *
+     * @param owner the owner of the configuration.
+     * @return a read write lock, always the same for an owner.
+     */
+    public static ReentrantReadWriteLock getOwnerLock(final String owner) {
+        return ownerLocks.computeIfAbsent(owner, key -> new ReentrantReadWriteLock());
     }
 
 
@@ -91,7 +129,16 @@ public class ConfigurationManager {
      * @param owner the current user.
      */
     public static void useAllExtensionForConfigurationInClasspath(final String owner) {
-        Configuration config = getConfigurationForOwner(owner);
+        useAllExtensionForConfiguration(getConfigurationForOwner(owner), owner);
+    }
+
+    /**
+     * Assign used extensions to a configuration object if it has no extensions.
+     *
+     * @param config the configuration of the owner.
+     * @param owner  the current user.
+     */
+    private static void useAllExtensionForConfiguration(final Configuration config, final String owner) {
         Extension ext;
         List<Extension> extensions = new LinkedList<>();
         Collection<String> extReg = OcciRegistry.getInstance().getRegisteredExtensions();
@@ -120,6 +167,8 @@ public class ConfigurationManager {
                 LOGGER.info("Extension : " + extension.getName() + " added to user configuration --> " + "owner : " + owner);
                 config.getUse().add(extension);
             }
+            CategoryDictionary.invalidate(owner);
+            QueryPlanner.invalidate(owner);
         }
     }
 
@@ -158,7 +207,7 @@ public class ConfigurationManager {
             return Optional.empty();
         }
         if (category instanceof Mixin) {
-            String mixinId = category.getScheme() + category.getTerm();
+            String mixinId = CategoryIds.of(category);
             if (MixinManager.userMixinLocationMap == null) {
                 MixinManager.userMixinLocationMap = new ConcurrentHashMap<>();
             }
@@ -178,40 +227,7 @@ public class ConfigurationManager {
      * @return a String, scheme + term or optional empty if not found on configuration.
      */
     public static Optional<String> findCategorySchemeTermFromTerm(final String categoryTerm, final String user) {
-        List<Kind> kinds = KindManager.getAllConfigurationKind(user);
-        List<Mixin> mixins = MixinManager.getAllConfigurationMixins(user);
-        String term;
-        String scheme;
-        String id;
-        for (Kind kind : kinds) {
-            for (Action action : kind.getActions()) {
-                term = action.getTerm();
-                scheme = action.getScheme();
-                id = scheme + term;
-                if (categoryTerm.equalsIgnoreCase(term)) {
-                    return Optional.of(id);
-                }
-            }
-
-            term = kind.getTerm();
-            scheme = kind.getScheme();
-            id = scheme + term;
-            if (categoryTerm.equalsIgnoreCase(term)) {
-                return Optional.of(id);
-            }
-
-        }
-        for (Mixin mixin : mixins) {
-
-            term = mixin.getTerm();
-            scheme = mixin.getScheme();
-            id = scheme + term;
-            if (categoryTerm.equalsIgnoreCase(term)) {
-                return Optional.of(id);
-            }
-        }
-
-        return Optional.empty();
+        return CategoryDictionary.get(user).findCategoryId(categoryTerm);
     }
 
 
@@ -222,12 +238,13 @@ public class ConfigurationManager {
      * extension) for a user.
      *
      * @param owner
+     * @return the new configuration, not referenced in the configurations map.
      */
-    private static void createConfiguration(final String owner) {
+    private static Configuration createConfiguration(final String owner) {
         Configuration configuration = occiFactory.createConfiguration();
-        configurations.put(owner, configuration);
         LOGGER.debug("Configuration for user " + owner + " created");
-        EntityManager.buildEntitiesOwner(owner);
+        EntityManager.buildEntitiesOwner(owner, configuration);
+        return configuration;
     }
 
     /**
@@ -319,7 +336,7 @@ public class ConfigurationManager {
                             break;
                         }
                     } else {
-                        if ((actionTmp.getScheme() + actionTmp.getTerm()).equalsIgnoreCase(categoryFilter)) {
+                        if (CategoryIds.of(actionTmp).equalsIgnoreCase(categoryFilter)) {
                             hasActionFilter = true;
                         }
                     }
@@ -330,7 +347,7 @@ public class ConfigurationManager {
                         it.remove();
                     }
                 } else {
-                    if (!(kindTmp.getScheme() + kindTmp.getTerm()).equalsIgnoreCase(categoryFilter) && !hasActionFilter) {
+                    if (!CategoryIds.of(kindTmp).equalsIgnoreCase(categoryFilter) && !hasActionFilter) {
                         it.remove();
                     }
                 }
@@ -346,7 +363,7 @@ public class ConfigurationManager {
                             break;
                         }
                     } else {
-                        if ((actionTmp.getScheme() + actionTmp.getTerm()).equalsIgnoreCase(categoryFilter)) {
+                        if (CategoryIds.of(actionTmp).equalsIgnoreCase(categoryFilter)) {
                             hasActionFilter = true;
                         }
                     }
@@ -357,7 +374,7 @@ public class ConfigurationManager {
                         itMix.remove();
                     }
                 } else {
-                    if (!(mixinTmp.getScheme() + mixinTmp.getTerm()).equalsIgnoreCase(categoryFilter) && !hasActionFilter) {
+                    if (!CategoryIds.of(mixinTmp).equalsIgnoreCase(categoryFilter) && !hasActionFilter) {
                         itMix.remove();
                     }
                 }
@@ -387,7 +404,7 @@ public class ConfigurationManager {
         }
         for (Kind kind : kinds) {
             for (Action actionModel : kind.getActions()) {
-                if ((actionModel.getScheme() + actionModel.getTerm()).equals(actionId)) {
+                if (CategoryIds.of(actionModel).equals(actionId)) {
                     action = actionModel;
                     break;
                 }
@@ -401,7 +418,7 @@ public class ConfigurationManager {
             LOGGER.info("Action is not found on any kinds, searching referenced actions on mixins...");
             for (Mixin mixin : mixins) {
                 for (Action actionModel : mixin.getActions()) {
-                    if ((actionModel.getScheme() + actionModel.getTerm()).equals(actionId)) {
+                    if (CategoryIds.of(actionModel).equals(actionId)) {
                         action = actionModel;
                         break;
                     }
@@ -409,7 +426,7 @@ public class ConfigurationManager {
                     depends = mixin.getDepends();
                     for (Mixin mixinDep : depends) {
                         for (Action actionDep : mixinDep.getActions()) {
-                            if ((actionDep.getScheme() + actionDep.getTerm()).equals(actionId)) {
+                            if (CategoryIds.of(actionDep).equals(actionId)) {
                                 action = actionDep;
                                 break;
                             }
@@ -438,8 +455,8 @@ public class ConfigurationManager {
     }
 
     /**
-     * Check if the path contains a category referenced on extensions used by
-     * configuration.
+     * Check if a part of the path is the term of a category referenced on extensions used by
+     * configuration (ex: compute for /compute/vm1).
      *
      * @param path
      * @param user
@@ -447,32 +464,19 @@ public class ConfigurationManager {
      * empty optional.
      */
     public static Optional<String> getCategoryFilter(final String path, final String user) {
-        List<Kind> kinds = KindManager.getAllConfigurationKind(user);
-        List<Mixin> mixins = MixinManager.getAllConfigurationMixins(user);
-        String term;
-
-        for (Kind kind : kinds) {
-            for (Action action : kind.getActions()) {
-                term = action.getTerm();
-                if (path.contains(term) || path.contains(term.toLowerCase())) {
-                    return Optional.of(term);
-
-                }
-            }
-
-            term = kind.getTerm();
-            if (path.contains(term) || path.contains(term.toLowerCase())) {
-                return Optional.of(term);
-            }
-
+        if (path == null) {
+            return Optional.empty();
         }
-        for (Mixin mixin : mixins) {
-            term = mixin.getTerm();
-            if (path.contains(term) || path.contains(term.toLowerCase())) {
-                return Optional.of(term);
+        CategoryDictionary dictionary = CategoryDictionary.get(user);
+        for (String part : path.split("/")) {
+            if (part.isEmpty()) {
+                continue;
+            }
+            Optional<Category> optCategory = dictionary.getCategoryOnLocation(part);
+            if (optCategory.isPresent()) {
+                return Optional.of(optCategory.get().getTerm());
             }
         }
-
         return Optional.empty();
     }
 
@@ -486,54 +490,10 @@ public class ConfigurationManager {
      * empty optional.
      */
     public static Optional<String> getCategoryFilterSchemeTerm(final String path, final String user) {
-        List<Kind> kinds = KindManager.getAllConfigurationKind(user);
-        List<Mixin> mixins = MixinManager.getAllConfigurationMixins(user);
-        String term;
-        String scheme;
-        String id;
-
         if (path == null) {
             return Optional.empty();
         }
-
-        String pathTerm = path;
-        if (pathTerm.startsWith("/")) {
-            pathTerm = pathTerm.substring(1);
-        }
-        if (pathTerm.endsWith("/")) {
-            pathTerm = pathTerm.substring(0, pathTerm.length() - 1);
-        }
-
-        for (Kind kind : kinds) {
-            for (Action action : kind.getActions()) {
-                term = action.getTerm();
-                scheme = action.getScheme();
-                id = scheme + term;
-                if (pathTerm.equals(term) || pathTerm.equals(term.toLowerCase())) {
-                    return Optional.of(id);
-
-                }
-            }
-
-            term = kind.getTerm();
-            scheme = kind.getScheme();
-            id = scheme + term;
-            if (pathTerm.equals(term) || path.equals(term.toLowerCase())) {
-                return Optional.of(id);
-            }
-
-        }
-        for (Mixin mixin : mixins) {
-
-            term = mixin.getTerm();
-            scheme = mixin.getScheme();
-            id = scheme + term;
-            if (pathTerm.equals(term) || pathTerm.equals(term.toLowerCase())) {
-                return Optional.of(id);
-            }
-        }
-
-        return Optional.empty();
+        return CategoryDictionary.get(user).getCategoryOnLocation(path).map(CategoryIds::of);
     }
 
     /**
@@ -544,43 +504,7 @@ public class ConfigurationManager {
      * @return true if category is on user's configuration.
      */
     public static boolean checkIfCategorySchemeTerm(final String categoryFilter, final String user) {
-
-        List<Kind> kinds = KindManager.getAllConfigurationKind(user);
-        List<Mixin> mixins = MixinManager.getAllConfigurationMixins(user);
-        String term;
-        String scheme;
-        String id;
-        for (Kind kind : kinds) {
-            // Check actions.
-            for (Action action : kind.getActions()) {
-                term = action.getTerm();
-                scheme = action.getScheme();
-                id = scheme + term;
-                if (categoryFilter.equalsIgnoreCase(id)) {
-                    return true;
-
-                }
-            }
-
-            term = kind.getTerm();
-            scheme = kind.getScheme();
-            id = scheme + term;
-            if (categoryFilter.equalsIgnoreCase(id)) {
-                return true;
-            }
-
-        }
-        for (Mixin mixin : mixins) {
-
-            term = mixin.getTerm();
-            scheme = mixin.getScheme();
-            id = scheme + term;
-            if (categoryFilter.equalsIgnoreCase(id)) {
-                return true;
-            }
-        }
-
-        return false;
+        return CategoryDictionary.get(user).getCategory(categoryFilter).isPresent();
     }
 
     /**
@@ -619,6 +543,8 @@ public class ConfigurationManager {
         }
         ResourceSet resourceSet = new ResourceSetImpl();
         URI uri = URI.createURI("file:///" + filename.replace('\\', '/'));
+        Lock lock = getOwnerLock(owner).writeLock();
+        lock.lock();
         try {
             org.eclipse.emf.ecore.resource.Resource resource = resourceSet.getResource(uri, true);
 
@@ -626,10 +552,18 @@ public class ConfigurationManager {
             Configuration ownerConfig = (Configuration) resource.getContents().get(0);
             // To ensure that all extensions in configuration are used if the configuration has no extensions referenced.
             configurations.put(owner, ownerConfig);
+            CategoryDictionary.invalidate(owner);
             useAllExtensionForConfigurationInClasspath(owner);
+            // The loaded attributes have their own strings, use the pooled ones before referencing the entities.
+            for (Resource occiResource : ownerConfig.getResources()) {
+                EntityManager.poolAttributeStrings(occiResource);
+                for (Link link : occiResource.getLinks()) {
+                    EntityManager.poolAttributeStrings(link);
+                }
+            }
 
             // build or rebuild the owners entity map.
-            EntityManager.buildEntitiesOwner(owner);
+            EntityManager.buildEntitiesOwner(owner, ownerConfig);
             // Update the location map on entities mapping.
             EntityManager.updateAllReferencesOnEntitiesOwner(owner);
             // Update mixin location.
@@ -640,6 +574,8 @@ public class ConfigurationManager {
             message = "Loading configuration model failed : " + ex.getMessage();
             LOGGER.error(message);
             throw new ConfigurationException(message, ex);
+        } finally {
+            lock.unlock();
         }
 
     }
@@ -672,9 +608,22 @@ public class ConfigurationManager {
         // URI uri = URI.createURI(filename);
         URI uri = URI.createURI("file:///" + filename.replace('\\', '/'));
 
+        // Save a copy of the configuration, the live configuration is not moved to the saved resource.
+        // The owner references snapshot only holds the live EMF objects, not their attribute states, so it
+        // cannot be serialized as is: the export deep copies the model under the owner read lock, this copy
+        // is linear in the model size and blocks the writers of this owner (not its readers) meanwhile.
+        Configuration configSnapshot;
+        Lock lock = getOwnerLock(owner).readLock();
+        lock.lock();
+        try {
+            configSnapshot = EcoreUtil.copy(configSource);
+        } finally {
+            lock.unlock();
+        }
+
         org.eclipse.emf.ecore.resource.Resource resource = resourceSet.createResource(uri);
 
-        resource.getContents().add(configSource);
+        resource.getContents().add(configSnapshot);
 
         try {
             resource.save(Collections.EMPTY_MAP);
@@ -724,16 +673,22 @@ public class ConfigurationManager {
                 // Load configurations for each files from modelDirectory and get username from filename.
                 tmpExt = modelFile.replace(".occic", "");
                 currentOwner = tmpExt.split("-")[1];
-                configurations.remove(currentOwner);
-                EntityManager.clearReferences(currentOwner);
-                MixinManager.clearMixinTagsReferences(currentOwner);
-                // Update for each configuration references (entities and mixins tags).
-                loadModelFromDisk(modelDirectory, currentOwner);
+                Lock lock = getOwnerLock(currentOwner).writeLock();
+                lock.lock();
+                try {
+                    configurations.remove(currentOwner);
+                    EntityManager.clearReferences(currentOwner);
+                    MixinManager.clearMixinTagsReferences(currentOwner);
+                    // Update for each configuration references (entities and mixins tags).
+                    loadModelFromDisk(modelDirectory, currentOwner);
+                } finally {
+                    lock.unlock();
+                }
             }
         }
 
         if (configurations.isEmpty()) {
-            createConfiguration(DEFAULT_OWNER);
+            configurations.putIfAbsent(DEFAULT_OWNER, createConfiguration(DEFAULT_OWNER));
         }
     }
 
@@ -808,9 +763,14 @@ public class ConfigurationManager {
      * @param owner
      */
     public static void removeConfiguration(final String owner) {
-        EntityManager.clearReferences(owner);
-        MixinManager.clearMixinTagsReferences(owner);
-        configurations.remove(owner);
-
+        Lock lock = getOwnerLock(owner).writeLock();
+        lock.lock();
+        try {
+            EntityManager.clearReferences(owner);
+            MixinManager.clearMixinTagsReferences(owner);
+            configurations.remove(owner);
+        } finally {
+            lock.unlock();
+        }
     }
 }
@@ -27,9 +27,14 @@ import org.eclipse.emf.ecore.EDataType;
 import org.eclipse.emf.ecore.EEnum;
 import org.eclipse.emf.ecore.EStructuralFeature;
 import org.occiware.mart.server.exception.ConfigurationException;
+import org.occiware.mart.server.facade.AppParameters;
 import org.occiware.mart.server.model.container.EntitiesOwner;
+import org.occiware.mart.server.utils.AggregationQuery;
+import org.occiware.mart.server.utils.CategoryIds;
 import org.occiware.mart.server.utils.CollectionFilter;
 import org.occiware.mart.server.utils.Constants;
+import org.occiware.mart.server.utils.FieldProjection;
+import org.occiware.mart.server.utils.StringPool;
 import org.occiware.mart.server.utils.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -60,6 +65,11 @@ public class EntityManager {
      */
     private static Map<String, Integer> versionObjectMap = new ConcurrentHashMap<>();
 
+    /**
+     * If true, the entities references are compared with a full rebuild on each collection query (tests only).
+     */
+    private static volatile boolean consistencyCheckMode = false;
+
     /**
      * Find an Entity used by an owner, whatever is its configuration.
      *
@@ -150,18 +160,116 @@ public class EntityManager {
      * @param owner  owner of this collection.
      * @return a list of entities (key: owner, value : List of entities), never return null, if no entities found, return empty list.
      */
-    public static List<Entity> findAllEntities(final CollectionFilter filter, final String owner) {
-        List<Entity> entities = new LinkedList<>();
+    public static List<Entity> findAllEntities(final CollectionFilter filter, final String owner) throws ConfigurationException {
+        return findEntitiesPage(filter, owner).getEntities();
+    }
 
+    /**
+     * Find the entities of a collection page, with the continuation token of the next page.
+     *
+     * @param filter a collection filter object, all the entities of the owner if null.
+     * @param owner  owner of this collection.
+     * @return the page, the entities list is empty if no entities found.
+     * @throws ConfigurationException if the filter expression, the sort order or the cursor is not valid.
+     */
+    public static QueryPage findEntitiesPage(final CollectionFilter filter, final String owner) throws ConfigurationException {
         if (owner == null || owner.isEmpty()) {
-            return entities;
+            return new QueryPage(new ArrayList<>(), null);
+        }
+        if (filter == null) {
+            return new QueryPage(findAllEntitiesOwner(owner), null);
+        }
+        EntitiesOwner entitiesOwner = checkEntitiesOwnerReferences(owner);
+        // The filter is compiled once to a plan, the candidates are taken from the most selective index
+        // (attribute values, categories or locations) and the remaining predicates are checked on the candidates only.
+        QueryPlan plan = QueryPlanner.getPlan(filter, owner);
+        // The entities are ordered by uuid or by the sort keys, a page starts after the entity of the cursor or at the page index if no cursor is given.
+        QueryCursor cursor = QueryPlanner.decodeCursor(filter.getCursor());
+        int offset = cursor == null && filter.getCurrentPage() > 1 ? filter.getCurrentPage() - 1 : 0;
+        int limit = filter.getNumberOfItemsPerPage();
+        List<Entity> entities = plan.execute(entitiesOwner, cursor, offset, limit);
+        String nextCursor = null;
+        if (limit >= 0 && entities.size() > limit) {
+            // More entities after this page.
+            entities.remove(limit);
+            if (limit > 0) {
+                nextCursor = QueryPlanner.encodeCursor(plan.cursor(entitiesOwner, entities.get(limit - 1)));
+            }
         }
-        entities.addAll(findAllEntitiesOwner(owner));
-        // TODO : Order list by entityId, if entities not empty.
+        return new QueryPage(entities, nextCursor);
+    }
+
+    /**
+     * Count the entities matching a collection filter, the count is given by the entities references and indexes,
+     * the entities are not retrieved from the connectors. The pagination of the filter is ignored.
+     *
+     * @param filter a collection filter object.
+     * @param owner  owner of this collection.
+     * @return the number of entities matching the filter.
+     * @throws ConfigurationException if the filter expression or the sort order is not valid.
+     */
+    public static int countEntities(final CollectionFilter filter, final String owner) throws ConfigurationException {
+        if (owner == null || owner.isEmpty()) {
+            return 0;
+        }
+        EntitiesOwner entitiesOwner = checkEntitiesOwnerReferences(owner);
+        if (filter == null) {
+            return entitiesOwner.getSnapshot().size();
+        }
+        return QueryPlanner.getPlan(filter, owner).count(entitiesOwner);
+    }
+
+    /**
+     * Aggregate the entities matching a collection filter, the pagination of the filter is ignored.
+     * Counts by kind, by mixin or by indexed attribute value of all the entities of the owner are given by the entities indexes,
+     * maintained on each creation, update and deletion. Other aggregations are computed in one pass over the matching entities.
+     *
+     * @param filter      a collection filter object.
+     * @param aggregation the aggregation query.
+     * @param owner       owner of this collection.
+     * @return the results of each group, key: group name, value: map of result name (count, sum(occi.compute.cores)...) to the result value.
+     * @throws ConfigurationException if the filter expression or the sort order is not valid.
+     */
+    public static Map<String, Map<String, Number>> aggregateEntities(final CollectionFilter filter, final AggregationQuery aggregation, final String owner) throws ConfigurationException {
+        QueryAggregator aggregator = new QueryAggregator(aggregation);
+        if (owner == null || owner.isEmpty()) {
+            return aggregator.getResults();
+        }
+        EntitiesOwner entitiesOwner = checkEntitiesOwnerReferences(owner);
+        QueryPlan plan = QueryPlanner.getPlan(filter == null ? new CollectionFilter() : filter, owner);
+        String groupBy = aggregation.getGroupBy();
+        if (plan.matchesAll() && aggregation.isCountOnly() && groupBy != null) {
+            Optional<Map<String, Integer>> optCounts;
+            if (groupBy.equals(AggregationQuery.GROUP_KIND)) {
+                optCounts = Optional.of(entitiesOwner.countEntitiesByKind());
+            } else if (groupBy.equals(AggregationQuery.GROUP_MIXIN)) {
+                optCounts = Optional.of(entitiesOwner.countEntitiesByMixin());
+            } else {
+                optCounts = entitiesOwner.countEntitiesByAttributeValue(groupBy);
+            }
+            if (optCounts.isPresent()) {
+                aggregator.addCounts(optCounts.get());
+                return aggregator.getResults();
+            }
+        }
+        plan.forEach(entitiesOwner, aggregator::add);
+        return aggregator.getResults();
+    }
+
+    /**
+     * Get the etag of a collection, the etag changes when an entity of the owner changes or when the query changes.
+     *
+     * @param filter a collection filter object, may be null.
+     * @param owner  owner of this collection.
+     * @return a quoted etag value.
+     */
+    public static String getCollectionEtag(final CollectionFilter filter, final String owner) {
+        EntitiesOwner entitiesOwner = checkEntitiesOwnerReferences(owner);
+        String query = "";
         if (filter != null) {
-            entities = filterEntities(filter, entities, owner);
+            query = QueryPlanner.getQueryKey(filter, owner) + filter.getCurrentPage() + ':' + filter.getNumberOfItemsPerPage() + ':' + filter.getCursor();
         }
-        return entities;
+        return "\"" + Long.toHexString(entitiesOwner.getContentVersion()) + '-' + Integer.toHexString(query.hashCode()) + "\"";
     }
 
     /**
@@ -175,29 +283,93 @@ public class EntityManager {
         if (owner == null) {
             return entities;
         }
-        EntitiesOwner entitiesOwner = entitiesOwnerMap.get(owner);
+        EntitiesOwner entitiesOwner = checkEntitiesOwnerReferences(owner);
+        entities.addAll(entitiesOwner.getSnapshot().getEntities());
+        return entities;
+    }
 
+    /**
+     * Get the entities references of an owner, these references are kept in sync with the configuration by an adapter.
+     * If the consistency check mode is enabled, the references are compared with a full rebuild from the configuration.
+     *
+     * @param owner
+     * @return the entities owner container.
+     */
+    private static EntitiesOwner checkEntitiesOwnerReferences(final String owner) {
         Configuration conf = ConfigurationManager.getConfigurationForOwner(owner);
+        EntitiesOwner entitiesOwner = entitiesOwnerMap.get(owner);
+        if (entitiesOwner == null) {
+            updateAllReferencesOnEntitiesOwner(owner);
+            entitiesOwner = entitiesOwnerMap.get(owner);
+        }
 
-        // if configuration object has different size, rebuild entitiesOwnerMap entities cache.
-        int resourceSize = conf.getResources().size();
-        int linkSize = 0;
-        int entitiesConfSize = 0;
-        for (Resource resource : conf.getResources()) {
-            linkSize = linkSize + resource.getLinks().size();
+        if (consistencyCheckMode && !entitiesOwner.hasSameReferences(buildReferences(conf, entitiesOwner))) {
+            String message = "Entities references of owner " + owner + " are not in sync with its configuration.";
+            LOGGER.error(message);
+            throw new IllegalStateException(message);
         }
+        return entitiesOwner;
+    }
 
-        entitiesConfSize = resourceSize + linkSize;
-        if (entitiesOwner.getEntitiesSize() != entitiesConfSize) {
-            LOGGER.info("Update all entities reference cache (map)");
-            updateAllReferencesOnEntitiesOwner(owner);
+    /**
+     * Build the entities references of a configuration from scratch, this container doesnt follow the configuration.
+     *
+     * @param configuration
+     * @param current       the current references of the owner, to use the same parameters.
+     * @return a new entities owner container.
+     */
+    private static EntitiesOwner buildReferences(final Configuration configuration, final EntitiesOwner current) {
+        EntitiesOwner entitiesOwner = new EntitiesOwner(current.getOwner());
+        entitiesOwner.setIndexedAttributes(current.getIndexedAttributes());
+        for (Resource resource : configuration.getResources()) {
+            entitiesOwner.referenceEntity(resource);
+            for (Link link : resource.getLinks()) {
+                entitiesOwner.referenceEntity(link);
+            }
         }
+        return entitiesOwner;
+    }
 
-        Map<String, Entity> entitiesMap = entitiesOwner.getEntitiesByUuid();
-        for (Map.Entry<String, Entity> entry : entitiesMap.entrySet()) {
-            entities.add(entry.getValue());
+    /**
+     * Enable or disable the consistency check of the entities references, this is a costly check for tests only.
+     *
+     * @param enabled true to compare the references with a full rebuild on each collection query.
+     */
+    public static void setConsistencyCheckMode(final boolean enabled) {
+        consistencyCheckMode = enabled;
+    }
+
+    /**
+     * Check that the entities references of an owner are the same as a full rebuild from its configuration.
+     *
+     * @param owner
+     * @return true if the references are consistent.
+     */
+    public static boolean isEntitiesOwnerConsistent(final String owner) {
+        EntitiesOwner entitiesOwner = entitiesOwnerMap.get(owner);
+        if (entitiesOwner == null) {
+            return false;
         }
-        return entities;
+        Configuration conf = ConfigurationManager.getConfigurationForOwner(owner);
+        return entitiesOwner.hasSameReferences(buildReferences(conf, entitiesOwner));
+    }
+
+    /**
+     * Find all entities located on a path or under this path.
+     *
+     * @param path  a location like /mycollection/
+     * @param owner owner of these entities.
+     * @return a list of entities or empty list if none.
+     */
+    public static List<Entity> findAllEntitiesUnderPath(final String path, final String owner) {
+        if (path == null || path.trim().isEmpty()) {
+            return new ArrayList<>();
+        }
+        EntitiesOwner entitiesOwner = entitiesOwnerMap.get(owner);
+        if (entitiesOwner == null) {
+            return new ArrayList<>();
+        }
+        return entitiesOwner.getEntitiesUnderLocation(path);
     }
 
     /**
@@ -208,22 +380,14 @@ public class EntityManager {
      * @return a list of entities or empty list if none.
      */
     public static List<Entity> findAllEntitiesForKind(final String categoryId, final String owner) {
-        List<Entity> entities = new ArrayList<>();
         if (categoryId == null || categoryId.trim().isEmpty()) {
-            return entities;
+            return new ArrayList<>();
         }
         EntitiesOwner entitiesOwner = entitiesOwnerMap.get(owner);
-        Map<String, Entity> entitiesMap = entitiesOwner.getEntitiesByUuid();
-        String kind;
-        for (Map.Entry<String, Entity> entry : entitiesMap.entrySet()) {
-            Entity entity = entry.getValue();
-            kind = entity.getKind().getScheme() + entity.getKind().getTerm();
-            if (kind.equals(categoryId)) {
-                entities.add(entity);
-            }
+        if (entitiesOwner == null) {
+            return new ArrayList<>();
         }
-        return entities;
-
+        return new ArrayList<>(entitiesOwner.getSnapshot().getEntitiesByKind(categoryId));
     }
 
     /**
@@ -234,24 +398,14 @@ public class EntityManager {
      * @return a list of entities objects.
      */
     public static List<Entity> findAllEntitiesForMixin(final String categoryId, final String owner) {
-        List<Entity> entities = new ArrayList<>();
         if (categoryId == null || categoryId.trim().isEmpty()) {
-            return entities;
+            return new ArrayList<>();
         }
         EntitiesOwner entitiesOwner = entitiesOwnerMap.get(owner);
-        Map<String, Entity> entitiesMap = entitiesOwner.getEntitiesByUuid();
-        String mixin;
-        for (Map.Entry<String, Entity> entry : entitiesMap.entrySet()) {
-            Entity entity = entry.getValue();
-            for (Mixin mix : entity.getMixins()) {
-                mixin = mix.getScheme() + mix.getTerm();
-                if (mixin.equals(categoryId)) {
-                    entities.add(entity);
-                    break;
-                }
-            }
+        if (entitiesOwner == null) {
+            return new ArrayList<>();
         }
-        return entities;
+        return new ArrayList<>(entitiesOwner.getSnapshot().getEntitiesByMixin(categoryId));
     }
 
     /**
@@ -275,7 +429,7 @@ public class EntityManager {
             for (Kind kind : kinds) {
                 actions = kind.getActions();
                 for (Action action : actions) {
-                    if ((action.getScheme() + action.getTerm()).equals(actionId)) {
+                    if (CategoryIds.of(action).equals(actionId)) {
                         extRet = ext;
                         break;
                     }
@@ -292,7 +446,7 @@ public class EntityManager {
             for (Mixin mixin : mixins) {
                 actions = mixin.getActions();
                 for (Action action : actions) {
-                    if ((action.getScheme() + action.getTerm()).equals(actionId)) {
+                    if (CategoryIds.of(action).equals(actionId)) {
                         extRet = ext;
                         break;
                     }
@@ -326,129 +480,110 @@ public class EntityManager {
     }
 
     /**
-     * Apply filter where possible. startIndex starts at 1
+     * Find the entities of an attribute filter with the attribute values index, if the filter is an equality or a range on an indexed attribute.
+     * The core attributes (id, title, summary, source and target) are compared without case and are never indexed.
      *
-     * @param filter  Collection filter object.
-     * @param sources A list of entities to filter.
-     * @param owner   the owner of the entities.
-     * @return a filtered list of entities.
-     */
-    private static List<Entity> filterEntities(final CollectionFilter filter, List<Entity> sources, final String owner) {
-
-        String categoryFilter = filter.getCategoryFilter();
-        String subCategoryFilter = filter.getSubCategoryFilter();
-        String filterOnPath = filter.getFilterOnEntitiesPath();
-
-        if (categoryFilter != null && !categoryFilter.isEmpty()
-                && !ConfigurationManager.checkIfCategorySchemeTerm(categoryFilter, owner)) {
-            Optional<String> optCategory = ConfigurationManager.findCategorySchemeTermFromTerm(categoryFilter, owner);
-            if (optCategory.isPresent()) {
-                categoryFilter = optCategory.get();
-            } else {
-                LOGGER.warn("Category filter : " + categoryFilter + " has not been found on current configuration.");
-            }
-        }
-        if (subCategoryFilter != null && !subCategoryFilter.isEmpty()
-                && !ConfigurationManager.checkIfCategorySchemeTerm(subCategoryFilter, owner)) {
-            Optional<String> optCategory = ConfigurationManager.findCategorySchemeTermFromTerm(subCategoryFilter, owner);
-            if (optCategory.isPresent()) {
-                subCategoryFilter = optCategory.get();
-            } else {
-                LOGGER.warn("Sub category filter : " + subCategoryFilter + " has not been found on current configuration.");
-            }
-        }
-
-        // Remove last char if slash on filter path
-        if (filterOnPath != null && !filterOnPath.isEmpty()) {
-            if (filterOnPath.endsWith("/")) {
-                filterOnPath = filterOnPath.substring(0, filterOnPath.length() - 1);
-            }
+     * @param filter        the collection filter.
+     * @param entitiesOwner the entities references of the owner.
+     * @return the candidate entities, empty optional if the filter cannot be resolved with the index.
+     */
+    static Optional<List<Entity>> findEntitiesFromAttributeIndex(final CollectionFilter filter, final EntitiesOwner entitiesOwner) {
+        if (!isAttributeIndexFilter(filter, entitiesOwner)) {
+            return Optional.empty();
         }
-
-        Iterator<Entity> it = sources.iterator();
-        while (it.hasNext()) {
-            Entity entity = it.next();
-            if (checkEntityAttributeFilter(filter, entity)
-                    && checkEntityCategoryFilter(categoryFilter, entity)
-                    && checkEntityCategoryFilter(subCategoryFilter, entity)
-                    && checkEntityFilterOnPath(filterOnPath, entity, owner)) {
-                continue;
-            }
-            it.remove();
-        }
-
-        int startIndex = filter.getCurrentPage();
-        int number = filter.getNumberOfItemsPerPage();
-        if (startIndex > 1 && !sources.isEmpty()) {
-            int currentIndex = 0;
-            it = sources.iterator();
-            while (it.hasNext()) {
-                it.next();
-                LOGGER.info("currentIndex=" + currentIndex + ", startIndex=" + startIndex);
-                if (currentIndex < (startIndex - 1)) {
-                    it.remove();
-                }
-                currentIndex++;
-            }
+        String attributeFilter = filter.getAttributeFilter();
+        if (filter.getOperator() == CollectionFilter.OPERATOR_EQUAL) {
+            return Optional.of(entitiesOwner.getEntitiesByAttributeValue(attributeFilter, filter.getValue()));
         }
-
-        // Max count, -1 infinite.
-        if (number >= 0) {
-            int count = 0;
-            it = sources.iterator();
-            while (it.hasNext()) {
-                it.next();
-                count++;
-                if (count > number) {
-                    it.remove();
-                }
+        try {
+            Double value = filter.getValueDouble();
+            switch (filter.getOperator()) {
+                case CollectionFilter.OPERATOR_GREATER_THAN:
+                    return Optional.of(entitiesOwner.getEntitiesByAttributeRange(attributeFilter, value, false, null, false));
+                case CollectionFilter.OPERATOR_LOWER_THAN:
+                    return Optional.of(entitiesOwner.getEntitiesByAttributeRange(attributeFilter, null, false, value, false));
+                case CollectionFilter.OPERATOR_LOWER_OR_EQUAL:
+                    return Optional.of(entitiesOwner.getEntitiesByAttributeRange(attributeFilter, null, false, value, true));
+                default:
+                    Double valueMax = filter.getValueMax() == null ? null : filter.getValueMaxDouble();
+                    return Optional.of(entitiesOwner.getEntitiesByAttributeRange(attributeFilter, value, true, valueMax, true));
             }
+        } catch (NumberFormatException ex) {
+            // Not a numeric constraint, no entity can match.
+            return Optional.of(new ArrayList<>());
         }
-
-        return sources;
     }
 
     /**
-     * Check if entity respect filter location path (relative).
+     * Count the entities matching a single attribute filter with the attribute indexes, the entities lists are not built.
      *
-     * @param filterOnPath partial location to filter.
-     * @param entity       entity to check.
-     * @param owner
-     * @return true if constraint path is respected (or if filter on path is null or empty) and false elsewhere.
+     * @param filter        a filter on an attribute value.
+     * @param entitiesOwner the owner references.
+     * @return the number of entities found by findEntitiesFromAttributeIndex, empty optional if the filter cannot use an index.
      */
-    private static boolean checkEntityFilterOnPath(final String filterOnPath, final Entity entity, final String owner) {
-        boolean result = false;
-
-        String filterPath = filterOnPath;
-        if (filterPath == null || filterPath.isEmpty()) {
-            return true;
+    static Optional<Integer> countEntitiesFromAttributeIndex(final CollectionFilter filter, final EntitiesOwner entitiesOwner) {
+        if (!isAttributeIndexFilter(filter, entitiesOwner)) {
+            return Optional.empty();
+        }
+        String attributeFilter = filter.getAttributeFilter();
+        if (filter.getOperator() == CollectionFilter.OPERATOR_EQUAL) {
+            return Optional.of(entitiesOwner.countEntitiesByAttributeValue(attributeFilter, filter.getValue()));
         }
-
-        String relativeLocation;
         try {
-            relativeLocation = getLocation(entity.getId(), owner);
-            if (relativeLocation != null) {
-                relativeLocation = relativeLocation.replaceAll("\\s+", "");
-                if (!relativeLocation.endsWith("/")) {
-                    relativeLocation = relativeLocation + "/";
-                }
+            Double value = filter.getValueDouble();
+            switch (filter.getOperator()) {
+                case CollectionFilter.OPERATOR_GREATER_THAN:
+                    return Optional.of(entitiesOwner.countEntitiesByAttributeRange(attributeFilter, value, false, null, false));
+                case CollectionFilter.OPERATOR_LOWER_THAN:
+                    return Optional.of(entitiesOwner.countEntitiesByAttributeRange(attributeFilter, null, false, value, false));
+                case CollectionFilter.OPERATOR_LOWER_OR_EQUAL:
+                    return Optional.of(entitiesOwner.countEntitiesByAttributeRange(attributeFilter, null, false, value, true));
+                default:
+                    Double valueMax = filter.getValueMax() == null ? null : filter.getValueMaxDouble();
+                    return Optional.of(entitiesOwner.countEntitiesByAttributeRange(attributeFilter, value, true, valueMax, true));
             }
-        } catch (ConfigurationException ex) {
-            relativeLocation = null;
+        } catch (NumberFormatException ex) {
+            return Optional.of(0);
         }
+    }
 
-        filterPath = filterOnPath.replaceAll("\\s+", "");
-        if (!filterPath.endsWith("/")) {
-            filterPath = filterPath + "/";
+    /**
+     * @return true if the filter is an equality or a range filter on an indexed attribute.
+     */
+    private static boolean isAttributeIndexFilter(final CollectionFilter filter, final EntitiesOwner entitiesOwner) {
+        String attributeFilter = filter.getAttributeFilter();
+        if (attributeFilter == null || attributeFilter.isEmpty() || filter.getValue() == null
+                || !entitiesOwner.isAttributeIndexed(attributeFilter)) {
+            return false;
         }
-
-        if (relativeLocation == null || relativeLocation.isEmpty()) {
-            result = false;
-        } else if (relativeLocation.startsWith(filterPath)) {
-            result = true;
+        if (attributeFilter.equals(Constants.OCCI_CORE_SUMMARY)
+                || attributeFilter.equals(Constants.OCCI_CORE_TITLE)
+                || attributeFilter.equals(Constants.OCCI_CORE_ID)
+                || attributeFilter.equals(Constants.OCCI_CORE_TARGET)
+                || attributeFilter.equals(Constants.OCCI_CORE_SOURCE)) {
+            return false;
         }
+        return filter.getOperator() == CollectionFilter.OPERATOR_EQUAL || filter.isRangeOperator();
+    }
 
-        return result;
+    /**
+     * Resolve a category filter to its scheme + term form if only the term is given.
+     *
+     * @param categoryFilter a category term or scheme + term, may be null.
+     * @param owner          the owner of the configuration.
+     * @return the category scheme + term, or the category filter as is if not found on configuration.
+     */
+    static String resolveCategoryFilter(final String categoryFilter, final String owner) {
+        if (categoryFilter == null || categoryFilter.isEmpty()
+                || ConfigurationManager.checkIfCategorySchemeTerm(categoryFilter, owner)) {
+            return categoryFilter;
+        }
+        Optional<String> optCategory = ConfigurationManager.findCategorySchemeTermFromTerm(categoryFilter, owner);
+        if (optCategory.isPresent()) {
+            return optCategory.get();
+        }
+        LOGGER.warn("Category filter : " + categoryFilter + " has not been found on current configuration.");
+        return categoryFilter;
     }
 
     /**
@@ -458,13 +593,13 @@ public class EntityManager {
      * @param entity
      * @return true if constraints is respected false elsewhere. if categoryfilter is null return true (all categories are ok).
      */
-    private static boolean checkEntityCategoryFilter(final String categoryFilter, final Entity entity) {
+    static boolean checkEntityCategoryFilter(final String categoryFilter, final Entity entity) {
 
         if (categoryFilter == null || categoryFilter.isEmpty()) {
             return true; // all categories ok.
         }
         // Must filter on this category.
-        String kindId = entity.getKind().getScheme() + entity.getKind().getTerm();
+        String kindId = CategoryIds.of(entity.getKind());
         String actionId;
         boolean categoryFound = false;
         if (kindId.equals(categoryFilter)) {
@@ -473,7 +608,7 @@ public class EntityManager {
         if (!categoryFound) {
             // Search after if this is an action category.
             for (Action action : entity.getKind().getActions()) {
-                actionId = action.getScheme() + action.getTerm();
+                actionId = CategoryIds.of(action);
                 if (actionId.equals(categoryFilter)) {
                     categoryFound = true;
                     break;
@@ -484,7 +619,7 @@ public class EntityManager {
             // Search on mixins.
             String mixinId;
             for (Mixin mixin : entity.getMixins()) {
-                mixinId = mixin.getScheme() + mixin.getTerm();
+                mixinId = CategoryIds.of(mixin);
                 if (mixinId.equals(categoryFilter)) {
                     categoryFound = true;
                     break;
@@ -501,7 +636,7 @@ public class EntityManager {
      * @param entity
      * @return true if the constraint is validated, false elsewhere.
      */
-    private static boolean checkEntityAttributeFilter(final CollectionFilter filter, final Entity entity) {
+    static boolean checkEntityAttributeFilter(final CollectionFilter filter, final Entity entity) {
         boolean control = false;
         String attributeFilter = filter.getAttributeFilter();
         String attributeValue = filter.getValue();
@@ -532,6 +667,10 @@ public class EntityManager {
                         control = true;
                         break;
                     }
+                    if (filter.isRangeOperator() && checkAttributeRangeFilter(filter, entity, attr)) {
+                        control = true;
+                        break;
+                    }
                 }
             }
         }
@@ -601,6 +740,66 @@ public class EntityManager {
         return control;
     }
 
+    /**
+     * Check if the numeric value of an attribute is in the range of a range filter (greater than, lower than, between).
+     * The typed value of the entity is used first, the attribute state value else.
+     *
+     * @param filter         a filter with a range operator.
+     * @param entity         the entity to check.
+     * @param attributeState the attribute state of the filtered attribute.
+     * @return true if the value is in the range, false if not or if the values are not numbers.
+     */
+    private static boolean checkAttributeRangeFilter(final CollectionFilter filter, final Entity entity, final AttributeState attributeState) {
+        Optional<Double> optNumber = getAttrValueDouble(entity, attributeState);
+        if (!optNumber.isPresent()) {
+            return false;
+        }
+        double number = optNumber.get();
+        Double min;
+        Double max;
+        try {
+            min = filter.getValueDouble();
+            max = filter.getValueMax() == null ? null : filter.getValueMaxDouble();
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+        switch (filter.getOperator()) {
+            case CollectionFilter.OPERATOR_GREATER_THAN:
+                return number > min;
+            case CollectionFilter.OPERATOR_LOWER_THAN:
+                return number < min;
+            case CollectionFilter.OPERATOR_LOWER_OR_EQUAL:
+                return number <= min;
+            case CollectionFilter.OPERATOR_BETWEEN:
+                return number >= min && (max == null || number <= max);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Get the numeric value of an attribute, the typed value of the entity is used first, the attribute state value else.
+     * Used by the range filters and by the numeric index of the attributes, so an entity has the same value for both.
+     *
+     * @param entity         the entity.
+     * @param attributeState an attribute state of the entity.
+     * @return the numeric value, empty optional if the value is not a number.
+     */
+    public static Optional<Double> getAttrValueDouble(final Entity entity, final AttributeState attributeState) {
+        Optional<Number> optNumber = getAttrValueNumber(entity, attributeState.getName());
+        if (optNumber.isPresent()) {
+            return Optional.of(optNumber.get().doubleValue());
+        }
+        if (attributeState.getValue() == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Double.parseDouble(attributeState.getValue().trim()));
+        } catch (NumberFormatException ex) {
+            return Optional.empty();
+        }
+    }
+
     /**
      * Get an attribute state object for key parameter.
      *
@@ -644,7 +843,7 @@ public class EntityManager {
         while (currentKind != null && !found) {
             actions = currentKind.getActions();
             for (Action actionModel : actions) {
-                if ((actionModel.getScheme() + actionModel.getTerm()).equals(actionId)) {
+                if (CategoryIds.of(actionModel).equals(actionId)) {
                     // The action is referenced on this kind.
                     found = true;
                     action = actionModel;
@@ -662,7 +861,7 @@ public class EntityManager {
             for (Mixin mixin : mixins) {
                 actions = mixin.getActions();
                 for (Action actionMixin : actions) {
-                    if ((actionMixin.getScheme() + actionMixin.getTerm()).equals(actionId)) {
+                    if (CategoryIds.of(actionMixin).equals(actionId)) {
                         action = actionMixin;
                         found = true;
                         break;
@@ -676,7 +875,7 @@ public class EntityManager {
                 for (Mixin mixinDep : mixinsDep) {
                     actions = mixinDep.getActions();
                     for (Action actionMixin : actions) {
-                        if ((actionMixin.getScheme() + actionMixin.getTerm()).equals(actionId)) {
+                        if (CategoryIds.of(actionMixin).equals(actionId)) {
                             action = actionMixin;
                             found = true;
                             break;
@@ -733,12 +932,11 @@ public class EntityManager {
         }
 
         EntitiesOwner entitiesOwner = entitiesOwnerMap.get(owner);
-        String location = entitiesOwner.getEntityLocation(entity);
+        String location = entitiesOwner == null ? null : entitiesOwner.getEntityLocation(entity);
         if (location == null) {
+            // The entity is not referenced (not added yet or removed), this is a read path so the references are left unchanged.
             location = "/" + entity.getId(); // On root path by default.
-            LOGGER.warn("Entity : " + entity.getId() + " for title : " + entity.getTitle() + " has no location !!!, setting location on : " + location);
-            // To ensure that the path exist on entities path map.
-            entitiesOwner.putEntity(location, entity);
+            LOGGER.warn("Entity : " + entity.getId() + " for title : " + entity.getTitle() + " has no location !!!, using location : " + location);
         }
         return location;
     }
@@ -1194,6 +1392,9 @@ public class EntityManager {
         }
         if (objDefault != null) {
             String attributeDefault = objDefault.toString();
+            if (isPooledType(eAttrType)) {
+                attributeDefault = StringPool.intern(attributeDefault);
+            }
             LOGGER.debug("Default for the attribute : " + attributeState.getName() + " found on datatype: " + eAttrType.getName() + " --< value: " + attributeDefault);
             attributeState.setValue(attributeDefault);
         }
@@ -1295,11 +1496,55 @@ public class EntityManager {
             }
         }
 
+        poolAttributeStrings(entity);
         updateVersion(owner, entity.getId());
 
         return entity;
     }
 
+    /**
+     * Replace the attribute names of an entity and of its mixin bases by their pooled instance, so the same name is not
+     * stored once per entity. The values are pooled for enumerations and booleans only (like occi.compute.state values).
+     *
+     * @param entity the entity to update.
+     */
+    public static void poolAttributeStrings(final Entity entity) {
+        for (AttributeState attributeState : entity.getAttributes()) {
+            poolAttributeState(attributeState, getEAttributeType(entity, attributeState.getName()));
+        }
+        for (MixinBase mixinBase : entity.getParts()) {
+            for (AttributeState attributeState : mixinBase.getAttributes()) {
+                poolAttributeState(attributeState, MixinManager.getEAttributeType(mixinBase, attributeState.getName()));
+            }
+        }
+    }
+
+    private static void poolAttributeState(final AttributeState attributeState, final Optional<EDataType> optEAttrType) {
+        String name = attributeState.getName();
+        String pooledName = StringPool.intern(name);
+        if (pooledName != name) {
+            attributeState.setName(pooledName);
+        }
+        if (!optEAttrType.isPresent()) {
+            return;
+        }
+        if (isPooledType(optEAttrType.get())) {
+            String value = attributeState.getValue();
+            String pooledValue = StringPool.intern(value);
+            if (pooledValue != value) {
+                attributeState.setValue(pooledValue);
+            }
+        }
+    }
+
+    /**
+     * @param eAttrType an attribute data type.
+     * @return true if the values of this type are taken from a small set (enumerations and booleans) and can be pooled.
+     */
+    private static boolean isPooledType(final EDataType eAttrType) {
+        return eAttrType instanceof EEnum || eAttrType.getInstanceClass() == Boolean.class || eAttrType.getInstanceClass() == boolean.class;
+    }
+
     /**
      * Increment a version of an object (resource or link << entity)
      *
@@ -1427,7 +1672,7 @@ public class EntityManager {
         if (kind == null) {
             return;
         }
-        List<Entity> entities = findAllEntitiesForKind(kind.getScheme() + kind.getTerm(), owner);
+        List<Entity> entities = findAllEntitiesForKind(CategoryIds.of(kind), owner);
 
         for (Entity entity : entities) {
             if (entity instanceof Resource) {
@@ -1569,21 +1814,15 @@ public class EntityManager {
 
         EntitiesOwner entitiesOwner = entitiesOwnerMap.get(owner);
 
-        Map<String, Entity> entitiesLocationMap = entitiesOwner.getEntitiesByLocation();
-
-        String uuid;
-        String pathTmp;
-        for (Map.Entry<String, Entity> entry : entitiesLocationMap.entrySet()) {
-
-            pathTmp = entry.getKey();
-            uuid = entry.getValue().getId();
-
-            if (path.equals(pathTmp)) {
-                entitiesUUID.add(uuid);
-            } else if ((path.startsWith(pathTmp) || pathTmp.startsWith(path)) && !pathTmp.isEmpty()) {
-                entitiesUUID.add(uuid);
-            }
+        // Entities on the parent locations of the path, then the entities located under the path.
+        Set<String> uuids = new LinkedHashSet<>();
+        for (Entity entity : entitiesOwner.getEntitiesOnLocationPath(path)) {
+            uuids.add(entity.getId());
         }
+        for (Entity entity : entitiesOwner.getEntitiesUnderLocation(path)) {
+            uuids.add(entity.getId());
+        }
+        entitiesUUID.addAll(uuids);
         return entitiesUUID;
     }
 
@@ -1594,11 +1833,26 @@ public class EntityManager {
      * @return attributes map, this must never return null.
      */
     public static Map<String, Object> convertEntityAttributesToMap(final Entity entity) {
+        return convertEntityAttributesToMap(entity, FieldProjection.ALL);
+    }
+
+    /**
+     * Convert the attributes of an entity selected by a projection to Map object. String name, Object value
+     * The attributes not selected are not converted. occi.core.id is always given.
+     *
+     * @param entity     must never be null
+     * @param projection the fields to convert.
+     * @return attributes map, this must never return null.
+     */
+    public static Map<String, Object> convertEntityAttributesToMap(final Entity entity, final FieldProjection projection) {
         Map<String, Object> attributes = new LinkedHashMap<>();
         List<AttributeState> attrsState = entity.getAttributes();
         for (AttributeState attr : attrsState) {
             String key = attr.getName();
             String val = attr.getValue();
+            if (!key.equals(Constants.OCCI_CORE_ID) && !projection.includesAttribute(key)) {
+                continue;
+            }
             if (val != null) {
                 if (!key.equals(Constants.OCCI_CORE_SUMMARY) && !key.equals(Constants.OCCI_CORE_TITLE)
                         && !key.equals(Constants.OCCI_CORE_ID)
@@ -1775,8 +2029,55 @@ public class EntityManager {
     }
 
 
-    public static void buildEntitiesOwner(final String owner) {
-        entitiesOwnerMap.put(owner, new EntitiesOwner(owner));
+    /**
+     * Build the entities references container of an owner, this container follows the changes made on the configuration.
+     *
+     * @param owner
+     * @param configuration the configuration of the owner.
+     */
+    public static void buildEntitiesOwner(final String owner, final Configuration configuration) {
+        EntitiesOwner entitiesOwner = new EntitiesOwner(owner);
+        entitiesOwner.setIndexedAttributes(AppParameters.getInstance().getIndexedAttributes());
+        entitiesOwner.setParallelFilterThreshold(AppParameters.getInstance().getQueryParallelThreshold());
+        entitiesOwner.attachConfiguration(configuration);
+        QueryPlanner.invalidate(owner);
+        EntitiesOwner previous = entitiesOwnerMap.put(owner, entitiesOwner);
+        if (previous != null) {
+            previous.detachConfiguration();
+        }
+    }
+
+    /**
+     * Stop the delivery of the notifications of an owner configuration, the entities added are referenced by the add methods.
+     * Used by bulk imports, resumeConfigurationNotifications must be called with the entities added in the meantime.
+     *
+     * @param owner the owner of the configuration.
+     */
+    public static void suspendConfigurationNotifications(final String owner) {
+        ConfigurationManager.getConfigurationForOwner(owner).eSetDeliver(false);
+    }
+
+    /**
+     * Deliver again the notifications of an owner configuration, the resources added while the notifications were suspended
+     * are followed by the entities references of the owner (with their links).
+     *
+     * @param owner    the owner of the configuration.
+     * @param entities the entities created or updated while the notifications were suspended.
+     */
+    public static void resumeConfigurationNotifications(final String owner, final Collection<? extends Entity> entities) {
+        Configuration configuration = ConfigurationManager.getConfigurationForOwner(owner);
+        configuration.eSetDeliver(true);
+        EntitiesOwner entitiesOwner = entitiesOwnerMap.get(owner);
+        if (entitiesOwner == null) {
+            return;
+        }
+        List<Entity> resources = new ArrayList<>();
+        for (Entity entity : entities) {
+            if (entity instanceof Resource && entity.eContainer() == configuration) {
+                resources.add(entity);
+            }
+        }
+        entitiesOwner.followEntities(resources);
     }
 
     public static Optional<Entity> findEntityForUuid(final String entityId, final String owner) {
@@ -1839,7 +2140,7 @@ public class EntityManager {
         EntitiesOwner entitiesOwner = entitiesOwnerMap.get(owner);
 
         if (entitiesOwner == null) {
-            buildEntitiesOwner(owner);
+            buildEntitiesOwner(owner, config);
         }
 
         // List all resources
@@ -1863,16 +2164,32 @@ public class EntityManager {
      */
     private static void updateEntityReferences(final Entity entity, final String owner) {
         String uuid = entity.getId();
-        String location = entity.getLocation();
         EntitiesOwner entitiesOwner = entitiesOwnerMap.get(owner);
         // Update references.
-        entitiesOwner.putEntity(location, entity);
+        entitiesOwner.referenceEntity(entity);
         updateVersion(owner, uuid);
     }
 
 
+    /**
+     * Update the kind and mixins references of an entity, to call when mixins are associated or dissociated.
+     *
+     * @param entity the entity updated.
+     * @param owner  the owner of the entity.
+     */
+    public static void updateEntityCategoryReferences(final Entity entity, final String owner) {
+        EntitiesOwner entitiesOwner = entitiesOwnerMap.get(owner);
+        if (entitiesOwner != null) {
+            entitiesOwner.updateEntityCategories(entity);
+        }
+    }
+
     public static void clearReferences(final String owner) {
-        entitiesOwnerMap.remove(owner);
+        EntitiesOwner entitiesOwner = entitiesOwnerMap.remove(owner);
+        if (entitiesOwner != null) {
+            entitiesOwner.detachConfiguration();
+        }
         versionObjectMap.remove(owner);
+        QueryPlanner.invalidate(owner);
     }
 }
@@ -22,6 +22,7 @@ import org.eclipse.cmf.occi.core.*;
 import org.eclipse.cmf.occi.core.util.OcciHelper;
 import org.eclipse.cmf.occi.core.util.OcciRegistry;
 import org.eclipse.emf.common.util.EList;
+import org.occiware.mart.server.utils.CategoryIds;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -68,13 +69,13 @@ public class KindManager {
 
         EList<Resource> resources = configuration.getResources();
         for (Resource resource : resources) {
-            if ((resource.getKind().getScheme() + resource.getKind().getTerm()).equals(id)) {
+            if (CategoryIds.of(resource.getKind()).equals(id)) {
                 kind = resource.getKind();
             } else {
                 // On check les links de la resource.
                 links = resource.getLinks();
                 for (Link link : links) {
-                    if ((link.getKind().getScheme() + link.getKind().getTerm()).equals(id)) {
+                    if (CategoryIds.of(link.getKind()).equals(id)) {
                         kind = link.getKind();
                         break;
                     }
@@ -107,7 +108,7 @@ public class KindManager {
             extUsed.add(ext.getScheme());
             kinds = ext.getKinds();
             for (Kind kind : kinds) {
-                if (((kind.getScheme() + kind.getTerm()).equals(kindId))) {
+                if ((CategoryIds.of(kind).equals(kindId))) {
                     kindToReturn = kind;
                     break;
                 }
@@ -129,9 +130,11 @@ public class KindManager {
                 ext = OcciHelper.loadExtension(extScheme);
                 kinds = ext.getKinds();
                 for (Kind kind : kinds) {
-                    if (((kind.getScheme() + kind.getTerm()).equals(kindId))) {
+                    if ((CategoryIds.of(kind).equals(kindId))) {
                         kindToReturn = kind;
                         config.getUse().add(ext);
+                        CategoryDictionary.invalidate(owner);
+                        QueryPlanner.invalidate(owner);
                         LOGGER.info("New extension: " + ext.getName() + " --< added to configuration owner: " + owner);
                         break;
                     }
@@ -161,7 +164,7 @@ public class KindManager {
         for (Extension ext : exts) {
             kinds = ext.getKinds();
             for (Kind kindObj : kinds) {
-                if ((kindObj.getScheme() + kindObj.getTerm()).equals(kind)) {
+                if (CategoryIds.of(kindObj).equals(kind)) {
                     extRet = ext;
                     break;
                 }
@@ -27,6 +27,7 @@ import org.eclipse.emf.ecore.EDataType;
 import org.eclipse.emf.ecore.EEnum;
 import org.eclipse.emf.ecore.EStructuralFeature;
 import org.occiware.mart.server.exception.ConfigurationException;
+import org.occiware.mart.server.utils.CategoryIds;
 import org.occiware.mart.server.utils.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,7 +66,7 @@ public class MixinManager {
         mixins = config.getMixins();
         String mixinConfId;
         for (Mixin mixin : mixins) {
-            mixinConfId = mixin.getScheme() + mixin.getTerm();
+            mixinConfId = CategoryIds.of(mixin);
             if (mixinConfId.equals(mixinId)) {
                 mixinToReturn = mixin;
                 break;
@@ -89,7 +90,7 @@ public class MixinManager {
         for (Resource res : configuration.getResources()) {
             mixinOk = false;
             for (Mixin mixin : res.getMixins()) {
-                if ((mixin.getScheme() + mixin.getTerm()).equals(mixinId)) {
+                if (CategoryIds.of(mixin).equals(mixinId)) {
                     mixinToReturn = mixin;
                     mixinOk = true;
                     break;
@@ -102,7 +103,7 @@ public class MixinManager {
                 // Recherche dans les links.
                 for (Link link : res.getLinks()) {
                     for (Mixin mixin : link.getMixins()) {
-                        if ((mixin.getScheme() + mixin.getTerm()).equals(mixinId)) {
+                        if (CategoryIds.of(mixin).equals(mixinId)) {
                             mixinToReturn = mixin;
                             mixinOk = true;
                             break;
@@ -135,7 +136,7 @@ public class MixinManager {
         String mixinExtId;
         for (Extension ext : config.getUse()) {
             for (Mixin mixin : ext.getMixins()) {
-                mixinExtId = mixin.getScheme() + mixin.getTerm();
+                mixinExtId = CategoryIds.of(mixin);
                 if (mixinExtId.equals(mixinId)) {
                     mixinToReturn = mixin;
                     break;
@@ -165,7 +166,7 @@ public class MixinManager {
         for (Extension ext : exts) {
             mixins = ext.getMixins();
             for (Mixin mixinObj : mixins) {
-                if ((mixinObj.getScheme() + mixinObj.getTerm()).equals(mixin)) {
+                if (CategoryIds.of(mixinObj).equals(mixin)) {
                     extRet = ext;
                     break;
                 }
@@ -249,7 +250,7 @@ public class MixinManager {
             String mixinScheme = mixin.getScheme();
             String mixinId = mixinScheme + mixinTerm;
             for (Mixin mix : allMixins) {
-                if ((mix.getScheme() + mix.getTerm()).equals(mixinId)) {
+                if (CategoryIds.of(mix).equals(mixinId)) {
                     found = true;
                     break;
                 }
@@ -273,7 +274,7 @@ public class MixinManager {
         for (Mixin mixin : mixinsTags) {
             // TODO : Save mixin location map in a file when saving xmi occic document.
             location = mixin.getTerm();
-            userMixinLocationMap.put(mixin.getScheme() + mixin.getTerm(), location);
+            userMixinLocationMap.put(CategoryIds.of(mixin), location);
         }
     }
 
@@ -299,7 +300,7 @@ public class MixinManager {
             String mixinScheme = mixin.getScheme();
             String mixinId = mixinScheme + mixinTerm;
             for (Mixin mix : allMixinsExts) {
-                if ((mix.getScheme() + mix.getTerm()).equals(mixinId)) {
+                if (CategoryIds.of(mix).equals(mixinId)) {
                     found = true;
                     break;
                 }
@@ -403,7 +404,7 @@ public class MixinManager {
                 // Check if mixin is already declared on entity.
                 List<Mixin> entityMixins = entity.getMixins();
                 for (Mixin mixinEntity : entityMixins) {
-                    String mixinId = mixinEntity.getScheme() + mixinEntity.getTerm();
+                    String mixinId = CategoryIds.of(mixinEntity);
                     if (mixinId.equals(mixinStr)) {
                         // Don't add this mixin.
                         mixinExistOnEntity = true;
@@ -418,6 +419,7 @@ public class MixinManager {
                 }
             }
         }
+        EntityManager.updateEntityCategoryReferences(entity, owner);
     }
 
     /**
@@ -453,9 +455,9 @@ public class MixinManager {
                 // create a mixin base for the entity if this mixin has no mixin base set for this entity.
                 List<MixinBase> mixinBases = entity.getParts();
                 String mixinTmpId;
-                String mixinTagToApplyId = mixin.getScheme() + mixin.getTerm();
+                String mixinTagToApplyId = CategoryIds.of(mixin);
                 for (MixinBase mixinTag : mixinBases) {
-                    mixinTmpId = mixinTag.getMixin().getScheme() + mixinTag.getMixin().getTerm();
+                    mixinTmpId = CategoryIds.of(mixinTag.getMixin());
                     if (mixinTmpId.equals(mixinTagToApplyId)) {
                         mixinFoundOnEntity = true;
                         break;
@@ -471,7 +473,7 @@ public class MixinManager {
                 // entity.getMixins().add(mixin);
             }
         }
-
+        EntityManager.updateEntityCategoryReferences(entity, owner);
     }
 
 
@@ -546,12 +548,14 @@ public class MixinManager {
             if (!entity.getMixins().contains(mixin)) {
                 MixinBase mixinBase = OcciHelper.createMixinBase(entity, mixin);
                 EntityManager.updateVersion(owner, entity.getId());
+                EntityManager.updateEntityCategoryReferences(entity, owner);
             }
         }
         List<Entity> mixinEntities = mixin.getEntities();
 
         if (!updateMode) {
             boolean found;
+            List<Entity> dissociatedEntities = new ArrayList<>();
             // Remove entities those are not in the input list.
             Iterator<Entity> it = mixinEntities.iterator();
             while (it.hasNext()) {
@@ -576,11 +580,14 @@ public class MixinManager {
                             break;
                         }
                     }
-
+                    dissociatedEntities.add(entityMixin);
                     // entityMixin.getMixins().remove(mixin);
                 }
 
             }
+            for (Entity entity : dissociatedEntities) {
+                EntityManager.updateEntityCategoryReferences(entity, owner);
+            }
         }
 
     }
@@ -620,7 +627,9 @@ public class MixinManager {
         // We add the mixin location to the userMixin map.
         userMixinLocationMap.put(id, location);
         configuration.getMixins().add(mixin);
-
+        // The compiled queries may have resolved the term of this mixin to another category.
+        CategoryDictionary.invalidate(owner);
+        QueryPlanner.invalidate(owner);
     }
 
     /**
@@ -633,7 +642,7 @@ public class MixinManager {
         if (mixin == null) {
             throw new ConfigurationException("No mixin to dissociate");
         }
-        List<Entity> entities = EntityManager.findAllEntitiesForMixin(mixin.getScheme() + mixin.getTerm(), owner);
+        List<Entity> entities = EntityManager.findAllEntitiesForMixin(CategoryIds.of(mixin), owner);
         for (Entity entity : entities) {
             List<MixinBase> mixinBases = entity.getParts();
             MixinBase mixinBaseToRemove = null;
@@ -650,6 +659,7 @@ public class MixinManager {
 
             // entity.getMixins().remove(mixin);
             EntityManager.updateVersion(owner, entity.getId());
+            EntityManager.updateEntityCategoryReferences(entity, owner);
         }
         entities.clear();
 
@@ -675,7 +685,7 @@ public class MixinManager {
         }
         Mixin myMixin = null;
         for (Mixin mixin : mixins) {
-            if ((mixin.getScheme() + mixin.getTerm()).equals(mixinId)) {
+            if (CategoryIds.of(mixin).equals(mixinId)) {
                 myMixin = mixin;
                 break;
             }
@@ -701,6 +711,7 @@ public class MixinManager {
             }
             // entity.getMixins().remove(myMixin);
             EntityManager.updateVersion(owner, entity.getId());
+            EntityManager.updateEntityCategoryReferences(entity, owner);
         }
     }
 
@@ -732,6 +743,9 @@ public class MixinManager {
         // Delete from configuration.
         Configuration config = ConfigurationManager.getConfigurationForOwner(owner);
         config.getMixins().remove(mixin);
+        CategoryIds.remove(mixin);
+        CategoryDictionary.invalidate(owner);
+        QueryPlanner.invalidate(owner);
     }
 
     /**
@@ -776,7 +790,7 @@ public class MixinManager {
         List<Mixin> mixins = entity.getMixins();
         List<String> mixinsStr = new LinkedList<>();
         for (Mixin mixin : mixins) {
-            String mixinStr = mixin.getScheme() + mixin.getTerm();
+            String mixinStr = CategoryIds.of(mixin);
             mixinsStr.add(mixinStr);
         }
         return mixinsStr;
@@ -787,9 +801,12 @@ public class MixinManager {
             List<Mixin> mixins = getAllMixinTagsForOwner(owner);
 
             for (Mixin mixin : mixins) {
-                userMixinLocationMap.remove(mixin.getScheme() + mixin.getTerm());
+                userMixinLocationMap.remove(CategoryIds.of(mixin));
+                CategoryIds.remove(mixin);
             }
         }
+        CategoryDictionary.invalidate(owner);
+        QueryPlanner.invalidate(owner);
     }
 
     /**
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.model;
+
+import org.eclipse.cmf.occi.core.Entity;
+import org.occiware.mart.server.model.container.EntitiesOwner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Check the remaining predicates of a query on a range of candidates in parallel, on a pool dedicated to the collection queries.
+ * The range is split in tasks of at least LEAF_SIZE entities, each task marks the matching entities of its part,
+ * the matching entities are then collected in the candidates order so the pagination is the same as a sequential filter.
+ * Used only when the candidates of the owner are more than its parallel filter threshold.
+ */
+final class ParallelFilter {
+
+    /**
+     * Number of entities checked by a task on a single thread, smaller ranges are not split.
+     */
+    static final int LEAF_SIZE = 2048;
+
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    private ParallelFilter() {
+    }
+
+    /**
+     * @param entitiesOwner the entities references of the owner, with the threshold.
+     * @param candidates    the number of candidates to check.
+     * @return true if the candidates must be checked in parallel.
+     */
+    static boolean isParallel(final EntitiesOwner entitiesOwner, final int candidates) {
+        int threshold = entitiesOwner.getParallelFilterThreshold();
+        return threshold > 0 && candidates >= threshold && candidates > LEAF_SIZE && PARALLELISM > 1;
+    }
+
+    /**
+     * Number of candidates checked at once by a paginated query, a page is filled by the first segments only.
+     *
+     * @param entitiesOwner the entities references of the owner.
+     * @return the segment size.
+     */
+    static int getSegmentSize(final EntitiesOwner entitiesOwner) {
+        return Math.max(entitiesOwner.getParallelFilterThreshold(), LEAF_SIZE * PARALLELISM);
+    }
+
+    /**
+     * Find the candidates matching a predicate.
+     *
+     * @param sources   the candidates.
+     * @param from      index of the first candidate to check.
+     * @param to        index after the last candidate to check.
+     * @param predicate the predicate to check.
+     * @param context   the context of the query, shared by the tasks.
+     * @return a new list of the matching entities, in the candidates order.
+     */
+    static List<Entity> filter(final List<Entity> sources, final int from, final int to,
+                               final QueryPredicate predicate, final QueryPredicate.QueryContext context) {
+        List<Entity> entities = sources instanceof RandomAccess ? sources : new ArrayList<>(sources);
+        boolean[] matches = new boolean[to - from];
+        PoolHolder.pool.invoke(new FilterTask(entities, from, from, to, predicate, context, matches));
+        List<Entity> result = new ArrayList<>();
+        for (int i = 0; i < matches.length; i++) {
+            if (matches[i]) {
+                result.add(entities.get(from + i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Pool of the filter tasks, created on the first parallel query.
+     */
+    private static final class PoolHolder {
+        private static final ForkJoinPool pool = new ForkJoinPool(PARALLELISM, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("mart-query-filter-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Mark the matching entities of a range, the marks of a task are on its own part of the array.
+     */
+    private static final class FilterTask extends RecursiveAction {
+        private final List<Entity> sources;
+        private final int base;
+        private final int from;
+        private final int to;
+        private final QueryPredicate predicate;
+        private final QueryPredicate.QueryContext context;
+        private final boolean[] matches;
+
+        private FilterTask(final List<Entity> sources, final int base, final int from, final int to,
+                           final QueryPredicate predicate, final QueryPredicate.QueryContext context, final boolean[] matches) {
+            this.sources = sources;
+            this.base = base;
+            this.from = from;
+            this.to = to;
+            this.predicate = predicate;
+            this.context = context;
+            this.matches = matches;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                for (int i = from; i < to; i++) {
+                    matches[i - base] = predicate.test(sources.get(i), context);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new FilterTask(sources, base, from, middle, predicate, context, matches),
+                    new FilterTask(sources, base, middle, to, predicate, context, matches));
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.model;
+
+import org.eclipse.cmf.occi.core.AttributeState;
+import org.eclipse.cmf.occi.core.Entity;
+import org.eclipse.cmf.occi.core.Mixin;
+import org.occiware.mart.server.utils.AggregationQuery;
+import org.occiware.mart.server.utils.CategoryIds;
+
+import java.util.*;
+
+/**
+ * Accumulate the results of an aggregation query in one pass over the entities, the entities are not kept.
+ * The groups are ordered by name.
+ */
+final class QueryAggregator {
+
+    private final AggregationQuery query;
+    private final Map<String, GroupResult> groups = new TreeMap<>();
+
+    QueryAggregator(final AggregationQuery query) {
+        this.query = query;
+    }
+
+    /**
+     * Add an entity to its groups, an entity grouped by mixin is in the group of each of its mixins.
+     *
+     * @param entity the entity.
+     */
+    void add(final Entity entity) {
+        String groupBy = query.getGroupBy();
+        if (groupBy == null) {
+            addToGroup(AggregationQuery.GROUP_ALL, entity);
+        } else if (groupBy.equals(AggregationQuery.GROUP_KIND)) {
+            if (entity.getKind() != null) {
+                addToGroup(CategoryIds.of(entity.getKind()), entity);
+            }
+        } else if (groupBy.equals(AggregationQuery.GROUP_MIXIN)) {
+            for (Mixin mixin : entity.getMixins()) {
+                if (mixin != null) {
+                    addToGroup(CategoryIds.of(mixin), entity);
+                }
+            }
+        } else {
+            // Same value as the attributes index, entities without value are not grouped.
+            String value = getStateValue(entity, groupBy);
+            if (value != null) {
+                addToGroup(value, entity);
+            }
+        }
+    }
+
+    /**
+     * Set the counts of the groups, used when the counts are given by the entities indexes.
+     *
+     * @param counts the number of entities of each group.
+     */
+    void addCounts(final Map<String, Integer> counts) {
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            groups.computeIfAbsent(entry.getKey(), key -> new GroupResult(query.size())).count += entry.getValue();
+        }
+    }
+
+    /**
+     * @return the results of each group, key: group name, value: map of result name (count, sum(occi.compute.cores)...) to the result value.
+     * min and max are not given if the group has no numeric value for the attribute.
+     */
+    Map<String, Map<String, Number>> getResults() {
+        Map<String, Map<String, Number>> results = new LinkedHashMap<>();
+        for (Map.Entry<String, GroupResult> entry : groups.entrySet()) {
+            GroupResult group = entry.getValue();
+            Map<String, Number> values = new LinkedHashMap<>();
+            for (int i = 0; i < query.size(); i++) {
+                switch (query.getFunction(i)) {
+                    case AggregationQuery.FUNCTION_COUNT:
+                        values.put(query.getResultName(i), group.count);
+                        break;
+                    case AggregationQuery.FUNCTION_SUM:
+                        values.put(query.getResultName(i), group.values[i]);
+                        break;
+                    default:
+                        if (group.numbers[i] > 0) {
+                            values.put(query.getResultName(i), group.values[i]);
+                        }
+                        break;
+                }
+            }
+            results.put(entry.getKey(), values);
+        }
+        return results;
+    }
+
+    private void addToGroup(final String name, final Entity entity) {
+        GroupResult group = groups.computeIfAbsent(name, key -> new GroupResult(query.size()));
+        group.count++;
+        for (int i = 0; i < query.size(); i++) {
+            String attribute = query.getAttribute(i);
+            if (attribute == null) {
+                continue;
+            }
+            Double value = getNumericValue(entity, attribute);
+            if (value == null) {
+                continue;
+            }
+            switch (query.getFunction(i)) {
+                case AggregationQuery.FUNCTION_SUM:
+                    group.values[i] += value;
+                    break;
+                case AggregationQuery.FUNCTION_MIN:
+                    group.values[i] = group.numbers[i] == 0 ? value : Math.min(group.values[i], value);
+                    break;
+                case AggregationQuery.FUNCTION_MAX:
+                    group.values[i] = group.numbers[i] == 0 ? value : Math.max(group.values[i], value);
+                    break;
+                default:
+                    break;
+            }
+            group.numbers[i]++;
+        }
+    }
+
+    private static Double getNumericValue(final Entity entity, final String attributeName) {
+        if (EntityManager.getEAttributeType(entity, attributeName).isPresent()) {
+            Optional<Number> optNumber = EntityManager.getAttrValueNumber(entity, attributeName);
+            if (optNumber.isPresent()) {
+                return optNumber.get().doubleValue();
+            }
+        }
+        // Attribute of a mixin or value not typed.
+        String value = getStateValue(entity, attributeName);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Double.valueOf(value.trim());
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private static String getStateValue(final Entity entity, final String attributeName) {
+        for (AttributeState attributeState : entity.getAttributes()) {
+            if (attributeName.equalsIgnoreCase(attributeState.getName())) {
+                return attributeState.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Results of a group, the values and the number of values of each function.
+     */
+    private static final class GroupResult {
+        private long count;
+        private final double[] values;
+        private final int[] numbers;
+
+        private GroupResult(final int size) {
+            values = new double[size];
+            numbers = new int[size];
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.model;
+
+import java.util.Arrays;
+
+/**
+ * Position of the last entity of a collection page : its uuid and, for a sorted query, its sort values.
+ * The next page starts after this position, the entity itself may have been removed or changed since.
+ */
+final class QueryCursor {
+
+    private final String uuid;
+    /**
+     * Sort values of the entity (Double, String or null), null if the query is ordered by uuid.
+     */
+    private final Object[] values;
+
+    QueryCursor(final String uuid) {
+        this(uuid, null);
+    }
+
+    QueryCursor(final String uuid, final Object[] values) {
+        this.uuid = uuid;
+        this.values = values;
+    }
+
+    String getUuid() {
+        return uuid;
+    }
+
+    Object[] getValues() {
+        return values;
+    }
+
+    boolean isSorted() {
+        return values != null;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof QueryCursor)) {
+            return false;
+        }
+        QueryCursor other = (QueryCursor) o;
+        return uuid.equals(other.uuid) && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * uuid.hashCode() + Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return values == null ? uuid : uuid + " " + Arrays.toString(values);
+    }
+}
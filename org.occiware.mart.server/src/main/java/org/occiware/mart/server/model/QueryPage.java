@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.model;
+
+import org.eclipse.cmf.occi.core.Entity;
+
+import java.util.List;
+
+/**
+ * A page of a collection query : the entities of the page and the continuation token of the next page.
+ */
+public final class QueryPage {
+
+    private final List<Entity> entities;
+    /**
+     * Continuation token of the next page, null if this is the last page.
+     */
+    private final String nextCursor;
+
+    QueryPage(final List<Entity> entities, final String nextCursor) {
+        this.entities = entities;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Entity> getEntities() {
+        return entities;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
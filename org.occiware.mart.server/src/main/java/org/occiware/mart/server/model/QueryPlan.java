@@ -0,0 +1,292 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.model;
+
+import org.eclipse.cmf.occi.core.Entity;
+import org.occiware.mart.server.exception.ConfigurationException;
+import org.occiware.mart.server.model.container.EntitiesOwner;
+import org.occiware.mart.server.model.container.EntitiesSnapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+/**
+ * Compiled collection query of an owner, built by QueryPlanner and shared by the requests with the same query.
+ * The candidates entities are taken from the most selective index available, the remaining predicates are checked on the candidates only.
+ * The entities are returned ordered by uuid or in the sort order of the query.
+ * When the candidates are more than the parallel filter threshold of the owner, the remaining predicates are checked in parallel
+ * (see ParallelFilter) and the pagination is applied on the matching entities in the candidates order.
+ */
+final class QueryPlan {
+
+    /**
+     * The predicate tree, null if all the entities match.
+     */
+    private final QueryPredicate predicate;
+    /**
+     * The sort order, null to order by uuid.
+     */
+    private final QuerySort sort;
+    /**
+     * Candidates of the last paginated execution sorted by uuid, reused by the next pages while the owner content doesnt change.
+     */
+    private volatile SortedCandidates sortedCandidates;
+
+    QueryPlan(final QueryPredicate predicate, final QuerySort sort) {
+        this.predicate = predicate;
+        this.sort = sort;
+    }
+
+    /**
+     * Find all the entities matching this query.
+     *
+     * @param entitiesOwner the entities references of the owner.
+     * @return a new list of entities ordered by uuid or in the sort order, empty list if none.
+     * @throws ConfigurationException never without cursor.
+     */
+    List<Entity> execute(final EntitiesOwner entitiesOwner) throws ConfigurationException {
+        return execute(entitiesOwner, null, 0, -1);
+    }
+
+    /**
+     * Find a page of the entities matching this query, the entities are ordered by uuid or in the sort order.
+     * Ordered by uuid, the iteration starts after the last uuid of the previous page with a binary search on the candidates,
+     * so the cost of a page doesnt depend on its position in the collection.
+     * With a sort order, the entities after the sort values of the cursor are selected in a heap bounded to the page.
+     *
+     * @param entitiesOwner the entities references of the owner.
+     * @param after         the position of the last entity of the previous page, null to start from the first entity.
+     * @param offset        number of matching entities to skip before the page.
+     * @param limit         the page size, -1 for no limit. One more entity is returned if the collection has more entities.
+     * @return a new list of entities, empty list if none.
+     * @throws ConfigurationException if the cursor was not built for the sort order of this query.
+     */
+    List<Entity> execute(final EntitiesOwner entitiesOwner, final QueryCursor after, final int offset, final int limit) throws ConfigurationException {
+        QueryPredicate.QueryContext context = new QueryPredicate.QueryContext(entitiesOwner);
+        List<Entity> sources;
+        QueryPredicate remaining;
+        QueryPredicate.Candidates candidates = sort == null ? findSortedCandidates(context) : findCandidates(context);
+        if (candidates == null) {
+            // No index to use, all entities must be checked.
+            sources = context.getSnapshot().getEntities();
+            remaining = predicate;
+        } else {
+            sources = candidates.getEntities();
+            remaining = candidates.getRemaining();
+        }
+        if (sort != null) {
+            if (remaining != null && ParallelFilter.isParallel(entitiesOwner, sources.size())) {
+                // All the matching entities are needed by the sort.
+                sources = ParallelFilter.filter(sources, 0, sources.size(), remaining, context);
+                remaining = null;
+            }
+            return executeSorted(context, sources, remaining, after, offset, limit);
+        }
+        if (after != null && after.isSorted()) {
+            throw new ConfigurationException("The collection cursor was built for a sorted query, the collection must be read from the first page.");
+        }
+        int index = after == null ? 0 : EntitiesSnapshot.indexAfter(sources, after.getUuid());
+        if (remaining != null && ParallelFilter.isParallel(entitiesOwner, sources.size() - index)) {
+            return executeParallel(context, sources, remaining, index, offset, limit);
+        }
+        int skipped = 0;
+        List<Entity> entities = new ArrayList<>();
+        for (; index < sources.size(); index++) {
+            Entity entity = sources.get(index);
+            if (remaining != null && !remaining.test(entity, context)) {
+                continue;
+            }
+            if (skipped < offset) {
+                skipped++;
+                continue;
+            }
+            entities.add(entity);
+            if (limit >= 0 && entities.size() > limit) {
+                break;
+            }
+        }
+        return entities;
+    }
+
+    /**
+     * Count the entities matching this query, the entities are not sorted nor collected.
+     *
+     * @param entitiesOwner the entities references of the owner.
+     * @return the number of matching entities.
+     */
+    int count(final EntitiesOwner entitiesOwner) {
+        QueryPredicate.QueryContext context = new QueryPredicate.QueryContext(entitiesOwner);
+        QueryPredicate.Candidates candidates = findCandidates(context);
+        List<Entity> sources = candidates == null ? context.getSnapshot().getEntities() : candidates.getEntities();
+        QueryPredicate remaining = candidates == null ? predicate : candidates.getRemaining();
+        if (remaining == null) {
+            return sources.size();
+        }
+        if (ParallelFilter.isParallel(entitiesOwner, sources.size())) {
+            return ParallelFilter.filter(sources, 0, sources.size(), remaining, context).size();
+        }
+        int count = 0;
+        for (Entity entity : sources) {
+            if (remaining.test(entity, context)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Give each entity matching this query to a consumer, in one pass without collecting the entities.
+     *
+     * @param entitiesOwner the entities references of the owner.
+     * @param consumer      the consumer of the matching entities.
+     */
+    void forEach(final EntitiesOwner entitiesOwner, final Consumer<Entity> consumer) {
+        QueryPredicate.QueryContext context = new QueryPredicate.QueryContext(entitiesOwner);
+        QueryPredicate.Candidates candidates = findCandidates(context);
+        List<Entity> sources = candidates == null ? context.getSnapshot().getEntities() : candidates.getEntities();
+        QueryPredicate remaining = candidates == null ? predicate : candidates.getRemaining();
+        if (remaining != null && ParallelFilter.isParallel(entitiesOwner, sources.size())) {
+            sources = ParallelFilter.filter(sources, 0, sources.size(), remaining, context);
+            remaining = null;
+        }
+        for (Entity entity : sources) {
+            if (remaining == null || remaining.test(entity, context)) {
+                consumer.accept(entity);
+            }
+        }
+    }
+
+    private QueryPredicate.Candidates findCandidates(final QueryPredicate.QueryContext context) {
+        return predicate == null ? null : predicate.findCandidates(context);
+    }
+
+    /**
+     * Find the candidates ordered by uuid. The candidates not taken from a snapshot list (attribute values, ranges, paths, or)
+     * are sorted once for a content version of the owner, the next pages of the collection reuse them.
+     *
+     * @param context the query execution context.
+     * @return the candidates ordered by uuid, null if there is no index to use.
+     */
+    private QueryPredicate.Candidates findSortedCandidates(final QueryPredicate.QueryContext context) {
+        SortedCandidates cached = sortedCandidates;
+        if (cached != null && cached.entitiesOwner == context.getEntitiesOwner() && cached.contentVersion == context.getContentVersion()) {
+            return cached.candidates;
+        }
+        QueryPredicate.Candidates candidates = findCandidates(context);
+        if (candidates == null || candidates.isSorted()) {
+            return candidates;
+        }
+        List<Entity> entities = new ArrayList<>(candidates.getEntities());
+        entities.sort(EntitiesSnapshot.UUID_ORDER);
+        candidates = new QueryPredicate.Candidates(Collections.unmodifiableList(entities), candidates.getRemaining(), true);
+        sortedCandidates = new SortedCandidates(context.getEntitiesOwner(), context.getContentVersion(), candidates);
+        return candidates;
+    }
+
+    /**
+     * @param entitiesOwner the entities references of the owner.
+     * @param entity        the last entity of a page.
+     * @return the position of the entity in the order of this query, to read the next page.
+     */
+    QueryCursor cursor(final EntitiesOwner entitiesOwner, final Entity entity) {
+        return sort == null ? new QueryCursor(entity.getId()) : sort.cursor(entity, entitiesOwner.getSnapshot());
+    }
+
+    /**
+     * @return true if all the entities of the owner match this query.
+     */
+    boolean matchesAll() {
+        return predicate == null;
+    }
+
+    /**
+     * Check the remaining predicates in parallel, segment after segment, the matching entities of a segment are in the candidates order.
+     * The next segments are not checked once the page is full.
+     */
+    private static List<Entity> executeParallel(final QueryPredicate.QueryContext context, final List<Entity> candidates, final QueryPredicate remaining,
+                                                final int start, final int offset, final int limit) {
+        List<Entity> sources = candidates instanceof RandomAccess ? candidates : new ArrayList<>(candidates);
+        int segmentSize = ParallelFilter.getSegmentSize(context.getEntitiesOwner());
+        int skipped = 0;
+        List<Entity> entities = new ArrayList<>();
+        for (int index = start; index < sources.size(); ) {
+            int end = (int) Math.min((long) index + segmentSize, sources.size());
+            for (Entity entity : ParallelFilter.filter(sources, index, end, remaining, context)) {
+                if (skipped < offset) {
+                    skipped++;
+                    continue;
+                }
+                entities.add(entity);
+                if (limit >= 0 && entities.size() > limit) {
+                    return entities;
+                }
+            }
+            index = end;
+        }
+        return entities;
+    }
+
+    private List<Entity> executeSorted(final QueryPredicate.QueryContext context, final List<Entity> sources, final QueryPredicate remaining,
+                                       final QueryCursor cursor, final int offset, final int limit) throws ConfigurationException {
+        // The entry of the cursor is built from its sort values, the entity itself may have been removed or changed.
+        QuerySort.SortEntry after = cursor == null ? null : sort.entry(cursor);
+        // Keep the entities of the page, the skipped ones and one more to know if there is a next page.
+        int count = limit < 0 ? -1 : (int) Math.min((long) offset + limit + 1, Integer.MAX_VALUE);
+        QuerySort.TopEntities top = sort.top(count);
+        for (Entity entity : sources) {
+            if (remaining != null && !remaining.test(entity, context)) {
+                continue;
+            }
+            QuerySort.SortEntry entry = sort.entry(entity, context.getSnapshot());
+            if (after != null && sort.compare(entry, after) <= 0) {
+                continue;
+            }
+            top.add(entry);
+        }
+        List<Entity> entities = top.getEntities();
+        if (offset <= 0) {
+            return entities;
+        }
+        if (offset >= entities.size()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(entities.subList(offset, entities.size()));
+    }
+
+    private static final class SortedCandidates {
+        private final EntitiesOwner entitiesOwner;
+        private final long contentVersion;
+        private final QueryPredicate.Candidates candidates;
+
+        private SortedCandidates(final EntitiesOwner entitiesOwner, final long contentVersion, final QueryPredicate.Candidates candidates) {
+            this.entitiesOwner = entitiesOwner;
+            this.contentVersion = contentVersion;
+            this.candidates = candidates;
+        }
+    }
+
+    @Override
+    public String toString() {
+        String plan = predicate == null ? "all" : predicate.toString();
+        return sort == null ? plan : plan + " sort " + sort;
+    }
+}
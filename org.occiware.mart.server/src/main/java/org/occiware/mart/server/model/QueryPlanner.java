@@ -0,0 +1,493 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.model;
+
+import org.occiware.mart.server.exception.ConfigurationException;
+import org.occiware.mart.server.utils.CollectionFilter;
+import org.occiware.mart.server.utils.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Compile the collection filters to query plans and keep the compiled plans of each owner.
+ * <p>
+ * A collection filter gives a single attribute constraint, a category, a sub category, a path and an optional filter expression.
+ * The filter expression combines predicates with and / or (and first), parenthesis may be used, ex:
+ * <pre>
+ * category = compute and (occi.compute.state = active or occi.compute.cores &gt;= 4)
+ * </pre>
+ * Operators are = (equal), ~ (contains), &gt;, &lt;, &gt;= and &lt;= (numeric values).
+ * The names "category" (kind, mixin or action term or scheme + term) and "path" (entities under a location) accept only the = operator,
+ * other names are attributes names. Values with spaces, parenthesis or operators characters must be quoted with ".
+ * </p>
+ */
+final class QueryPlanner {
+
+    static final String CATEGORY = "category";
+    static final String PATH = "path";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryPlanner.class);
+
+    private static final int MAX_CACHED_PLANS = 512;
+    private static final String KEY_SEPARATOR = "\u0000";
+    private static final String CURSOR_PREFIX = "uuid:";
+    private static final String SORTED_CURSOR_PREFIX = "sort:";
+    private static final char CURSOR_SEPARATOR = '\u0000';
+    private static final char CURSOR_NULL = 'n';
+    private static final char CURSOR_NUMBER = 'd';
+    private static final char CURSOR_STRING = 's';
+
+    /**
+     * Compiled plans, key: owner + normalized query, least recently used plans are evicted first.
+     */
+    private static final Map<String, QueryPlan> plans = new LinkedHashMap<String, QueryPlan>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, QueryPlan> eldest) {
+            return size() > MAX_CACHED_PLANS;
+        }
+    };
+
+    /**
+     * Incremented on each invalidation, a plan compiled during an invalidation is not kept.
+     */
+    private static long generation = 0;
+
+    private QueryPlanner() {
+    }
+
+    /**
+     * Get the compiled plan of a collection filter, the plan is compiled on first use and kept for the next requests.
+     *
+     * @param filter the collection filter.
+     * @param owner  the owner of the entities.
+     * @return a query plan.
+     * @throws ConfigurationException if the filter expression is not valid.
+     */
+    static QueryPlan getPlan(final CollectionFilter filter, final String owner) throws ConfigurationException {
+        String key = getQueryKey(filter, owner);
+        long compileGeneration;
+        synchronized (plans) {
+            QueryPlan plan = plans.get(key);
+            if (plan != null) {
+                return plan;
+            }
+            compileGeneration = generation;
+        }
+        // Compiled outside the lock, category terms are resolved on the owner configuration.
+        QueryPlan plan = compile(filter, owner);
+        LOGGER.debug("Query plan for owner " + owner + " : " + plan);
+        synchronized (plans) {
+            if (compileGeneration == generation) {
+                plans.put(key, plan);
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Remove the compiled plans of an owner, to call when the categories of its configuration change.
+     *
+     * @param owner the owner.
+     */
+    static void invalidate(final String owner) {
+        String prefix = owner + KEY_SEPARATOR;
+        synchronized (plans) {
+            generation++;
+            plans.keySet().removeIf(key -> key.startsWith(prefix));
+        }
+    }
+
+    /**
+     * Build the continuation token of a collection page. The token of a sorted query holds the sort values of the last entity,
+     * so the next page doesnt depend on this entity (it may be removed or changed before the next page is read).
+     *
+     * @param cursor the position of the last entity of the page.
+     * @return an opaque token, url safe.
+     */
+    static String encodeCursor(final QueryCursor cursor) {
+        String value;
+        if (cursor.isSorted()) {
+            StringBuilder builder = new StringBuilder(SORTED_CURSOR_PREFIX);
+            appendEscaped(builder, cursor.getUuid());
+            for (Object sortValue : cursor.getValues()) {
+                builder.append(CURSOR_SEPARATOR);
+                if (sortValue == null) {
+                    builder.append(CURSOR_NULL);
+                } else if (sortValue instanceof Double) {
+                    builder.append(CURSOR_NUMBER).append(sortValue);
+                } else {
+                    builder.append(CURSOR_STRING);
+                    appendEscaped(builder, sortValue.toString());
+                }
+            }
+            value = builder.toString();
+        } else {
+            value = CURSOR_PREFIX + cursor.getUuid();
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read a continuation token given by encodeCursor.
+     *
+     * @param cursor the token, may be null.
+     * @return the position of the last entity of the previous page, null if no token is given.
+     * @throws ConfigurationException if the token is not valid.
+     */
+    static QueryCursor decodeCursor(final String cursor) throws ConfigurationException {
+        if (cursor == null || cursor.trim().isEmpty()) {
+            return null;
+        }
+        String value;
+        try {
+            value = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException ex) {
+            throw new ConfigurationException("Bad collection cursor : " + cursor);
+        }
+        if (value.startsWith(CURSOR_PREFIX)) {
+            return new QueryCursor(value.substring(CURSOR_PREFIX.length()));
+        }
+        if (!value.startsWith(SORTED_CURSOR_PREFIX)) {
+            throw new ConfigurationException("Bad collection cursor : " + cursor);
+        }
+        List<String> parts = splitEscaped(value.substring(SORTED_CURSOR_PREFIX.length()));
+        Object[] values = new Object[parts.size() - 1];
+        for (int i = 0; i < values.length; i++) {
+            String part = parts.get(i + 1);
+            char type = part.isEmpty() ? 0 : part.charAt(0);
+            if (type == CURSOR_NULL && part.length() == 1) {
+                values[i] = null;
+            } else if (type == CURSOR_STRING) {
+                values[i] = part.substring(1);
+            } else if (type == CURSOR_NUMBER) {
+                try {
+                    values[i] = Double.valueOf(part.substring(1));
+                } catch (NumberFormatException ex) {
+                    throw new ConfigurationException("Bad collection cursor : " + cursor);
+                }
+            } else {
+                throw new ConfigurationException("Bad collection cursor : " + cursor);
+            }
+        }
+        return new QueryCursor(parts.get(0), values);
+    }
+
+    private static void appendEscaped(final StringBuilder builder, final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\') {
+                builder.append("\\\\");
+            } else if (c == CURSOR_SEPARATOR) {
+                builder.append("\\0");
+            } else {
+                builder.append(c);
+            }
+        }
+    }
+
+    /**
+     * Split the parts of a sorted cursor on the separator, the escaped characters of each part are restored.
+     */
+    private static List<String> splitEscaped(final String value) {
+        List<String> parts = new ArrayList<>();
+        StringBuilder part = new StringBuilder();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == CURSOR_SEPARATOR) {
+                parts.add(part.toString());
+                part.setLength(0);
+            } else if (c == '\\' && i + 1 < value.length()) {
+                char escaped = value.charAt(++i);
+                part.append(escaped == '0' ? CURSOR_SEPARATOR : escaped);
+            } else {
+                part.append(c);
+            }
+        }
+        parts.add(part.toString());
+        return parts;
+    }
+
+    /**
+     * Compile a collection filter, all its constraints must be respected.
+     *
+     * @param filter the collection filter.
+     * @param owner  the owner, used to resolve the categories terms.
+     * @return a new query plan.
+     * @throws ConfigurationException if the filter expression or the sort order is not valid.
+     */
+    static QueryPlan compile(final CollectionFilter filter, final String owner) throws ConfigurationException {
+        List<QueryPredicate> predicates = new ArrayList<>();
+        String attributeFilter = filter.getAttributeFilter();
+        if (attributeFilter != null && !attributeFilter.isEmpty()) {
+            predicates.add(new QueryPredicate.AttributePredicate(attributeFilter, filter.getOperator(), filter.getValue(), filter.getValueMax()));
+        }
+        if (filter.getCategoryFilter() != null && !filter.getCategoryFilter().isEmpty()) {
+            predicates.add(new QueryPredicate.CategoryPredicate(EntityManager.resolveCategoryFilter(filter.getCategoryFilter(), owner)));
+        }
+        if (filter.getSubCategoryFilter() != null && !filter.getSubCategoryFilter().isEmpty()) {
+            predicates.add(new QueryPredicate.CategoryPredicate(EntityManager.resolveCategoryFilter(filter.getSubCategoryFilter(), owner)));
+        }
+        // All the referenced entities have a location under the root path.
+        if (filter.getFilterOnEntitiesPath() != null && !filter.getFilterOnEntitiesPath().isEmpty()
+                && !filter.getFilterOnEntitiesPath().equals(Constants.PATH_SEPARATOR)) {
+            predicates.add(new QueryPredicate.PathPredicate(filter.getFilterOnEntitiesPath()));
+        }
+        if (filter.getExpression() != null && !filter.getExpression().trim().isEmpty()) {
+            predicates.add(parse(filter.getExpression(), owner));
+        }
+        return new QueryPlan(QueryPredicate.and(predicates), QuerySort.parse(filter.getSort()));
+    }
+
+    /**
+     * Parse a filter expression.
+     *
+     * @param expression the filter expression.
+     * @param owner      the owner, used to resolve the categories terms.
+     * @return the predicate tree.
+     * @throws ConfigurationException if the expression is not valid.
+     */
+    static QueryPredicate parse(final String expression, final String owner) throws ConfigurationException {
+        Parser parser = new Parser(tokenize(expression), owner);
+        QueryPredicate predicate = parser.parseOr();
+        if (parser.hasNext()) {
+            throw new ConfigurationException("Bad filter expression : unexpected " + parser.peek().text + " in " + expression);
+        }
+        return predicate;
+    }
+
+    /**
+     * Build the cache key of a filter, whitespaces outside the quoted values of the expression are collapsed.
+     *
+     * @param filter the collection filter.
+     * @param owner  the owner of the collection.
+     * @return the key of the query, same key for the filters giving the same entities, the pagination is not part of the key.
+     */
+    static String getQueryKey(final CollectionFilter filter, final String owner) {
+        return owner + KEY_SEPARATOR + normalize(filter);
+    }
+
+    private static String normalize(final CollectionFilter filter) {
+        StringBuilder key = new StringBuilder();
+        key.append(filter.getOperator()).append(KEY_SEPARATOR)
+                .append(filter.getAttributeFilter()).append(KEY_SEPARATOR)
+                .append(filter.getValue()).append(KEY_SEPARATOR)
+                .append(filter.getValueMax()).append(KEY_SEPARATOR)
+                .append(filter.getCategoryFilter()).append(KEY_SEPARATOR)
+                .append(filter.getSubCategoryFilter()).append(KEY_SEPARATOR)
+                .append(filter.getFilterOnEntitiesPath()).append(KEY_SEPARATOR)
+                .append(filter.getSort()).append(KEY_SEPARATOR);
+        String expression = filter.getExpression();
+        if (expression != null) {
+            boolean quoted = false;
+            boolean space = false;
+            for (int i = 0; i < expression.length(); i++) {
+                char c = expression.charAt(i);
+                if (!quoted && Character.isWhitespace(c)) {
+                    space = true;
+                    continue;
+                }
+                if (space) {
+                    key.append(' ');
+                    space = false;
+                }
+                if (c == '"') {
+                    quoted = !quoted;
+                } else if (c == '\\' && quoted && i + 1 < expression.length()) {
+                    key.append(c);
+                    c = expression.charAt(++i);
+                }
+                key.append(c);
+            }
+        }
+        return key.toString();
+    }
+
+    private static List<Token> tokenize(final String expression) throws ConfigurationException {
+        List<Token> tokens = new ArrayList<>();
+        int length = expression.length();
+        int i = 0;
+        while (i < length) {
+            char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')') {
+                tokens.add(new Token(c == '(' ? TokenType.OPEN : TokenType.CLOSE, String.valueOf(c)));
+                i++;
+            } else if (c == '=' || c == '~') {
+                tokens.add(new Token(TokenType.OPERATOR, String.valueOf(c)));
+                i++;
+            } else if (c == '>' || c == '<') {
+                if (i + 1 < length && expression.charAt(i + 1) == '=') {
+                    tokens.add(new Token(TokenType.OPERATOR, expression.substring(i, i + 2)));
+                    i += 2;
+                } else {
+                    tokens.add(new Token(TokenType.OPERATOR, String.valueOf(c)));
+                    i++;
+                }
+            } else if (c == '"') {
+                StringBuilder value = new StringBuilder();
+                i++;
+                while (i < length && expression.charAt(i) != '"') {
+                    if (expression.charAt(i) == '\\' && i + 1 < length) {
+                        i++;
+                    }
+                    value.append(expression.charAt(i));
+                    i++;
+                }
+                if (i >= length) {
+                    throw new ConfigurationException("Bad filter expression : unterminated quoted value in " + expression);
+                }
+                tokens.add(new Token(TokenType.STRING, value.toString()));
+                i++;
+            } else {
+                int start = i;
+                while (i < length && !isSeparator(expression.charAt(i))) {
+                    i++;
+                }
+                tokens.add(new Token(TokenType.WORD, expression.substring(start, i)));
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isSeparator(final char c) {
+        return Character.isWhitespace(c) || c == '(' || c == ')' || c == '"'
+                || c == '=' || c == '~' || c == '<' || c == '>';
+    }
+
+    private enum TokenType {
+        WORD, STRING, OPERATOR, OPEN, CLOSE
+    }
+
+    private static final class Token {
+        private final TokenType type;
+        private final String text;
+
+        private Token(final TokenType type, final String text) {
+            this.type = type;
+            this.text = text;
+        }
+
+        private boolean isKeyword(final String keyword) {
+            return type == TokenType.WORD && keyword.equalsIgnoreCase(text);
+        }
+    }
+
+    /**
+     * Recursive descent parser, or has the lowest priority.
+     */
+    private static final class Parser {
+        private final List<Token> tokens;
+        private final String owner;
+        private int position = 0;
+
+        private Parser(final List<Token> tokens, final String owner) {
+            this.tokens = tokens;
+            this.owner = owner;
+        }
+
+        private boolean hasNext() {
+            return position < tokens.size();
+        }
+
+        private Token peek() {
+            return tokens.get(position);
+        }
+
+        private Token next(final String expected) throws ConfigurationException {
+            if (!hasNext()) {
+                throw new ConfigurationException("Bad filter expression : " + expected + " expected at end of expression");
+            }
+            return tokens.get(position++);
+        }
+
+        private QueryPredicate parseOr() throws ConfigurationException {
+            List<QueryPredicate> predicates = new ArrayList<>();
+            predicates.add(parseAnd());
+            while (hasNext() && peek().isKeyword("or")) {
+                position++;
+                predicates.add(parseAnd());
+            }
+            return predicates.size() == 1 ? predicates.get(0) : new QueryPredicate.OrPredicate(predicates);
+        }
+
+        private QueryPredicate parseAnd() throws ConfigurationException {
+            List<QueryPredicate> predicates = new ArrayList<>();
+            predicates.add(parsePrimary());
+            while (hasNext() && peek().isKeyword("and")) {
+                position++;
+                predicates.add(parsePrimary());
+            }
+            return QueryPredicate.and(predicates);
+        }
+
+        private QueryPredicate parsePrimary() throws ConfigurationException {
+            Token token = next("predicate");
+            if (token.type == TokenType.OPEN) {
+                QueryPredicate predicate = parseOr();
+                if (next(")").type != TokenType.CLOSE) {
+                    throw new ConfigurationException("Bad filter expression : ) expected before " + tokens.get(position - 1).text);
+                }
+                return predicate;
+            }
+            if (token.type != TokenType.WORD || token.isKeyword("and") || token.isKeyword("or")) {
+                throw new ConfigurationException("Bad filter expression : attribute name expected, found " + token.text);
+            }
+            String name = token.text;
+            Token operator = next("operator");
+            if (operator.type != TokenType.OPERATOR) {
+                throw new ConfigurationException("Bad filter expression : operator expected after " + name + ", found " + operator.text);
+            }
+            Token value = next("value");
+            if (value.type != TokenType.WORD && value.type != TokenType.STRING) {
+                throw new ConfigurationException("Bad filter expression : value expected after " + name + " " + operator.text + ", found " + value.text);
+            }
+            return buildPredicate(name, operator.text, value.text);
+        }
+
+        private QueryPredicate buildPredicate(final String name, final String operator, final String value) throws ConfigurationException {
+            if (CATEGORY.equalsIgnoreCase(name) || PATH.equalsIgnoreCase(name)) {
+                if (!operator.equals("=")) {
+                    throw new ConfigurationException("Bad filter expression : only = operator is supported for " + name);
+                }
+                if (CATEGORY.equalsIgnoreCase(name)) {
+                    return new QueryPredicate.CategoryPredicate(EntityManager.resolveCategoryFilter(value, owner));
+                }
+                return new QueryPredicate.PathPredicate(value);
+            }
+            switch (operator) {
+                case "~":
+                    return new QueryPredicate.AttributePredicate(name, CollectionFilter.OPERATOR_LIKE, value, null);
+                case ">":
+                    return new QueryPredicate.AttributePredicate(name, CollectionFilter.OPERATOR_GREATER_THAN, value, null);
+                case "<":
+                    return new QueryPredicate.AttributePredicate(name, CollectionFilter.OPERATOR_LOWER_THAN, value, null);
+                case ">=":
+                    return new QueryPredicate.AttributePredicate(name, CollectionFilter.OPERATOR_BETWEEN, value, null);
+                case "<=":
+                    return new QueryPredicate.AttributePredicate(name, CollectionFilter.OPERATOR_LOWER_OR_EQUAL, value, null);
+                default:
+                    return new QueryPredicate.AttributePredicate(name, CollectionFilter.OPERATOR_EQUAL, value, null);
+            }
+        }
+    }
+}
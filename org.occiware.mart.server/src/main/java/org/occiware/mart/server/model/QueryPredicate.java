@@ -0,0 +1,514 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.model;
+
+import org.eclipse.cmf.occi.core.Entity;
+import org.occiware.mart.server.model.container.EntitiesOwner;
+import org.occiware.mart.server.model.container.EntitiesSnapshot;
+import org.occiware.mart.server.utils.CollectionFilter;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Node of a compiled collection query : a predicate on an attribute, a category or a path, or a conjunction / disjunction of predicates.
+ * Predicates are immutable and shared by all the requests using the same query plan.
+ */
+abstract class QueryPredicate {
+
+    /**
+     * Estimated size of a predicate which cannot be resolved with an index.
+     */
+    static final int NOT_INDEXED = -1;
+
+    /**
+     * Check if an entity matches this predicate.
+     *
+     * @param entity  the entity to check.
+     * @param context the query execution context.
+     * @return true if the entity matches.
+     */
+    abstract boolean test(final Entity entity, final QueryContext context);
+
+    /**
+     * Find the candidate entities of this predicate with the owner indexes.
+     *
+     * @param context the query execution context.
+     * @return the candidates, null if this predicate cannot be resolved with an index.
+     */
+    abstract Candidates findCandidates(final QueryContext context);
+
+    /**
+     * Estimate the number of candidates of this predicate with the sizes of the owner indexes, the candidates are not built.
+     *
+     * @param context the query execution context.
+     * @return the estimated number of candidates, NOT_INDEXED if findCandidates would return null.
+     */
+    abstract int estimateSize(final QueryContext context);
+
+    /**
+     * @return the relative cost to evaluate this predicate on one entity, used to order the predicates of a conjunction.
+     */
+    abstract int getCost();
+
+    /**
+     * Entities found with an index and the predicate that remains to check on them, null if the entities match already.
+     */
+    static final class Candidates {
+        private final List<Entity> entities;
+        private final QueryPredicate remaining;
+        /**
+         * True if the entities are ordered by uuid (taken from a snapshot list or merged in the uuid order).
+         */
+        private final boolean sorted;
+
+        Candidates(final List<Entity> entities, final QueryPredicate remaining) {
+            this(entities, remaining, false);
+        }
+
+        Candidates(final List<Entity> entities, final QueryPredicate remaining, final boolean sorted) {
+            this.entities = entities;
+            this.remaining = remaining;
+            this.sorted = sorted;
+        }
+
+        boolean isSorted() {
+            return sorted;
+        }
+
+        List<Entity> getEntities() {
+            return entities;
+        }
+
+        QueryPredicate getRemaining() {
+            return remaining;
+        }
+    }
+
+    /**
+     * State of one query execution : the owner references and the entities under the filtered paths.
+     * A context may be shared by the tasks of a parallel filter.
+     */
+    static final class QueryContext {
+        private final EntitiesOwner entitiesOwner;
+        private final long contentVersion;
+        private final EntitiesSnapshot snapshot;
+        private final Map<String, Set<String>> entitiesOnPaths = new ConcurrentHashMap<>();
+
+        QueryContext(final EntitiesOwner entitiesOwner) {
+            this.entitiesOwner = entitiesOwner;
+            // Read before the references, the candidates found after are at least at this version.
+            this.contentVersion = entitiesOwner.getContentVersion();
+            this.snapshot = entitiesOwner.getSnapshot();
+        }
+
+        EntitiesOwner getEntitiesOwner() {
+            return entitiesOwner;
+        }
+
+        EntitiesSnapshot getSnapshot() {
+            return snapshot;
+        }
+
+        long getContentVersion() {
+            return contentVersion;
+        }
+
+        /**
+         * @param path a path filter.
+         * @return the entities on and under this path in the snapshot, ordered by location.
+         */
+        List<Entity> getEntitiesUnderPath(final String path) {
+            return snapshot.getEntitiesUnderLocation(entitiesOwner.manageSlashes(path));
+        }
+
+        /**
+         * @param path a path filter.
+         * @return the number of entities on and under this path in the snapshot.
+         */
+        int countEntitiesUnderPath(final String path) {
+            return snapshot.countEntitiesUnderLocation(entitiesOwner.manageSlashes(path));
+        }
+
+        /**
+         * @param path a path filter.
+         * @return the uuids of the entities under this path, computed once per query.
+         */
+        Set<String> getEntitiesOnPath(final String path) {
+            return entitiesOnPaths.computeIfAbsent(path, key -> {
+                Set<String> uuids = new HashSet<>();
+                for (Entity entity : getEntitiesUnderPath(key)) {
+                    uuids.add(entity.getId());
+                }
+                return uuids;
+            });
+        }
+    }
+
+    /**
+     * Predicate on an attribute value, the comparison is the same as a single attribute collection filter.
+     */
+    static final class AttributePredicate extends QueryPredicate {
+        private final CollectionFilter filter;
+
+        AttributePredicate(final String attributeName, final int operator, final String value, final String valueMax) {
+            filter = new CollectionFilter();
+            filter.setAttributeFilter(attributeName);
+            filter.setOperator(operator);
+            filter.setValue(value);
+            filter.setValueMax(valueMax);
+        }
+
+        @Override
+        boolean test(final Entity entity, final QueryContext context) {
+            return EntityManager.checkEntityAttributeFilter(filter, entity);
+        }
+
+        @Override
+        Candidates findCandidates(final QueryContext context) {
+            Optional<List<Entity>> optEntities = EntityManager.findEntitiesFromAttributeIndex(filter, context.getEntitiesOwner());
+            if (!optEntities.isPresent()) {
+                return null;
+            }
+            // The indexes hold the values checked by the filter (the typed value for the ranges), the entities match already.
+            return new Candidates(optEntities.get(), null);
+        }
+
+        @Override
+        int estimateSize(final QueryContext context) {
+            return EntityManager.countEntitiesFromAttributeIndex(filter, context.getEntitiesOwner()).orElse(NOT_INDEXED);
+        }
+
+        @Override
+        int getCost() {
+            return 2;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(filter.getAttributeFilter());
+            switch (filter.getOperator()) {
+                case CollectionFilter.OPERATOR_LIKE:
+                    builder.append(" ~ ");
+                    break;
+                case CollectionFilter.OPERATOR_GREATER_THAN:
+                    builder.append(" > ");
+                    break;
+                case CollectionFilter.OPERATOR_LOWER_THAN:
+                    builder.append(" < ");
+                    break;
+                case CollectionFilter.OPERATOR_LOWER_OR_EQUAL:
+                    builder.append(" <= ");
+                    break;
+                case CollectionFilter.OPERATOR_BETWEEN:
+                    builder.append(" between ");
+                    break;
+                default:
+                    builder.append(" = ");
+                    break;
+            }
+            builder.append('"').append(filter.getValue()).append('"');
+            if (filter.getOperator() == CollectionFilter.OPERATOR_BETWEEN && filter.getValueMax() != null) {
+                builder.append(" and \"").append(filter.getValueMax()).append('"');
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Predicate on a kind, a mixin or an action of the kind, the category is given with its scheme + term.
+     */
+    static final class CategoryPredicate extends QueryPredicate {
+        private final String categoryId;
+
+        CategoryPredicate(final String categoryId) {
+            this.categoryId = categoryId;
+        }
+
+        @Override
+        boolean test(final Entity entity, final QueryContext context) {
+            return EntityManager.checkEntityCategoryFilter(categoryId, entity);
+        }
+
+        @Override
+        Candidates findCandidates(final QueryContext context) {
+            List<Entity> entitiesByKind = context.getSnapshot().getEntitiesByKind(categoryId);
+            List<Entity> entitiesByMixin = context.getSnapshot().getEntitiesByMixin(categoryId);
+            if (entitiesByKind.isEmpty() && entitiesByMixin.isEmpty()) {
+                // May be an action category, not indexed.
+                return null;
+            }
+            if (entitiesByMixin.isEmpty()) {
+                return new Candidates(entitiesByKind, null, true);
+            }
+            if (entitiesByKind.isEmpty()) {
+                return new Candidates(entitiesByMixin, null, true);
+            }
+            return new Candidates(mergeByUuid(entitiesByKind, entitiesByMixin), null, true);
+        }
+
+        @Override
+        int estimateSize(final QueryContext context) {
+            int size = context.getSnapshot().getEntitiesByKind(categoryId).size() + context.getSnapshot().getEntitiesByMixin(categoryId).size();
+            return size == 0 ? NOT_INDEXED : size;
+        }
+
+        /**
+         * @return the entities of two lists ordered by uuid, in the uuid order.
+         */
+        private static List<Entity> mergeByUuid(final List<Entity> first, final List<Entity> second) {
+            List<Entity> entities = new ArrayList<>(first.size() + second.size());
+            Iterator<Entity> firstIt = first.iterator();
+            Iterator<Entity> secondIt = second.iterator();
+            Entity firstEntity = firstIt.hasNext() ? firstIt.next() : null;
+            Entity secondEntity = secondIt.hasNext() ? secondIt.next() : null;
+            while (firstEntity != null || secondEntity != null) {
+                if (secondEntity == null || firstEntity != null && EntitiesSnapshot.UUID_ORDER.compare(firstEntity, secondEntity) <= 0) {
+                    entities.add(firstEntity);
+                    firstEntity = firstIt.hasNext() ? firstIt.next() : null;
+                } else {
+                    entities.add(secondEntity);
+                    secondEntity = secondIt.hasNext() ? secondIt.next() : null;
+                }
+            }
+            return entities;
+        }
+
+        @Override
+        int getCost() {
+            return 1;
+        }
+
+        @Override
+        public String toString() {
+            return QueryPlanner.CATEGORY + " = \"" + categoryId + '"';
+        }
+    }
+
+    /**
+     * Predicate on the location of the entities, an entity matches if it is located on or under the path.
+     */
+    static final class PathPredicate extends QueryPredicate {
+        private final String path;
+
+        PathPredicate(final String path) {
+            this.path = path;
+        }
+
+        @Override
+        boolean test(final Entity entity, final QueryContext context) {
+            return context.getEntitiesOnPath(path).contains(entity.getId());
+        }
+
+        @Override
+        Candidates findCandidates(final QueryContext context) {
+            return new Candidates(context.getEntitiesUnderPath(path), null);
+        }
+
+        @Override
+        int estimateSize(final QueryContext context) {
+            return context.countEntitiesUnderPath(path);
+        }
+
+        @Override
+        int getCost() {
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return QueryPlanner.PATH + " = \"" + path + '"';
+        }
+    }
+
+    /**
+     * Conjunction, the predicates are checked from the cheapest to the most expensive.
+     * The candidates are taken from the most selective index of the predicates.
+     */
+    static final class AndPredicate extends QueryPredicate {
+        private final List<QueryPredicate> predicates;
+
+        AndPredicate(final List<QueryPredicate> predicates) {
+            List<QueryPredicate> ordered = new ArrayList<>(predicates);
+            ordered.sort(Comparator.comparingInt(QueryPredicate::getCost));
+            this.predicates = Collections.unmodifiableList(ordered);
+        }
+
+        @Override
+        boolean test(final Entity entity, final QueryContext context) {
+            for (QueryPredicate predicate : predicates) {
+                if (!predicate.test(entity, context)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        Candidates findCandidates(final QueryContext context) {
+            // Only the candidates of the most selective predicate are built.
+            int selectedIndex = -1;
+            int selectedSize = 0;
+            for (int i = 0; i < predicates.size() && (selectedIndex < 0 || selectedSize > 0); i++) {
+                int size = predicates.get(i).estimateSize(context);
+                if (size != NOT_INDEXED && (selectedIndex < 0 || size < selectedSize)) {
+                    selectedIndex = i;
+                    selectedSize = size;
+                }
+            }
+            if (selectedIndex < 0) {
+                return null;
+            }
+            Candidates selected = predicates.get(selectedIndex).findCandidates(context);
+            if (selected == null) {
+                return null;
+            }
+            if (selected.getEntities().isEmpty()) {
+                // Nothing can match.
+                return new Candidates(selected.getEntities(), null, true);
+            }
+            List<QueryPredicate> remaining = new ArrayList<>(predicates);
+            remaining.remove(selectedIndex);
+            if (selected.getRemaining() != null) {
+                remaining.add(selected.getRemaining());
+            }
+            return new Candidates(selected.getEntities(), and(remaining), selected.isSorted());
+        }
+
+        @Override
+        int estimateSize(final QueryContext context) {
+            int estimated = NOT_INDEXED;
+            for (QueryPredicate predicate : predicates) {
+                int size = predicate.estimateSize(context);
+                if (size != NOT_INDEXED && (estimated == NOT_INDEXED || size < estimated)) {
+                    estimated = size;
+                }
+            }
+            return estimated;
+        }
+
+        @Override
+        int getCost() {
+            int cost = 0;
+            for (QueryPredicate predicate : predicates) {
+                cost += predicate.getCost();
+            }
+            return cost;
+        }
+
+        @Override
+        public String toString() {
+            return join(predicates, " and ");
+        }
+    }
+
+    /**
+     * Disjunction, the candidates are the union of the candidates of each predicate if all the predicates are indexed.
+     */
+    static final class OrPredicate extends QueryPredicate {
+        private final List<QueryPredicate> predicates;
+
+        OrPredicate(final List<QueryPredicate> predicates) {
+            List<QueryPredicate> ordered = new ArrayList<>(predicates);
+            ordered.sort(Comparator.comparingInt(QueryPredicate::getCost));
+            this.predicates = Collections.unmodifiableList(ordered);
+        }
+
+        @Override
+        boolean test(final Entity entity, final QueryContext context) {
+            for (QueryPredicate predicate : predicates) {
+                if (predicate.test(entity, context)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        Candidates findCandidates(final QueryContext context) {
+            Map<String, Entity> entities = new LinkedHashMap<>();
+            boolean exact = true;
+            for (QueryPredicate predicate : predicates) {
+                Candidates candidates = predicate.findCandidates(context);
+                if (candidates == null) {
+                    return null;
+                }
+                for (Entity entity : candidates.getEntities()) {
+                    entities.put(entity.getId(), entity);
+                }
+                exact = exact && candidates.getRemaining() == null;
+            }
+            return new Candidates(new ArrayList<>(entities.values()), exact ? null : this);
+        }
+
+        @Override
+        int estimateSize(final QueryContext context) {
+            int estimated = 0;
+            for (QueryPredicate predicate : predicates) {
+                int size = predicate.estimateSize(context);
+                if (size == NOT_INDEXED) {
+                    return NOT_INDEXED;
+                }
+                estimated += size;
+            }
+            return estimated;
+        }
+
+        @Override
+        int getCost() {
+            int cost = 0;
+            for (QueryPredicate predicate : predicates) {
+                cost += predicate.getCost();
+            }
+            return cost;
+        }
+
+        @Override
+        public String toString() {
+            return join(predicates, " or ");
+        }
+    }
+
+    /**
+     * Build a conjunction of predicates.
+     *
+     * @param predicates the predicates.
+     * @return null if there is no predicate, the predicate itself if only one.
+     */
+    static QueryPredicate and(final List<QueryPredicate> predicates) {
+        if (predicates.isEmpty()) {
+            return null;
+        }
+        if (predicates.size() == 1) {
+            return predicates.get(0);
+        }
+        return new AndPredicate(predicates);
+    }
+
+    private static String join(final List<QueryPredicate> predicates, final String separator) {
+        StringBuilder builder = new StringBuilder("(");
+        for (int i = 0; i < predicates.size(); i++) {
+            if (i > 0) {
+                builder.append(separator);
+            }
+            builder.append(predicates.get(i));
+        }
+        return builder.append(')').toString();
+    }
+}
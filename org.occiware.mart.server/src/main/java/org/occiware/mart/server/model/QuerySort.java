@@ -0,0 +1,321 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.model;
+
+import org.eclipse.cmf.occi.core.AttributeState;
+import org.eclipse.cmf.occi.core.Entity;
+import org.occiware.mart.server.exception.ConfigurationException;
+import org.occiware.mart.server.model.container.EntitiesSnapshot;
+import org.occiware.mart.server.utils.Constants;
+
+import java.util.*;
+
+/**
+ * Sort order of a collection query, given as a list of keys with an optional direction, ex: occi.compute.memory:desc,title.
+ * Keys are the core attributes title, id and location, or attributes names, the values are compared with their EMF type
+ * (numbers as numbers, other values as strings). Entities without value are last, entities with the same values are ordered by uuid.
+ * With a page size, only the best entities of the page are kept in a bounded heap while the candidates are read.
+ */
+final class QuerySort {
+
+    private static final String KEY_TITLE = "title";
+    private static final String KEY_ID = "id";
+    private static final String KEY_LOCATION = "location";
+    private static final String DIRECTION_ASC = "asc";
+    private static final String DIRECTION_DESC = "desc";
+
+    private final List<String> keys;
+    private final boolean[] descending;
+
+    private QuerySort(final List<String> keys, final boolean[] descending) {
+        this.keys = keys;
+        this.descending = descending;
+    }
+
+    /**
+     * Parse a sort parameter.
+     *
+     * @param sort the sort keys separated by comma, each key may end with :asc or :desc, null or empty if no sort.
+     * @return the sort order, null if no sort.
+     * @throws ConfigurationException if a direction is unknown.
+     */
+    static QuerySort parse(final String sort) throws ConfigurationException {
+        if (sort == null || sort.trim().isEmpty()) {
+            return null;
+        }
+        List<String> keys = new ArrayList<>();
+        List<Boolean> directions = new ArrayList<>();
+        for (String item : sort.split(",")) {
+            String key = item.trim();
+            if (key.isEmpty()) {
+                continue;
+            }
+            boolean desc = false;
+            int index = key.lastIndexOf(':');
+            if (index > 0) {
+                String direction = key.substring(index + 1).trim().toLowerCase();
+                if (direction.equals(DIRECTION_DESC)) {
+                    desc = true;
+                } else if (!direction.equals(DIRECTION_ASC)) {
+                    throw new ConfigurationException("Bad sort parameter : unknown direction " + direction + " in " + sort);
+                }
+                key = key.substring(0, index).trim();
+            }
+            keys.add(normalizeKey(key));
+            directions.add(desc);
+        }
+        if (keys.isEmpty()) {
+            return null;
+        }
+        boolean[] descending = new boolean[directions.size()];
+        for (int i = 0; i < descending.length; i++) {
+            descending[i] = directions.get(i);
+        }
+        return new QuerySort(Collections.unmodifiableList(keys), descending);
+    }
+
+    private static String normalizeKey(final String key) {
+        if (key.equalsIgnoreCase(KEY_TITLE) || key.equals(Constants.OCCI_CORE_TITLE)) {
+            return KEY_TITLE;
+        }
+        if (key.equalsIgnoreCase(KEY_ID) || key.equals(Constants.OCCI_CORE_ID)) {
+            return KEY_ID;
+        }
+        if (key.equalsIgnoreCase(KEY_LOCATION)) {
+            return KEY_LOCATION;
+        }
+        return key;
+    }
+
+    /**
+     * Build the sort entry of an entity, the sort values are read once per entity.
+     *
+     * @param entity   the entity.
+     * @param snapshot the snapshot of the query, for the locations.
+     * @return a sort entry.
+     */
+    SortEntry entry(final Entity entity, final EntitiesSnapshot snapshot) {
+        Object[] values = new Object[keys.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = getValue(entity, keys.get(i), snapshot);
+        }
+        return new SortEntry(entity, entity.getId(), values);
+    }
+
+    /**
+     * Build the sort entry of the last entity of a previous page, from a cursor.
+     *
+     * @param cursor a sorted cursor.
+     * @return a sort entry without entity.
+     * @throws ConfigurationException if the cursor was not built for this sort order.
+     */
+    SortEntry entry(final QueryCursor cursor) throws ConfigurationException {
+        if (!cursor.isSorted() || cursor.getValues().length != keys.size()) {
+            throw new ConfigurationException("The collection cursor doesnt match the sort order : " + this + ", the collection must be read from the first page.");
+        }
+        for (Object value : cursor.getValues()) {
+            if (value != null && !(value instanceof Double) && !(value instanceof String)) {
+                throw new ConfigurationException("The collection cursor doesnt match the sort order : " + this);
+            }
+        }
+        return new SortEntry(null, cursor.getUuid(), cursor.getValues().clone());
+    }
+
+    /**
+     * @param entity   an entity.
+     * @param snapshot the snapshot of the query, for the locations.
+     * @return the cursor of the entity in this sort order.
+     */
+    QueryCursor cursor(final Entity entity, final EntitiesSnapshot snapshot) {
+        return new QueryCursor(entity.getId(), entry(entity, snapshot).values);
+    }
+
+    /**
+     * @param limit the number of entities to keep, the best ones.
+     * @return a collector of the best entities.
+     */
+    TopEntities top(final int limit) {
+        return new TopEntities(this, limit);
+    }
+
+    private static Object getValue(final Entity entity, final String key, final EntitiesSnapshot snapshot) {
+        switch (key) {
+            case KEY_TITLE:
+                return entity.getTitle();
+            case KEY_ID:
+                return entity.getId();
+            case KEY_LOCATION:
+                return snapshot.getEntityLocation(entity.getId());
+            default:
+                break;
+        }
+        if (EntityManager.getEAttributeType(entity, key).isPresent()) {
+            // Typed attribute.
+            Optional<Number> optNumber = EntityManager.getAttrValueNumber(entity, key);
+            if (optNumber.isPresent()) {
+                return optNumber.get().doubleValue();
+            }
+            Optional<String> optValue = EntityManager.getAttrValueStr(entity, key);
+            if (optValue.isPresent()) {
+                return optValue.get();
+            }
+        }
+        // Attribute of a mixin or value not typed, use the attribute state value.
+        for (AttributeState attributeState : entity.getAttributes()) {
+            if (key.equalsIgnoreCase(attributeState.getName())) {
+                return parseStateValue(attributeState.getValue());
+            }
+        }
+        return null;
+    }
+
+    private static Object parseStateValue(final String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Double.valueOf(value.trim());
+        } catch (NumberFormatException ex) {
+            return value;
+        }
+    }
+
+    /**
+     * Compare two entries in the sort order, the values are compared first then the uuids.
+     */
+    int compare(final SortEntry first, final SortEntry second) {
+        for (int i = 0; i < descending.length; i++) {
+            Object value = first.values[i];
+            Object other = second.values[i];
+            if (value == null || other == null) {
+                if (value != other) {
+                    // No value is always last.
+                    return value == null ? 1 : -1;
+                }
+                continue;
+            }
+            int result = compareValues(value, other);
+            if (result != 0) {
+                return descending[i] ? -result : result;
+            }
+        }
+        return first.uuid.compareTo(second.uuid);
+    }
+
+    private static int compareValues(final Object value, final Object other) {
+        if (value instanceof Double && other instanceof Double) {
+            return Double.compare((Double) value, (Double) other);
+        }
+        if (value instanceof Double) {
+            // Numbers before strings.
+            return -1;
+        }
+        if (other instanceof Double) {
+            return 1;
+        }
+        return value.toString().compareTo(other.toString());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < descending.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(keys.get(i)).append(':').append(descending[i] ? DIRECTION_DESC : DIRECTION_ASC);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * An entity with its sort values.
+     */
+    static final class SortEntry {
+        /**
+         * The entity, null for the entry of a cursor.
+         */
+        private final Entity entity;
+        private final String uuid;
+        private final Object[] values;
+
+        private SortEntry(final Entity entity, final String uuid, final Object[] values) {
+            this.entity = entity;
+            this.uuid = uuid;
+            this.values = values;
+        }
+
+        Entity getEntity() {
+            return entity;
+        }
+    }
+
+    /**
+     * Keep the first entities in the sort order, in a heap bounded to the limit (O(n log k) for n entities).
+     * Without limit all the entities are kept and sorted at the end.
+     */
+    static final class TopEntities {
+        private final QuerySort sort;
+        private final int limit;
+        private final PriorityQueue<SortEntry> heap;
+        private final List<SortEntry> all;
+
+        private TopEntities(final QuerySort sort, final int limit) {
+            this.sort = sort;
+            this.limit = limit;
+            if (limit >= 0) {
+                // The head of the heap is the last entry kept, to be replaced by a better one.
+                this.heap = new PriorityQueue<>(Math.max(1, Math.min(limit + 1, 1024)), (first, second) -> sort.compare(second, first));
+                this.all = null;
+            } else {
+                this.heap = null;
+                this.all = new ArrayList<>();
+            }
+        }
+
+        void add(final SortEntry entry) {
+            if (all != null) {
+                all.add(entry);
+                return;
+            }
+            if (limit == 0) {
+                return;
+            }
+            if (heap.size() < limit) {
+                heap.add(entry);
+            } else if (sort.compare(entry, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+
+        /**
+         * @return the entities kept in the sort order.
+         */
+        List<Entity> getEntities() {
+            List<SortEntry> entries = all != null ? all : new ArrayList<>(heap);
+            entries.sort(sort::compare);
+            List<Entity> entities = new ArrayList<>(entries.size());
+            for (SortEntry entry : entries) {
+                entities.add(entry.getEntity());
+            }
+            return entities;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.model.container;
+
+import org.eclipse.cmf.occi.core.*;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+
+import java.util.Collection;
+
+/**
+ * Adapter set on the configuration of an owner, it keeps the EntitiesOwner maps in sync with the model.
+ * Being a content adapter, it follows all the resources, links and mixin bases contained in the configuration.
+ */
+class ConfigurationAdapter extends EContentAdapter {
+
+    private static final String FEATURE_RESOURCES = "resources";
+    private static final String FEATURE_LINKS = "links";
+    private static final String FEATURE_LOCATION = "location";
+    private static final String FEATURE_KIND = "kind";
+    private static final String FEATURE_PARTS = "parts";
+    private static final String FEATURE_MIXINS = "mixins";
+    private static final String FEATURE_MIXIN = "mixin";
+    private static final String FEATURE_ATTRIBUTES = "attributes";
+    private static final String FEATURE_NAME = "name";
+    private static final String FEATURE_VALUE = "value";
+
+    private final EntitiesOwner entitiesOwner;
+
+    ConfigurationAdapter(final EntitiesOwner entitiesOwner) {
+        this.entitiesOwner = entitiesOwner;
+    }
+
+    @Override
+    public void notifyChanged(final Notification notification) {
+        // Adapt or remove adapter on contents.
+        super.notifyChanged(notification);
+
+        if (notification.isTouch() || !(notification.getFeature() instanceof EStructuralFeature)) {
+            return;
+        }
+        String feature = ((EStructuralFeature) notification.getFeature()).getName();
+        Object notifier = notification.getNotifier();
+
+        if (notifier instanceof Configuration && FEATURE_RESOURCES.equals(feature)
+                || notifier instanceof Resource && FEATURE_LINKS.equals(feature)) {
+            entitiesAddedOrRemoved(notification);
+        } else if (notifier instanceof Entity) {
+            Entity entity = (Entity) notifier;
+            if (FEATURE_LOCATION.equals(feature)) {
+                entitiesOwner.updateEntityLocation(entity);
+            } else if (FEATURE_KIND.equals(feature) || FEATURE_PARTS.equals(feature) || FEATURE_MIXINS.equals(feature)) {
+                entitiesOwner.updateEntityCategories(entity);
+            } else if (FEATURE_ATTRIBUTES.equals(feature)) {
+                entitiesOwner.updateEntityAttributes(entity);
+            } else {
+                entitiesOwner.updateEntityContent(entity);
+            }
+        } else if (notifier instanceof AttributeState && (FEATURE_VALUE.equals(feature) || FEATURE_NAME.equals(feature))) {
+            // Only the attributes of the entity are indexed, not the attributes of its mixins.
+            EObject container = ((AttributeState) notifier).eContainer();
+            if (container instanceof Entity) {
+                entitiesOwner.updateEntityAttributes((Entity) container);
+            } else if (container instanceof MixinBase && ((MixinBase) container).getEntity() != null) {
+                entitiesOwner.updateEntityContent(((MixinBase) container).getEntity());
+            }
+        } else if (notifier instanceof MixinBase && FEATURE_MIXIN.equals(feature)) {
+            Entity entity = ((MixinBase) notifier).getEntity();
+            if (entity != null) {
+                entitiesOwner.updateEntityCategories(entity);
+            }
+        }
+    }
+
+    private void entitiesAddedOrRemoved(final Notification notification) {
+        switch (notification.getEventType()) {
+            case Notification.ADD:
+            case Notification.ADD_MANY:
+            case Notification.SET:
+                removeEntities(notification.getOldValue());
+                addEntities(notification.getNewValue());
+                break;
+            case Notification.REMOVE:
+            case Notification.REMOVE_MANY:
+            case Notification.UNSET:
+                removeEntities(notification.getOldValue());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void addEntities(final Object value) {
+        if (value instanceof Collection) {
+            for (Object object : (Collection<?>) value) {
+                addEntities(object);
+            }
+        } else if (value instanceof Entity) {
+            entitiesOwner.referenceEntity((Entity) value);
+            if (value instanceof Resource) {
+                for (Link link : ((Resource) value).getLinks()) {
+                    entitiesOwner.referenceEntity(link);
+                }
+            }
+        }
+    }
+
+    private void removeEntities(final Object value) {
+        if (value instanceof Collection) {
+            for (Object object : (Collection<?>) value) {
+                removeEntities(object);
+            }
+        } else if (value instanceof Entity) {
+            if (value instanceof Resource) {
+                for (Link link : ((Resource) value).getLinks()) {
+                    entitiesOwner.removeEntity(link);
+                }
+            }
+            entitiesOwner.removeEntity((Entity) value);
+        }
+    }
+}
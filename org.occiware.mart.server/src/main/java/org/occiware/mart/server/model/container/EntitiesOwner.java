@@ -18,10 +18,18 @@
  */
 package org.occiware.mart.server.model.container;
 
+import org.eclipse.cmf.occi.core.AttributeState;
+import org.eclipse.cmf.occi.core.Configuration;
 import org.eclipse.cmf.occi.core.Entity;
+import org.eclipse.cmf.occi.core.Kind;
+import org.eclipse.cmf.occi.core.Mixin;
+import org.occiware.mart.server.model.EntityManager;
+import org.occiware.mart.server.utils.CategoryIds;
 
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by cgourdin on 03/05/2017.
@@ -29,15 +37,63 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class EntitiesOwner {
 
+    /**
+     * Source of the content versions, shared by all the containers so a version is never given twice, even after a rebuild of the references.
+     */
+    private static final AtomicLong contentVersions = new AtomicLong();
+
     private String owner;
     /**
-     * key: location, value: entity object.
+     * key: uuid, value : categories (kind and mixins) under which the entity is currently indexed, used to unindex the entity.
+     */
+    private Map<String, Set<String>> categoriesByUuid = new ConcurrentHashMap<>();
+    /**
+     * Names (lower case) of the attributes indexed by value, no attributes are indexed by default.
+     */
+    private Set<String> indexedAttributes = Collections.emptySet();
+    /**
+     * key: attribute name (lower case), value : map of key: attribute value, value: entities with this value (key: uuid, value: entity object).
+     */
+    private Map<String, Map<String, Map<String, Entity>>> entitiesByAttributeValue = new ConcurrentHashMap<>();
+    /**
+     * key: uuid, value : indexed attributes values of the entity (key: attribute name lower case, value: attribute value).
+     */
+    private Map<String, Map<String, String>> attributeValuesByUuid = new ConcurrentHashMap<>();
+    /**
+     * key: attribute name (lower case), value : sorted map of key: numeric attribute value, value: entities with this value (key: uuid, value: entity object).
+     * Only the indexed attributes with a numeric value are referenced here, used for the range filters.
+     * The value is the typed value of the entity if any, the same value as the one checked by the range filters.
+     */
+    private Map<String, NavigableMap<Double, Map<String, Entity>>> entitiesByNumericValue = new ConcurrentHashMap<>();
+    /**
+     * key: uuid, value : indexed numeric values of the entity (key: attribute name lower case, value: numeric value).
+     */
+    private Map<String, Map<String, Double>> attributeNumbersByUuid = new ConcurrentHashMap<>();
+    /**
+     * Number of candidates entities of a query from which the filters are checked in parallel, 0 or less to check them on the request thread (default).
+     */
+    private volatile int parallelFilterThreshold = 0;
+    /**
+     * Version of the references, incremented on each change of the entities, locations or categories.
+     */
+    private long version = 0;
+    /**
+     * Version of the entities content, changed on each change of the references or of an entity (attributes, title...), used for the collections etags.
+     */
+    private volatile long contentVersion = contentVersions.incrementAndGet();
+    /**
+     * The references (entities by uuid, by location and by category), changed under the lock of this container.
+     * The persistent maps of the snapshot are the only copy of the references, a change gives new maps sharing the unchanged nodes.
+     */
+    private EntitiesSnapshot references = EntitiesSnapshot.empty();
+    /**
+     * Immutable view of the references at the current version, published on each change and read by all the lookups.
      */
-    private Map<String, Entity> entitiesByLocation = new ConcurrentHashMap<>();
+    private volatile EntitiesSnapshot snapshot = references;
     /**
-     * key: uuid, value : entity object.
+     * Adapter on the owner's configuration, null if this container doesnt follow a configuration.
      */
-    private Map<String, Entity> entitiesByUuid = new ConcurrentHashMap<>();
+    private ConfigurationAdapter configurationAdapter;
 
     /**
      * Constructor to use with configuration manager when building a new configuration for a user.
@@ -56,66 +112,475 @@ public class EntitiesOwner {
         this.owner = owner;
     }
 
+    /**
+     * @return an unmodifiable map of key: location, value: entity, from the current snapshot.
+     */
     public Map<String, Entity> getEntitiesByLocation() {
-        return entitiesByLocation;
+        return snapshot.getEntitiesByLocation();
     }
 
-    public void setEntitiesByLocation(Map<String, Entity> entitiesByLocation) {
-        this.entitiesByLocation = entitiesByLocation;
+    public synchronized void setEntitiesByLocation(Map<String, Entity> entitiesByLocation) {
+        references = references.withoutLocations();
+        for (Map.Entry<String, Entity> entry : entitiesByLocation.entrySet()) {
+            references = references.withLocation(entry.getKey(), entry.getValue());
+        }
+        referencesChanged();
     }
 
+    /**
+     * @return an unmodifiable map of key: uuid, value: entity, from the current snapshot.
+     */
     public Map<String, Entity> getEntitiesByUuid() {
-        return entitiesByUuid;
+        return snapshot.getEntitiesByUuid();
     }
 
-    public void setEntitiesByUuid(Map<String, Entity> entitiesByUuid) {
-        this.entitiesByUuid = entitiesByUuid;
+    public synchronized void setEntitiesByUuid(Map<String, Entity> entitiesByUuid) {
+        references = references.withoutEntities();
+        categoriesByUuid = new ConcurrentHashMap<>();
+        for (Entity entity : entitiesByUuid.values()) {
+            references = references.withEntity(entity.getId(), entity);
+            indexCategories(entity);
+        }
+        referencesChanged();
     }
 
     // Helpers methods to manage the entities maps.
-    public void putEntity(final String location, final Entity entity) {
+    public synchronized void putEntity(final String location, final Entity entity) {
         String loc = manageSlashes(location);
-        entitiesByLocation.put(loc, entity);
-        entitiesByUuid.put(entity.getId(), entity);
+        String uuid = entity.getId();
+        // The entity may already be referenced under another location.
+        String oldLocation = references.getEntityLocation(uuid);
+        if (oldLocation != null && !oldLocation.equals(loc)) {
+            references = references.withoutLocation(oldLocation, uuid);
+        }
+        Entity displaced = references.getEntityOnLocation(loc);
+        if (displaced != null && !displaced.getId().equals(uuid)) {
+            // Another entity was on this location, it is no more referenced at all.
+            unreferenceEntity(displaced.getId());
+        }
+        references = references.withEntity(uuid, entity).withLocation(loc, entity);
+        indexCategories(entity);
+        indexAttributes(entity);
+        referencesChanged();
     }
 
     public Entity getEntityByUuid(final String uuid) {
-        return entitiesByUuid.get(uuid);
+        return snapshot.getEntity(uuid);
     }
 
     public Entity getEntityByLocation(final String location) {
-        String loc = manageSlashes(location);
-        return entitiesByLocation.get(loc);
+        return snapshot.getEntityOnLocation(manageSlashes(location));
     }
 
-    public void removeEntity(final String location, final Entity entity) {
+    /**
+     * Remove an entity, the location is freed only if the entity is the one referenced on it.
+     *
+     * @param location the location of the entity.
+     * @param entity   the entity to remove.
+     */
+    public synchronized void removeEntity(final String location, final Entity entity) {
         String loc = manageSlashes(location);
-        entitiesByLocation.remove(loc);
-        entitiesByUuid.remove(entity.getId());
+        Entity located = references.getEntityOnLocation(loc);
+        if (located != null && located.getId().equals(entity.getId())) {
+            references = references.withoutLocation(loc, entity.getId());
+        }
+        unreferenceEntity(entity.getId());
+        referencesChanged();
+    }
+
+    /**
+     * Remove an entity from all the maps and indexes, its location is found with the uuid index.
+     * Must be called under the lock of this container.
+     *
+     * @param uuid the entity uuid.
+     */
+    private void unreferenceEntity(final String uuid) {
+        String location = references.getEntityLocation(uuid);
+        if (location != null) {
+            Entity located = references.getEntityOnLocation(location);
+            if (located != null && located.getId().equals(uuid)) {
+                references = references.withoutLocation(location, uuid);
+            }
+        }
+        references = references.withoutEntity(uuid);
+        unindexCategories(uuid);
+        unindexAttributes(uuid);
     }
 
+    /**
+     * Get the location of an entity, this use the uuid index so this doesnt depend on the number of entities.
+     *
+     * @param entity the entity to locate.
+     * @return a location (like /myresources/myentities null if no location found).
+     */
     public String getEntityLocation(final Entity entity) {
-        if (entity == null) {
+        if (entity == null || entity.getId() == null) {
             return null;
         }
-        String location = null;
-        for (Map.Entry<String, Entity> entry : entitiesByLocation.entrySet()) {
-            if (entry.getValue().getId().equals(entity.getId())) {
-                location = entry.getKey();
-                break;
+        return snapshot.getEntityLocation(entity.getId());
+    }
+
+    public synchronized void removeEntity(final Entity entity) {
+        if (entity == null) {
+            return;
+        }
+        unreferenceEntity(entity.getId());
+        referencesChanged();
+    }
+
+    /**
+     * Get an immutable view of the entities references, the same view is shared by the readers until the next change.
+     * The view is published by each change, so this never waits for the writers nor copies the references.
+     *
+     * @return a snapshot of the current references, never null.
+     */
+    public EntitiesSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return the version of the references, incremented on each change of the entities, locations or categories.
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the version of the entities content, changed on each change of the references or of an entity, unique across the containers.
+     */
+    public long getContentVersion() {
+        return contentVersion;
+    }
+
+    /**
+     * Must be called under the lock of this container after a change of the references, the changed references are published.
+     */
+    private void referencesChanged() {
+        version++;
+        snapshot = references.withVersion(version);
+        contentVersion = contentVersions.incrementAndGet();
+    }
+
+    /**
+     * Must be called when a value of an entity has changed without change of the references (title, summary, attributes of its mixins...).
+     *
+     * @param entity the entity that has changed.
+     */
+    public synchronized void updateEntityContent(final Entity entity) {
+        if (entity != null && references.getEntity(entity.getId()) != null) {
+            contentVersion = contentVersions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Reference an entity on its own location, entities without location are not referenced.
+     *
+     * @param entity the entity to reference.
+     */
+    public synchronized void referenceEntity(final Entity entity) {
+        if (entity == null || entity.getId() == null || entity.getLocation() == null) {
+            return;
+        }
+        putEntity(entity.getLocation(), entity);
+    }
+
+    /**
+     * Move an entity already referenced on this owner to its current location.
+     *
+     * @param entity the entity that has changed.
+     */
+    public synchronized void updateEntityLocation(final Entity entity) {
+        if (entity == null || references.getEntity(entity.getId()) == null) {
+            // Not referenced yet, this will be done when the entity is added to the configuration.
+            return;
+        }
+        referenceEntity(entity);
+    }
+
+    /**
+     * Follow the changes made on a configuration model to keep the entities maps in sync.
+     * The entities already on the configuration are not referenced here.
+     *
+     * @param configuration the configuration of this owner.
+     */
+    public synchronized void attachConfiguration(final Configuration configuration) {
+        detachConfiguration();
+        configurationAdapter = new ConfigurationAdapter(this);
+        configuration.eAdapters().add(configurationAdapter);
+    }
+
+    /**
+     * Stop following the configuration model, if any.
+     */
+    public synchronized void detachConfiguration() {
+        if (configurationAdapter != null && configurationAdapter.getTarget() != null) {
+            configurationAdapter.getTarget().eAdapters().remove(configurationAdapter);
+        }
+        configurationAdapter = null;
+    }
+
+    /**
+     * Follow the changes of entities added to the configuration while its notifications were not delivered,
+     * the adapter is set on the entities and their contents. The entities must already be referenced.
+     *
+     * @param entities the entities added to the configuration.
+     */
+    public synchronized void followEntities(final Collection<? extends Entity> entities) {
+        if (configurationAdapter == null) {
+            return;
+        }
+        for (Entity entity : entities) {
+            if (entity != null && !entity.eAdapters().contains(configurationAdapter)) {
+                entity.eAdapters().add(configurationAdapter);
             }
         }
-        return location;
     }
 
-    public void removeEntity(final Entity entity) {
-        if (entity == null) {
+    /**
+     * Compare the references of this container with the references of another container, used to check that the maps
+     * updated on changes are the same as the maps of a full rebuild.
+     *
+     * @param other another container, usually built from scratch.
+     * @return true if the two containers reference the same entities on the same locations and categories.
+     */
+    public synchronized boolean hasSameReferences(final EntitiesOwner other) {
+        return references.hasSameReferences(other.getSnapshot())
+                && categoriesByUuid.equals(other.categoriesByUuid)
+                && attributeValuesByUuid.equals(other.attributeValuesByUuid)
+                && attributeNumbersByUuid.equals(other.attributeNumbersByUuid);
+    }
+
+    /**
+     * Set the names of the attributes to index by value, the index is rebuilt for all the referenced entities.
+     *
+     * @param attributeNames names of the attributes like occi.compute.state, an empty collection disable the index.
+     */
+    public synchronized void setIndexedAttributes(final Collection<String> attributeNames) {
+        Set<String> names = new HashSet<>();
+        if (attributeNames != null) {
+            for (String attributeName : attributeNames) {
+                if (attributeName != null && !attributeName.trim().isEmpty()) {
+                    names.add(attributeName.trim().toLowerCase());
+                }
+            }
+        }
+        indexedAttributes = Collections.unmodifiableSet(names);
+        entitiesByAttributeValue = new ConcurrentHashMap<>();
+        attributeValuesByUuid = new ConcurrentHashMap<>();
+        attributeNumbersByUuid = new ConcurrentHashMap<>();
+        entitiesByNumericValue = new ConcurrentHashMap<>();
+        for (Entity entity : references.getEntities()) {
+            indexAttributes(entity);
+        }
+    }
+
+    public Set<String> getIndexedAttributes() {
+        return indexedAttributes;
+    }
+
+    /**
+     * @param attributeName an attribute name like occi.compute.state
+     * @return true if the values of this attribute are indexed.
+     */
+    public boolean isAttributeIndexed(final String attributeName) {
+        return attributeName != null && indexedAttributes.contains(attributeName.toLowerCase());
+    }
+
+    /**
+     * Get the entities with an attribute equals to a value, the attribute must be indexed.
+     *
+     * @param attributeName  an indexed attribute name.
+     * @param attributeValue the value to search.
+     * @return a list of entities, empty list if none.
+     */
+    public List<Entity> getEntitiesByAttributeValue(final String attributeName, final String attributeValue) {
+        if (attributeName == null || attributeValue == null) {
+            return new ArrayList<>();
+        }
+        Map<String, Map<String, Entity>> entitiesByValue = entitiesByAttributeValue.get(attributeName.toLowerCase());
+        if (entitiesByValue == null) {
+            return new ArrayList<>();
+        }
+        return getIndexedEntities(entitiesByValue, attributeValue);
+    }
+
+    /**
+     * Count the entities with an attribute equals to a value, the attribute must be indexed.
+     *
+     * @param attributeName  an indexed attribute name.
+     * @param attributeValue the value to search.
+     * @return the number of entities, without building the list.
+     */
+    public int countEntitiesByAttributeValue(final String attributeName, final String attributeValue) {
+        if (attributeName == null || attributeValue == null) {
+            return 0;
+        }
+        Map<String, Map<String, Entity>> entitiesByValue = entitiesByAttributeValue.get(attributeName.toLowerCase());
+        if (entitiesByValue == null) {
+            return 0;
+        }
+        Map<String, Entity> entities = entitiesByValue.get(attributeValue);
+        return entities == null ? 0 : entities.size();
+    }
+
+    /**
+     * Get the entities with a numeric value of an attribute in a range, the attribute must be indexed.
+     * The entities are ordered by the attribute value.
+     *
+     * @param attributeName an indexed attribute name.
+     * @param from          lower bound, null for no lower bound.
+     * @param fromInclusive true if the lower bound is included.
+     * @param to            upper bound, null for no upper bound.
+     * @param toInclusive   true if the upper bound is included.
+     * @return a list of entities, empty list if none.
+     */
+    public List<Entity> getEntitiesByAttributeRange(final String attributeName, final Double from, final boolean fromInclusive,
+                                                    final Double to, final boolean toInclusive) {
+        List<Entity> entities = new ArrayList<>();
+        for (Map<String, Entity> entitiesWithValue : getAttributeRange(attributeName, from, fromInclusive, to, toInclusive).values()) {
+            entities.addAll(entitiesWithValue.values());
+        }
+        return entities;
+    }
+
+    /**
+     * Count the entities with a numeric value of an attribute in a range, the attribute must be indexed.
+     * The bounds are the same as getEntitiesByAttributeRange.
+     *
+     * @return the number of entities, without building the list.
+     */
+    public int countEntitiesByAttributeRange(final String attributeName, final Double from, final boolean fromInclusive,
+                                             final Double to, final boolean toInclusive) {
+        int count = 0;
+        for (Map<String, Entity> entitiesWithValue : getAttributeRange(attributeName, from, fromInclusive, to, toInclusive).values()) {
+            count += entitiesWithValue.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return the part of the numeric index of an attribute in a range, key: numeric value, value: entities with this value.
+     */
+    private NavigableMap<Double, Map<String, Entity>> getAttributeRange(final String attributeName, final Double from, final boolean fromInclusive,
+                                                                        final Double to, final boolean toInclusive) {
+        NavigableMap<Double, Map<String, Entity>> entitiesByValue = attributeName == null ? null : entitiesByNumericValue.get(attributeName.toLowerCase());
+        if (entitiesByValue == null) {
+            return Collections.emptyNavigableMap();
+        }
+        if (from != null && to != null) {
+            if (from > to || from.equals(to) && !(fromInclusive && toInclusive)) {
+                return Collections.emptyNavigableMap();
+            }
+            return entitiesByValue.subMap(from, fromInclusive, to, toInclusive);
+        }
+        if (from != null) {
+            return entitiesByValue.tailMap(from, fromInclusive);
+        }
+        if (to != null) {
+            return entitiesByValue.headMap(to, toInclusive);
+        }
+        return entitiesByValue;
+    }
+
+    /**
+     * Update the attributes index of an entity already referenced on this owner.
+     * Must be called when the attributes values of the entity has changed.
+     *
+     * @param entity the entity that has changed.
+     */
+    public synchronized void updateEntityAttributes(final Entity entity) {
+        if (entity == null || references.getEntity(entity.getId()) == null) {
             return;
         }
-        String location = getEntityLocation(entity);
-        if (location != null) {
-            removeEntity(location, entity);
+        contentVersion = contentVersions.incrementAndGet();
+        if (indexedAttributes.isEmpty()) {
+            return;
         }
+        indexAttributes(entity);
+    }
+
+    /**
+     * Set the number of candidates entities of a collection query from which the filters are checked in parallel.
+     *
+     * @param threshold the number of candidates, 0 or less to always check the filters on the request thread.
+     */
+    public void setParallelFilterThreshold(final int threshold) {
+        this.parallelFilterThreshold = threshold;
+    }
+
+    public int getParallelFilterThreshold() {
+        return parallelFilterThreshold;
+    }
+
+    /**
+     * Index the values of the indexed attributes of the entity, previous references are removed before.
+     *
+     * @param entity the entity to index.
+     */
+    private void indexAttributes(final Entity entity) {
+        if (indexedAttributes.isEmpty()) {
+            return;
+        }
+        String uuid = entity.getId();
+        unindexAttributes(uuid);
+        Map<String, String> values = new HashMap<>();
+        Map<String, Double> numbers = new HashMap<>();
+        for (AttributeState attributeState : entity.getAttributes()) {
+            String name = attributeState.getName();
+            String value = attributeState.getValue();
+            if (name == null || value == null) {
+                continue;
+            }
+            name = name.toLowerCase();
+            if (indexedAttributes.contains(name) && !values.containsKey(name)) {
+                entitiesByAttributeValue.computeIfAbsent(name, key -> new ConcurrentHashMap<>())
+                        .computeIfAbsent(value, key -> new ConcurrentHashMap<>()).put(uuid, entity);
+                values.put(name, value);
+                Double numericValue = toNumericKey(EntityManager.getAttrValueDouble(entity, attributeState).orElse(null));
+                if (numericValue != null) {
+                    entitiesByNumericValue.computeIfAbsent(name, key -> new ConcurrentSkipListMap<>())
+                            .computeIfAbsent(numericValue, key -> new ConcurrentHashMap<>()).put(uuid, entity);
+                    numbers.put(name, numericValue);
+                }
+            }
+        }
+        attributeValuesByUuid.put(uuid, values);
+        attributeNumbersByUuid.put(uuid, numbers);
+    }
+
+    private void unindexAttributes(final String uuid) {
+        Map<String, String> values = attributeValuesByUuid.remove(uuid);
+        if (values == null) {
+            return;
+        }
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            Map<String, Map<String, Entity>> entitiesByValue = entitiesByAttributeValue.get(entry.getKey());
+            if (entitiesByValue != null) {
+                removeFromIndex(entitiesByValue, entry.getValue(), uuid);
+            }
+        }
+        Map<String, Double> numbers = attributeNumbersByUuid.remove(uuid);
+        if (numbers == null) {
+            return;
+        }
+        for (Map.Entry<String, Double> entry : numbers.entrySet()) {
+            NavigableMap<Double, Map<String, Entity>> entitiesByNumber = entitiesByNumericValue.get(entry.getKey());
+            if (entitiesByNumber != null) {
+                removeFromIndex(entitiesByNumber, entry.getValue(), uuid);
+            }
+        }
+    }
+
+    /**
+     * @param number the numeric value of an attribute.
+     * @return the key of the value in the numeric index, null if the value is not a number.
+     */
+    private static Double toNumericKey(final Double number) {
+        if (number == null || number.isNaN()) {
+            return null;
+        }
+        // -0.0 and 0.0 are different keys for a sorted map.
+        return number == 0.0 ? 0.0 : number;
     }
 
     /**
@@ -125,24 +590,38 @@ public class EntitiesOwner {
      * @return a location (like /myresources/myentities null if no location found).
      */
     public String getEntityLocation(final String uuid) {
-        if (uuid == null) {
-            return null;
-        }
-        Entity entity = getEntityByUuid(uuid);
-        if (entity == null) {
-            return null;
-        }
-        return getEntityLocation(entity);
+        return snapshot.getEntityLocation(uuid);
+    }
+
+    /**
+     * Get the entity on a location and all the entities located under this location.
+     *
+     * @param location a location like /mycollection/ (formatted here).
+     * @return a list of entities, empty list if none.
+     */
+    public List<Entity> getEntitiesUnderLocation(final String location) {
+        return new ArrayList<>(snapshot.getEntitiesUnderLocation(manageSlashes(location)));
+    }
+
+    /**
+     * Get the entities located on the parent paths of a location and the entity on this location.
+     *
+     * @param location a location like /mycollection/myentity (formatted here).
+     * @return a list of entities, empty list if none.
+     */
+    public List<Entity> getEntitiesOnLocationPath(final String location) {
+        return snapshot.getEntitiesOnLocationPath(manageSlashes(location));
     }
 
     /**
      * Format the location to a location like /mylocation/myentity.
+     * This is the only normalization of the locations, applied when the entity is referenced and when it is searched.
      *
      * @param location a location to format
      * @return a formatted location for entity exclusively.
      */
     public String manageSlashes(String location) {
-        String loc = location;
+        String loc = removeWhitespaces(location);
         // Remove leading slash as entities MUST has a format location like : /myentity/entity1
         if (loc.endsWith("/")) {
             loc = loc.substring(0, loc.length() - 1);
@@ -154,11 +633,162 @@ public class EntitiesOwner {
         return loc;
     }
 
+    private static String removeWhitespaces(final String location) {
+        int length = location.length();
+        for (int i = 0; i < length; i++) {
+            if (Character.isWhitespace(location.charAt(i))) {
+                StringBuilder builder = new StringBuilder(length);
+                for (int j = 0; j < length; j++) {
+                    char c = location.charAt(j);
+                    if (!Character.isWhitespace(c)) {
+                        builder.append(c);
+                    }
+                }
+                return builder.toString();
+            }
+        }
+        return location;
+    }
+
     /**
      *
      * @return
      */
     public int getEntitiesSize() {
-        return entitiesByUuid.size();
+        return snapshot.size();
+    }
+
+    /**
+     * Update the kind and mixins index of an entity already referenced on this owner.
+     * Must be called when mixins are associated or dissociated from the entity.
+     *
+     * @param entity the entity that has changed.
+     */
+    public synchronized void updateEntityCategories(final Entity entity) {
+        if (entity == null || references.getEntity(entity.getId()) == null) {
+            // Not referenced yet, this will be indexed on putEntity.
+            return;
+        }
+        indexCategories(entity);
+        referencesChanged();
+    }
+
+    /**
+     * Get all entities of a kind.
+     *
+     * @param kindId kind scheme + term.
+     * @return a list of entities, empty list if none.
+     */
+    public List<Entity> getEntitiesByKind(final String kindId) {
+        return new ArrayList<>(snapshot.getEntitiesByKind(kindId));
+    }
+
+    /**
+     * Count the entities of each kind, the counts are the sizes of the kinds index maintained on each change.
+     *
+     * @return a map of kind scheme + term to the number of entities.
+     */
+    public Map<String, Integer> countEntitiesByKind() {
+        return snapshot.countEntitiesByKind();
+    }
+
+    /**
+     * Count the entities associated with each mixin, an entity is counted once for each of its mixins.
+     *
+     * @return a map of mixin scheme + term to the number of entities.
+     */
+    public Map<String, Integer> countEntitiesByMixin() {
+        return snapshot.countEntitiesByMixin();
+    }
+
+    /**
+     * Count the entities for each value of an indexed attribute, entities without value are not counted.
+     *
+     * @param attributeName an attribute name.
+     * @return a map of attribute value to the number of entities, empty optional if the attribute is not indexed.
+     */
+    public synchronized Optional<Map<String, Integer>> countEntitiesByAttributeValue(final String attributeName) {
+        if (!isAttributeIndexed(attributeName)) {
+            return Optional.empty();
+        }
+        Map<String, Map<String, Entity>> entitiesByValue = entitiesByAttributeValue.get(attributeName.toLowerCase());
+        if (entitiesByValue == null) {
+            return Optional.of(new TreeMap<>());
+        }
+        return Optional.of(countIndexedEntities(entitiesByValue));
+    }
+
+    private static Map<String, Integer> countIndexedEntities(final Map<String, Map<String, Entity>> index) {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (Map.Entry<String, Map<String, Entity>> entry : index.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                counts.put(entry.getKey(), entry.getValue().size());
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Get all entities associated with a mixin (or a mixin tag).
+     *
+     * @param mixinId mixin scheme + term.
+     * @return a list of entities, empty list if none.
+     */
+    public List<Entity> getEntitiesByMixin(final String mixinId) {
+        return new ArrayList<>(snapshot.getEntitiesByMixin(mixinId));
+    }
+
+    private List<Entity> getIndexedEntities(final Map<String, Map<String, Entity>> index, final String key) {
+        Map<String, Entity> entities = index.get(key);
+        if (entities == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(entities.values());
+    }
+
+    /**
+     * Index the entity on its kind and on its mixins, previous references are removed before.
+     *
+     * @param entity the entity to index.
+     */
+    private void indexCategories(final Entity entity) {
+        String uuid = entity.getId();
+        unindexCategories(uuid);
+        Set<String> categories = new HashSet<>();
+        Kind kind = entity.getKind();
+        if (kind != null) {
+            String kindId = CategoryIds.of(kind);
+            references = references.withKind(kindId, uuid, entity);
+            categories.add(kindId);
+        }
+        for (Mixin mixin : entity.getMixins()) {
+            if (mixin == null) {
+                continue;
+            }
+            String mixinId = CategoryIds.of(mixin);
+            references = references.withMixin(mixinId, uuid, entity);
+            categories.add(mixinId);
+        }
+        categoriesByUuid.put(uuid, categories);
+    }
+
+    private void unindexCategories(final String uuid) {
+        Set<String> categories = categoriesByUuid.remove(uuid);
+        if (categories == null) {
+            return;
+        }
+        for (String categoryId : categories) {
+            references = references.withoutCategory(categoryId, uuid);
+        }
+    }
+
+    private <K> void removeFromIndex(final Map<K, Map<String, Entity>> index, final K key, final String uuid) {
+        Map<String, Entity> entities = index.get(key);
+        if (entities != null) {
+            entities.remove(uuid);
+            if (entities.isEmpty()) {
+                index.remove(key);
+            }
+        }
     }
 }
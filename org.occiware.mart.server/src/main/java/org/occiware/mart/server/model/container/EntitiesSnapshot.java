@@ -0,0 +1,369 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.model.container;
+
+import org.eclipse.cmf.occi.core.Entity;
+
+import java.util.*;
+
+/**
+ * Immutable view of the entities referenced by an EntitiesOwner at a given version.
+ * The snapshot maps are persistent maps updated by EntitiesOwner on each change, a new snapshot shares almost all its nodes
+ * with the previous one, so a collection query iterates a consistent set of entities without locking the owner.
+ * The entities lists are ordered by uuid, so a collection can be paginated from the last uuid of a page.
+ * Note that the entities objects themselves are the live EMF objects.
+ */
+public final class EntitiesSnapshot {
+
+    /**
+     * Order of the entities lists of a snapshot.
+     */
+    public static final Comparator<Entity> UUID_ORDER = Comparator.comparing(Entity::getId);
+
+    private static final EntitiesSnapshot EMPTY = new EntitiesSnapshot(0, PersistentSortedMap.empty(), PersistentSortedMap.empty(),
+            PersistentSortedMap.empty(), PersistentSortedMap.empty(), PersistentSortedMap.empty());
+
+    private final long version;
+    private final PersistentSortedMap<String, Entity> entitiesByUuid;
+    private final PersistentSortedMap<String, Entity> entitiesByLocation;
+    private final PersistentSortedMap<String, String> locationsByUuid;
+    /**
+     * key: category scheme + term, value: the entities of the category (key: uuid).
+     */
+    private final PersistentSortedMap<String, PersistentSortedMap<String, Entity>> entitiesByKind;
+    private final PersistentSortedMap<String, PersistentSortedMap<String, Entity>> entitiesByMixin;
+
+    private EntitiesSnapshot(final long version, final PersistentSortedMap<String, Entity> entitiesByUuid,
+                             final PersistentSortedMap<String, Entity> entitiesByLocation,
+                             final PersistentSortedMap<String, String> locationsByUuid,
+                             final PersistentSortedMap<String, PersistentSortedMap<String, Entity>> entitiesByKind,
+                             final PersistentSortedMap<String, PersistentSortedMap<String, Entity>> entitiesByMixin) {
+        this.version = version;
+        this.entitiesByUuid = entitiesByUuid;
+        this.entitiesByLocation = entitiesByLocation;
+        this.locationsByUuid = locationsByUuid;
+        this.entitiesByKind = entitiesByKind;
+        this.entitiesByMixin = entitiesByMixin;
+    }
+
+    /**
+     * @return a snapshot without entities, at version 0.
+     */
+    static EntitiesSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @return the version of the owner references when this snapshot was published.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return all the entities ordered by uuid, unmodifiable list.
+     */
+    public List<Entity> getEntities() {
+        return entitiesByUuid.values();
+    }
+
+    /**
+     * @return an unmodifiable map of key: uuid, value: entity, iterated in the uuid order.
+     */
+    public Map<String, Entity> getEntitiesByUuid() {
+        return entitiesByUuid.asMap();
+    }
+
+    /**
+     * @return an unmodifiable map of key: location, value: entity, iterated in the location order.
+     */
+    public Map<String, Entity> getEntitiesByLocation() {
+        return entitiesByLocation.asMap();
+    }
+
+    /**
+     * @param uuid the entity uuid.
+     * @return the entity with this uuid, null if none.
+     */
+    public Entity getEntity(final String uuid) {
+        if (uuid == null) {
+            return null;
+        }
+        return entitiesByUuid.get(uuid);
+    }
+
+    /**
+     * @param location a formatted location like /mycollection/myentity (see EntitiesOwner.manageSlashes).
+     * @return the entity on this location, null if none.
+     */
+    public Entity getEntityOnLocation(final String location) {
+        if (location == null) {
+            return null;
+        }
+        return entitiesByLocation.get(location);
+    }
+
+    public String getEntityLocation(final String uuid) {
+        if (uuid == null) {
+            return null;
+        }
+        return locationsByUuid.get(uuid);
+    }
+
+    /**
+     * @param kindId kind scheme + term.
+     * @return the entities of this kind ordered by uuid, unmodifiable list, empty if none.
+     */
+    public List<Entity> getEntitiesByKind(final String kindId) {
+        return getIndexedEntities(entitiesByKind, kindId);
+    }
+
+    /**
+     * @param mixinId mixin scheme + term.
+     * @return the entities associated with this mixin ordered by uuid, unmodifiable list, empty if none.
+     */
+    public List<Entity> getEntitiesByMixin(final String mixinId) {
+        return getIndexedEntities(entitiesByMixin, mixinId);
+    }
+
+    /**
+     * Get the entity on a location and all the entities located under this location, with a range of the locations.
+     *
+     * @param location a formatted location like /mycollection (see EntitiesOwner.manageSlashes).
+     * @return the entities ordered by location, unmodifiable list, empty if none.
+     */
+    public List<Entity> getEntitiesUnderLocation(final String location) {
+        if (location.equals("/")) {
+            return entitiesByLocation.values();
+        }
+        // The locations under /mycollection are from /mycollection/ (included) to /mycollection0 (excluded), '0' follows '/'.
+        List<Entity> entitiesUnder = entitiesByLocation.values(location + '/', location + (char) ('/' + 1));
+        Entity entity = entitiesByLocation.get(location);
+        if (entity == null) {
+            return entitiesUnder;
+        }
+        List<Entity> entities = new ArrayList<>(entitiesUnder.size() + 1);
+        entities.add(entity);
+        entities.addAll(entitiesUnder);
+        return Collections.unmodifiableList(entities);
+    }
+
+    /**
+     * Get the entities located on the parent locations of a location and the entity on the location itself.
+     *
+     * @param location a formatted location like /mycollection/myentity (see EntitiesOwner.manageSlashes).
+     * @return the entities ordered from the root to the location, empty list if none.
+     */
+    public List<Entity> getEntitiesOnLocationPath(final String location) {
+        List<Entity> entities = new ArrayList<>();
+        Entity root = entitiesByLocation.get("/");
+        if (root != null) {
+            entities.add(root);
+        }
+        for (int index = location.indexOf('/', 1); ; index = location.indexOf('/', index + 1)) {
+            String parent = index < 0 ? location : location.substring(0, index);
+            Entity entity = parent.length() > 1 ? entitiesByLocation.get(parent) : null;
+            if (entity != null) {
+                entities.add(entity);
+            }
+            if (index < 0) {
+                return entities;
+            }
+        }
+    }
+
+    /**
+     * Count the entities returned by getEntitiesUnderLocation, without building the list.
+     *
+     * @param location a formatted location like /mycollection (see EntitiesOwner.manageSlashes).
+     * @return the number of entities on and under this location.
+     */
+    public int countEntitiesUnderLocation(final String location) {
+        if (location.equals("/")) {
+            return entitiesByLocation.size();
+        }
+        int count = entitiesByLocation.countLower(location + (char) ('/' + 1)) - entitiesByLocation.countLower(location + '/');
+        return entitiesByLocation.containsKey(location) ? count + 1 : count;
+    }
+
+    public int size() {
+        return entitiesByUuid.size();
+    }
+
+    /**
+     * Count the entities of each kind with the sizes of the kinds index.
+     *
+     * @return a map of kind scheme + term to the number of entities, ordered by kind.
+     */
+    public Map<String, Integer> countEntitiesByKind() {
+        return countIndexedEntities(entitiesByKind);
+    }
+
+    /**
+     * Count the entities associated with each mixin, an entity is counted once for each of its mixins.
+     *
+     * @return a map of mixin scheme + term to the number of entities, ordered by mixin.
+     */
+    public Map<String, Integer> countEntitiesByMixin() {
+        return countIndexedEntities(entitiesByMixin);
+    }
+
+    /**
+     * Compare the references of two snapshots, the versions are not compared.
+     *
+     * @param other another snapshot.
+     * @return true if the two snapshots reference the same entities on the same locations and categories.
+     */
+    boolean hasSameReferences(final EntitiesSnapshot other) {
+        return entitiesByUuid.asMap().keySet().equals(other.entitiesByUuid.asMap().keySet())
+                && locationsByUuid.asMap().equals(other.locationsByUuid.asMap())
+                && entitiesByLocation.asMap().keySet().equals(other.entitiesByLocation.asMap().keySet())
+                && countEntitiesByKind().equals(other.countEntitiesByKind())
+                && countEntitiesByMixin().equals(other.countEntitiesByMixin());
+    }
+
+    /**
+     * Find where to resume the iteration of an entities list ordered by uuid, with a binary search.
+     *
+     * @param entities a list of entities ordered by uuid.
+     * @param uuid     the last uuid already read, the uuid may be no more in the list.
+     * @return the index of the first entity with an uuid greater than the given uuid, the list size if none.
+     */
+    public static int indexAfter(final List<Entity> entities, final String uuid) {
+        int low = 0;
+        int high = entities.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (entities.get(middle).getId().compareTo(uuid) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Changes, used by EntitiesOwner under its lock, this snapshot is not modified.
+
+    EntitiesSnapshot withVersion(final long newVersion) {
+        return new EntitiesSnapshot(newVersion, entitiesByUuid, entitiesByLocation, locationsByUuid, entitiesByKind, entitiesByMixin);
+    }
+
+    EntitiesSnapshot withEntity(final String uuid, final Entity entity) {
+        return new EntitiesSnapshot(version, entitiesByUuid.put(uuid, entity), entitiesByLocation, locationsByUuid, entitiesByKind, entitiesByMixin);
+    }
+
+    /**
+     * @param uuid the entity uuid.
+     * @return a snapshot without the entity and its reverse location index, the location itself is removed with withoutLocation.
+     */
+    EntitiesSnapshot withoutEntity(final String uuid) {
+        return new EntitiesSnapshot(version, entitiesByUuid.remove(uuid), entitiesByLocation, locationsByUuid.remove(uuid), entitiesByKind, entitiesByMixin);
+    }
+
+    EntitiesSnapshot withLocation(final String location, final Entity entity) {
+        return new EntitiesSnapshot(version, entitiesByUuid, entitiesByLocation.put(location, entity),
+                locationsByUuid.put(entity.getId(), location), entitiesByKind, entitiesByMixin);
+    }
+
+    /**
+     * @param location a location.
+     * @param uuid     the uuid of the entity on this location.
+     * @return a snapshot without the location, its reverse index is removed only if the entity is still on this location.
+     */
+    EntitiesSnapshot withoutLocation(final String location, final String uuid) {
+        PersistentSortedMap<String, String> locations = locationsByUuid;
+        if (location.equals(locations.get(uuid))) {
+            locations = locations.remove(uuid);
+        }
+        return new EntitiesSnapshot(version, entitiesByUuid, entitiesByLocation.remove(location), locations, entitiesByKind, entitiesByMixin);
+    }
+
+    EntitiesSnapshot withKind(final String kindId, final String uuid, final Entity entity) {
+        return new EntitiesSnapshot(version, entitiesByUuid, entitiesByLocation, locationsByUuid,
+                putIndexedEntity(entitiesByKind, kindId, uuid, entity), entitiesByMixin);
+    }
+
+    EntitiesSnapshot withMixin(final String mixinId, final String uuid, final Entity entity) {
+        return new EntitiesSnapshot(version, entitiesByUuid, entitiesByLocation, locationsByUuid,
+                entitiesByKind, putIndexedEntity(entitiesByMixin, mixinId, uuid, entity));
+    }
+
+    /**
+     * @param categoryId a kind or a mixin scheme + term.
+     * @param uuid       the entity uuid.
+     * @return a snapshot where the entity is not indexed under this category.
+     */
+    EntitiesSnapshot withoutCategory(final String categoryId, final String uuid) {
+        return new EntitiesSnapshot(version, entitiesByUuid, entitiesByLocation, locationsByUuid,
+                removeIndexedEntity(entitiesByKind, categoryId, uuid), removeIndexedEntity(entitiesByMixin, categoryId, uuid));
+    }
+
+    /**
+     * @return a snapshot at the same version with the same entities but without locations.
+     */
+    EntitiesSnapshot withoutLocations() {
+        return new EntitiesSnapshot(version, entitiesByUuid, PersistentSortedMap.empty(), PersistentSortedMap.empty(), entitiesByKind, entitiesByMixin);
+    }
+
+    /**
+     * @return a snapshot at the same version with the same locations but without entities nor categories.
+     */
+    EntitiesSnapshot withoutEntities() {
+        return new EntitiesSnapshot(version, PersistentSortedMap.empty(), entitiesByLocation, locationsByUuid, PersistentSortedMap.empty(), PersistentSortedMap.empty());
+    }
+
+    private static Map<String, Integer> countIndexedEntities(final PersistentSortedMap<String, PersistentSortedMap<String, Entity>> index) {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (Map.Entry<String, PersistentSortedMap<String, Entity>> entry : index.asMap().entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().size());
+        }
+        return counts;
+    }
+
+    private static List<Entity> getIndexedEntities(final PersistentSortedMap<String, PersistentSortedMap<String, Entity>> index, final String categoryId) {
+        if (categoryId == null) {
+            return Collections.emptyList();
+        }
+        PersistentSortedMap<String, Entity> indexedEntities = index.get(categoryId);
+        if (indexedEntities == null) {
+            return Collections.emptyList();
+        }
+        return indexedEntities.values();
+    }
+
+    private static PersistentSortedMap<String, PersistentSortedMap<String, Entity>> putIndexedEntity(
+            final PersistentSortedMap<String, PersistentSortedMap<String, Entity>> index, final String categoryId, final String uuid, final Entity entity) {
+        PersistentSortedMap<String, Entity> entities = index.get(categoryId);
+        if (entities == null) {
+            entities = PersistentSortedMap.empty();
+        }
+        return index.put(categoryId, entities.put(uuid, entity));
+    }
+
+    private static PersistentSortedMap<String, PersistentSortedMap<String, Entity>> removeIndexedEntity(
+            final PersistentSortedMap<String, PersistentSortedMap<String, Entity>> index, final String categoryId, final String uuid) {
+        PersistentSortedMap<String, Entity> entities = index.get(categoryId);
+        if (entities == null) {
+            return index;
+        }
+        entities = entities.remove(uuid);
+        return entities.isEmpty() ? index.remove(categoryId) : index.put(categoryId, entities);
+    }
+}
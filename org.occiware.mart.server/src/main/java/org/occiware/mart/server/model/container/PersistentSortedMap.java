@@ -0,0 +1,452 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.model.container;
+
+import java.util.*;
+
+/**
+ * Immutable sorted map, a change gives a new map sharing all the nodes of this map except the ones on the path of the changed key.
+ * This is a weight balanced tree (each node knows the size of its subtree), so put and remove cost O(log n),
+ * and the values can be read by index and by rank.
+ * Used by EntitiesOwner to keep the snapshot of its references up to date on each change, the readers only read the published maps.
+ *
+ * @param <K> the key type, ordered by its natural order.
+ * @param <V> the value type.
+ */
+final class PersistentSortedMap<K extends Comparable<? super K>, V> {
+
+    /**
+     * A subtree is rebalanced when it is DELTA times bigger than its sibling.
+     */
+    private static final int DELTA = 3;
+    /**
+     * Choose between a single and a double rotation.
+     */
+    private static final int RATIO = 2;
+
+    private static final PersistentSortedMap<?, ?> EMPTY = new PersistentSortedMap<>(null);
+
+    private final Node<K, V> root;
+
+    private PersistentSortedMap(final Node<K, V> root) {
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K extends Comparable<? super K>, V> PersistentSortedMap<K, V> empty() {
+        return (PersistentSortedMap<K, V>) EMPTY;
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    boolean isEmpty() {
+        return root == null;
+    }
+
+    V get(final K key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            int comparison = key.compareTo(node.key);
+            if (comparison == 0) {
+                return node.value;
+            }
+            node = comparison < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    boolean containsKey(final K key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @param key   the key, not null.
+     * @param value the value, not null.
+     * @return a map with the value on the key, this map if the same value is already on the key.
+     */
+    PersistentSortedMap<K, V> put(final K key, final V value) {
+        Node<K, V> updated = insert(root, key, value);
+        return updated == root ? this : new PersistentSortedMap<>(updated);
+    }
+
+    /**
+     * @param key the key.
+     * @return a map without the key, this map if the key is not in this map.
+     */
+    PersistentSortedMap<K, V> remove(final K key) {
+        if (key == null) {
+            return this;
+        }
+        Node<K, V> updated = delete(root, key);
+        return updated == root ? this : new PersistentSortedMap<>(updated);
+    }
+
+    /**
+     * @param key a key, may not be in this map.
+     * @return the number of keys lower than the key, this is the index of the key if it is in the map.
+     */
+    int countLower(final K key) {
+        return rank(key, false);
+    }
+
+    /**
+     * @param key a key, may not be in this map.
+     * @return the number of keys lower or equal to the key, this is the index of the first key greater than the key.
+     */
+    int countLowerOrEqual(final K key) {
+        return rank(key, true);
+    }
+
+    /**
+     * @return the values ordered by key, unmodifiable view of this map.
+     */
+    List<V> values() {
+        return new Values<>(root, 0, size(root));
+    }
+
+    /**
+     * @param from the lowest key, included.
+     * @param to   the highest key, excluded.
+     * @return the values of the keys in the range ordered by key, unmodifiable view of this map.
+     */
+    List<V> values(final K from, final K to) {
+        int start = countLower(from);
+        int end = countLower(to);
+        return new Values<>(root, start, Math.max(start, end));
+    }
+
+    /**
+     * @return an unmodifiable view of this map, the entries are iterated in the key order.
+     */
+    Map<K, V> asMap() {
+        return new MapView<>(this);
+    }
+
+    private int rank(final K key, final boolean inclusive) {
+        int count = 0;
+        Node<K, V> node = root;
+        while (node != null) {
+            int comparison = key.compareTo(node.key);
+            if (comparison < 0 || comparison == 0 && !inclusive) {
+                node = node.left;
+            } else {
+                count += size(node.left) + 1;
+                if (comparison == 0) {
+                    break;
+                }
+                node = node.right;
+            }
+        }
+        return count;
+    }
+
+    private static <K extends Comparable<? super K>, V> Node<K, V> insert(final Node<K, V> node, final K key, final V value) {
+        if (node == null) {
+            return new Node<>(key, value, null, null);
+        }
+        int comparison = key.compareTo(node.key);
+        if (comparison < 0) {
+            Node<K, V> left = insert(node.left, key, value);
+            return left == node.left ? node : balance(node.key, node.value, left, node.right);
+        }
+        if (comparison > 0) {
+            Node<K, V> right = insert(node.right, key, value);
+            return right == node.right ? node : balance(node.key, node.value, node.left, right);
+        }
+        return node.value == value ? node : new Node<>(key, value, node.left, node.right);
+    }
+
+    private static <K extends Comparable<? super K>, V> Node<K, V> delete(final Node<K, V> node, final K key) {
+        if (node == null) {
+            return null;
+        }
+        int comparison = key.compareTo(node.key);
+        if (comparison < 0) {
+            Node<K, V> left = delete(node.left, key);
+            return left == node.left ? node : balance(node.key, node.value, left, node.right);
+        }
+        if (comparison > 0) {
+            Node<K, V> right = delete(node.right, key);
+            return right == node.right ? node : balance(node.key, node.value, node.left, right);
+        }
+        return glue(node.left, node.right);
+    }
+
+    /**
+     * Join the two subtrees of a removed node, the new root is taken from the biggest subtree.
+     */
+    private static <K, V> Node<K, V> glue(final Node<K, V> left, final Node<K, V> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.size > right.size) {
+            Node<K, V> max = left;
+            while (max.right != null) {
+                max = max.right;
+            }
+            return balance(max.key, max.value, deleteMax(left), right);
+        }
+        Node<K, V> min = right;
+        while (min.left != null) {
+            min = min.left;
+        }
+        return balance(min.key, min.value, left, deleteMin(right));
+    }
+
+    private static <K, V> Node<K, V> deleteMin(final Node<K, V> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.key, node.value, deleteMin(node.left), node.right);
+    }
+
+    private static <K, V> Node<K, V> deleteMax(final Node<K, V> node) {
+        if (node.right == null) {
+            return node.left;
+        }
+        return balance(node.key, node.value, node.left, deleteMax(node.right));
+    }
+
+    /**
+     * Build a node from subtrees balanced before a single insertion or deletion.
+     */
+    private static <K, V> Node<K, V> balance(final K key, final V value, final Node<K, V> left, final Node<K, V> right) {
+        int leftSize = size(left);
+        int rightSize = size(right);
+        if (leftSize + rightSize <= 1) {
+            return new Node<>(key, value, left, right);
+        }
+        if (rightSize > DELTA * leftSize) {
+            // Rotate left.
+            if (size(right.left) < RATIO * size(right.right)) {
+                return new Node<>(right.key, right.value, new Node<>(key, value, left, right.left), right.right);
+            }
+            Node<K, V> middle = right.left;
+            return new Node<>(middle.key, middle.value, new Node<>(key, value, left, middle.left),
+                    new Node<>(right.key, right.value, middle.right, right.right));
+        }
+        if (leftSize > DELTA * rightSize) {
+            // Rotate right.
+            if (size(left.right) < RATIO * size(left.left)) {
+                return new Node<>(left.key, left.value, left.left, new Node<>(key, value, left.right, right));
+            }
+            Node<K, V> middle = left.right;
+            return new Node<>(middle.key, middle.value, new Node<>(left.key, left.value, left.left, middle.left),
+                    new Node<>(key, value, middle.right, right));
+        }
+        return new Node<>(key, value, left, right);
+    }
+
+    private static int size(final Node<?, ?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * @return the node at an index in the key order, the index must be lower than the tree size.
+     */
+    private static <K, V> Node<K, V> nodeAt(final Node<K, V> root, final int index) {
+        Node<K, V> node = root;
+        int remaining = index;
+        while (true) {
+            int leftSize = size(node.left);
+            if (remaining < leftSize) {
+                node = node.left;
+            } else if (remaining == leftSize) {
+                return node;
+            } else {
+                remaining -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    private static final class Node<K, V> {
+        private final K key;
+        private final V value;
+        private final Node<K, V> left;
+        private final Node<K, V> right;
+        private final int size;
+
+        private Node(final K key, final V value, final Node<K, V> left, final Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.size = size(left) + size(right) + 1;
+        }
+    }
+
+    /**
+     * In order iteration of the nodes from an index, the ancestors to visit are kept on a stack.
+     */
+    private static final class NodeIterator<K, V> implements Iterator<Node<K, V>> {
+        private final Deque<Node<K, V>> ancestors = new ArrayDeque<>();
+        private int remaining;
+
+        private NodeIterator(final Node<K, V> root, final int start, final int end) {
+            this.remaining = end - start;
+            Node<K, V> node = root;
+            int index = start;
+            // Push the path to the start node, only the nodes at or after the start index.
+            while (node != null && remaining > 0) {
+                int leftSize = size(node.left);
+                if (index < leftSize) {
+                    ancestors.push(node);
+                    node = node.left;
+                } else if (index == leftSize) {
+                    ancestors.push(node);
+                    break;
+                } else {
+                    index -= leftSize + 1;
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0 && !ancestors.isEmpty();
+        }
+
+        @Override
+        public Node<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Node<K, V> node = ancestors.pop();
+            for (Node<K, V> child = node.right; child != null; child = child.left) {
+                ancestors.push(child);
+            }
+            remaining--;
+            return node;
+        }
+    }
+
+    private static final class Values<K, V> extends AbstractList<V> {
+        private final Node<K, V> root;
+        private final int start;
+        private final int end;
+
+        private Values(final Node<K, V> root, final int start, final int end) {
+            this.root = root;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public V get(final int index) {
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + (end - start));
+            }
+            return nodeAt(root, start + index).value;
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            NodeIterator<K, V> nodes = new NodeIterator<>(root, start, end);
+            return new Iterator<V>() {
+                @Override
+                public boolean hasNext() {
+                    return nodes.hasNext();
+                }
+
+                @Override
+                public V next() {
+                    return nodes.next().value;
+                }
+            };
+        }
+
+        @Override
+        public List<V> subList(final int fromIndex, final int toIndex) {
+            if (fromIndex < 0 || toIndex > end - start || fromIndex > toIndex) {
+                throw new IndexOutOfBoundsException("From: " + fromIndex + ", to: " + toIndex + ", size: " + (end - start));
+            }
+            return new Values<>(root, start + fromIndex, start + toIndex);
+        }
+    }
+
+    private static final class MapView<K extends Comparable<? super K>, V> extends AbstractMap<K, V> {
+        private final PersistentSortedMap<K, V> map;
+
+        private MapView(final PersistentSortedMap<K, V> map) {
+            this.map = map;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(final Object key) {
+            if (key == null) {
+                return null;
+            }
+            try {
+                return map.get((K) key);
+            } catch (ClassCastException ex) {
+                return null;
+            }
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            return new AbstractSet<Entry<K, V>>() {
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    NodeIterator<K, V> nodes = new NodeIterator<>(map.root, 0, map.size());
+                    return new Iterator<Entry<K, V>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return nodes.hasNext();
+                        }
+
+                        @Override
+                        public Entry<K, V> next() {
+                            Node<K, V> node = nodes.next();
+                            return new SimpleImmutableEntry<>(node.key, node.value);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return map.size();
+                }
+            };
+        }
+    }
+}
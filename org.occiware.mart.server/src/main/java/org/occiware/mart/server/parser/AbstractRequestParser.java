@@ -23,11 +23,18 @@ import org.eclipse.cmf.occi.core.Entity;
 import org.eclipse.cmf.occi.core.Mixin;
 import org.eclipse.cmf.occi.core.Resource;
 import org.occiware.mart.server.exception.ParseOCCIException;
+import org.occiware.mart.server.model.ConfigurationManager;
 import org.occiware.mart.server.model.EntityManager;
+import org.occiware.mart.server.utils.CategoryIds;
+import org.occiware.mart.server.utils.Constants;
+import org.occiware.mart.server.utils.FieldProjection;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Created by cgourdin on 25/04/2017.
@@ -36,9 +43,15 @@ public abstract class AbstractRequestParser implements IRequestParser {
 
     private List<OCCIRequestData> inputDatas = new LinkedList<>();
     private List<OCCIRequestData> outputDatas = new LinkedList<>();
+    /**
+     * Entities to convert to output datas on first access, null if the output datas are up to date.
+     */
+    private List<Entity> outputEntities;
+    private FieldProjection outputProjection = FieldProjection.ALL;
     private String username;
     private QueryInterfaceData interfaceData;
     private URI serverURI;
+    private FieldProjection fieldProjection = FieldProjection.ALL;
 
     public AbstractRequestParser(String username) {
         this.username = username;
@@ -59,6 +72,52 @@ public abstract class AbstractRequestParser implements IRequestParser {
     @Override
     public abstract Object renderOutputEntity(Entity entity) throws ParseOCCIException;
 
+    /**
+     * Render the results of an aggregation, one line per group, ex:
+     * X-OCCI-Aggregate: group="active"; count=2; sum(occi.compute.cores)=6.0
+     *
+     * @param results key: group name, value: map of result name to the result value.
+     * @return a String.
+     * @throws ParseOCCIException
+     */
+    @Override
+    public Object renderOutputAggregation(Map<String, Map<String, Number>> results) throws ParseOCCIException {
+        StringBuilder sb = new StringBuilder();
+        for (String group : renderAggregationGroups(results)) {
+            sb.append(Constants.X_OCCI_AGGREGATE).append(": ").append(group).append(Constants.CRLF);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * No streaming rendering by default, the entities are rendered with renderOutputEntities.
+     *
+     * @param entities the entities to render.
+     * @return null.
+     * @throws ParseOCCIException
+     */
+    @Override
+    public StreamingContent renderOutputEntitiesStream(final List<Entity> entities) throws ParseOCCIException {
+        return null;
+    }
+
+    /**
+     * @param results the results of an aggregation.
+     * @return the text rendering of each group : group="name"; result=value...
+     */
+    protected List<String> renderAggregationGroups(final Map<String, Map<String, Number>> results) {
+        List<String> groups = new LinkedList<>();
+        for (Map.Entry<String, Map<String, Number>> group : results.entrySet()) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("group=\"").append(group.getKey()).append('"');
+            for (Map.Entry<String, Number> value : group.getValue().entrySet()) {
+                sb.append("; ").append(value.getKey()).append('=').append(value.getValue());
+            }
+            groups.add(sb.toString());
+        }
+        return groups;
+    }
+
     @Override
     public List<OCCIRequestData> getInputDatas() {
         if (inputDatas == null) {
@@ -72,54 +131,90 @@ public abstract class AbstractRequestParser implements IRequestParser {
         this.inputDatas = inputDatas;
     }
 
+    /**
+     * Get the output datas, the entities given to convertEntitiesToOutputData are converted on the first call.
+     * The conversion is done under the owner read lock, this may be called after the request has released it.
+     *
+     * @return the output datas, never null.
+     */
     @Override
     public List<OCCIRequestData> getOutputDatas() {
         if (outputDatas == null) {
             outputDatas = new LinkedList<>();
         }
+        if (outputEntities != null) {
+            List<Entity> entities = outputEntities;
+            outputEntities = null;
+            Lock lock = ConfigurationManager.getOwnerLock(username).readLock();
+            lock.lock();
+            try {
+                buildOutputDatas(entities, outputProjection);
+            } finally {
+                lock.unlock();
+            }
+        }
         return outputDatas;
     }
 
     @Override
     public void setOutputDatas(List<OCCIRequestData> outputDatas) {
         this.outputDatas = outputDatas;
+        this.outputEntities = null;
     }
 
     /**
-     * Convert an entity model object to a container object.
+     * Keep the entities to convert to output datas, the conversion is done on the first call to getOutputDatas.
+     * The rendering of a response does not read the output datas, so this costs nothing if no one asks for them.
+     * The field projection in use is kept with the entities.
      *
      * @param entities a list of entity model.
      */
     @Override
     public void convertEntitiesToOutputData(List<Entity> entities) {
+        getOutputDatas().clear();
+        this.outputEntities = new ArrayList<>(entities);
+        this.outputProjection = fieldProjection;
+    }
 
+    /**
+     * Convert an entity model object to a container object.
+     *
+     * @param entities   a list of entity model.
+     * @param projection the fields to convert.
+     */
+    private void buildOutputDatas(final List<Entity> entities, final FieldProjection projection) {
         OCCIRequestData data;
         List<Mixin> mixins;
-        List<String> mixinsToRender = new LinkedList<>();
-        this.outputDatas.clear();
         for (Entity entity : entities) {
             mixins = entity.getMixins();
 
             data = new OCCIRequestData();
             data.setEntityUUID(entity.getId());
-            data.setEntityTitle(entity.getTitle());
+            if (projection.includes(FieldProjection.FIELD_TITLE)) {
+                data.setEntityTitle(entity.getTitle());
+            }
             // Add summary to data container if any.
-            if (entity instanceof Resource) {
+            if (entity instanceof Resource && projection.includes(FieldProjection.FIELD_SUMMARY)) {
                 data.setEntitySummary(((Resource) entity).getSummary());
             }
-            data.setAttrs(EntityManager.convertEntityAttributesToMap(entity));
-            data.setLocation(EntityManager.getLocation(entity, username));
-            data.setKind(entity.getKind().getScheme() + entity.getKind().getTerm());
+            data.setAttrs(EntityManager.convertEntityAttributesToMap(entity, projection));
+            if (projection.includes(FieldProjection.FIELD_LOCATION)) {
+                data.setLocation(EntityManager.getLocation(entity, username));
+            }
+            if (projection.includes(FieldProjection.FIELD_KIND)) {
+                data.setKind(CategoryIds.of(entity.getKind()));
+            }
 
-            if (!entity.getMixins().isEmpty()) {
+            if (!entity.getMixins().isEmpty() && projection.includes(FieldProjection.FIELD_MIXINS)) {
+                List<String> mixinsToRender = new LinkedList<>();
                 for (Mixin mixin : mixins) {
                     // Check if mixin tag.
                     if (mixin.getAttributes().isEmpty()) {
                         // this mixin is a mixin tag.
-                        data.setMixinTag(mixin.getScheme() + mixin.getTerm());
+                        data.setMixinTag(CategoryIds.of(mixin));
 
                     }
-                    mixinsToRender.add(mixin.getScheme() + mixin.getTerm());
+                    mixinsToRender.add(CategoryIds.of(mixin));
                 }
                 if (!mixinsToRender.isEmpty()) {
                     data.setMixins(mixinsToRender);
@@ -137,7 +232,8 @@ public abstract class AbstractRequestParser implements IRequestParser {
     @Override
     public void convertLocationsToOutputDatas(List<String> locations) {
         OCCIRequestData data;
-        this.outputDatas.clear();
+        this.outputEntities = null;
+        getOutputDatas().clear();
         for (String location : locations) {
             data = new OCCIRequestData();
             data.setLocation(location);
@@ -164,4 +260,14 @@ public abstract class AbstractRequestParser implements IRequestParser {
     public void setServerURI(URI serverURI) {
         this.serverURI = serverURI;
     }
+
+    @Override
+    public FieldProjection getFieldProjection() {
+        return fieldProjection;
+    }
+
+    @Override
+    public void setFieldProjection(FieldProjection fieldProjection) {
+        this.fieldProjection = fieldProjection == null ? FieldProjection.ALL : fieldProjection;
+    }
 }
@@ -20,9 +20,11 @@ package org.occiware.mart.server.parser;
 
 import org.eclipse.cmf.occi.core.Entity;
 import org.occiware.mart.server.exception.ParseOCCIException;
+import org.occiware.mart.server.utils.FieldProjection;
 
 import java.net.URI;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Utility interface for parsing request input and parsing request output.
@@ -61,8 +63,27 @@ public interface IRequestParser {
 
     public Object renderOutputEntities(final List<Entity> entities) throws ParseOCCIException;
 
+    /**
+     * Render entities directly on the response output stream, the entities are rendered one by one while the content is written.
+     * The content is written without the owner lock, it must take the owner read lock to read the entities and release it before writing.
+     *
+     * @param entities the entities to render.
+     * @return the content to write, null if this parser or this collection is rendered with renderOutputEntities only.
+     * @throws ParseOCCIException
+     */
+    public StreamingContent renderOutputEntitiesStream(final List<Entity> entities) throws ParseOCCIException;
+
     public Object renderOutputEntity(final Entity entity) throws ParseOCCIException;
 
+    /**
+     * Render the results of an aggregation.
+     *
+     * @param results key: group name, value: map of result name (count, sum(occi.compute.cores)...) to the result value.
+     * @return an Object, a String or a Header Map object for text/occi.
+     * @throws ParseOCCIException
+     */
+    public Object renderOutputAggregation(final Map<String, Map<String, Number>> results) throws ParseOCCIException;
+
     List<OCCIRequestData> getInputDatas();
 
     public void setInputDatas(List<OCCIRequestData> inputDatas);
@@ -82,4 +103,14 @@ public interface IRequestParser {
     URI getServerURI();
 
     void setServerURI(URI serverURI);
+
+    /**
+     * @return the fields of the entities to render, never null.
+     */
+    FieldProjection getFieldProjection();
+
+    /**
+     * @param fieldProjection the fields of the entities to render, null to render all the fields.
+     */
+    void setFieldProjection(FieldProjection fieldProjection);
 }
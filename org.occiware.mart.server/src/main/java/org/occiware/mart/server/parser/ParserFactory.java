@@ -55,6 +55,7 @@ public class ParserFactory {
 
             case Constants.MEDIA_TYPE_JSON:
             case Constants.MEDIA_TYPE_JSON_OCCI:
+            case Constants.MEDIA_TYPE_NDJSON:
                 LOGGER.info("Parser request: JsonOcciParser");
                 return new JsonOcciParser(user);
 
@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.parser;
+
+import org.occiware.mart.server.exception.ParseOCCIException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Response content written directly on the output stream of the response, used to render large collections
+ * without building the whole content in memory.
+ */
+@FunctionalInterface
+public interface StreamingContent {
+
+    /**
+     * Write the content, the output stream is not closed.
+     *
+     * @param out the output stream of the response.
+     * @throws IOException        if the content cannot be written.
+     * @throws ParseOCCIException if the content cannot be rendered.
+     */
+    void writeTo(final OutputStream out) throws IOException, ParseOCCIException;
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.parser.json;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.occiware.mart.server.exception.ParseOCCIException;
+import org.occiware.mart.server.parser.json.render.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Kind of json input content, found from the names of the top level fields in one streaming pass without building any object.
+ * The types are checked in the order of this enum, the first type knowing all the fields is used, ex: a content with a kind and a source is a link.
+ * The mixins and actions of a resource are strings, the mixins and actions of a main content are objects.
+ */
+enum JsonInputType {
+
+    MAIN(OcciMainJson.class, "resources", "links", "kinds", "mixins", "actions", "attributes"),
+    RESOURCE(ResourceJson.class, "id", "title", "summary", "kind", "mixins", "attributes", "links", "actions", "location"),
+    LINK(LinkJson.class, "id", "title", "summary", "kind", "mixins", "attributes", "links", "actions", "location", "source", "target"),
+    MIXIN(MixinJson.class, "term", "scheme", "title", "location", "attributes"),
+    ACTION(ActionJson.class, "action", "attributes"),
+    LOCATIONS(LocationsJson.class, "locations");
+
+    private static final String FIELD_MIXINS = "mixins";
+    private static final String FIELD_ACTIONS = "actions";
+
+    private final Class<?> renderType;
+    private final Set<String> fields;
+
+    JsonInputType(final Class<?> renderType, final String... fields) {
+        this.renderType = renderType;
+        this.fields = new HashSet<>(Arrays.asList(fields));
+    }
+
+    /**
+     * @return the render object class to read for this type.
+     */
+    Class<?> getRenderType() {
+        return renderType;
+    }
+
+    /**
+     * Find the type of a json content, only the top level field names and the first item of the mixins and actions arrays are read.
+     *
+     * @param content the json content, not empty.
+     * @return the type of the content.
+     * @throws ParseOCCIException if the content is not a json object or if no type knows all its fields.
+     */
+    static JsonInputType classify(final String content) throws ParseOCCIException {
+        Set<String> names = new LinkedHashSet<>();
+        // null if no mixins / actions array, true if the items are strings (resource), false if they are objects (main).
+        Boolean categoryStrings = null;
+        try (JsonParser parser = JsonMappers.parser(content)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new ParseOCCIException("Unknown json input file, a json object is expected.");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                names.add(name);
+                token = parser.nextToken();
+                if (token == JsonToken.START_ARRAY && (FIELD_MIXINS.equals(name) || FIELD_ACTIONS.equals(name))) {
+                    token = parser.nextToken();
+                    if (token == JsonToken.VALUE_STRING) {
+                        categoryStrings = Boolean.TRUE;
+                    } else if (token == JsonToken.START_OBJECT && categoryStrings == null) {
+                        categoryStrings = Boolean.FALSE;
+                    }
+                    // Skip the other items of the array.
+                    while (token != JsonToken.END_ARRAY && token != null) {
+                        if (token.isStructStart()) {
+                            parser.skipChildren();
+                        }
+                        token = parser.nextToken();
+                    }
+                } else if (token != null && token.isStructStart()) {
+                    parser.skipChildren();
+                }
+            }
+            if (token != JsonToken.END_OBJECT) {
+                throw new ParseOCCIException("Unknown json input file, the json object is not complete.");
+            }
+        } catch (IOException ex) {
+            throw new ParseOCCIException("Unknown json input file, please check your file. " + ex.getMessage(), ex);
+        }
+        for (JsonInputType type : values()) {
+            if (type == MAIN && Boolean.TRUE.equals(categoryStrings)) {
+                continue;
+            }
+            if (type.fields.containsAll(names)) {
+                return type;
+            }
+        }
+        throw new ParseOCCIException("Unknown json input file, please check your file. Unknown fields : " + names);
+    }
+}
@@ -18,9 +18,8 @@
  */
 package org.occiware.mart.server.parser.json;
 
-import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.eclipse.cmf.occi.core.*;
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.ecore.EDataType;
@@ -35,16 +34,21 @@ import org.occiware.mart.server.parser.AbstractRequestParser;
 import org.occiware.mart.server.parser.IRequestParser;
 import org.occiware.mart.server.parser.OCCIRequestData;
 import org.occiware.mart.server.parser.QueryInterfaceData;
+import org.occiware.mart.server.parser.StreamingContent;
 import org.occiware.mart.server.parser.json.render.*;
 import org.occiware.mart.server.parser.json.render.queryinterface.*;
+import org.occiware.mart.server.utils.CategoryIds;
 import org.occiware.mart.server.utils.Constants;
+import org.occiware.mart.server.utils.FieldProjection;
 import org.occiware.mart.server.utils.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
 
 /**
  * @author Christophe Gourdin
@@ -58,6 +62,10 @@ public class JsonOcciParser extends AbstractRequestParser implements IRequestPar
     private static final String OBJECT_TYPE_INTERFACE = "object";
     private static final String ARRAY_TYPE_INTERFACE = "array";
     private static final String BOOLEAN_TYPE_INTERFACE = "boolean";
+    /**
+     * Number of entities converted under the owner read lock before they are written on the output stream.
+     */
+    private static final int STREAM_CHUNK_SIZE = 64;
 
     public JsonOcciParser(String user) {
         super(user);
@@ -81,81 +89,44 @@ public class JsonOcciParser extends AbstractRequestParser implements IRequestPar
         }
 
         String contentJson = (String) contentObj;
-        ObjectMapper mapper = new ObjectMapper();
-        // Define those attributes have only non null values.
-        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
 
-        OcciMainJson occiMain;
-        String messages = "";
         if (contentJson.isEmpty()) {
             // No content input.
             super.getInputDatas().clear();
             return;
         }
-        // Try on occi main json (for multiple resources/links/mixins).
-        try {
-            occiMain = mapper.readValue(contentJson, OcciMainJson.class);
-            parseMainInput(occiMain);
-            return;
-        } catch (IOException ex) {
-            messages += ex.getMessage();
-        }
-
-        // for one resource, if this is not a collection (resources,links etc..).
-        // it goes to try to get a single resource.
-
-        try {
-            ResourceJson resJson = mapper.readValue(contentJson, ResourceJson.class);
-            parseResourceJsonInput(resJson);
-            return;
-        } catch (IOException ex) {
-            messages += " " + ex.getMessage();
-        }
-        // Try with link.
-        try {
-            LinkJson linkJson = mapper.readValue(contentJson, LinkJson.class);
-            parseLinkJsonInput(linkJson);
-            return;
-        } catch (IOException ex) {
-            messages += " " + ex.getMessage();
-        }
-
-
-        // Try to parse single mixin tag definition.
-        try {
-            MixinJson mixinJson = mapper.readValue(contentJson, MixinJson.class);
-            parseMixinJsonTagInput(mixinJson);
-            return;
-        } catch (IOException ex) {
-            messages += " " + ex.getMessage();
-
-        }
-
-        // Try to read action json invocation.
-
+        // The type of content (occi main json for multiple resources/links/mixins, single resource, link, mixin tag,
+        // action invocation or locations) is found from its fields, the content is then read once to this type.
+        JsonInputType inputType = JsonInputType.classify(contentJson);
+        Object input;
         try {
-            ActionJson actionJson = mapper.readValue(contentJson, ActionJson.class);
-            parseActionJsonInvocationInput(actionJson);
-            return;
+            input = JsonMappers.reader(inputType.getRenderType()).readValue(contentJson);
         } catch (IOException ex) {
-            messages += " " + ex.getMessage();
+            LOGGER.error("Unknown json input file, please check your file input. " + ex.getMessage());
+            throw new ParseOCCIException("Unknown json input file, please check your file. " + ex.getMessage(), ex);
+        }
+        switch (inputType) {
+            case MAIN:
+                parseMainInput((OcciMainJson) input);
+                break;
+            case RESOURCE:
+                parseResourceJsonInput((ResourceJson) input);
+                break;
+            case LINK:
+                parseLinkJsonInput((LinkJson) input);
+                break;
+            case MIXIN:
+                parseMixinJsonTagInput((MixinJson) input);
+                break;
+            case ACTION:
+                parseActionJsonInvocationInput((ActionJson) input);
+                break;
+            case LOCATIONS:
+                parseLocationsJsonInput((LocationsJson) input);
+                break;
+            default:
+                throw new ParseOCCIException("Unknown json input file, please check your file.");
         }
-
-        // Try to read locations for mixin tag association.
-        try {
-            LocationsJson locationsJson = mapper.readValue(contentJson, LocationsJson.class);
-            parseLocationsJsonInput(locationsJson);
-            return;
-        } catch (IOException ex) {
-            messages += " " + ex.getMessage();
-        }
-
-
-        // If all tries are failed throw an exception with otherall exception messages.
-        LOGGER.error("Unknown json input file, please check your file input. " + messages);
-        throw new ParseOCCIException("Unknown json input file, please check your file. " + messages);
-
-
     }
 
     /**
@@ -468,7 +439,7 @@ public class JsonOcciParser extends AbstractRequestParser implements IRequestPar
 
         // Build the list of mixins user tags.
         for (Mixin mixin : mixins) {
-            if (MixinManager.isMixinTags(mixin.getScheme() + mixin.getTerm(), user)) {
+            if (MixinManager.isMixinTags(CategoryIds.of(mixin), user)) {
                 extUserTagMixins.add(mixin);
             }
         }
@@ -537,7 +508,7 @@ public class JsonOcciParser extends AbstractRequestParser implements IRequestPar
             // Array of string actions.
             if (mixin.getActions() != null && !mixin.getActions().isEmpty()) {
                 for (Action action : mixin.getActions()) {
-                    actions.add(action.getScheme() + action.getTerm());
+                    actions.add(CategoryIds.of(action));
                     // Build action definition.
                     ActionInterfaceJson actionInterfaceJson = new ActionInterfaceJson();
                     actionInterfaceJson.setTitle(action.getTitle());
@@ -568,10 +539,10 @@ public class JsonOcciParser extends AbstractRequestParser implements IRequestPar
                     models.add(modelJson);
                 }
             } else {
-                Optional<Extension> optExt = MixinManager.getExtensionForMixin(mixin.getScheme() + mixin.getTerm(), user);
+                Optional<Extension> optExt = MixinManager.getExtensionForMixin(CategoryIds.of(mixin), user);
                 Extension ext;
                 if (!optExt.isPresent()) {
-                    throw new ConfigurationException("Extension not found for mixin : " + mixin.getScheme() + mixin.getTerm());
+                    throw new ConfigurationException("Extension not found for mixin : " + CategoryIds.of(mixin));
                 } else {
                     ext = optExt.get();
                 }
@@ -638,11 +609,11 @@ public class JsonOcciParser extends AbstractRequestParser implements IRequestPar
             if (optKind.isPresent()) {
                 locKind = optKind.get();
             } else {
-                throw new ConfigurationException("Location for kind : " + kind.getScheme() + kind.getTerm() + " is unknown on extension model");
+                throw new ConfigurationException("Location for kind : " + CategoryIds.of(kind) + " is unknown on extension model");
             }
             kindInterfaceJson.setLocation(locKind);
             if (kind.getParent() != null) {
-                kindInterfaceJson.setParent(kind.getParent().getScheme() + kind.getParent().getTerm());
+                kindInterfaceJson.setParent(CategoryIds.of(kind.getParent()));
             }
             kindInterfaceJson.setScheme(kind.getScheme());
             kindInterfaceJson.setTerm(kind.getTerm());
@@ -653,7 +624,7 @@ public class JsonOcciParser extends AbstractRequestParser implements IRequestPar
             // Array of string actions.
             if (kind.getActions() != null && !kind.getActions().isEmpty()) {
                 for (Action action : kind.getActions()) {
-                    actions.add(action.getScheme() + action.getTerm());
+                    actions.add(CategoryIds.of(action));
                     // Build action definition.
                     ActionInterfaceJson actionInterfaceJson = new ActionInterfaceJson();
                     actionInterfaceJson.setTitle(action.getTitle());
@@ -665,12 +636,12 @@ public class JsonOcciParser extends AbstractRequestParser implements IRequestPar
             }
             kindInterfaceJson.setActions(actions);
             ModelInterfaceJson modelJson = null;
-            Optional<Extension> optExt = KindManager.getExtensionForKind(kind.getScheme() + kind.getTerm(), user);
+            Optional<Extension> optExt = KindManager.getExtensionForKind(CategoryIds.of(kind), user);
             Extension ext;
             if (optExt.isPresent()) {
                 ext = optExt.get();
             } else {
-                throw new ConfigurationException("Unknown extension for kind : " + kind.getScheme() + kind.getTerm());
+                throw new ConfigurationException("Unknown extension for kind : " + CategoryIds.of(kind));
             }
             if (models.isEmpty()) {
                 modelJson = new ModelInterfaceJson();
@@ -882,8 +853,6 @@ public class JsonOcciParser extends AbstractRequestParser implements IRequestPar
      */
     @Override
     public String renderOutputEntities(final List<Entity> entities) throws ParseOCCIException {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
         if (entities == null || entities.isEmpty()) {
             return EMPTY_JSON;
         }
@@ -933,6 +902,118 @@ public class JsonOcciParser extends AbstractRequestParser implements IRequestPar
         return response;
     }
 
+    /**
+     * Render an entity collection on the response output stream, same content as renderOutputEntities
+     * but each entity is converted and written one by one, the whole collection is never held as a json string.
+     *
+     * @param entities the entities to render.
+     * @return the content to write, null if there is less than two entities (rendered with renderOutputEntities).
+     * @throws ParseOCCIException
+     */
+    @Override
+    public StreamingContent renderOutputEntitiesStream(final List<Entity> entities) throws ParseOCCIException {
+        if (entities == null || entities.size() < 2) {
+            return null;
+        }
+        return out -> {
+            writeEntities(entities, out);
+            // Convert entities to a list of outputData, the purpose here is to let the developer use the parsed result or use a list of output container data.
+            super.convertEntitiesToOutputData(entities);
+        };
+    }
+
+    private void writeEntities(final List<Entity> entities, final OutputStream out) throws IOException {
+        List<Entity> resources = new ArrayList<>();
+        List<Entity> links = new ArrayList<>();
+        for (Entity entity : entities) {
+            if (entity instanceof Link) {
+                links.add(entity);
+            } else {
+                resources.add(entity);
+            }
+        }
+        try (JsonGenerator generator = JsonMappers.generator(out)) {
+            generator.writeStartObject();
+            if (!resources.isEmpty()) {
+                generator.writeArrayFieldStart("resources");
+                writeEntitiesByChunk(resources, generator);
+                generator.writeEndArray();
+            }
+            if (!links.isEmpty()) {
+                generator.writeArrayFieldStart("links");
+                writeEntitiesByChunk(links, generator);
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Convert the entities to json objects by chunks under the owner read lock, each chunk is written after the lock is released,
+     * so the owner entities are never locked while the output stream is blocked by a slow client.
+     * The entities removed from the owner configuration between two chunks are not written.
+     *
+     * @param entities  the entities to write, resources or links.
+     * @param generator the json generator on the output stream.
+     * @throws IOException if the output stream cannot be written.
+     */
+    private void writeEntitiesByChunk(final List<Entity> entities, final JsonGenerator generator) throws IOException {
+        Lock lock = ConfigurationManager.getOwnerLock(getUsername()).readLock();
+        List<Object> jsons = new ArrayList<>(STREAM_CHUNK_SIZE);
+        for (int from = 0; from < entities.size(); from += STREAM_CHUNK_SIZE) {
+            jsons.clear();
+            lock.lock();
+            try {
+                for (Entity entity : entities.subList(from, Math.min(from + STREAM_CHUNK_SIZE, entities.size()))) {
+                    if (!isReferenced(entity)) {
+                        // Removed by a writer since a previous chunk was written.
+                        continue;
+                    }
+                    jsons.add(entity instanceof Link ? buildLinkJsonFromEntity(entity) : buildResourceJsonFromEntity(entity));
+                }
+            } finally {
+                lock.unlock();
+            }
+            for (Object json : jsons) {
+                JsonMappers.streamWriter(json.getClass()).writeValue(generator, json);
+            }
+        }
+    }
+
+    /**
+     * @param entity an entity to render.
+     * @return true if the entity is still referenced by the owner, must be called under the owner lock.
+     */
+    private boolean isReferenced(final Entity entity) {
+        Optional<Entity> optEntity = EntityManager.findEntityForUuid(entity.getId(), getUsername());
+        return optEntity.isPresent() && optEntity.get() == entity;
+    }
+
+    /**
+     * Render the results of an aggregation, ex: {"aggregations": [{"group": "active", "count": 2, "sum(occi.compute.cores)": 6.0}]}.
+     *
+     * @param results key: group name, value: map of result name to the result value.
+     * @return a json String.
+     * @throws ParseOCCIException
+     */
+    @Override
+    public String renderOutputAggregation(final Map<String, Map<String, Number>> results) throws ParseOCCIException {
+        List<Map<String, Object>> groups = new LinkedList<>();
+        for (Map.Entry<String, Map<String, Number>> entry : results.entrySet()) {
+            Map<String, Object> group = new LinkedHashMap<>();
+            group.put("group", entry.getKey());
+            group.putAll(entry.getValue());
+            groups.add(group);
+        }
+        Map<String, Object> aggregations = new LinkedHashMap<>();
+        aggregations.put("aggregations", groups);
+        try {
+            return JsonMappers.writer(aggregations.getClass()).writeValueAsString(aggregations);
+        } catch (JsonProcessingException ex) {
+            throw new ParseOCCIException("Cannot render the aggregation to application/json : " + ex.getMessage(), ex);
+        }
+    }
+
     /**
      * Used for uri-list content type with application/json rendering.
      *
@@ -963,43 +1044,61 @@ public class JsonOcciParser extends AbstractRequestParser implements IRequestPar
     }
 
     /**
-     * Build a resource for entity object model.
+     * Build a resource for entity object model, only the fields of the projection are rendered.
      *
      * @param entity
      * @return
      */
     private ResourceJson buildResourceJsonFromEntity(final Entity entity) {
+        FieldProjection projection = getFieldProjection();
         ResourceJson resJson = new ResourceJson();
         Resource res = (Resource) entity;
         Kind kind = res.getKind();
         List<Mixin> mixins;
         List<String> mixinsStr = new LinkedList<>();
         List<LinkJson> links = new LinkedList<>();
-        resJson.setKind(kind.getScheme() + kind.getTerm());
         resJson.setId(Constants.URN_UUID_PREFIX + res.getId());
-        resJson.setTitle(res.getTitle());
-        resJson.setSummary(res.getSummary());
-        resJson.setLocation(EntityManager.getLocation(entity, getUsername()));
+        if (projection.includes(FieldProjection.FIELD_KIND)) {
+            resJson.setKind(CategoryIds.of(kind));
+        }
+        if (projection.includes(FieldProjection.FIELD_TITLE)) {
+            resJson.setTitle(res.getTitle());
+        }
+        if (projection.includes(FieldProjection.FIELD_SUMMARY)) {
+            resJson.setSummary(res.getSummary());
+        }
+        if (projection.includes(FieldProjection.FIELD_LOCATION)) {
+            resJson.setLocation(EntityManager.getLocation(entity, getUsername()));
+        }
 
         List<String> actionsStr = new LinkedList<>();
         String actionStr;
         mixins = res.getMixins();
 
-        for (Action action : kind.getActions()) {
-            actionStr = action.getScheme() + action.getTerm();
-            actionsStr.add(actionStr);
+        boolean withActions = projection.includes(FieldProjection.FIELD_ACTIONS);
+        if (withActions) {
+            for (Action action : kind.getActions()) {
+                actionStr = CategoryIds.of(action);
+                actionsStr.add(actionStr);
+            }
         }
         for (Mixin mixin : mixins) {
             // Add actions from associated mixins.
-            for (Action action : mixin.getActions()) {
-                actionStr = action.getScheme() + action.getTerm();
-                actionsStr.add(actionStr);
+            if (withActions) {
+                for (Action action : mixin.getActions()) {
+                    actionStr = CategoryIds.of(action);
+                    actionsStr.add(actionStr);
+                }
             }
-            String mixinStr = mixin.getScheme() + mixin.getTerm();
+            String mixinStr = CategoryIds.of(mixin);
             mixinsStr.add(mixinStr);
         }
-        resJson.setMixins(mixinsStr);
-        resJson.setActions(actionsStr);
+        if (projection.includes(FieldProjection.FIELD_MIXINS)) {
+            resJson.setMixins(mixinsStr);
+        }
+        if (withActions) {
+            resJson.setActions(actionsStr);
+        }
         Map<String, Object> attributes = new LinkedHashMap<>();
         // Attributes.
         List<AttributeState> attrsState = res.getAttributes();
@@ -1017,7 +1116,7 @@ public class JsonOcciParser extends AbstractRequestParser implements IRequestPar
             String val = attr.getValue();
             // We must not include occi.core.title, occi.core.summary and occi.core.id as these attributes are already defined in the json output content (title, id, summary attributes).
             if (!key.equals(Constants.OCCI_CORE_SUMMARY) && !key.equals(Constants.OCCI_CORE_TITLE)
-                    && !key.equals(Constants.OCCI_CORE_ID)) {
+                    && !key.equals(Constants.OCCI_CORE_ID) && projection.includesAttribute(key)) {
                 Optional<String> optValStr = EntityManager.getAttrValueStr(entity, key);
                 Optional<Number> optValNumber = EntityManager.getAttrValueNumber(entity, key);
 
@@ -1047,6 +1146,9 @@ public class JsonOcciParser extends AbstractRequestParser implements IRequestPar
             for (AttributeState attr : mixinStates) {
                 String key = attr.getName();
                 String val = attr.getValue();
+                if (!projection.includesAttribute(key)) {
+                    continue;
+                }
                 Optional<String> optValStr = MixinManager.getAttrValueStr(mixinB, key);
                 Optional<Number> optValNumber = MixinManager.getAttrValueNumber(mixinB, key);
 
@@ -1068,9 +1170,11 @@ public class JsonOcciParser extends AbstractRequestParser implements IRequestPar
 
 
         // resources has links ?
-        for (Link link : res.getLinks()) {
-            LinkJson linkJson = buildLinkJsonFromEntity(link);
-            links.add(linkJson);
+        if (projection.includes(FieldProjection.FIELD_LINKS)) {
+            for (Link link : res.getLinks()) {
+                LinkJson linkJson = buildLinkJsonFromEntity(link);
+                links.add(linkJson);
+            }
         }
         if (!links.isEmpty()) {
             resJson.setLinks(links);
@@ -1080,12 +1184,13 @@ public class JsonOcciParser extends AbstractRequestParser implements IRequestPar
     }
 
     /**
-     * Build a link entity from Entity object model.
+     * Build a link entity from Entity object model, only the fields of the projection are rendered.
      *
      * @param entity
      * @return
      */
     private LinkJson buildLinkJsonFromEntity(final Entity entity) {
+        FieldProjection projection = getFieldProjection();
         LinkJson linkJson = new LinkJson();
         Link link = (Link) entity;
         Kind kind;
@@ -1097,30 +1202,45 @@ public class JsonOcciParser extends AbstractRequestParser implements IRequestPar
         Map<String, Object> attributes = new LinkedHashMap<>();
         kind = link.getKind();
 
-        linkJson.setKind(kind.getScheme() + kind.getTerm());
         linkJson.setId(Constants.URN_UUID_PREFIX + link.getId());
-        linkJson.setTitle(link.getTitle());
-        linkJson.setLocation(EntityManager.getLocation(entity, getUsername()));
+        if (projection.includes(FieldProjection.FIELD_KIND)) {
+            linkJson.setKind(CategoryIds.of(kind));
+        }
+        if (projection.includes(FieldProjection.FIELD_TITLE)) {
+            linkJson.setTitle(link.getTitle());
+        }
+        if (projection.includes(FieldProjection.FIELD_LOCATION)) {
+            linkJson.setLocation(EntityManager.getLocation(entity, getUsername()));
+        }
+        boolean withActions = projection.includes(FieldProjection.FIELD_ACTIONS);
         actions = kind.getActions();
         mixins = link.getMixins();
-        for (Action action : actions) {
-            actionStr = action.getScheme() + action.getTerm();
-            actionsStr.add(actionStr);
+        if (withActions) {
+            for (Action action : actions) {
+                actionStr = CategoryIds.of(action);
+                actionsStr.add(actionStr);
+            }
         }
         for (Mixin mixin : mixins) {
             // Add actions from associated mixins.
-            for (Action action : mixin.getActions()) {
-                actionStr = action.getScheme() + action.getTerm();
-                actionsStr.add(actionStr);
+            if (withActions) {
+                for (Action action : mixin.getActions()) {
+                    actionStr = CategoryIds.of(action);
+                    actionsStr.add(actionStr);
+                }
             }
-            String mixinStr = mixin.getScheme() + mixin.getTerm();
+            String mixinStr = CategoryIds.of(mixin);
             mixinsStr.add(mixinStr);
         }
-        linkJson.setActions(actionsStr);
-        linkJson.setMixins(mixinsStr);
+        if (withActions) {
+            linkJson.setActions(actionsStr);
+        }
+        if (projection.includes(FieldProjection.FIELD_MIXINS)) {
+            linkJson.setMixins(mixinsStr);
+        }
 
-        // Attributes.
-        List<AttributeState> attrsState = link.getAttributes();
+        // Attributes, the attributes of the mixins are read on a copy, the attributes states must stay on their mixin.
+        List<AttributeState> attrsState = new LinkedList<>(link.getAttributes());
 
         List<MixinBase> mixinBases = link.getParts();
 
@@ -1131,7 +1251,7 @@ public class JsonOcciParser extends AbstractRequestParser implements IRequestPar
         for (AttributeState attr : attrsState) {
             String key = attr.getName();
             String val = attr.getValue();
-            if (val != null) {
+            if (val != null && projection.includesAttribute(key)) {
                 if (!key.equals(Constants.OCCI_CORE_SUMMARY) && !key.equals(Constants.OCCI_CORE_TITLE)
                         && !key.equals(Constants.OCCI_CORE_ID)
                         && !key.equals(Constants.OCCI_CORE_SOURCE)
@@ -1168,22 +1288,27 @@ public class JsonOcciParser extends AbstractRequestParser implements IRequestPar
         }
         Resource resSrc = link.getSource();
         Resource resTarget = link.getTarget();
-        SourceJson src = new SourceJson();
-        TargetJson target = new TargetJson();
-        String relativeLocation = EntityManager.getLocation(resSrc, getUsername());
-        src.setKind(resSrc.getKind().getScheme() + resSrc.getKind().getTerm());
-        if (!relativeLocation.startsWith("/")) {
-            relativeLocation = "/" + relativeLocation;
-        }
-        src.setLocation(relativeLocation);
-        relativeLocation = EntityManager.getLocation(resTarget, getUsername());
-        target.setKind(resTarget.getKind().getScheme() + resTarget.getKind().getTerm());
-        if (!relativeLocation.startsWith("/")) {
-            relativeLocation = "/" + relativeLocation;
-        }
-        target.setLocation(relativeLocation);
-        linkJson.setSource(src);
-        linkJson.setTarget(target);
+        String relativeLocation;
+        if (projection.includes(FieldProjection.FIELD_SOURCE)) {
+            SourceJson src = new SourceJson();
+            relativeLocation = EntityManager.getLocation(resSrc, getUsername());
+            src.setKind(CategoryIds.of(resSrc.getKind()));
+            if (!relativeLocation.startsWith("/")) {
+                relativeLocation = "/" + relativeLocation;
+            }
+            src.setLocation(relativeLocation);
+            linkJson.setSource(src);
+        }
+        if (projection.includes(FieldProjection.FIELD_TARGET)) {
+            TargetJson target = new TargetJson();
+            relativeLocation = EntityManager.getLocation(resTarget, getUsername());
+            target.setKind(CategoryIds.of(resTarget.getKind()));
+            if (!relativeLocation.startsWith("/")) {
+                relativeLocation = "/" + relativeLocation;
+            }
+            target.setLocation(relativeLocation);
+            linkJson.setTarget(target);
+        }
 
         linkJson.setAttributes(attributes);
 
@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.parser.json.render;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared json readers and writers of the render objects, the object mapper is configured once and never exposed
+ * so its configuration cannot change. Readers and writers are immutable and thread safe, the serializers and deserializers
+ * of a type are built on first use and reused by all the requests.
+ * If the jackson afterburner module is on the classpath, it is registered to use bytecode generated (de)serializers.
+ */
+public final class JsonMappers {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JsonMappers.class);
+    private static final String AFTERBURNER_MODULE = "com.fasterxml.jackson.module.afterburner.AfterburnerModule";
+
+    private static final ObjectMapper mapper = createMapper();
+
+    /**
+     * key: type to read, value: reader of this type.
+     */
+    private static final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+    /**
+     * key: type to write, value: writer of this type, non null values only with the default pretty printer.
+     */
+    private static final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+    /**
+     * key: type to write, value: writer of this type on a streaming generator, the generator gives the pretty printer.
+     */
+    private static final Map<Class<?>, ObjectWriter> streamWriters = new ConcurrentHashMap<>();
+
+    private JsonMappers() {
+    }
+
+    /**
+     * @param type the type to read, ex: ResourceJson.class.
+     * @return the shared reader of this type.
+     */
+    public static ObjectReader reader(final Class<?> type) {
+        return readers.computeIfAbsent(type, mapper::readerFor);
+    }
+
+    /**
+     * @param type the type to write, use the runtime class of the object (a LinkJson is a ResourceJson with more fields).
+     * @return the shared pretty printer writer of this type, null values are not written.
+     */
+    public static ObjectWriter writer(final Class<?> type) {
+        return writers.computeIfAbsent(type, key -> mapper.writerFor(key).withDefaultPrettyPrinter());
+    }
+
+    /**
+     * @param type the type to write, use the runtime class of the object.
+     * @return the shared writer of this type to write values on a generator created by generator(OutputStream),
+     * the generator is not flushed after each value.
+     */
+    public static ObjectWriter streamWriter(final Class<?> type) {
+        return streamWriters.computeIfAbsent(type, key -> mapper.writerFor(key).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE));
+    }
+
+    /**
+     * @param out the output stream to write on, not closed when the generator is closed.
+     * @return a streaming utf-8 generator with the default pretty printer, to close after use.
+     * @throws IOException if the generator cannot be created.
+     */
+    public static JsonGenerator generator(final OutputStream out) throws IOException {
+        JsonGenerator generator = mapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return generator.useDefaultPrettyPrinter();
+    }
+
+    /**
+     * @param content a json content.
+     * @return a streaming parser on the content, to close after use.
+     * @throws IOException if the parser cannot be created.
+     */
+    public static JsonParser parser(final String content) throws IOException {
+        return mapper.getFactory().createParser(content);
+    }
+
+    private static ObjectMapper createMapper() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        // Define those attributes have only non null values.
+        objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        try {
+            Class<?> moduleClass = Class.forName(AFTERBURNER_MODULE);
+            objectMapper.registerModule((Module) moduleClass.newInstance());
+            LOGGER.info("Json (de)serializers are generated by the afterburner module.");
+        } catch (ClassNotFoundException ex) {
+            LOGGER.debug("Afterburner module is not on the classpath, json (de)serializers use reflection.");
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            LOGGER.warn("Cannot register the afterburner module : " + ex.getMessage());
+        }
+        return objectMapper;
+    }
+}
@@ -18,9 +18,7 @@
  */
 package org.occiware.mart.server.parser.json.render;
 
-import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  * To output a response message (usage with exceptions, ok message, or custom messages).
@@ -38,10 +36,6 @@ public class MessageJson {
     }
 
     public String toStringJson() throws JsonProcessingException {
-        String result;
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-        result = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(this);
-        return result;
+        return JsonMappers.writer(getClass()).writeValueAsString(this);
     }
 }
@@ -18,9 +18,7 @@
  */
 package org.occiware.mart.server.parser.json.render;
 
-import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.util.List;
 import java.util.Map;
@@ -122,11 +120,7 @@ public class ResourceJson {
     }
 
     public String toStringJson() throws JsonProcessingException {
-        String result;
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-        result = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(this);
-        return result;
+        return JsonMappers.writer(getClass()).writeValueAsString(this);
     }
 
 }
@@ -18,9 +18,8 @@
  */
 package org.occiware.mart.server.parser.json.render.queryinterface;
 
-import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.occiware.mart.server.parser.json.render.JsonMappers;
 
 import java.util.List;
 
@@ -45,10 +44,6 @@ public class GlobalModelInterfaceJson {
     }
 
     public String toStringJson() throws JsonProcessingException {
-        String result;
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-        result = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(this);
-        return result;
+        return JsonMappers.writer(getClass()).writeValueAsString(this);
     }
 }
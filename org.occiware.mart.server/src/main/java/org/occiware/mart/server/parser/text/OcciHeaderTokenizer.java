@@ -0,0 +1,260 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.parser.text;
+
+import org.occiware.mart.server.exception.ParseOCCIException;
+
+/**
+ * Single pass tokenizer of the OCCI HTTP rendering header values, without regular expressions.
+ * A header value is a list of elements separated by commas, an element is a first value followed by parameters separated by semicolons,
+ * ex: compute; scheme="http://schemas.ogf.org/occi/infrastructure#"; class="kind", ssh_key; scheme="..."; class="mixin" (Category)
+ * or &lt;/network/1&gt;; rel="http://schemas.ogf.org/occi/infrastructure#network"; self="/link/1" (Link).
+ * Quoted strings may contain commas, semicolons and equal signs, a backslash escapes the next character.
+ * Only the tokens given to the handlers are allocated.
+ */
+public final class OcciHeaderTokenizer {
+
+    private static final char QUOTE = '"';
+    private static final char ESCAPE = '\\';
+    private static final char ELEMENT_SEPARATOR = ',';
+    private static final char PARAMETER_SEPARATOR = ';';
+    private static final char VALUE_SEPARATOR = '=';
+
+    /**
+     * Receive the elements of a header value (Category, Link).
+     */
+    public interface ElementHandler {
+
+        /**
+         * @param value the first value of the element (term of a category, uri of a link), empty if none.
+         * @throws ParseOCCIException
+         */
+        void startElement(final String value) throws ParseOCCIException;
+
+        /**
+         * @param name  the parameter name.
+         * @param value the parameter value without quotes, empty if the parameter has no value.
+         * @throws ParseOCCIException
+         */
+        void parameter(final String name, final String value) throws ParseOCCIException;
+
+        void endElement() throws ParseOCCIException;
+    }
+
+    /**
+     * Receive the name = value pairs of a header value (X-OCCI-Attribute) or the values of a list (X-OCCI-Location), the name is null for a list.
+     */
+    public interface ValueHandler {
+
+        void value(final String name, final String value) throws ParseOCCIException;
+    }
+
+    private OcciHeaderTokenizer() {
+    }
+
+    /**
+     * Read the elements of a header value like a Category or a Link header value.
+     *
+     * @param header  the header value.
+     * @param handler receives the elements.
+     * @throws ParseOCCIException if a quoted string is not closed or if the handler fails.
+     */
+    public static void parseElements(final String header, final ElementHandler handler) throws ParseOCCIException {
+        if (header == null) {
+            return;
+        }
+        int length = header.length();
+        int pos = skipWhitespaces(header, 0, length);
+        while (pos < length) {
+            // First value of the element.
+            int end = findEnd(header, pos, length, true);
+            handler.startElement(token(header, pos, end));
+            pos = end;
+            while (pos < length && header.charAt(pos) == PARAMETER_SEPARATOR) {
+                pos = skipWhitespaces(header, pos + 1, length);
+                if (pos >= length || header.charAt(pos) == ELEMENT_SEPARATOR || header.charAt(pos) == PARAMETER_SEPARATOR) {
+                    // Empty parameter, like the ending semicolon of an element.
+                    continue;
+                }
+                int nameEnd = findNameEnd(header, pos, length);
+                String name = header.substring(pos, trimEnd(header, pos, nameEnd));
+                pos = nameEnd;
+                String value = "";
+                if (pos < length && header.charAt(pos) == VALUE_SEPARATOR) {
+                    pos = skipWhitespaces(header, pos + 1, length);
+                    end = findEnd(header, pos, length, true);
+                    value = token(header, pos, end);
+                    pos = end;
+                } else {
+                    pos = findEnd(header, pos, length, true);
+                }
+                handler.parameter(name, value);
+            }
+            handler.endElement();
+            // Skip the element separator.
+            pos = skipWhitespaces(header, pos + 1, length);
+        }
+    }
+
+    /**
+     * Read the name = value pairs of a header value like X-OCCI-Attribute: occi.core.title="a, b", occi.compute.cores=2.
+     * The pairs without equal sign are ignored.
+     *
+     * @param header  the header value.
+     * @param handler receives the pairs, the values are unquoted.
+     * @throws ParseOCCIException if a quoted string is not closed or if the handler fails.
+     */
+    public static void parseAttributes(final String header, final ValueHandler handler) throws ParseOCCIException {
+        if (header == null) {
+            return;
+        }
+        int length = header.length();
+        int pos = skipWhitespaces(header, 0, length);
+        while (pos < length) {
+            int nameEnd = findNameEnd(header, pos, length);
+            if (nameEnd < length && header.charAt(nameEnd) == VALUE_SEPARATOR) {
+                String name = token(header, pos, trimEnd(header, pos, nameEnd));
+                pos = skipWhitespaces(header, nameEnd + 1, length);
+                int end = findEnd(header, pos, length, false);
+                handler.value(name, token(header, pos, end));
+                pos = end;
+            } else {
+                pos = findEnd(header, nameEnd, length, false);
+            }
+            // Skip the pair separator.
+            pos = skipWhitespaces(header, pos + 1, length);
+        }
+    }
+
+    /**
+     * Read the values of a comma separated list like X-OCCI-Location: /compute/vm1, /compute/vm2.
+     *
+     * @param header  the header value.
+     * @param handler receives the values with a null name, empty values are ignored.
+     * @throws ParseOCCIException if a quoted string is not closed or if the handler fails.
+     */
+    public static void parseValues(final String header, final ValueHandler handler) throws ParseOCCIException {
+        if (header == null) {
+            return;
+        }
+        int length = header.length();
+        int pos = skipWhitespaces(header, 0, length);
+        while (pos < length) {
+            int end = findEnd(header, pos, length, false);
+            String value = token(header, pos, end);
+            if (!value.isEmpty()) {
+                handler.value(null, value);
+            }
+            pos = skipWhitespaces(header, end + 1, length);
+        }
+    }
+
+    /**
+     * @return the index of the separator ending the value starting at pos (a comma, or a semicolon for the element values), or the length.
+     */
+    private static int findEnd(final String header, final int start, final int length, final boolean parameters) throws ParseOCCIException {
+        int pos = start;
+        while (pos < length) {
+            char c = header.charAt(pos);
+            if (c == QUOTE) {
+                pos = findClosingQuote(header, pos, length);
+            } else if (c == ELEMENT_SEPARATOR || parameters && c == PARAMETER_SEPARATOR) {
+                return pos;
+            }
+            pos++;
+        }
+        return length;
+    }
+
+    /**
+     * @return the index of the end of a parameter or attribute name, the equal sign or the end of the value.
+     */
+    private static int findNameEnd(final String header, final int start, final int length) {
+        int pos = start;
+        while (pos < length) {
+            char c = header.charAt(pos);
+            if (c == VALUE_SEPARATOR || c == ELEMENT_SEPARATOR || c == PARAMETER_SEPARATOR || c == QUOTE) {
+                return pos;
+            }
+            pos++;
+        }
+        return length;
+    }
+
+    private static int findClosingQuote(final String header, final int openingQuote, final int length) throws ParseOCCIException {
+        int pos = openingQuote + 1;
+        while (pos < length) {
+            char c = header.charAt(pos);
+            if (c == ESCAPE) {
+                pos++;
+            } else if (c == QUOTE) {
+                return pos;
+            }
+            pos++;
+        }
+        throw new ParseOCCIException("Quoted string is not closed : " + header.substring(openingQuote));
+    }
+
+    /**
+     * @return the value between start and end without the surrounding whitespaces and quotes, the escaped characters are unescaped.
+     */
+    private static String token(final String header, final int start, final int end) {
+        int to = trimEnd(header, start, end);
+        StringBuilder builder = null;
+        boolean inQuotes = false;
+        int copied = start;
+        for (int pos = start; pos < to; pos++) {
+            char c = header.charAt(pos);
+            if (c == QUOTE || c == ESCAPE && inQuotes && pos + 1 < to) {
+                if (builder == null) {
+                    builder = new StringBuilder(to - start);
+                }
+                builder.append(header, copied, pos);
+                if (c == QUOTE) {
+                    inQuotes = !inQuotes;
+                } else {
+                    pos++;
+                    builder.append(header.charAt(pos));
+                }
+                copied = pos + 1;
+            }
+        }
+        if (builder == null) {
+            return header.substring(start, to);
+        }
+        builder.append(header, copied, to);
+        return builder.toString();
+    }
+
+    private static int skipWhitespaces(final String header, final int start, final int length) {
+        int pos = start;
+        while (pos < length && Character.isWhitespace(header.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int trimEnd(final String header, final int start, final int end) {
+        int pos = end;
+        while (pos > start && Character.isWhitespace(header.charAt(pos - 1))) {
+            pos--;
+        }
+        return pos;
+    }
+}
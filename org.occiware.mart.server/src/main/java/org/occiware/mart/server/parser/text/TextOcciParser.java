@@ -23,12 +23,13 @@ import org.occiware.mart.server.exception.ParseOCCIException;
 import org.occiware.mart.server.model.ConfigurationManager;
 import org.occiware.mart.server.model.EntityManager;
 import org.occiware.mart.server.parser.*;
+import org.occiware.mart.server.utils.CategoryIds;
 import org.occiware.mart.server.utils.Constants;
+import org.occiware.mart.server.utils.FieldProjection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.regex.Matcher;
 
 /**
  * text/occi rendering are in headers not in body, this is not a text/plain (or
@@ -93,46 +94,9 @@ public class TextOcciParser extends AbstractRequestParser implements IRequestPar
                 // As it may have kind and mixins, the value return will be a kind class before.
                 // Example of value:
                 // compute; scheme="http://schemas.ogf.org/occi/infrastructure#"; class="kind";
-
+                CategoryHandler handler = new CategoryHandler(data, mixinsToAdd);
                 for (String value : values) {
-                    String[] valuesArray = value.split(",");
-
-                    for (String line : valuesArray) {
-                        if (line.startsWith(" ")) {
-                            line = Constants.CATEGORY + ":" + line;
-                        } else {
-                            line = Constants.CATEGORY + ": " + line;
-                        }
-                        // String line = Constants.CATEGORY + ": " + value;
-                        Matcher matcher = Constants.PATTERN_CATEGORY.matcher(line);
-                        if (!matcher.find()) {
-                            continue;
-                        }
-                        String term = matcher.group(Constants.GROUP_TERM);
-                        String scheme = matcher.group(Constants.GROUP_SCHEME);
-                        String categoryClass = matcher.group(Constants.GROUP_CLASS);
-
-                        if (categoryClass.equalsIgnoreCase(Constants.CLASS_KIND)) {
-                            // Assign the kind.
-                            data.setKind(scheme + term);
-                            continue;
-                        }
-                        if (categoryClass.equalsIgnoreCase(Constants.CLASS_MIXIN)) {
-                            if (matcher.group(Constants.GROUP_LOCATION) != null) {
-                                // is a mixin tag.
-                                data.setLocation(matcher.group(Constants.GROUP_LOCATION));
-                                data.setMixinTag(scheme + term);
-
-                            } else {
-                                // is a simple mixin.
-                                mixinsToAdd.add(scheme + term);
-                            }
-                            continue;
-                        }
-                        if (categoryClass.equalsIgnoreCase(Constants.CLASS_ACTION)) {
-                            data.setAction(scheme + term);
-                        }
-                    }
+                    OcciHeaderTokenizer.parseElements(value, handler);
                 }
             }
         }
@@ -165,30 +129,85 @@ public class TextOcciParser extends AbstractRequestParser implements IRequestPar
                 for (String value : values) {
                     // Multiple value on X_OCCI_Attribute header may exist on a same declaration. (source and target for example).
                     // like this --> X-OCCI-Attribute: occi.core.source="/compute/f88486b7-0632-482d-a184-a9195733ddd0", occi.core.target="/network/network1".
-                    String[] valuesTmp = value.split(",");
-                    for (String valueTmp : valuesTmp) {
-                        // Parse the value:
-                        String[] attr = valueTmp.split("=");
-                        if (attr.length > 1) {
-                            attr[0] = attr[0].replace("\"", "");
-                            if (attr[0].startsWith(" ")) {
-                                attr[0] = attr[0].substring(1); // remove starting space.
-                            }
-                            attr[1] = attr[1].replace("\"", "");
-                            data.getAttrs().put(attr[0], attr[1]);
-                        }
-                    }
-
+                    OcciHeaderTokenizer.parseAttributes(value, (name, attrValue) -> data.getAttrs().put(name, attrValue));
                 }
             }
             if (key.equalsIgnoreCase(Constants.X_OCCI_LOCATION)) {
                 for (String value : values) {
-                    String[] valuesTmp = value.split(",");
-                    for (String valueTmp : valuesTmp) {
-                        data.addXocciLocation(valueTmp);
-                    }
+                    OcciHeaderTokenizer.parseValues(value, (name, location) -> data.addXocciLocation(location));
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the categories of a Category header, a category without term, scheme or class is ignored.
+     */
+    private static class CategoryHandler implements OcciHeaderTokenizer.ElementHandler {
+
+        private static final String PARAMETER_SCHEME = "scheme";
+        private static final String PARAMETER_CLASS = "class";
+        private static final String PARAMETER_LOCATION = "location";
+
+        private final OCCIRequestData data;
+        private final List<String> mixinsToAdd;
+        private String term;
+        private String scheme;
+        private String categoryClass;
+        private String location;
+
+        private CategoryHandler(final OCCIRequestData data, final List<String> mixinsToAdd) {
+            this.data = data;
+            this.mixinsToAdd = mixinsToAdd;
+        }
+
+        @Override
+        public void startElement(final String value) {
+            term = value;
+            scheme = null;
+            categoryClass = null;
+            location = null;
+        }
+
+        @Override
+        public void parameter(final String name, final String value) {
+            switch (name) {
+                case PARAMETER_SCHEME:
+                    // The scheme ends with a # and may be followed by the term.
+                    int index = value.lastIndexOf('#');
+                    scheme = index < 0 ? null : value.substring(0, index + 1);
                     break;
+                case PARAMETER_CLASS:
+                    categoryClass = value;
+                    break;
+                case PARAMETER_LOCATION:
+                    location = value.isEmpty() ? null : value;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void endElement() {
+            if (term == null || term.isEmpty() || scheme == null || categoryClass == null) {
+                return;
+            }
+            if (categoryClass.equalsIgnoreCase(Constants.CLASS_KIND)) {
+                // Assign the kind.
+                data.setKind(scheme + term);
+            } else if (categoryClass.equalsIgnoreCase(Constants.CLASS_MIXIN)) {
+                if (location != null) {
+                    // is a mixin tag.
+                    data.setLocation(location);
+                    data.setMixinTag(scheme + term);
+                } else {
+                    // is a simple mixin.
+                    mixinsToAdd.add(scheme + term);
                 }
+            } else if (categoryClass.equalsIgnoreCase(Constants.CLASS_ACTION)) {
+                data.setAction(scheme + term);
             }
         }
     }
@@ -237,14 +256,18 @@ public class TextOcciParser extends AbstractRequestParser implements IRequestPar
             Map<String, List<String>> header = new LinkedHashMap<>();
             return new HeaderPojo(header);
         }
+        FieldProjection projection = getFieldProjection();
+        // The kind is always rendered, this is the type of the entity.
         String categories = renderCategory(entity.getKind(), false);
 
         // if entity as mixins, update categories as expected.
         List<Mixin> mixinsTmp = entity.getMixins();
         StringBuilder sb = new StringBuilder();
         sb.append(categories);
-        for (Mixin mixin : mixinsTmp) {
-            sb.append(renderCategory(mixin, false));
+        if (projection.includes(FieldProjection.FIELD_MIXINS)) {
+            for (Mixin mixin : mixinsTmp) {
+                sb.append(renderCategory(mixin, false));
+            }
         }
         categories = sb.toString();
         if (categories.trim().isEmpty()) {
@@ -260,14 +283,16 @@ public class TextOcciParser extends AbstractRequestParser implements IRequestPar
 
         cats.add(categories);
         attrs.add(entityAttrs);
-        xOcciLocation.add(renderXOCCILocationAttr(entity));
-
-        List<String> links = renderActionLinksHeader(entity);
 
         headerMap.put(Constants.CATEGORY, cats);
         headerMap.put(Constants.X_OCCI_ATTRIBUTE, attrs);
-        headerMap.put(Constants.X_OCCI_LOCATION, xOcciLocation);
-        headerMap.put(Constants.LINK, links);
+        if (projection.includes(FieldProjection.FIELD_LOCATION)) {
+            xOcciLocation.add(renderXOCCILocationAttr(entity));
+            headerMap.put(Constants.X_OCCI_LOCATION, xOcciLocation);
+        }
+        if (projection.includes(FieldProjection.FIELD_ACTIONS)) {
+            headerMap.put(Constants.LINK, renderActionLinksHeader(entity));
+        }
 
         List<Entity> entities = new ArrayList<>();
         entities.add(entity);
@@ -295,6 +320,22 @@ public class TextOcciParser extends AbstractRequestParser implements IRequestPar
     }
 
 
+    /**
+     * Render the results of an aggregation in X-OCCI-Aggregate header, one value per group.
+     *
+     * @param results key: group name, value: map of result name to the result value.
+     * @return a header object.
+     */
+    @Override
+    public HeaderPojo renderOutputAggregation(Map<String, Map<String, Number>> results) throws ParseOCCIException {
+        Map<String, List<String>> headerMap = new LinkedHashMap<>();
+        List<String> groups = renderAggregationGroups(results);
+        if (!groups.isEmpty()) {
+            headerMap.put(Constants.X_OCCI_AGGREGATE, groups);
+        }
+        return new HeaderPojo(headerMap);
+    }
+
     @Override
     public HeaderPojo renderOutputEntitiesLocations(List<String> locations) throws ParseOCCIException {
         HeaderPojo header;
@@ -338,7 +379,7 @@ public class TextOcciParser extends AbstractRequestParser implements IRequestPar
         String actionLink;
         List<Action> actionsTmp = entity.getKind().getActions();
         for (Action action : actionsTmp) {
-            actionLink = location + entity.getId() + "?action=" + action.getTerm() + ";" + "rel=\"" + action.getScheme() + action.getTerm() + "\"";
+            actionLink = location + entity.getId() + "?action=" + action.getTerm() + ";" + "rel=\"" + CategoryIds.of(action) + "\"";
             actionLinks.add(actionLink);
         }
 
@@ -568,12 +609,13 @@ public class TextOcciParser extends AbstractRequestParser implements IRequestPar
     }
 
     /**
-     * Render attributes used for GET request on entity.
+     * Render attributes used for GET request on entity, only the attributes of the projection are rendered.
      *
      * @param entity
      * @return
      */
     private String renderAttributes(Entity entity) {
+        FieldProjection projection = getFieldProjection();
         StringBuilder attributes = new StringBuilder();
         StringBuilder sb = new StringBuilder();
         List<AttributeState> attrStates = entity.getAttributes();
@@ -581,15 +623,20 @@ public class TextOcciParser extends AbstractRequestParser implements IRequestPar
         sb.append(coreId);
         if (entity instanceof Link) {
             Link link = (Link) entity;
-            String source = Constants.OCCI_CORE_SOURCE + "=\"" + EntityManager.getLocation(link.getSource(), getUsername()) + "\"" + "," + Constants.CRLF;
-            sb.append(source);
-            String target = Constants.OCCI_CORE_TARGET + "=\"" + EntityManager.getLocation(link.getTarget(), getUsername()) + "\"" + "," + Constants.CRLF;
-            sb.append(target);
+            if (projection.includes(FieldProjection.FIELD_SOURCE)) {
+                String source = Constants.OCCI_CORE_SOURCE + "=\"" + EntityManager.getLocation(link.getSource(), getUsername()) + "\"" + "," + Constants.CRLF;
+                sb.append(source);
+            }
+            if (projection.includes(FieldProjection.FIELD_TARGET)) {
+                String target = Constants.OCCI_CORE_TARGET + "=\"" + EntityManager.getLocation(link.getTarget(), getUsername()) + "\"" + "," + Constants.CRLF;
+                sb.append(target);
+            }
         }
 
         for (AttributeState attribute : attrStates) {
             String name = attribute.getName();
-            if (name.equals(Constants.OCCI_CORE_ID) || name.equals(Constants.OCCI_CORE_SOURCE) || name.equals(Constants.OCCI_CORE_TARGET)) {
+            if (name.equals(Constants.OCCI_CORE_ID) || name.equals(Constants.OCCI_CORE_SOURCE) || name.equals(Constants.OCCI_CORE_TARGET)
+                    || !projection.includesAttribute(name)) {
                 continue;
             }
             String value = null;
@@ -617,6 +664,9 @@ public class TextOcciParser extends AbstractRequestParser implements IRequestPar
             // To remove the last comma.
             attributes = new StringBuilder(attributes.substring(0, attributes.length() - 3));
             sb.append(attributes);
+        } else {
+            // No attribute selected, remove the comma after the core attributes.
+            sb.setLength(sb.length() - 3);
         }
         return sb.toString();
     }
@@ -28,11 +28,13 @@ import org.occiware.mart.server.parser.AbstractRequestParser;
 import org.occiware.mart.server.parser.IRequestParser;
 import org.occiware.mart.server.parser.OCCIRequestData;
 import org.occiware.mart.server.parser.QueryInterfaceData;
+import org.occiware.mart.server.utils.CategoryIds;
 import org.occiware.mart.server.utils.Constants;
+import org.occiware.mart.server.utils.FieldProjection;
+import org.occiware.mart.server.utils.LineReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.*;
@@ -51,11 +53,20 @@ public class TextPlainParser extends AbstractRequestParser implements IRequestPa
     }
 
 
+    /**
+     * Parse a text/plain content, given as a String or as a LineReader to read the content incrementally (the reader is not closed).
+     *
+     * @param contentObj the content, a String or a LineReader.
+     * @throws ParseOCCIException
+     */
     @Override
     public void parseInputToDatas(Object contentObj) throws ParseOCCIException {
-        String message;
+        if (contentObj instanceof LineReader) {
+            parseLines((LineReader) contentObj);
+            return;
+        }
         if (contentObj == null || !(contentObj instanceof String)) {
-            throw new ParseOCCIException("The object parameter must be a String content object");
+            throw new ParseOCCIException("The object parameter must be a String content object or a LineReader");
         }
 
         String content = (String) contentObj;
@@ -65,12 +76,29 @@ public class TextPlainParser extends AbstractRequestParser implements IRequestPa
             // parse nothing, there is no content.
             return;
         }
+        LOGGER.info("Content received : " + content);
+        try (LineReader reader = new LineReader(new StringReader(content))) {
+            parseLines(reader);
+        } catch (IOException ex) {
+            throw new ParseOCCIException("Error while parsing text/plain content : " + ex.getMessage(), ex);
+        }
+    }
 
-        // Read the contents data line by line.
-        try (BufferedReader reader = new BufferedReader(new StringReader(content))) {
+    /**
+     * Read the contents data line by line.
+     *
+     * @param reader the content reader, not closed.
+     * @throws ParseOCCIException
+     */
+    private void parseLines(final LineReader reader) throws ParseOCCIException {
+        try {
             // Read the first line containing a category.
             String line = reader.readLine();
-            LOGGER.info("Content received : " + content);
+            if (line == null) {
+                // No content input.
+                super.getInputDatas().clear();
+                return;
+            }
             LOGGER.info("line=" + line);
 
             // For kind and action category.
@@ -96,15 +124,15 @@ public class TextPlainParser extends AbstractRequestParser implements IRequestPa
             lastLineRead = parseInputMixins(reader, mixins);
             List<String> mixinsStr = new LinkedList<>();
             for (Mixin mixin : mixins) {
-                mixinsStr.add(mixin.getScheme() + mixin.getTerm());
+                mixinsStr.add(CategoryIds.of(mixin));
             }
 
             OCCIRequestData data = new OCCIRequestData();
             if (kind != null) {
-                data.setKind(kind.getScheme() + kind.getTerm());
+                data.setKind(CategoryIds.of(kind));
             }
             if (action != null) {
-                data.setAction(action.getScheme() + action.getTerm());
+                data.setAction(CategoryIds.of(action));
             }
             data.setMixins(mixinsStr);
 
@@ -118,8 +146,6 @@ public class TextPlainParser extends AbstractRequestParser implements IRequestPa
         } catch (IOException ex) {
             throw new ParseOCCIException("Error while parsing text/plain content : " + ex.getMessage(), ex);
         }
-
-
     }
 
     /**
@@ -130,7 +156,7 @@ public class TextPlainParser extends AbstractRequestParser implements IRequestPa
      * @throws ParseOCCIException
      * @throws IOException
      */
-    private Map<String, Object> parseInputAttributes(BufferedReader reader, String line, OCCIRequestData data) throws ParseOCCIException, IOException {
+    private Map<String, Object> parseInputAttributes(LineReader reader, String line, OCCIRequestData data) throws ParseOCCIException, IOException {
         String message;
         String location;
         Map<String, Object> resultMap = new HashMap<>();
@@ -206,7 +232,7 @@ public class TextPlainParser extends AbstractRequestParser implements IRequestPa
      * @throws ParseOCCIException
      * @throws IOException
      */
-    private String parseInputMixins(BufferedReader reader, List<Mixin> mixins) throws ParseOCCIException, IOException {
+    private String parseInputMixins(LineReader reader, List<Mixin> mixins) throws ParseOCCIException, IOException {
         String line = reader.readLine();
         String lastLineRead = line;
         String term;
@@ -246,6 +272,9 @@ public class TextPlainParser extends AbstractRequestParser implements IRequestPa
                 line = reader.readLine();
                 lastLineRead = line;
                 LOGGER.debug("line=" + line);
+                if (line == null) {
+                    break;
+                }
                 matcher = Constants.PATTERN_CATEGORY.matcher(line);
             }
         }
@@ -393,12 +422,15 @@ public class TextPlainParser extends AbstractRequestParser implements IRequestPa
             throw new ParseOCCIException("No entity to render");
         }
 
-        // Render an entity.
+        // Render an entity, only the fields of the projection, the kind and the id are always rendered.
+        FieldProjection projection = getFieldProjection();
 
         sb.append(Constants.CATEGORY).append(": ").append(asCategory(entity.getKind(), false)).append(Constants.CRLF);
 
-        for (Mixin mixin : entity.getMixins()) {
-            sb.append(Constants.CATEGORY).append(": ").append(asCategory(mixin, false));
+        if (projection.includes(FieldProjection.FIELD_MIXINS)) {
+            for (Mixin mixin : entity.getMixins()) {
+                sb.append(Constants.CATEGORY).append(": ").append(asCategory(mixin, false));
+            }
         }
 
         sb.append(Constants.X_OCCI_ATTRIBUTE).append(": ").append(Constants.OCCI_CORE_ID)
@@ -406,18 +438,23 @@ public class TextPlainParser extends AbstractRequestParser implements IRequestPa
         if (entity instanceof Link) {
             Link link = (Link) entity;
 
-            sb.append(Constants.X_OCCI_ATTRIBUTE).append(": ")
-                    .append(Constants.OCCI_CORE_SOURCE).append("=\"")
-                    .append(EntityManager.getLocation(link.getSource(), getUsername())).append('\"').append(Constants.CRLF);
-            sb.append(Constants.X_OCCI_ATTRIBUTE).append(": ")
-                    .append(Constants.OCCI_CORE_TARGET).append("=\"")
-                    .append(EntityManager.getLocation(link.getTarget(), getUsername())).append('\"').append(Constants.CRLF);
+            if (projection.includes(FieldProjection.FIELD_SOURCE)) {
+                sb.append(Constants.X_OCCI_ATTRIBUTE).append(": ")
+                        .append(Constants.OCCI_CORE_SOURCE).append("=\"")
+                        .append(EntityManager.getLocation(link.getSource(), getUsername())).append('\"').append(Constants.CRLF);
+            }
+            if (projection.includes(FieldProjection.FIELD_TARGET)) {
+                sb.append(Constants.X_OCCI_ATTRIBUTE).append(": ")
+                        .append(Constants.OCCI_CORE_TARGET).append("=\"")
+                        .append(EntityManager.getLocation(link.getTarget(), getUsername())).append('\"').append(Constants.CRLF);
+            }
         }
 
         for (AttributeState attribute : entity.getAttributes()) {
 
             String name = attribute.getName();
-            if (name.equals(Constants.OCCI_CORE_ID) || name.equals(Constants.OCCI_CORE_SOURCE) || name.equals(Constants.OCCI_CORE_TARGET)) {
+            if (name.equals(Constants.OCCI_CORE_ID) || name.equals(Constants.OCCI_CORE_SOURCE) || name.equals(Constants.OCCI_CORE_TARGET)
+                    || !projection.includesAttribute(name)) {
                 continue;
             }
             String value = null;
@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.utils;
+
+import org.occiware.mart.server.exception.ConfigurationException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Aggregation on a collection, given with the groupby and aggregate parameters,
+ * ex: groupby=occi.compute.state&aggregate=count,sum:occi.compute.cores,max:occi.compute.memory.
+ * The entities are grouped by kind, by mixin or by the value of an attribute, all the entities are in one group if no group is given.
+ * The functions are count, sum, min and max, the last three on a numeric attribute.
+ */
+public class AggregationQuery {
+
+    public static final String GROUP_KIND = "kind";
+    public static final String GROUP_MIXIN = "mixin";
+    /**
+     * Name of the group when the entities are not grouped.
+     */
+    public static final String GROUP_ALL = "all";
+
+    public static final String FUNCTION_COUNT = "count";
+    public static final String FUNCTION_SUM = "sum";
+    public static final String FUNCTION_MIN = "min";
+    public static final String FUNCTION_MAX = "max";
+
+    /**
+     * Kind, mixin or an attribute name, null for one group.
+     */
+    private final String groupBy;
+    private final List<String> functions;
+    /**
+     * Attribute of each function, null for count.
+     */
+    private final List<String> attributes;
+
+    private AggregationQuery(final String groupBy, final List<String> functions, final List<String> attributes) {
+        this.groupBy = groupBy;
+        this.functions = functions;
+        this.attributes = attributes;
+    }
+
+    /**
+     * Parse the aggregation parameters.
+     *
+     * @param groupBy   kind, mixin or an attribute name, null or empty for one group.
+     * @param aggregate the functions separated by comma, function:attribute for sum, min and max, null or empty to count only.
+     * @return an aggregation query.
+     * @throws ConfigurationException if a function is unknown or has no attribute.
+     */
+    public static AggregationQuery parse(final String groupBy, final String aggregate) throws ConfigurationException {
+        List<String> functions = new ArrayList<>();
+        List<String> attributes = new ArrayList<>();
+        if (aggregate != null) {
+            for (String item : aggregate.split(",")) {
+                String metric = item.trim();
+                if (metric.isEmpty()) {
+                    continue;
+                }
+                int index = metric.indexOf(':');
+                String function = (index < 0 ? metric : metric.substring(0, index)).trim().toLowerCase();
+                String attribute = index < 0 ? null : metric.substring(index + 1).trim();
+                switch (function) {
+                    case FUNCTION_COUNT:
+                        attribute = null;
+                        break;
+                    case FUNCTION_SUM:
+                    case FUNCTION_MIN:
+                    case FUNCTION_MAX:
+                        if (attribute == null || attribute.isEmpty()) {
+                            throw new ConfigurationException("Bad aggregate parameter : the function " + function + " needs an attribute, ex: " + function + ":occi.compute.cores");
+                        }
+                        break;
+                    default:
+                        throw new ConfigurationException("Bad aggregate parameter : unknown function " + function + ", use count, sum, min or max");
+                }
+                functions.add(function);
+                attributes.add(attribute);
+            }
+        }
+        if (functions.isEmpty()) {
+            functions.add(FUNCTION_COUNT);
+            attributes.add(null);
+        }
+        String group = groupBy == null || groupBy.trim().isEmpty() ? null : groupBy.trim();
+        return new AggregationQuery(group, Collections.unmodifiableList(functions), Collections.unmodifiableList(attributes));
+    }
+
+    /**
+     * @return kind, mixin or an attribute name, null if the entities are not grouped.
+     */
+    public String getGroupBy() {
+        return groupBy;
+    }
+
+    /**
+     * @return the number of functions.
+     */
+    public int size() {
+        return functions.size();
+    }
+
+    public String getFunction(final int index) {
+        return functions.get(index);
+    }
+
+    /**
+     * @param index the function index.
+     * @return the attribute of the function, null for count.
+     */
+    public String getAttribute(final int index) {
+        return attributes.get(index);
+    }
+
+    /**
+     * @param index the function index.
+     * @return the name of the function result, count or function(attribute), ex: sum(occi.compute.cores).
+     */
+    public String getResultName(final int index) {
+        String attribute = attributes.get(index);
+        return attribute == null ? functions.get(index) : functions.get(index) + '(' + attribute + ')';
+    }
+
+    /**
+     * @return true if the only function is count.
+     */
+    public boolean isCountOnly() {
+        for (String function : functions) {
+            if (!function.equals(FUNCTION_COUNT)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.utils;
+
+import org.eclipse.cmf.occi.core.Category;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of category identifiers (scheme + term), the identifier of a kind, a mixin or an action
+ * is computed once and the same interned string is returned for all the calls.
+ * Categories are EMF objects without equals override, so they are referenced by identity here.
+ */
+public class CategoryIds {
+
+    /**
+     * key: category object, value: canonical scheme + term.
+     */
+    private static final Map<Category, String> categoryIds = new ConcurrentHashMap<>();
+
+    private CategoryIds() {
+    }
+
+    /**
+     * Get the identifier of a category.
+     *
+     * @param category a kind, a mixin or an action.
+     * @return the scheme + term of the category, null if category is null.
+     */
+    public static String of(final Category category) {
+        if (category == null) {
+            return null;
+        }
+        String categoryId = categoryIds.get(category);
+        if (categoryId == null) {
+            categoryId = StringPool.intern(category.getScheme() + category.getTerm());
+            categoryIds.put(category, categoryId);
+        }
+        return categoryId;
+    }
+
+    /**
+     * Forget the identifier of a category, must be called when a user mixin tag is removed from a configuration.
+     *
+     * @param category the category to forget.
+     */
+    public static void remove(final Category category) {
+        if (category != null) {
+            categoryIds.remove(category);
+        }
+    }
+}
@@ -28,8 +28,14 @@ public class CollectionFilter {
 
     public static final int OPERATOR_EQUAL = 0;
     public static final int OPERATOR_LIKE = 1;
+    public static final int OPERATOR_GREATER_THAN = 2;
+    public static final int OPERATOR_LOWER_THAN = 3;
+    public static final int OPERATOR_BETWEEN = 4;
+    public static final int OPERATOR_LOWER_OR_EQUAL = 5;
     /**
-     * Operator : 0: Equal, 1: LIKE.
+     * Operator : 0: Equal, 1: LIKE, 2: greater than value, 3: lower than value, 4: between value and valueMax (included),
+     * 5: lower than or equal to value.
+     * Operators 2, 3, 4 and 5 apply on numeric attributes.
      */
     private int operator = 0;
 
@@ -57,8 +63,26 @@ public class CollectionFilter {
      * Constraint value from attribute values.
      */
     private String value = null;
+    /**
+     * Upper bound of the constraint value for the between operator, null for no upper bound.
+     */
+    private String valueMax = null;
+    /**
+     * Filter expression combining several attributes, categories and paths constraints with and / or,
+     * ex: occi.compute.state = active and (occi.compute.cores &gt;= 4 or category = mytag). Null if none.
+     * The expression constraints are added to the other constraints of this filter.
+     */
+    private String expression = null;
     private int numberOfItemsPerPage = Constants.DEFAULT_NUMBER_ITEMS_PER_PAGE;
     private int currentPage = Constants.DEFAULT_CURRENT_PAGE;
+    /**
+     * Sort order, keys separated by comma with an optional direction, ex: occi.compute.memory:desc,title. Null to order by uuid.
+     */
+    private String sort = null;
+    /**
+     * Continuation token given with the previous page, the collection is read from the entity after this page (current page is ignored).
+     */
+    private String cursor = null;
 
     /**
      * Build a collectionFilter object with default values, operation : Equal
@@ -108,6 +132,38 @@ public class CollectionFilter {
         return Float.valueOf(value);
     }
 
+    public Double getValueDouble() throws NumberFormatException {
+        return Double.valueOf(value);
+    }
+
+    public String getValueMax() {
+        return valueMax;
+    }
+
+    public void setValueMax(String valueMax) {
+        this.valueMax = valueMax;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public void setExpression(String expression) {
+        this.expression = expression;
+    }
+
+    public Double getValueMaxDouble() throws NumberFormatException {
+        return Double.valueOf(valueMax);
+    }
+
+    /**
+     * @return true if the operator is a range operator (greater than, lower than, between, lower or equal).
+     */
+    public boolean isRangeOperator() {
+        return operator == OPERATOR_GREATER_THAN || operator == OPERATOR_LOWER_THAN || operator == OPERATOR_BETWEEN
+                || operator == OPERATOR_LOWER_OR_EQUAL;
+    }
+
     public String getFilterOnEntitiesPath() {
         return filterOnEntitiesPath;
     }
@@ -132,6 +188,22 @@ public class CollectionFilter {
         this.currentPage = currentPage;
     }
 
+    public String getSort() {
+        return sort;
+    }
+
+    public void setSort(String sort) {
+        this.sort = sort;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
     public String getSubCategoryFilter() {
         return subCategoryFilter;
     }
@@ -30,12 +30,23 @@ public class Constants {
     public static final String NUMBER_ITEMS_PER_PAGE_KEY = "number";
     public static final String CURRENT_PAGE_KEY = "page";
     public static final int DEFAULT_CURRENT_PAGE = 1;
-    public static final int DEFAULT_OPERATOR_VAL = 0; // operator equal by default if 1 : like mode.
+    public static final int DEFAULT_OPERATOR_VAL = 0; // operator equal by default if 1 : like mode, 2: greater than, 3: lower than, 4: between, 5: lower or equal.
     public static final String OPERATOR_KEY = "operator";
     public static final String CATEGORY_KEY = "category";
     public static final String ATTRIBUTE_KEY = "attribute";
     public static final String EXTENSION_NAME_KEY = "extension";
     public static final String VALUE_KEY = "value";
+    public static final String VALUE_MAX_KEY = "valuemax";
+    public static final String SORT_KEY = "sort"; // ex: occi.compute.memory:desc,title
+    public static final String CURSOR_KEY = "cursor"; // continuation token of a collection page, given by the header below.
+    public static final String HEADER_NEXT_CURSOR = "X-OCCI-Next-Cursor";
+    public static final String COUNT_KEY = "count"; // count=true to get only the number of entities, given by the header below.
+    public static final String HEADER_TOTAL_COUNT = "X-OCCI-Total-Count";
+    public static final String HEADER_ETAG = "ETag";
+    public static final String GROUP_BY_KEY = "groupby"; // kind, mixin or an attribute name.
+    public static final String AGGREGATE_KEY = "aggregate"; // ex: count,sum:occi.compute.cores,max:occi.compute.memory
+    public static final String FIELDS_KEY = "fields"; // fields of the entities to render, ex: title,occi.compute.state,links
+    public static final String FILTER_KEY = "filter"; // filter expression, ex: occi.compute.cores >= 2 and (category = compute or path = /vms/)
 
 
     public static final String PATH_SEPARATOR = "/";
@@ -48,6 +59,10 @@ public class Constants {
     public static final String MEDIA_TYPE_JSON_OCCI = "application/occi+json";
     public static final String MEDIA_TYPE_TEXT_PLAIN = "text/plain";
     public static final String MEDIA_TYPE_TEXT_PLAIN_OCCI = "text/occi+plain";
+    /**
+     * Newline delimited json, one entity (resource or link json) by line, used by bulk imports.
+     */
+    public static final String MEDIA_TYPE_NDJSON = "application/x-ndjson";
     public static final String MEDIA_TYPE_HTML = "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8";
 
     public static final String CATEGORY = "Category";
@@ -69,6 +84,7 @@ public class Constants {
     public static final String HEADER_WWW_AUTHENTICATE = "WWW-Authenticate";
     public static final String HEADER_WWW_AUTHENTICATE_BASIC_PARTIAL = "Basic realm=\"";
     public static final String X_OCCI_ATTRIBUTE = "X-OCCI-Attribute";
+    public static final String X_OCCI_AGGREGATE = "X-OCCI-Aggregate";
     public static final String CLASS_ACTION = "action";
     public static final String CLASS_KIND = "kind";
     public static final String CLASS_MIXIN = "mixin";
@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.utils;
+
+import java.util.*;
+
+/**
+ * Fields of the entities to render, given with the fields parameter, ex: fields=title,occi.compute.state,links.
+ * A field is a core field of the entities (kind, title, summary, location, mixins, actions, links, source, target),
+ * attributes for all the attributes or an attribute name, an attribute name ending with * selects all the attributes with this prefix.
+ * The entity id is always rendered, the attributes not selected are never read nor converted by the renderers.
+ */
+public final class FieldProjection {
+
+    public static final String FIELD_KIND = "kind";
+    public static final String FIELD_TITLE = "title";
+    public static final String FIELD_SUMMARY = "summary";
+    public static final String FIELD_LOCATION = "location";
+    public static final String FIELD_MIXINS = "mixins";
+    public static final String FIELD_ACTIONS = "actions";
+    public static final String FIELD_LINKS = "links";
+    public static final String FIELD_SOURCE = "source";
+    public static final String FIELD_TARGET = "target";
+    public static final String FIELD_ATTRIBUTES = "attributes";
+
+    private static final String WILDCARD = "*";
+
+    /**
+     * Projection rendering all the fields.
+     */
+    public static final FieldProjection ALL = new FieldProjection(null, Collections.emptyList());
+
+    /**
+     * Selected fields and attributes names, null if all the fields are selected.
+     */
+    private final Set<String> fields;
+    /**
+     * Selected attributes prefixes.
+     */
+    private final List<String> attributePrefixes;
+
+    private FieldProjection(final Set<String> fields, final List<String> attributePrefixes) {
+        this.fields = fields;
+        this.attributePrefixes = attributePrefixes;
+    }
+
+    /**
+     * Parse a fields parameter.
+     *
+     * @param fields the fields separated by comma, null or empty to render all the fields.
+     * @return a projection, never null.
+     */
+    public static FieldProjection parse(final String fields) {
+        if (fields == null || fields.trim().isEmpty()) {
+            return ALL;
+        }
+        Set<String> selected = new HashSet<>();
+        List<String> prefixes = new ArrayList<>();
+        for (String item : fields.split(",")) {
+            String field = item.trim();
+            if (field.isEmpty()) {
+                continue;
+            }
+            if (field.equals(WILDCARD)) {
+                return ALL;
+            }
+            if (field.endsWith(WILDCARD)) {
+                prefixes.add(field.substring(0, field.length() - 1));
+                continue;
+            }
+            switch (field) {
+                case Constants.OCCI_CORE_TITLE:
+                    selected.add(FIELD_TITLE);
+                    break;
+                case Constants.OCCI_CORE_SUMMARY:
+                    selected.add(FIELD_SUMMARY);
+                    break;
+                case Constants.OCCI_CORE_SOURCE:
+                    selected.add(FIELD_SOURCE);
+                    break;
+                case Constants.OCCI_CORE_TARGET:
+                    selected.add(FIELD_TARGET);
+                    break;
+                default:
+                    selected.add(field);
+                    break;
+            }
+        }
+        if (selected.isEmpty() && prefixes.isEmpty()) {
+            return ALL;
+        }
+        return new FieldProjection(Collections.unmodifiableSet(selected), Collections.unmodifiableList(prefixes));
+    }
+
+    /**
+     * @return true if all the fields are rendered.
+     */
+    public boolean isAll() {
+        return fields == null;
+    }
+
+    /**
+     * @param field a core field, one of the FIELD_ constants.
+     * @return true if this field must be rendered.
+     */
+    public boolean includes(final String field) {
+        return fields == null || fields.contains(field);
+    }
+
+    /**
+     * @param attributeName an attribute name.
+     * @return true if this attribute must be rendered.
+     */
+    public boolean includesAttribute(final String attributeName) {
+        if (fields == null || fields.contains(FIELD_ATTRIBUTES) || fields.contains(attributeName)) {
+            return true;
+        }
+        // Core attributes rendered as attributes by the text renderers.
+        if (attributeName.equals(Constants.OCCI_CORE_TITLE)) {
+            return fields.contains(FIELD_TITLE);
+        }
+        if (attributeName.equals(Constants.OCCI_CORE_SUMMARY)) {
+            return fields.contains(FIELD_SUMMARY);
+        }
+        for (String prefix : attributePrefixes) {
+            if (attributeName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        if (fields == null) {
+            return WILDCARD;
+        }
+        List<String> items = new ArrayList<>(fields);
+        for (String prefix : attributePrefixes) {
+            items.add(prefix + WILDCARD);
+        }
+        return String.join(",", items);
+    }
+}
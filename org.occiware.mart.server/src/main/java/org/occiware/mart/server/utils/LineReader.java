@@ -0,0 +1,228 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Line reader of a request content, the content is read and decoded incrementally so only the current line is in memory.
+ * The char buffers are taken from a shared pool and given back on close, the reader must be closed after use.
+ * Lines end with \n, \r or \r\n like with BufferedReader.
+ * A maximum line length may be given, so a content without line terminator is never held in memory.
+ */
+public final class LineReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_POOLED_BUFFERS = 32;
+
+    private static final Queue<char[]> buffers = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooledBuffers = new AtomicInteger();
+
+    private final Reader reader;
+    /**
+     * Maximum number of characters of a line, 0 or less for no maximum.
+     */
+    private final int maxLineLength;
+    private char[] buffer;
+    private int position = 0;
+    private int limit = 0;
+    private boolean skipLineFeed = false;
+
+    public LineReader(final Reader reader) {
+        this(reader, 0);
+    }
+
+    /**
+     * @param reader        the content reader, closed with this reader.
+     * @param maxLineLength the maximum number of characters of a line, an IOException is thrown when a line is longer, 0 or less for no maximum.
+     */
+    public LineReader(final Reader reader, final int maxLineLength) {
+        this.reader = reader;
+        this.maxLineLength = maxLineLength;
+        this.buffer = acquireBuffer();
+    }
+
+    /**
+     * Read an utf-8 content.
+     *
+     * @param in           the content input stream, closed with this reader.
+     * @param maxSizeBytes the maximum number of bytes to read, an IOException is thrown when the content is bigger, 0 or less for no maximum.
+     * @return a line reader on the content.
+     */
+    public static LineReader of(final InputStream in, final long maxSizeBytes) {
+        return of(in, maxSizeBytes, 0);
+    }
+
+    /**
+     * Read an utf-8 content with a maximum line length.
+     *
+     * @param in            the content input stream, closed with this reader.
+     * @param maxSizeBytes  the maximum number of bytes to read, an IOException is thrown when the content is bigger, 0 or less for no maximum.
+     * @param maxLineLength the maximum number of characters of a line, an IOException is thrown when a line is longer, 0 or less for no maximum.
+     * @return a line reader on the content.
+     */
+    public static LineReader of(final InputStream in, final long maxSizeBytes, final int maxLineLength) {
+        InputStream content = maxSizeBytes > 0 ? new LimitedInputStream(in, maxSizeBytes) : in;
+        return new LineReader(new InputStreamReader(content, StandardCharsets.UTF_8), maxLineLength);
+    }
+
+    /**
+     * @return the next line without the line terminator, null at the end of the content.
+     * @throws IOException if the content cannot be read or exceeds its maximum size, or if the line exceeds its maximum length.
+     */
+    public String readLine() throws IOException {
+        if (buffer == null) {
+            throw new IOException("Line reader is closed.");
+        }
+        StringBuilder line = null;
+        while (true) {
+            if (position >= limit && !fill()) {
+                return line == null ? null : line.toString();
+            }
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (buffer[position] == '\n') {
+                    position++;
+                    continue;
+                }
+            }
+            int start = position;
+            int length = line == null ? 0 : line.length();
+            while (position < limit) {
+                char c = buffer[position];
+                checkLineLength(length + position - start);
+                if (c == '\n' || c == '\r') {
+                    String value;
+                    if (line == null) {
+                        value = new String(buffer, start, position - start);
+                    } else {
+                        value = line.append(buffer, start, position - start).toString();
+                    }
+                    position++;
+                    skipLineFeed = c == '\r';
+                    return value;
+                }
+                position++;
+            }
+            // The line continues on the next buffer.
+            if (line == null) {
+                line = new StringBuilder(position - start + 80);
+            }
+            line.append(buffer, start, position - start);
+            checkLineLength(line.length());
+        }
+    }
+
+    private void checkLineLength(final int length) throws IOException {
+        if (maxLineLength > 0 && length > maxLineLength) {
+            throw new IOException("The line exceeds the maximum length of " + maxLineLength + " characters.");
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int read;
+        do {
+            read = reader.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        if (read < 0) {
+            position = 0;
+            limit = 0;
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer != null) {
+            releaseBuffer(buffer);
+            buffer = null;
+        }
+        reader.close();
+    }
+
+    private static char[] acquireBuffer() {
+        char[] pooled = buffers.poll();
+        if (pooled == null) {
+            return new char[BUFFER_SIZE];
+        }
+        pooledBuffers.decrementAndGet();
+        return pooled;
+    }
+
+    private static void releaseBuffer(final char[] released) {
+        if (pooledBuffers.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+            buffers.offer(released);
+        } else {
+            pooledBuffers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Input stream failing when more than a maximum number of bytes are read.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private final long maxSizeBytes;
+        private long count = 0;
+
+        private LimitedInputStream(final InputStream in, final long maxSizeBytes) {
+            super(in);
+            this.maxSizeBytes = maxSizeBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) {
+                count(1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+            int read = super.read(bytes, offset, length);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(final long read) throws IOException {
+            count += read;
+            if (count > maxSizeBytes) {
+                throw new IOException("The content exceeds the maximum size of " + maxSizeBytes + " bytes.");
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pool of canonical strings for the values repeated on many entities : attribute names, category identifiers
+ * and enumeration values like occi.compute.state values. Do not use it for free text values.
+ * The pool is bounded, once full the new strings are returned as is.
+ */
+public class StringPool {
+
+    private static final int MAX_POOL_SIZE = 65536;
+
+    private static final Map<String, String> pool = new ConcurrentHashMap<>();
+
+    private StringPool() {
+    }
+
+    /**
+     * Get the canonical instance of a string.
+     *
+     * @param value a string value.
+     * @return the pooled string equals to value, value itself if not pooled and the pool is full, null if value is null.
+     */
+    public static String intern(final String value) {
+        if (value == null) {
+            return null;
+        }
+        String pooled = pool.get(value);
+        if (pooled != null) {
+            return pooled;
+        }
+        if (pool.size() >= MAX_POOL_SIZE) {
+            return value;
+        }
+        pooled = pool.putIfAbsent(value, value);
+        return pooled == null ? value : pooled;
+    }
+
+    /**
+     * @return the number of strings in the pool.
+     */
+    public static int size() {
+        return pool.size();
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.benchmark;
+
+import org.eclipse.cmf.occi.core.AttributeState;
+import org.eclipse.cmf.occi.core.Configuration;
+import org.eclipse.cmf.occi.core.Kind;
+import org.eclipse.cmf.occi.core.OCCIFactory;
+import org.eclipse.cmf.occi.core.Resource;
+import org.occiware.mart.server.utils.CategoryIds;
+import org.occiware.mart.server.utils.StringPool;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Category identifiers and attribute strings footprint.
+ * The main method prints the heap used by a generated large configuration with and without the pooled strings,
+ * then runs the category identifier micro benchmarks (test classpath, this is not part of the unit tests).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AttributeFootprintBenchmark {
+
+    private static final int ENTITIES_COUNT = 100000;
+    private static final String[] ATTRIBUTE_NAMES = {"occi.compute.architecture", "occi.compute.cores", "occi.compute.share",
+            "occi.compute.hostname", "occi.compute.speed", "occi.compute.memory", "occi.compute.state", "occi.compute.state.message"};
+    private static final String[] STATES = {"active", "inactive", "suspended", "error"};
+
+    private Kind kind;
+
+    @Setup
+    public void setup() {
+        kind = OCCIFactory.eINSTANCE.createKind();
+        kind.setScheme("http://schemas.ogf.org/occi/infrastructure#");
+        kind.setTerm("compute");
+    }
+
+    @Benchmark
+    public String categoryIdConcat() {
+        return kind.getScheme() + kind.getTerm();
+    }
+
+    @Benchmark
+    public String categoryIdRegistry() {
+        return CategoryIds.of(kind);
+    }
+
+    /**
+     * Build a configuration like a configuration loaded from disk, each attribute state has its own strings.
+     *
+     * @param pooled true to use the pooled names and state values.
+     * @return the configuration.
+     */
+    private static Configuration buildConfiguration(final boolean pooled) {
+        Configuration configuration = OCCIFactory.eINSTANCE.createConfiguration();
+        for (int i = 0; i < ENTITIES_COUNT; i++) {
+            Resource resource = OCCIFactory.eINSTANCE.createResource();
+            resource.setId(UUID.randomUUID().toString());
+            for (String attributeName : ATTRIBUTE_NAMES) {
+                AttributeState attributeState = OCCIFactory.eINSTANCE.createAttributeState();
+                String name = new String(attributeName.toCharArray());
+                String value = new String(STATES[i % STATES.length].toCharArray());
+                attributeState.setName(pooled ? StringPool.intern(name) : name);
+                attributeState.setValue(pooled ? StringPool.intern(value) : value);
+                resource.getAttributes().add(attributeState);
+            }
+            configuration.getResources().add(resource);
+        }
+        return configuration;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void printFootprint(final boolean pooled) {
+        long before = usedHeap();
+        Configuration configuration = buildConfiguration(pooled);
+        long after = usedHeap();
+        System.out.println((pooled ? "Pooled strings" : "Own strings") + " : " + configuration.getResources().size()
+                + " resources, " + ((after - before) / (1024 * 1024)) + " MB");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        printFootprint(false);
+        printFootprint(true);
+        Options options = new OptionsBuilder()
+                .include(AttributeFootprintBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.benchmark;
+
+import org.eclipse.cmf.occi.core.Entity;
+import org.eclipse.cmf.occi.core.OCCIFactory;
+import org.occiware.mart.server.model.container.EntitiesOwner;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro benchmark of the entity location lookup on an owner container.
+ * The average time per lookup must stay flat when the number of entities grows.
+ * Run with the main method (test classpath), this is not part of the unit tests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntitiesOwnerBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    private int entitiesCount;
+
+    private EntitiesOwner entitiesOwner;
+    private Entity[] entities;
+    private int index = 0;
+
+    @Setup
+    public void setup() {
+        entitiesOwner = new EntitiesOwner("benchmark");
+        entities = new Entity[entitiesCount];
+        for (int i = 0; i < entitiesCount; i++) {
+            Entity entity = OCCIFactory.eINSTANCE.createResource();
+            entity.setId(UUID.randomUUID().toString());
+            entitiesOwner.putEntity("/compute/" + entity.getId(), entity);
+            entities[i] = entity;
+        }
+    }
+
+    @Benchmark
+    public String getEntityLocation() {
+        index = (index + 1) % entitiesCount;
+        return entitiesOwner.getEntityLocation(entities[index]);
+    }
+
+    @Benchmark
+    public String getEntityLocationFromUuid() {
+        index = (index + 1) % entitiesCount;
+        return entitiesOwner.getEntityLocation(entities[index].getId());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(EntitiesOwnerBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.occiware.mart.server.parser.json.render.JsonMappers;
+import org.occiware.mart.server.parser.json.render.OcciMainJson;
+import org.occiware.mart.server.parser.json.render.ResourceJson;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Json read and write of a collection of resources, with an object mapper created on each call (the previous parser behavior)
+ * and with the shared readers and writers of JsonMappers. The payload is the resource of testjson/resources.json repeated.
+ * Run with the main method (test classpath), this is not part of the unit tests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonMappersBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int resourcesCount;
+
+    private String content;
+    private OcciMainJson occiMain;
+
+    @Setup
+    public void setup() throws IOException {
+        OcciMainJson source;
+        try (InputStream in = JsonMappersBenchmark.class.getResourceAsStream("/testjson/resources.json")) {
+            source = JsonMappers.reader(OcciMainJson.class).readValue(in);
+        }
+        List<ResourceJson> resources = new ArrayList<>();
+        for (int i = 0; i < resourcesCount; i++) {
+            resources.add(source.getResources().get(i % source.getResources().size()));
+        }
+        occiMain = new OcciMainJson();
+        occiMain.setResources(resources);
+        content = occiMain.toStringJson();
+    }
+
+    @Benchmark
+    public OcciMainJson readNewMapper() throws IOException {
+        return new ObjectMapper().readValue(content, OcciMainJson.class);
+    }
+
+    @Benchmark
+    public OcciMainJson readSharedReader() throws IOException {
+        return JsonMappers.reader(OcciMainJson.class).readValue(content);
+    }
+
+    @Benchmark
+    public String writeNewMapper() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(occiMain);
+    }
+
+    @Benchmark
+    public String writeSharedWriter() throws IOException {
+        return occiMain.toStringJson();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(JsonMappersBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.benchmark;
+
+import org.eclipse.cmf.occi.core.AttributeState;
+import org.eclipse.cmf.occi.core.Configuration;
+import org.eclipse.cmf.occi.core.Entity;
+import org.eclipse.cmf.occi.core.OCCIFactory;
+import org.eclipse.cmf.occi.core.Resource;
+import org.occiware.mart.server.exception.ConfigurationException;
+import org.occiware.mart.server.facade.AppParameters;
+import org.occiware.mart.server.model.EntityManager;
+import org.occiware.mart.server.utils.CollectionFilter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collection filters not resolved by an index, checked on the request thread or in parallel.
+ * Compare the sequential and parallel scores for each entities count to find the crossover, then set
+ * server.query.parallel.threshold between the last count where the sequential filter wins and the first where the parallel one wins.
+ * Run with the main method (test classpath), this is not part of the unit tests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelFilterBenchmark {
+
+    private static final String OWNER = "benchmark";
+    private static final String[] STATES = {"active", "inactive", "suspended", "error"};
+
+    @Param({"1000", "10000", "50000", "100000", "500000"})
+    private int entitiesCount;
+
+    @Param({"false", "true"})
+    private boolean parallel;
+
+    private CollectionFilter countFilter;
+    private CollectionFilter pageFilter;
+
+    @Setup
+    public void setup() {
+        AppParameters.getInstance().getConfig().put(AppParameters.KEY_QUERY_PARALLEL_THRESHOLD, parallel ? "1" : "0");
+        Configuration configuration = OCCIFactory.eINSTANCE.createConfiguration();
+        for (int i = 0; i < entitiesCount; i++) {
+            Resource resource = OCCIFactory.eINSTANCE.createResource();
+            resource.setId(UUID.randomUUID().toString());
+            resource.getAttributes().add(createAttribute("occi.compute.state", STATES[i % STATES.length]));
+            resource.getAttributes().add(createAttribute("occi.compute.cores", String.valueOf(i % 16)));
+            configuration.getResources().add(resource);
+        }
+        EntityManager.buildEntitiesOwner(OWNER, configuration);
+
+        // Rare matches, a page needs most of the entities to be checked.
+        String expression = "occi.compute.state = suspended and occi.compute.cores >= 14";
+        countFilter = new CollectionFilter();
+        countFilter.setExpression(expression);
+        pageFilter = new CollectionFilter();
+        pageFilter.setExpression(expression);
+        pageFilter.setNumberOfItemsPerPage(50);
+    }
+
+    private static AttributeState createAttribute(final String name, final String value) {
+        AttributeState attributeState = OCCIFactory.eINSTANCE.createAttributeState();
+        attributeState.setName(name);
+        attributeState.setValue(value);
+        return attributeState;
+    }
+
+    @Benchmark
+    public int countEntities() throws ConfigurationException {
+        return EntityManager.countEntities(countFilter, OWNER);
+    }
+
+    @Benchmark
+    public List<Entity> findEntitiesPage() throws ConfigurationException {
+        return EntityManager.findAllEntities(pageFilter, OWNER);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ParallelFilterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.benchmark;
+
+import org.occiware.mart.server.exception.ParseOCCIException;
+import org.occiware.mart.server.parser.HeaderPojo;
+import org.occiware.mart.server.parser.OCCIRequestData;
+import org.occiware.mart.server.parser.text.TextOcciParser;
+import org.occiware.mart.server.utils.Constants;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+/**
+ * Parsing of text/occi request headers (a kind, mixins and X-OCCI-Attribute values) with the previous split and regular
+ * expressions parsing and with the single pass tokenizer of TextOcciParser.
+ * Run with the main method (test classpath), this is not part of the unit tests. The gc profiler reports the allocation rate
+ * (gc.alloc.rate.norm is the number of bytes allocated by operation).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextOcciParserBenchmark {
+
+    @Param({"10", "100", "500"})
+    private int attributesCount;
+
+    private HeaderPojo headers;
+
+    @Setup
+    public void setup() {
+        Map<String, List<String>> headerMap = new LinkedHashMap<>();
+        headerMap.put(Constants.CATEGORY, Collections.singletonList("compute; scheme=\"http://schemas.ogf.org/occi/infrastructure#\"; class=\"kind\", "
+                + "ubuntu; scheme=\"http://occiware.org/templates#\"; class=\"mixin\", "
+                + "large; scheme=\"http://occiware.org/templates#\"; class=\"mixin\""));
+        StringBuilder attributes = new StringBuilder("occi.core.title=\"vm1\", occi.compute.cores=2");
+        for (int i = 0; i < attributesCount; i++) {
+            attributes.append(", occi.custom.attribute").append(i).append("=\"value ").append(i).append('"');
+        }
+        headerMap.put(Constants.X_OCCI_ATTRIBUTE, Collections.singletonList(attributes.toString()));
+        headers = new HeaderPojo(headerMap);
+    }
+
+    @Benchmark
+    public OCCIRequestData parseRegex() {
+        return parseLegacy(headers);
+    }
+
+    @Benchmark
+    public OCCIRequestData parseTokenizer() throws ParseOCCIException {
+        TextOcciParser parser = new TextOcciParser("anonymous");
+        parser.parseInputToDatas(headers);
+        return parser.getInputDatas().get(0);
+    }
+
+    /**
+     * The previous TextOcciParser categories and attributes parsing.
+     */
+    private static OCCIRequestData parseLegacy(final HeaderPojo contentHeader) {
+        OCCIRequestData data = new OCCIRequestData();
+        List<String> mixinsToAdd = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : contentHeader.getHeaderMap().entrySet()) {
+            if (entry.getKey().equals(Constants.CATEGORY)) {
+                for (String value : entry.getValue()) {
+                    for (String line : value.split(",")) {
+                        if (line.startsWith(" ")) {
+                            line = Constants.CATEGORY + ":" + line;
+                        } else {
+                            line = Constants.CATEGORY + ": " + line;
+                        }
+                        Matcher matcher = Constants.PATTERN_CATEGORY.matcher(line);
+                        if (!matcher.find()) {
+                            continue;
+                        }
+                        String term = matcher.group(Constants.GROUP_TERM);
+                        String scheme = matcher.group(Constants.GROUP_SCHEME);
+                        String categoryClass = matcher.group(Constants.GROUP_CLASS);
+                        if (categoryClass.equalsIgnoreCase(Constants.CLASS_KIND)) {
+                            data.setKind(scheme + term);
+                        } else if (categoryClass.equalsIgnoreCase(Constants.CLASS_MIXIN)) {
+                            mixinsToAdd.add(scheme + term);
+                        }
+                    }
+                }
+            }
+        }
+        data.setMixins(mixinsToAdd);
+        for (Map.Entry<String, List<String>> entry : contentHeader.getHeaderMap().entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(Constants.X_OCCI_ATTRIBUTE)) {
+                for (String value : entry.getValue()) {
+                    for (String valueTmp : value.split(",")) {
+                        String[] attr = valueTmp.split("=");
+                        if (attr.length > 1) {
+                            attr[0] = attr[0].replace("\"", "");
+                            if (attr[0].startsWith(" ")) {
+                                attr[0] = attr[0].substring(1);
+                            }
+                            attr[1] = attr[1].replace("\"", "");
+                            data.getAttrs().put(attr[0], attr[1]);
+                        }
+                    }
+                }
+            }
+        }
+        return data;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(TextOcciParserBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
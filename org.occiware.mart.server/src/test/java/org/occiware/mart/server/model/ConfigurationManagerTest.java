@@ -23,7 +23,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
-import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.*;
 
 /**
  * Created by christophe on 15/04/2017.
@@ -48,5 +48,23 @@ public class ConfigurationManagerTest {
         assertNotNull(configuration);
     }
 
+    @Test
+    public void testCategoryDictionary() throws Exception {
+        String mixinId = "http://occiware.org/occi/tags#dictionarytag";
+        assertFalse(ConfigurationManager.findCategorySchemeTermFromTerm("dictionarytag", username).isPresent());
+
+        // The dictionary is rebuilt when a mixin tag is added or removed.
+        MixinManager.addUserMixinOnConfiguration(mixinId, "dictionary tag", "/dictionarytag/", username);
+        assertEquals(mixinId, ConfigurationManager.findCategorySchemeTermFromTerm("DictionaryTag", username).get());
+        assertTrue(ConfigurationManager.checkIfCategorySchemeTerm(mixinId, username));
+        assertEquals(mixinId, ConfigurationManager.getCategoryFilterSchemeTerm("/dictionarytag/", username).get());
+        assertEquals("dictionarytag", ConfigurationManager.getCategoryFilter("/dictionarytag/vm1", username).get());
+        assertFalse(ConfigurationManager.getCategoryFilter("/mydictionarytags/vm1", username).isPresent());
+
+        MixinManager.removeUserMixinFromConfiguration(mixinId, username);
+        assertFalse(ConfigurationManager.findCategorySchemeTermFromTerm("dictionarytag", username).isPresent());
+        assertFalse(ConfigurationManager.checkIfCategorySchemeTerm(mixinId, username));
+    }
+
 
 }
\ No newline at end of file
@@ -18,9 +18,53 @@
  */
 package org.occiware.mart.server.model;
 
+import org.eclipse.cmf.occi.core.Configuration;
+import org.eclipse.cmf.occi.core.OCCIFactory;
+import org.eclipse.cmf.occi.core.Resource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
 /**
  * Created by cgourdin on 25/04/2017.
  */
 public class EntityManagerTest {
-    // TODO !!!
+
+    private static final String OWNER = "entitymanagertest";
+
+    @Before
+    public void setUp() {
+        EntityManager.setConsistencyCheckMode(true);
+    }
+
+    @After
+    public void tearDown() {
+        EntityManager.setConsistencyCheckMode(false);
+        ConfigurationManager.removeConfiguration(OWNER);
+    }
+
+    @Test
+    public void testReferencesFollowConfiguration() {
+        Configuration configuration = ConfigurationManager.getConfigurationForOwner(OWNER);
+        Resource resource = OCCIFactory.eINSTANCE.createResource();
+        resource.setId("f88486b7-0632-482d-a184-a9195733ddd0");
+        resource.setLocation("/mycollection/resource1");
+
+        // Changes made directly on the model.
+        configuration.getResources().add(resource);
+        assertTrue(EntityManager.findEntityForUuid(resource.getId(), OWNER).isPresent());
+        assertTrue(EntityManager.findEntityFromLocation("/mycollection/resource1", OWNER).isPresent());
+        assertTrue(EntityManager.isEntitiesOwnerConsistent(OWNER));
+
+        resource.setLocation("/othercollection/resource1");
+        assertFalse(EntityManager.findEntityFromLocation("/mycollection/resource1", OWNER).isPresent());
+        assertTrue(EntityManager.findEntityFromLocation("/othercollection/resource1", OWNER).isPresent());
+        assertEquals(1, EntityManager.findAllEntitiesOwner(OWNER).size());
+
+        configuration.getResources().remove(resource);
+        assertFalse(EntityManager.findEntityForUuid(resource.getId(), OWNER).isPresent());
+        assertTrue(EntityManager.findAllEntitiesOwner(OWNER).isEmpty());
+    }
 }
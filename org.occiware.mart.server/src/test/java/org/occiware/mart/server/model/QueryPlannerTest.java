@@ -0,0 +1,275 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.model;
+
+import org.eclipse.cmf.occi.core.AttributeState;
+import org.eclipse.cmf.occi.core.Entity;
+import org.eclipse.cmf.occi.core.OCCIFactory;
+import org.junit.Test;
+import org.occiware.mart.server.exception.ConfigurationException;
+import org.occiware.mart.server.model.container.EntitiesOwner;
+import org.occiware.mart.server.utils.AggregationQuery;
+import org.occiware.mart.server.utils.CollectionFilter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class QueryPlannerTest {
+
+    private static final String OWNER = "queryplannertest";
+    private static final String UUID_PREFIX = "f88486b7-0632-482d-a184-a9195733ddd";
+
+    @Test
+    public void testParse() throws ConfigurationException {
+        assertEquals("occi.compute.state = \"active\"", QueryPlanner.parse("occi.compute.state=active", OWNER).toString());
+        // And has priority on or.
+        assertEquals("(occi.compute.state = \"active\" or (path = \"/vms/\" and occi.compute.hostname ~ \"my vm\"))",
+                QueryPlanner.parse("occi.compute.state = active OR occi.compute.hostname ~ \"my vm\" and path = /vms/", OWNER).toString());
+        assertEquals("(occi.compute.cores between \"2\" and (path = \"/vms/\" or occi.compute.cores < \"8\"))",
+                QueryPlanner.parse("occi.compute.cores >= 2 and (path = /vms/ or occi.compute.cores < 8)", OWNER).toString());
+        assertEquals("occi.compute.memory <= \"4.0\"", QueryPlanner.parse("occi.compute.memory <= 4.0", OWNER).toString());
+    }
+
+    @Test
+    public void testParseErrors() {
+        String[] expressions = {"occi.compute.state", "occi.compute.state = ", "(occi.compute.state = active",
+                "occi.compute.state = active and", "path > /vms/", "occi.compute.hostname = \"vm1", "a = b c = d"};
+        for (String expression : expressions) {
+            try {
+                QueryPlanner.parse(expression, OWNER);
+                fail("Expression must not be parsed : " + expression);
+            } catch (ConfigurationException ex) {
+                // Expected.
+            }
+        }
+    }
+
+    @Test
+    public void testExecute() throws ConfigurationException {
+        EntitiesOwner entitiesOwner = new EntitiesOwner(OWNER);
+        entitiesOwner.setIndexedAttributes(Collections.singletonList("occi.compute.cores"));
+        Entity vm1 = createEntity(UUID_PREFIX + 1, "4", "inactive");
+        Entity vm2 = createEntity(UUID_PREFIX + 2, "2", "active");
+        Entity vm3 = createEntity(UUID_PREFIX + 3, "1", "active");
+        entitiesOwner.putEntity("/vms/vm1", vm1);
+        entitiesOwner.putEntity("/other/vm2", vm2);
+        entitiesOwner.putEntity("/other/vm3", vm3);
+
+        CollectionFilter filter = new CollectionFilter();
+        filter.setExpression("occi.compute.cores >= 2 and (path = /vms/ or occi.compute.state = active)");
+        List<Entity> entities = QueryPlanner.compile(filter, OWNER).execute(entitiesOwner);
+        assertEquals(2, entities.size());
+        assertFalse(entities.contains(vm3));
+        assertEquals(2, QueryPlanner.compile(filter, OWNER).count(entitiesOwner));
+
+        filter.setFilterOnEntitiesPath("/other/");
+        filter.setExpression("occi.compute.state = active or occi.compute.cores > 3");
+        entities = QueryPlanner.compile(filter, OWNER).execute(entitiesOwner);
+        assertEquals(2, entities.size());
+        assertFalse(entities.contains(vm1));
+
+        filter.setFilterOnEntitiesPath(null);
+        filter.setExpression(null);
+        assertEquals(3, QueryPlanner.compile(filter, OWNER).execute(entitiesOwner).size());
+        assertEquals(3, QueryPlanner.compile(filter, OWNER).count(entitiesOwner));
+    }
+
+    @Test
+    public void testIndexSameAsScan() throws ConfigurationException {
+        EntitiesOwner indexedOwner = new EntitiesOwner(OWNER);
+        indexedOwner.setIndexedAttributes(Collections.singletonList("occi.compute.cores"));
+        EntitiesOwner scannedOwner = new EntitiesOwner(OWNER);
+        String[] cores = {"4", " 2 ", "2.0", "1e1", "-0", "0", "NaN", "many", "3.5", "-1"};
+        for (int i = 0; i < cores.length; i++) {
+            Entity entity = createEntity(UUID_PREFIX + i, cores[i], i % 2 == 0 ? "active" : "inactive");
+            indexedOwner.putEntity("/vms/vm" + i, entity);
+            scannedOwner.putEntity("/vms/vm" + i, entity);
+        }
+        String[] expressions = {"occi.compute.cores >= 2", "occi.compute.cores > 2", "occi.compute.cores < 2",
+                "occi.compute.cores <= 0", "occi.compute.cores = 4", "occi.compute.cores > many",
+                "occi.compute.cores >= 0 and occi.compute.state = active", "occi.compute.cores < 0 or occi.compute.cores > 3.5"};
+        CollectionFilter filter = new CollectionFilter();
+        for (String expression : expressions) {
+            filter.setExpression(expression);
+            QueryPlan plan = QueryPlanner.compile(filter, OWNER);
+            List<Entity> entities = plan.execute(scannedOwner);
+            assertEquals(expression, entities, plan.execute(indexedOwner));
+            assertEquals(expression, entities.size(), plan.count(indexedOwner));
+        }
+        filter.setExpression("occi.compute.cores >= 2");
+        assertEquals(5, QueryPlanner.compile(filter, OWNER).count(indexedOwner));
+    }
+
+    @Test
+    public void testExecutePage() throws ConfigurationException {
+        EntitiesOwner entitiesOwner = new EntitiesOwner(OWNER);
+        entitiesOwner.setIndexedAttributes(Collections.singletonList("occi.compute.cores"));
+        for (int i = 9; i >= 0; i--) {
+            entitiesOwner.putEntity("/vms/vm" + i, createEntity(UUID_PREFIX + i, String.valueOf(i), "active"));
+        }
+        QueryPlan plan = QueryPlanner.compile(new CollectionFilter(), OWNER);
+        // One more entity is returned if there is a next page.
+        List<Entity> entities = plan.execute(entitiesOwner, null, 0, 4);
+        assertEquals(5, entities.size());
+        assertEquals(UUID_PREFIX + 0, entities.get(0).getId());
+        entities = plan.execute(entitiesOwner, new QueryCursor(entities.get(3).getId()), 0, 4);
+        assertEquals(5, entities.size());
+        assertEquals(UUID_PREFIX + 4, entities.get(0).getId());
+        entities = plan.execute(entitiesOwner, new QueryCursor(UUID_PREFIX + 7), 0, 4);
+        assertEquals(2, entities.size());
+        assertEquals(UUID_PREFIX + 2, plan.execute(entitiesOwner, null, 2, 4).get(0).getId());
+
+        // Candidates from the attribute index are ordered too.
+        CollectionFilter filter = new CollectionFilter();
+        filter.setExpression("occi.compute.cores >= 2");
+        entities = QueryPlanner.compile(filter, OWNER).execute(entitiesOwner, new QueryCursor(UUID_PREFIX + 5), 0, -1);
+        assertEquals(4, entities.size());
+        assertEquals(UUID_PREFIX + 6, entities.get(0).getId());
+        assertEquals(UUID_PREFIX + 9, entities.get(3).getId());
+    }
+
+    @Test
+    public void testExecuteSorted() throws ConfigurationException {
+        EntitiesOwner entitiesOwner = new EntitiesOwner(OWNER);
+        for (int i = 0; i < 10; i++) {
+            entitiesOwner.putEntity("/vms/vm" + i, createEntity(UUID_PREFIX + i, String.valueOf(i % 5), "active"));
+        }
+        CollectionFilter filter = new CollectionFilter();
+        filter.setSort("occi.compute.cores:desc");
+        QueryPlan plan = QueryPlanner.compile(filter, OWNER);
+        // Same cores ordered by uuid, one more entity is returned if there is a next page.
+        List<Entity> entities = plan.execute(entitiesOwner, null, 0, 3);
+        assertEquals(4, entities.size());
+        assertEquals(UUID_PREFIX + 4, entities.get(0).getId());
+        assertEquals(UUID_PREFIX + 9, entities.get(1).getId());
+        assertEquals(UUID_PREFIX + 3, entities.get(2).getId());
+        // Next page after the last entity of the page.
+        QueryCursor cursor = plan.cursor(entitiesOwner, entities.get(2));
+        entities = plan.execute(entitiesOwner, cursor, 0, 3);
+        assertEquals(4, entities.size());
+        assertEquals(UUID_PREFIX + 8, entities.get(0).getId());
+        assertEquals(UUID_PREFIX + 2, plan.execute(entitiesOwner, null, 4, 3).get(0).getId());
+        assertEquals(10, plan.execute(entitiesOwner).size());
+
+        // The cursor holds the sort values, the next page is the same if the last entity of the page is removed.
+        entitiesOwner.removeEntity(entitiesOwner.getEntityByUuid(UUID_PREFIX + 3));
+        assertEquals(UUID_PREFIX + 8, plan.execute(entitiesOwner, cursor, 0, 3).get(0).getId());
+        try {
+            plan.execute(entitiesOwner, new QueryCursor(UUID_PREFIX + 3), 0, 3);
+            fail("The cursor has no sort values");
+        } catch (ConfigurationException ex) {
+            // Expected.
+        }
+        filter.setSort("occi.compute.cores:up");
+        try {
+            QueryPlanner.compile(filter, OWNER);
+            fail("Sort direction must not be parsed");
+        } catch (ConfigurationException ex) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testExecuteParallel() throws ConfigurationException {
+        EntitiesOwner entitiesOwner = new EntitiesOwner(OWNER);
+        for (int i = 0; i < ParallelFilter.LEAF_SIZE * 3 + 5; i++) {
+            String uuid = String.format("%08d-0632-482d-a184-a9195733ddd0", i);
+            entitiesOwner.putEntity("/vms/vm" + i, createEntity(uuid, String.valueOf(i % 7), i % 3 == 0 ? "active" : "inactive"));
+        }
+        CollectionFilter filter = new CollectionFilter();
+        filter.setExpression("occi.compute.state = active or occi.compute.cores >= 5");
+        QueryPlan plan = QueryPlanner.compile(filter, OWNER);
+        filter.setSort("occi.compute.cores:desc");
+        QueryPlan sortedPlan = QueryPlanner.compile(filter, OWNER);
+        List<Entity> entities = plan.execute(entitiesOwner);
+        List<Entity> page = plan.execute(entitiesOwner, new QueryCursor(entities.get(10).getId()), 100, 50);
+        List<Entity> sortedPage = sortedPlan.execute(entitiesOwner, null, 20, 50);
+        int count = plan.count(entitiesOwner);
+
+        // Same entities in the same order with the filters checked in parallel.
+        entitiesOwner.setParallelFilterThreshold(1);
+        assertEquals(entities, plan.execute(entitiesOwner));
+        assertEquals(page, plan.execute(entitiesOwner, new QueryCursor(entities.get(10).getId()), 100, 50));
+        assertEquals(sortedPage, sortedPlan.execute(entitiesOwner, null, 20, 50));
+        assertEquals(count, plan.count(entitiesOwner));
+        assertEquals(entities.size(), count);
+    }
+
+    @Test
+    public void testAggregate() throws ConfigurationException {
+        EntitiesOwner entitiesOwner = new EntitiesOwner(OWNER);
+        entitiesOwner.setIndexedAttributes(Collections.singletonList("occi.compute.state"));
+        entitiesOwner.putEntity("/vms/vm1", createEntity(UUID_PREFIX + 1, "4", "inactive"));
+        entitiesOwner.putEntity("/vms/vm2", createEntity(UUID_PREFIX + 2, "2", "active"));
+        entitiesOwner.putEntity("/vms/vm3", createEntity(UUID_PREFIX + 3, "1", "active"));
+
+        AggregationQuery aggregation = AggregationQuery.parse("occi.compute.state", "count,sum:occi.compute.cores,max:occi.compute.cores");
+        QueryAggregator aggregator = new QueryAggregator(aggregation);
+        QueryPlanner.compile(new CollectionFilter(), OWNER).forEach(entitiesOwner, aggregator::add);
+        Map<String, Map<String, Number>> results = aggregator.getResults();
+        assertEquals(2, results.size());
+        assertEquals(2L, results.get("active").get("count").longValue());
+        assertEquals(3.0, results.get("active").get("sum(occi.compute.cores)").doubleValue(), 0.0);
+        assertEquals(2.0, results.get("active").get("max(occi.compute.cores)").doubleValue(), 0.0);
+
+        // Same counts from the attribute index.
+        assertEquals(Integer.valueOf(2), entitiesOwner.countEntitiesByAttributeValue("occi.compute.state").get().get("active"));
+        assertFalse(entitiesOwner.countEntitiesByAttributeValue("occi.compute.cores").isPresent());
+
+        try {
+            AggregationQuery.parse(null, "sum");
+            fail("Sum needs an attribute");
+        } catch (ConfigurationException ex) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testCursor() throws ConfigurationException {
+        String cursor = QueryPlanner.encodeCursor(new QueryCursor(UUID_PREFIX + 1));
+        assertEquals(new QueryCursor(UUID_PREFIX + 1), QueryPlanner.decodeCursor(cursor));
+        QueryCursor sorted = new QueryCursor(UUID_PREFIX + 2, new Object[]{4.5, null, "vm\u00002\\"});
+        assertEquals(sorted, QueryPlanner.decodeCursor(QueryPlanner.encodeCursor(sorted)));
+        assertNull(QueryPlanner.decodeCursor(null));
+        try {
+            QueryPlanner.decodeCursor("notacursor");
+            fail("Cursor must not be decoded");
+        } catch (ConfigurationException ex) {
+            // Expected.
+        }
+    }
+
+    private Entity createEntity(final String uuid, final String cores, final String state) {
+        Entity entity = OCCIFactory.eINSTANCE.createResource();
+        entity.setId(uuid);
+        entity.getAttributes().add(createAttribute("occi.compute.cores", cores));
+        entity.getAttributes().add(createAttribute("occi.compute.state", state));
+        return entity;
+    }
+
+    private AttributeState createAttribute(final String name, final String value) {
+        AttributeState attributeState = OCCIFactory.eINSTANCE.createAttributeState();
+        attributeState.setName(name);
+        attributeState.setValue(value);
+        return attributeState;
+    }
+}
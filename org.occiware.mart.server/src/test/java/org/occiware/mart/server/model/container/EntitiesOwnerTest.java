@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.model.container;
+
+import org.eclipse.cmf.occi.core.AttributeState;
+import org.eclipse.cmf.occi.core.Entity;
+import org.eclipse.cmf.occi.core.OCCIFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class EntitiesOwnerTest {
+
+    private EntitiesOwner entitiesOwner;
+    private Entity collection;
+    private Entity vm1;
+    private Entity vm2;
+
+    @Before
+    public void setUp() {
+        entitiesOwner = new EntitiesOwner("test");
+        collection = createEntity("f88486b7-0632-482d-a184-a9195733ddd0");
+        vm1 = createEntity("f88486b7-0632-482d-a184-a9195733ddd1");
+        vm2 = createEntity("f88486b7-0632-482d-a184-a9195733ddd2");
+        entitiesOwner.putEntity("/mycollection/", collection);
+        entitiesOwner.putEntity("mycollection/compute/vm1", vm1);
+        entitiesOwner.putEntity("/mycollectionbis/vm2", vm2);
+    }
+
+    @Test
+    public void testEntityLocation() {
+        assertEquals("/mycollection/compute/vm1", entitiesOwner.getEntityLocation(vm1));
+        assertEquals("/mycollection/compute/vm1", entitiesOwner.getEntityLocation(vm1.getId()));
+
+        // Move the entity.
+        entitiesOwner.putEntity("/othercollection/vm1", vm1);
+        assertEquals("/othercollection/vm1", entitiesOwner.getEntityLocation(vm1));
+        assertNull(entitiesOwner.getEntityByLocation("/mycollection/compute/vm1"));
+
+        entitiesOwner.removeEntity(vm1);
+        assertNull(entitiesOwner.getEntityLocation(vm1));
+        assertNull(entitiesOwner.getEntityByUuid(vm1.getId()));
+    }
+
+    @Test
+    public void testDisplacedEntity() {
+        Entity other = createEntity("f88486b7-0632-482d-a184-a9195733ddd3");
+        entitiesOwner.putEntity("/mycollection/compute/vm1", other);
+        assertSame(other, entitiesOwner.getEntityByLocation("/mycollection/compute/vm1"));
+        assertNull(entitiesOwner.getEntityByUuid(vm1.getId()));
+        assertNull(entitiesOwner.getEntityLocation(vm1));
+        assertEquals(3, entitiesOwner.getEntitiesSize());
+
+        // vm1 is not on this location anymore, the location is kept for the other entity.
+        entitiesOwner.removeEntity("/mycollection/compute/vm1", vm1);
+        assertSame(other, entitiesOwner.getEntityByLocation("/mycollection/compute/vm1"));
+        entitiesOwner.removeEntity("/mycollection/compute/vm1", other);
+        assertNull(entitiesOwner.getEntityByLocation("/mycollection/compute/vm1"));
+        assertEquals(2, entitiesOwner.getEntitiesSize());
+    }
+
+    @Test
+    public void testEntitiesUnderLocation() {
+        assertEquals(2, entitiesOwner.getEntitiesUnderLocation("/mycollection/").size());
+        assertEquals(1, entitiesOwner.getEntitiesUnderLocation("/mycollection/compute").size());
+        assertEquals(1, entitiesOwner.getEntitiesUnderLocation("/mycollectionbis").size());
+        assertTrue(entitiesOwner.getEntitiesUnderLocation("/unknown/").isEmpty());
+
+        assertEquals(2, entitiesOwner.getSnapshot().getEntitiesUnderLocation("/mycollection").size());
+        assertEquals(3, entitiesOwner.getSnapshot().getEntitiesUnderLocation("/").size());
+        assertEquals(2, entitiesOwner.getSnapshot().countEntitiesUnderLocation("/mycollection"));
+        assertEquals(1, entitiesOwner.getSnapshot().countEntitiesUnderLocation("/mycollection/compute/vm1"));
+        assertEquals(3, entitiesOwner.getSnapshot().countEntitiesUnderLocation("/"));
+        assertEquals(0, entitiesOwner.getSnapshot().countEntitiesUnderLocation("/unknown"));
+
+        entitiesOwner.removeEntity(vm1);
+        assertEquals(1, entitiesOwner.getEntitiesUnderLocation("/mycollection/").size());
+        assertEquals(1, entitiesOwner.getSnapshot().getEntitiesUnderLocation("/mycollection").size());
+    }
+
+    @Test
+    public void testEntitiesOnLocationPath() {
+        assertEquals(2, entitiesOwner.getEntitiesOnLocationPath("/mycollection/compute/vm1").size());
+        assertEquals(1, entitiesOwner.getEntitiesOnLocationPath("/mycollection/compute/").size());
+        assertTrue(entitiesOwner.getEntitiesOnLocationPath("/unknown/vm1").isEmpty());
+    }
+
+    @Test
+    public void testEntitiesByAttributeRange() {
+        entitiesOwner.setIndexedAttributes(Collections.singletonList("occi.compute.memory"));
+        setAttribute(vm1, "occi.compute.memory", "4.0");
+        setAttribute(vm2, "occi.compute.memory", "16");
+        entitiesOwner.updateEntityAttributes(vm1);
+        entitiesOwner.updateEntityAttributes(vm2);
+
+        assertEquals(1, entitiesOwner.getEntitiesByAttributeRange("occi.compute.memory", 4.0, false, null, false).size());
+        assertEquals(2, entitiesOwner.getEntitiesByAttributeRange("occi.compute.memory", 4.0, true, 16.0, true).size());
+        assertEquals(vm1, entitiesOwner.getEntitiesByAttributeRange("occi.compute.memory", null, false, 16.0, false).get(0));
+        assertTrue(entitiesOwner.getEntitiesByAttributeRange("occi.compute.cores", 0.0, true, null, false).isEmpty());
+
+        entitiesOwner.removeEntity(vm2);
+        assertTrue(entitiesOwner.getEntitiesByAttributeRange("occi.compute.memory", 4.0, false, null, false).isEmpty());
+    }
+
+    @Test
+    public void testSnapshot() {
+        EntitiesSnapshot snapshot = entitiesOwner.getSnapshot();
+        assertEquals(3, snapshot.size());
+        assertSame(snapshot, entitiesOwner.getSnapshot());
+
+        entitiesOwner.removeEntity(vm1);
+        // The previous snapshot is not updated.
+        assertEquals(3, snapshot.size());
+        assertEquals("/mycollection/compute/vm1", snapshot.getEntityLocation(vm1.getId()));
+        EntitiesSnapshot current = entitiesOwner.getSnapshot();
+        assertNotSame(snapshot, current);
+        assertEquals(2, current.size());
+        assertTrue(current.getVersion() > snapshot.getVersion());
+        assertNull(current.getEntitiesByUuid().get(vm1.getId()));
+    }
+
+    @Test
+    public void testContentVersion() {
+        long version = entitiesOwner.getContentVersion();
+        entitiesOwner.updateEntityAttributes(vm1);
+        long updated = entitiesOwner.getContentVersion();
+        assertTrue(updated > version);
+        // Not referenced.
+        entitiesOwner.updateEntityContent(createEntity("f88486b7-0632-482d-a184-a9195733ddd9"));
+        assertEquals(updated, entitiesOwner.getContentVersion());
+        // Versions are not given twice, even by another container.
+        assertTrue(new EntitiesOwner("other").getContentVersion() > updated);
+    }
+
+    private void setAttribute(final Entity entity, final String name, final String value) {
+        AttributeState attributeState = OCCIFactory.eINSTANCE.createAttributeState();
+        attributeState.setName(name);
+        attributeState.setValue(value);
+        entity.getAttributes().add(attributeState);
+    }
+
+    private Entity createEntity(final String uuid) {
+        Entity entity = OCCIFactory.eINSTANCE.createResource();
+        entity.setId(uuid);
+        return entity;
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.model.container;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class PersistentSortedMapTest {
+
+    @Test
+    public void testPutRemove() {
+        PersistentSortedMap<String, Integer> empty = PersistentSortedMap.empty();
+        PersistentSortedMap<String, Integer> map = empty.put("b", 2).put("a", 1).put("c", 3);
+        assertTrue(empty.isEmpty());
+        assertEquals(3, map.size());
+        assertEquals(Integer.valueOf(2), map.get("b"));
+        assertEquals("[1, 2, 3]", map.values().toString());
+
+        PersistentSortedMap<String, Integer> removed = map.remove("b");
+        assertEquals("[1, 3]", removed.values().toString());
+        // The previous map is not changed.
+        assertEquals("[1, 2, 3]", map.values().toString());
+        assertSame(removed, removed.remove("unknown"));
+    }
+
+    @Test
+    public void testRanks() {
+        PersistentSortedMap<String, Integer> map = PersistentSortedMap.empty();
+        for (int i = 0; i < 10; i++) {
+            map = map.put("k" + i, i);
+        }
+        assertEquals(3, map.countLower("k3"));
+        assertEquals(4, map.countLowerOrEqual("k3"));
+        assertEquals(10, map.countLowerOrEqual("z"));
+        assertEquals("[3, 4, 5]", map.values("k3", "k6").toString());
+        assertEquals("[4, 5]", map.values().subList(4, 6).toString());
+        assertEquals(Integer.valueOf(7), map.values().get(7));
+    }
+
+    @Test
+    public void testSameAsTreeMap() {
+        Random random = new Random(7);
+        PersistentSortedMap<String, Integer> map = PersistentSortedMap.empty();
+        TreeMap<String, Integer> expected = new TreeMap<>();
+        for (int i = 0; i < 20000; i++) {
+            String key = "k" + random.nextInt(1000);
+            if (random.nextInt(3) < 2) {
+                map = map.put(key, i);
+                expected.put(key, i);
+            } else {
+                map = map.remove(key);
+                expected.remove(key);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(map.values()));
+        assertEquals(expected, map.asMap());
+    }
+}
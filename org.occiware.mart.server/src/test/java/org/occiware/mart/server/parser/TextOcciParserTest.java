@@ -18,11 +18,73 @@
  */
 package org.occiware.mart.server.parser;
 
+import org.junit.Test;
+import org.occiware.mart.server.exception.ParseOCCIException;
+import org.occiware.mart.server.parser.text.OcciHeaderTokenizer;
+import org.occiware.mart.server.parser.text.TextOcciParser;
+import org.occiware.mart.server.utils.Constants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
 /**
  * Created by christophe on 19/04/2017.
  */
 public class TextOcciParserTest {
 
-// TODO !!!
+    @Test
+    public void testParseInputToDatas() throws ParseOCCIException {
+        HeaderPojo headers = new HeaderPojo(new HashMap<>());
+        headers.put(Constants.CATEGORY, Arrays.asList("compute; scheme=\"http://schemas.ogf.org/occi/infrastructure#\"; class=\"kind\", "
+                + "ubuntu; scheme=\"http://occiware.org/templates#\"; class=\"mixin\"; title=\"Ubuntu; 16.04, LTS\""));
+        headers.put(Constants.X_OCCI_ATTRIBUTE, Arrays.asList("occi.core.title=\"vm1, \\\"web\\\" = front\", occi.compute.cores=2 , occi.compute.hostname=\"vm1\""));
+        headers.put(Constants.X_OCCI_LOCATION, Arrays.asList("/compute/vm1/, /compute/vm2/"));
+
+        TextOcciParser parser = new TextOcciParser("anonymous");
+        parser.parseInputToDatas(headers);
+        assertEquals(1, parser.getInputDatas().size());
+        OCCIRequestData data = parser.getInputDatas().get(0);
+        assertEquals("http://schemas.ogf.org/occi/infrastructure#compute", data.getKind());
+        assertEquals(Arrays.asList("http://occiware.org/templates#ubuntu"), data.getMixins());
+        assertEquals("vm1, \"web\" = front", data.getAttrs().get("occi.core.title"));
+        assertEquals("2", data.getAttrs().get("occi.compute.cores"));
+        assertEquals("vm1", data.getAttrs().get("occi.compute.hostname"));
+        assertEquals(Arrays.asList("/compute/vm1/", "/compute/vm2/"), data.getXocciLocations());
+    }
+
+    @Test
+    public void testParseElements() throws ParseOCCIException {
+        List<String> tokens = new ArrayList<>();
+        OcciHeaderTokenizer.parseElements("</network/1>; rel=\"http://schemas.ogf.org/occi/infrastructure#network\"; self=\"/link/1\";;"
+                + " occi.networkinterface.interface=\"eth0; eth1\", tag; scheme=\"http://example.com/tags#\";", new OcciHeaderTokenizer.ElementHandler() {
+            @Override
+            public void startElement(String value) {
+                tokens.add("[" + value);
+            }
+
+            @Override
+            public void parameter(String name, String value) {
+                tokens.add(name + "=" + value);
+            }
+
+            @Override
+            public void endElement() {
+                tokens.add("]");
+            }
+        });
+        assertEquals(Arrays.asList("[</network/1>", "rel=http://schemas.ogf.org/occi/infrastructure#network", "self=/link/1",
+                "occi.networkinterface.interface=eth0; eth1", "]", "[tag", "scheme=http://example.com/tags#", "]"), tokens);
 
+        try {
+            OcciHeaderTokenizer.parseAttributes("occi.core.title=\"not closed", (name, value) -> fail());
+            fail("Quoted string is not closed.");
+        } catch (ParseOCCIException ex) {
+            // Expected.
+        }
+    }
 }
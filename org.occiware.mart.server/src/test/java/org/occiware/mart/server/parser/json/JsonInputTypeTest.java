@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.parser.json;
+
+import org.junit.Test;
+import org.occiware.mart.server.exception.ParseOCCIException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class JsonInputTypeTest {
+
+    @Test
+    public void testClassify() throws ParseOCCIException {
+        assertEquals(JsonInputType.MAIN, JsonInputType.classify("{\"resources\": [{\"kind\": \"compute\", \"mixins\": [\"tpl\"]}]}"));
+        assertEquals(JsonInputType.MAIN, JsonInputType.classify("{\"mixins\": [{\"term\": \"tag\"}]}"));
+        assertEquals(JsonInputType.MAIN, JsonInputType.classify("{ }"));
+        // Mixins as strings are the mixins of a resource.
+        assertEquals(JsonInputType.RESOURCE, JsonInputType.classify("{\"mixins\": [\"tpl\"], \"attributes\": {}}"));
+        assertEquals(JsonInputType.RESOURCE, JsonInputType.classify("{\"kind\": \"compute\", \"attributes\": {\"occi.compute.cores\": 2}, \"links\": [{\"source\": {}}]}"));
+        assertEquals(JsonInputType.LINK, JsonInputType.classify("{\"kind\": \"networkinterface\", \"source\": {\"location\": \"/vm1\"}, \"target\": {\"location\": \"/net1\"}}"));
+        assertEquals(JsonInputType.MIXIN, JsonInputType.classify("{\"term\": \"tag\", \"scheme\": \"http://example.com/tags#\", \"location\": \"/tag/\"}"));
+        assertEquals(JsonInputType.ACTION, JsonInputType.classify("{\"action\": \"http://schemas.ogf.org/occi/infrastructure/compute/action#stop\", \"attributes\": {\"method\": \"graceful\"}}"));
+        assertEquals(JsonInputType.LOCATIONS, JsonInputType.classify("{\"locations\": [\"/vm1\", \"/vm2\"]}"));
+
+        String[] contents = {"[]", "{\"kind\": \"compute\", \"action\": \"stop\"}", "{\"kind\": \"compute\"", "not json"};
+        for (String content : contents) {
+            try {
+                JsonInputType.classify(content);
+                fail("Content must not be classified : " + content);
+            } catch (ParseOCCIException ex) {
+                // Expected.
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.parser.json.render;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class JsonMappersTest {
+
+    @Test
+    public void testStreamedCollection() throws IOException {
+        OcciMainJson source;
+        try (InputStream in = JsonMappersTest.class.getResourceAsStream("/testjson/resources.json")) {
+            source = JsonMappers.reader(OcciMainJson.class).readValue(in);
+        }
+        List<ResourceJson> resources = new ArrayList<>(source.getResources());
+        resources.addAll(source.getResources());
+        List<LinkJson> links = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            LinkJson link = new LinkJson();
+            link.setId("link" + i);
+            link.setKind("http://schemas.ogf.org/occi/infrastructure#networkinterface");
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            attributes.put("occi.networkinterface.interface", "eth" + i);
+            link.setAttributes(attributes);
+            links.add(link);
+        }
+        OcciMainJson occiMain = new OcciMainJson();
+        occiMain.setResources(resources);
+        occiMain.setLinks(links);
+
+        // The streamed content must be the same as the content rendered in memory.
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = JsonMappers.generator(out)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("resources");
+            for (ResourceJson resource : resources) {
+                JsonMappers.streamWriter(resource.getClass()).writeValue(generator, resource);
+            }
+            generator.writeEndArray();
+            generator.writeArrayFieldStart("links");
+            for (LinkJson link : links) {
+                JsonMappers.streamWriter(link.getClass()).writeValue(generator, link);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        assertEquals(occiMain.toStringJson(), out.toString("UTF-8"));
+    }
+}
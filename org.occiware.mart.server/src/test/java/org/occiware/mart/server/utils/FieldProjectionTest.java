@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FieldProjectionTest {
+
+    @Test
+    public void testParse() {
+        assertSame(FieldProjection.ALL, FieldProjection.parse(null));
+        assertSame(FieldProjection.ALL, FieldProjection.parse(" , "));
+        assertSame(FieldProjection.ALL, FieldProjection.parse("title,*"));
+
+        FieldProjection projection = FieldProjection.parse("occi.core.title, occi.compute.state,occi.network.*");
+        assertFalse(projection.isAll());
+        assertTrue(projection.includes(FieldProjection.FIELD_TITLE));
+        assertFalse(projection.includes(FieldProjection.FIELD_LINKS));
+        assertTrue(projection.includesAttribute("occi.core.title"));
+        assertFalse(projection.includesAttribute("occi.core.summary"));
+        assertTrue(projection.includesAttribute("occi.compute.state"));
+        assertFalse(projection.includesAttribute("occi.compute.memory"));
+        assertTrue(projection.includesAttribute("occi.network.vlan"));
+
+        projection = FieldProjection.parse("attributes");
+        assertTrue(projection.includesAttribute("occi.compute.memory"));
+        assertFalse(projection.includes(FieldProjection.FIELD_ACTIONS));
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.server.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class LineReaderTest {
+
+    @Test
+    public void testReadLine() throws IOException {
+        StringBuilder longLine = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            longLine.append("abcd");
+        }
+        String content = "Category: compute\r\nX-OCCI-Attribute: occi.core.title=\"vm1\"\n\r" + longLine + "\rlast";
+        List<String> lines = new ArrayList<>();
+        try (LineReader reader = new LineReader(new StringReader(content))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        assertEquals(Arrays.asList("Category: compute", "X-OCCI-Attribute: occi.core.title=\"vm1\"", "", longLine.toString(), "last"), lines);
+    }
+
+    @Test
+    public void testMaxSize() throws IOException {
+        byte[] content = "Category: compute\nX-OCCI-Attribute: occi.core.title=\"été\"\n".getBytes(StandardCharsets.UTF_8);
+        try (LineReader reader = LineReader.of(new ByteArrayInputStream(content), content.length)) {
+            assertEquals("Category: compute", reader.readLine());
+            assertEquals("X-OCCI-Attribute: occi.core.title=\"été\"", reader.readLine());
+        }
+        try (LineReader reader = LineReader.of(new ByteArrayInputStream(content), content.length - 1)) {
+            reader.readLine();
+            fail("The content exceeds the maximum size.");
+        } catch (IOException ex) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testMaxLineLength() throws IOException {
+        byte[] content = "abcd\r\nabcde\nabc".getBytes(StandardCharsets.UTF_8);
+        try (LineReader reader = LineReader.of(new ByteArrayInputStream(content), 0, 4)) {
+            assertEquals("abcd", reader.readLine());
+            reader.readLine();
+            fail("The second line exceeds the maximum length.");
+        } catch (IOException ex) {
+            // Expected.
+        }
+        StringBuilder longLine = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            longLine.append("abcd");
+        }
+        try (LineReader reader = new LineReader(new StringReader(longLine.toString()), longLine.length() - 1)) {
+            reader.readLine();
+            fail("The line exceeds the maximum length.");
+        } catch (IOException ex) {
+            // Expected.
+        }
+        try (LineReader reader = new LineReader(new StringReader(longLine.toString()), longLine.length())) {
+            assertEquals(longLine.toString(), reader.readLine());
+        }
+    }
+}
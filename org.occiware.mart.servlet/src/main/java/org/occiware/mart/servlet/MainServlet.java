@@ -23,6 +23,7 @@ import org.occiware.mart.server.facade.AppParameters;
 import org.occiware.mart.server.parser.HeaderPojo;
 import org.occiware.mart.servlet.impl.DeleteWorker;
 import org.occiware.mart.servlet.impl.GetWorker;
+import org.occiware.mart.servlet.impl.HeadWorker;
 import org.occiware.mart.servlet.impl.PostWorker;
 import org.occiware.mart.servlet.impl.PutWorker;
 import org.occiware.mart.servlet.utils.ServletUtils;
@@ -90,6 +91,27 @@ public class MainServlet extends HttpServlet {
     }
 
 
+    /**
+     * Head method, answered with the entities references (count and etag headers) without calling the connectors.
+     *
+     * @param req
+     * @param resp
+     * @throws ServletException
+     * @throws IOException
+     */
+    @Override
+    protected void doHead(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        String requestPath = req.getPathInfo();
+        HeaderPojo headers = ServletUtils.getRequestHeaders(req);
+        URI serverURI = ServletUtils.getServerURI(req);
+
+        LOGGER.debug("doHead method for path: " + requestPath);
+
+        HeadWorker worker = new HeadWorker(serverURI, resp, headers, req, requestPath);
+
+        resp = worker.executeQuery();
+    }
+
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         // super.doPost(req, resp);
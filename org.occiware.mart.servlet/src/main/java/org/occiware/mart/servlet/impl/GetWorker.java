@@ -18,8 +18,10 @@
  */
 package org.occiware.mart.servlet.impl;
 
+import org.occiware.mart.server.exception.ConfigurationException;
 import org.occiware.mart.server.parser.HeaderPojo;
 import org.occiware.mart.server.parser.OCCIRequestData;
+import org.occiware.mart.server.utils.AggregationQuery;
 import org.occiware.mart.server.utils.CollectionFilter;
 import org.occiware.mart.server.utils.Constants;
 import org.slf4j.Logger;
@@ -118,14 +120,26 @@ public class GetWorker extends ServletEntry {
                     // Override default or parameters.
                     filter.setCategoryFilter(categoryFilter);
                 }
-                if (!getAcceptType().equals(Constants.MEDIA_TYPE_TEXT_URI_LIST)) {
+                if (isCountQuery()) {
+                    countEntities(filter);
+                } else if (isAggregateQuery()) {
+                    aggregateEntities(filter);
+                } else if (!getAcceptType().equals(Constants.MEDIA_TYPE_TEXT_URI_LIST)) {
                     occiRequest.findEntities(occiRequest.getRequestPath(), filter);
                 } else {
                     occiRequest.findEntitiesLocations(occiRequest.getRequestPath(), filter);
                 }
+                if (occiResponse.getNextCursor() != null && !occiResponse.hasExceptions()) {
+                    // Token to give with the cursor parameter to get the next page.
+                    occiResponse.getHttpResponse().setHeader(Constants.HEADER_NEXT_CURSOR, occiResponse.getNextCursor());
+                }
+                // Json collections are written once the headers are complete.
+                occiResponse.writeStreamingContent();
             }
             if (occiRequest.isOnEntityLocation()) {
-                if (!getAcceptType().equals(Constants.MEDIA_TYPE_TEXT_URI_LIST)) {
+                if (isCountQuery()) {
+                    countEntities(buildCollectionFilter());
+                } else if (!getAcceptType().equals(Constants.MEDIA_TYPE_TEXT_URI_LIST)) {
                     occiRequest.findEntity(occiRequest.getRequestPath());
                 } else {
                     occiRequest.findEntitiesLocations(occiRequest.getRequestPath(), buildCollectionFilter());
@@ -137,5 +151,49 @@ public class GetWorker extends ServletEntry {
         return resp;
     }
 
+    /**
+     * @return true if only the number of entities is requested (count=true), the entities are not retrieved nor rendered.
+     */
+    protected boolean isCountQuery() {
+        return Boolean.parseBoolean(getRequestParameters().get(Constants.COUNT_KEY));
+    }
+
+    /**
+     * @return true if an aggregation is requested (groupby or aggregate parameters), the entities are not rendered.
+     */
+    private boolean isAggregateQuery() {
+        return getRequestParameters().containsKey(Constants.GROUP_BY_KEY) || getRequestParameters().containsKey(Constants.AGGREGATE_KEY);
+    }
+
+    /**
+     * Aggregate the entities of the collection.
+     *
+     * @param filter the collection filter.
+     */
+    private void aggregateEntities(final CollectionFilter filter) {
+        AggregationQuery aggregation;
+        try {
+            aggregation = AggregationQuery.parse(getRequestParameters().get(Constants.GROUP_BY_KEY), getRequestParameters().get(Constants.AGGREGATE_KEY));
+        } catch (ConfigurationException ex) {
+            occiResponse.parseMessage(ex.getMessage(), HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        occiRequest.aggregateEntities(occiRequest.getRequestPath(), filter, aggregation);
+    }
+
+    /**
+     * Count the entities from the entities references and set the count and etag headers.
+     *
+     * @param filter the collection filter.
+     */
+    private void countEntities(final CollectionFilter filter) {
+        occiRequest.countEntities(occiRequest.getRequestPath(), filter);
+        if (!occiResponse.hasExceptions()) {
+            HttpServletResponse httpResponse = occiResponse.getHttpResponse();
+            httpResponse.setHeader(Constants.HEADER_TOTAL_COUNT, String.valueOf(occiResponse.getTotalCount()));
+            httpResponse.setHeader(Constants.HEADER_ETAG, occiResponse.getEtag());
+        }
+    }
+
 
 }
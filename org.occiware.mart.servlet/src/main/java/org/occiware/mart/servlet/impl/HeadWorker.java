@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) 2015-2017 Inria
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Contributors:
+ * - Christophe Gourdin <christophe.gourdin@inria.fr>
+ */
+package org.occiware.mart.servlet.impl;
+
+import org.occiware.mart.server.parser.HeaderPojo;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.net.URI;
+
+/**
+ * Head method, the entities and collections are counted from the entities references,
+ * the connectors are not called and the entities are not rendered, only the headers are given (count and etag).
+ * No content is written on any query (interface, users, errors...), the status and the headers are the same as with GET.
+ */
+public class HeadWorker extends GetWorker {
+
+    public HeadWorker(URI serverURI, HttpServletResponse resp, HeaderPojo headers, HttpServletRequest req, String path) {
+        super(serverURI, resp, headers, req, path);
+    }
+
+    @Override
+    protected boolean isCountQuery() {
+        return true;
+    }
+
+    @Override
+    protected boolean isHeadersOnly() {
+        return true;
+    }
+}
@@ -27,6 +27,7 @@ import org.occiware.mart.security.exceptions.ParseUserException;
 import org.occiware.mart.server.exception.ParseOCCIException;
 import org.occiware.mart.server.exception.ResourceNotFoundException;
 import org.occiware.mart.server.facade.AbstractOCCIApiInputRequest;
+import org.occiware.mart.server.facade.AppParameters;
 import org.occiware.mart.server.facade.OCCIApiInputRequest;
 import org.occiware.mart.server.facade.OCCIApiResponse;
 import org.occiware.mart.server.parser.HeaderPojo;
@@ -34,6 +35,7 @@ import org.occiware.mart.server.parser.IRequestParser;
 import org.occiware.mart.server.parser.OCCIRequestData;
 import org.occiware.mart.server.utils.CollectionFilter;
 import org.occiware.mart.server.utils.Constants;
+import org.occiware.mart.server.utils.LineReader;
 import org.occiware.mart.server.utils.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -115,10 +117,18 @@ public class OCCIServletInputRequest extends AbstractOCCIApiInputRequest impleme
 
         // Parse the content body if any.
         switch (contentType) {
-            case Constants.MEDIA_TYPE_JSON:
-            case Constants.MEDIA_TYPE_JSON_OCCI:
             case Constants.MEDIA_TYPE_TEXT_PLAIN:
             case Constants.MEDIA_TYPE_TEXT_PLAIN_OCCI:
+                // The content is read line by line by the parser, it is never held as a whole.
+                LOGGER.info("Parsing input uploaded datas...");
+                try (LineReader reader = LineReader.of(request.getInputStream(), AppParameters.getInstance().getMaxBodySize())) {
+                    getInputParser().parseInputToDatas(reader);
+                } catch (IOException ex) {
+                    throw new ParseOCCIException("The server cant read the content input --> " + ex.getMessage());
+                }
+                break;
+            case Constants.MEDIA_TYPE_JSON:
+            case Constants.MEDIA_TYPE_JSON_OCCI:
 
                 InputStream in = null;
                 LOGGER.info("Parsing input uploaded datas...");
@@ -136,6 +146,9 @@ public class OCCIServletInputRequest extends AbstractOCCIApiInputRequest impleme
                     Utils.closeQuietly(in);
                 }
                 break;
+            case Constants.MEDIA_TYPE_NDJSON:
+                // Bulk import, the content is read line by line by importEntities.
+                break;
             case Constants.MEDIA_TYPE_TEXT_OCCI:
                 // For all media type that have header definition only, known for now is text/occi.
                 if (headers != null && !headers.getHeaderMap().isEmpty()) {
@@ -432,6 +445,31 @@ public class OCCIServletInputRequest extends AbstractOCCIApiInputRequest impleme
         return super.createEntity(title, summary, kind, mixins, attributes, location);
     }
 
+    /**
+     * Import the entities of the request content, one entity json by line.
+     *
+     * @return a response object with the status lines, written when the servlet response writes its streaming content.
+     */
+    public OCCIApiResponse importEntities() {
+        try {
+            return importEntities(request.getInputStream());
+        } catch (IOException ex) {
+            OCCIServletOutputResponse responseObj = (OCCIServletOutputResponse) getOcciApiResponse();
+            responseObj.parseMessage("The server cant read the content input --> " + ex.getMessage(), HttpServletResponse.SC_BAD_REQUEST);
+            return responseObj;
+        }
+    }
+
+    @Override
+    public OCCIApiResponse importEntities(final InputStream in) {
+        UserProfile userProfile = UserManagement.getUserProfile(getUsername());
+        if (!userProfile.isCreateEntity()) {
+            parseAuthorizationFailed(getUsername() + " has not the permission to create entities");
+            return getOcciApiResponse();
+        }
+        return super.importEntities(in);
+    }
+
     @Override
     public OCCIApiResponse createEntities(List<OCCIRequestData> datas) {
         UserProfile userProfile = UserManagement.getUserProfile(getUsername());
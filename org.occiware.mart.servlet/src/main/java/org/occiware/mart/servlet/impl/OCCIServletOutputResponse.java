@@ -25,12 +25,14 @@ import org.occiware.mart.server.facade.AbstractOCCIApiResponse;
 import org.occiware.mart.server.facade.OCCIApiResponse;
 import org.occiware.mart.server.parser.HeaderPojo;
 import org.occiware.mart.server.parser.IRequestParser;
+import org.occiware.mart.server.parser.StreamingContent;
 import org.occiware.mart.server.utils.Constants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.List;
 import java.util.Map;
@@ -44,6 +46,14 @@ public class OCCIServletOutputResponse extends AbstractOCCIApiResponse implement
     private static final Logger LOGGER = LoggerFactory.getLogger(OCCIServletOutputResponse.class);
     private final String acceptType;
     private HttpServletResponse httpResponse;
+    /**
+     * Content to write on the output stream with writeStreamingContent, null if the content is already written.
+     */
+    private StreamingContent streamingContent;
+    /**
+     * If true (HEAD method), only the status and the headers are given, the content is never written.
+     */
+    private boolean headersOnly = false;
 
     public OCCIServletOutputResponse(String acceptType, String username, HttpServletResponse response, IRequestParser parser) {
         super(username, parser);
@@ -52,7 +62,7 @@ public class OCCIServletOutputResponse extends AbstractOCCIApiResponse implement
     }
 
     private String getAcceptedTypes() {
-        return Constants.MEDIA_TYPE_TEXT_OCCI + ";" + Constants.MEDIA_TYPE_JSON + ";" + Constants.MEDIA_TYPE_JSON_OCCI + ";" + Constants.MEDIA_TYPE_TEXT_PLAIN + ";" + Constants.MEDIA_TYPE_TEXT_PLAIN_OCCI;
+        return Constants.MEDIA_TYPE_TEXT_OCCI + ";" + Constants.MEDIA_TYPE_JSON + ";" + Constants.MEDIA_TYPE_JSON_OCCI + ";" + Constants.MEDIA_TYPE_TEXT_PLAIN + ";" + Constants.MEDIA_TYPE_TEXT_PLAIN_OCCI + ";" + Constants.MEDIA_TYPE_NDJSON;
     }
 
     /**
@@ -69,14 +79,24 @@ public class OCCIServletOutputResponse extends AbstractOCCIApiResponse implement
         }
 
         buildServerHeaders();
+        streamingContent = null;
+
+        if (response instanceof StreamingContent) {
+            // Written by writeStreamingContent when all the headers are set.
+            streamingContent = (StreamingContent) response;
+            response = "";
+        }
 
         switch (acceptType) {
             case Constants.MEDIA_TYPE_JSON_OCCI:
             case Constants.MEDIA_TYPE_JSON:
+            case Constants.MEDIA_TYPE_NDJSON:
             case Constants.MEDIA_TYPE_TEXT_PLAIN:
             case Constants.MEDIA_TYPE_TEXT_PLAIN_OCCI:
                 // Set the response content.
-                writeContentToResponse((String) response);
+                if (streamingContent == null) {
+                    writeContentToResponse((String) response);
+                }
 
                 break;
             case Constants.MEDIA_TYPE_TEXT_OCCI:
@@ -130,12 +150,55 @@ public class OCCIServletOutputResponse extends AbstractOCCIApiResponse implement
 
     }
 
+    /**
+     * Json collections and bulk import status lines are streamed on the response output stream.
+     *
+     * @return true if the accept type is a json media type.
+     */
+    @Override
+    public boolean isStreamingSupported() {
+        return Constants.MEDIA_TYPE_JSON.equals(acceptType) || Constants.MEDIA_TYPE_JSON_OCCI.equals(acceptType)
+                || Constants.MEDIA_TYPE_NDJSON.equals(acceptType);
+    }
+
+    /**
+     * Write the streaming content set as response message on the response output stream, to call when all the headers are set.
+     * No content length is given, the content is sent with chunked transfer encoding when it exceeds the response buffer.
+     * Does nothing if the response message is not a streaming content.
+     */
+    public void writeStreamingContent() {
+        if (streamingContent == null) {
+            return;
+        }
+        StreamingContent content = streamingContent;
+        streamingContent = null;
+        if (headersOnly) {
+            return;
+        }
+        try {
+            httpResponse.resetBuffer();
+            httpResponse.setCharacterEncoding("UTF-8");
+            OutputStream out = httpResponse.getOutputStream();
+            content.writeTo(out);
+            out.write('\n');
+            out.flush();
+        } catch (IOException | ParseOCCIException ex) {
+            LOGGER.error("Cannot write content output response to httpServletResponse : " + ex.getMessage());
+            if (!httpResponse.isCommitted()) {
+                httpResponse.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+        }
+    }
+
     /**
      * Method to write content directly on httpResponse object.
      *
      * @param content
      */
     private void writeContentToResponse(final String content) {
+        if (headersOnly) {
+            return;
+        }
         try {
             // String contentResponse = new String(content.getBytes(), Charset.forName("UTF-8"));
 
@@ -179,6 +242,14 @@ public class OCCIServletOutputResponse extends AbstractOCCIApiResponse implement
         return httpResponse;
     }
 
+    public boolean isHeadersOnly() {
+        return headersOnly;
+    }
+
+    public void setHeadersOnly(boolean headersOnly) {
+        this.headersOnly = headersOnly;
+    }
+
     public HttpServletResponse getHttpResponse() {
         return httpResponse;
     }
@@ -71,6 +71,17 @@ public class PostWorker extends ServletEntry {
             return occiResponse.getHttpResponse();
         }
 
+        // Bulk import of entities, one resource or link json by line.
+        if (getContentType().equals(Constants.MEDIA_TYPE_NDJSON)) {
+            if (occiRequest.isInterfQuery() || occiRequest.isActionInvocationQuery() || occiRequest.isOnEntityLocation()) {
+                return occiResponse.parseMessage("Content-Type: " + Constants.MEDIA_TYPE_NDJSON + " is only used to import entities on a collection like http://yourhost:8080/", HttpServletResponse.SC_BAD_REQUEST);
+            }
+            occiRequest.importEntities();
+            // The content is read and the status lines are written while the entities are imported.
+            occiResponse.writeStreamingContent();
+            return resp;
+        }
+
         // There is content so check it.
         occiRequest.validateInputDataRequest();
         if (occiResponse.hasExceptions()) {
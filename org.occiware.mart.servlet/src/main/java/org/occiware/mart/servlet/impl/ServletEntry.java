@@ -30,6 +30,7 @@ import org.occiware.mart.server.parser.IRequestParser;
 import org.occiware.mart.server.parser.ParserFactory;
 import org.occiware.mart.server.utils.CollectionFilter;
 import org.occiware.mart.server.utils.Constants;
+import org.occiware.mart.server.utils.FieldProjection;
 import org.occiware.mart.servlet.utils.ServletUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -150,6 +151,13 @@ public abstract class ServletEntry {
     }
 
 
+    /**
+     * @return true if the response has no content, only the status and the headers (HEAD method).
+     */
+    protected boolean isHeadersOnly() {
+        return false;
+    }
+
     public HttpServletResponse buildInputDatas() {
 
         String contextRoot = serverURI.toString();
@@ -185,6 +193,7 @@ public abstract class ServletEntry {
 
         try {
             occiResponse = new OCCIServletOutputResponse(acceptType, username, httpResponse, outputParser);
+            occiResponse.setHeadersOnly(isHeadersOnly());
             username = validateAuth();
 
         } catch (AuthenticationException ex) {
@@ -225,6 +234,7 @@ public abstract class ServletEntry {
         }
 
         parseRequestParameters();
+        outputParser.setFieldProjection(FieldProjection.parse(getRequestParameters().get(Constants.FIELDS_KEY)));
 
         // Define if the request is a users CRUD management request.
         userRequest = occiRequest.getRequestPath().startsWith(Constants.RESERVED_URI_LIST_USERS);
@@ -432,6 +442,10 @@ public abstract class ServletEntry {
         String categoryFilter = getRequestParameters().get(Constants.CATEGORY_KEY);
         String attributeFilter = getRequestParameters().get(Constants.ATTRIBUTE_KEY);
         String attributeValue = getRequestParameters().get(Constants.VALUE_KEY);
+        String attributeValueMax = getRequestParameters().get(Constants.VALUE_MAX_KEY);
+        String expression = getRequestParameters().get(Constants.FILTER_KEY);
+        String cursor = getRequestParameters().get(Constants.CURSOR_KEY);
+        String sort = getRequestParameters().get(Constants.SORT_KEY);
         CollectionFilter filter = new CollectionFilter();
         filter.setOperator(operator);
         filter.setNumberOfItemsPerPage(items);
@@ -439,6 +453,10 @@ public abstract class ServletEntry {
         filter.setCategoryFilter(categoryFilter);
         filter.setAttributeFilter(attributeFilter);
         filter.setValue(attributeValue);
+        filter.setValueMax(attributeValueMax);
+        filter.setExpression(expression);
+        filter.setCursor(cursor);
+        filter.setSort(sort);
 
 
         String requestPath = occiRequest.getRequestPath();